@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.apps.repository.core;
+
+/**
+ * The formats in which the index of a hosted repository can be served.
+ *
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+public enum IndexFormat {
+
+    /**
+     * The XML index format, served to all clients which do not ask for another format.
+     */
+    XML("application/org.eclipse.virgo.repository.Index"),
+
+    /**
+     * The compact binary index format, served to clients which ask for it.
+     */
+    BINARY("application/org.eclipse.virgo.repository.BinaryIndex");
+
+    private final String contentType;
+
+    private IndexFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Returns the HTTP content type of an index in this format.
+     *
+     * @return the content type
+     */
+    public String getContentType() {
+        return this.contentType;
+    }
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.apps.repository.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A <code>RepositoryArtifact</code> represents an artifact stored in a hosted repository.
+ *
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Implementations <strong>must</strong> be thread-safe.
+ *
+ */
+public interface RepositoryArtifact {
+
+    /**
+     * Returns the length of the artifact in bytes, if it is known.
+     *
+     * @return the artifact's length in bytes, or -1 if the length is not known
+     */
+    long getLength();
+
+    /**
+     * Returns the artifact's entity tag, if it has one. The entity tag changes whenever the artifact's content changes.
+     *
+     * @return the entity tag, or <code>null</code> if the artifact does not have one
+     */
+    String getETag();
+
+    /**
+     * Returns an {@link InputStream} from which the artifact can be read
+     *
+     * @return an <code>InputStream</code> for the artifact
+     * @throws IOException if the artifact cannot be read
+     */
+    InputStream getInputStream() throws IOException;
+}
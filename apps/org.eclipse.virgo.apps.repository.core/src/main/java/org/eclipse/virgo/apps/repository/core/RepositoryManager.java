@@ -27,7 +27,8 @@ import java.io.InputStream;
 public interface RepositoryManager {
 
     /**
-     * Returns the {@link RepositoryIndex} of the repository identified by the supplied repository name.
+     * Returns the {@link RepositoryIndex} of the repository identified by the supplied repository name, in the
+     * {@link IndexFormat#XML XML} format.
      * 
      * @param repositoryName The name of the repository for which the index is required
      * 
@@ -36,6 +37,33 @@ public interface RepositoryManager {
      */
     RepositoryIndex getIndex(String repositoryName) throws IOException;
 
+    /**
+     * Returns the {@link RepositoryIndex} of the repository identified by the supplied repository name, in the supplied
+     * format.
+     * 
+     * @param repositoryName The name of the repository for which the index is required
+     * @param format The format of the required index
+     * 
+     * @return The named repository's index, or <code>null</code> if a repository with the supplied name is not known.
+     * @throws IOException if index cannot be accessed
+     */
+    RepositoryIndex getIndex(String repositoryName, IndexFormat format) throws IOException;
+
+    /**
+     * Returns the changes made to the index of the repository identified by the supplied repository name since the
+     * version of the index identified by the supplied entity tag. The changes are encoded with
+     * {@link org.eclipse.virgo.repository.codec.IndexDeltaCodec IndexDeltaCodec}, and the entity tag of the returned
+     * {@link RepositoryIndex} identifies the version of the index which results from applying them.
+     * 
+     * @param repositoryName The name of the repository for which the changes are required
+     * @param eTag The entity tag of the version of the index from which changes are required
+     * 
+     * @return The changes, or <code>null</code> if a repository with the supplied name is not known or the changes
+     *         since the supplied version are not known.
+     * @throws IOException if the changes cannot be accessed
+     */
+    RepositoryIndex getIndexDelta(String repositoryName, String eTag) throws IOException;
+
     /**
      * Returns an <code>InputStream</code> from which the artifact, stored in the repository identified by the supplied
      * repository name, and identified by the supplied type, name, and version, can be read.
@@ -48,4 +76,17 @@ public interface RepositoryManager {
      * @return The requested artifact, or <code>null</code> if the artifact does not exist.
      */
     InputStream getArtifact(String repositoryName, String type, String name, String version);
+
+    /**
+     * Returns the {@link RepositoryArtifact} stored in the repository identified by the supplied repository name, and
+     * identified by the supplied type, name, and version.
+     * 
+     * @param repositoryName The name of the repository that holds the required artifact
+     * @param type The type of the required artifact
+     * @param name The name of the required artifact
+     * @param version The version of the required artifact
+     * 
+     * @return The requested artifact, or <code>null</code> if the artifact does not exist.
+     */
+    RepositoryArtifact getRepositoryArtifact(String repositoryName, String type, String name, String version);
 }
@@ -14,7 +14,9 @@ package org.eclipse.virgo.apps.repository.core.internal;
 import java.io.File;
 import java.io.IOException;
 
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
 import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.codec.IndexDelta;
 
 /**
  * An extension of {@link ArtifactDescriptorPersister} which allows export of the index file.
@@ -22,8 +24,30 @@ import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
  */
 public interface ExportingArtifactDescriptorPersister extends ArtifactDescriptorPersister {
     /**
-     * @return a persisted index file 
+     * @return a persisted index file in the XML format
      * @throws IOException if such a file cannot be supplied
      */
     public File exportIndexFile() throws IOException;
+
+    /**
+     * @param format the format of the index file
+     * @return a persisted index file in the given format
+     * @throws IOException if such a file cannot be supplied
+     */
+    public File exportIndexFile(IndexFormat format) throws IOException;
+
+    /**
+     * The generation of the persisted set of artifacts changes whenever the set changes. An index file exported after
+     * reading the generation contains at least the artifacts of that generation.
+     *
+     * @return an opaque token identifying the current generation of the persisted set of artifacts
+     */
+    public String getGeneration();
+
+    /**
+     * @param generation a token previously returned by {@link #getGeneration()}
+     * @return the changes made to the persisted set of artifacts since the given generation, or <code>null</code> if
+     *         they are no longer known or the token was not issued by this persister
+     */
+    public IndexDelta getChangesSince(String generation);
 }
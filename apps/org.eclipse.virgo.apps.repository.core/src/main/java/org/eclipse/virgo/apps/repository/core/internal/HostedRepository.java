@@ -11,6 +11,8 @@
 
 package org.eclipse.virgo.apps.repository.core.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -22,9 +24,12 @@ import javax.management.JMException;
 import javax.management.ObjectInstance;
 
 import org.eclipse.virgo.apps.repository.core.HostedRepositoryInfo;
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
 import org.eclipse.virgo.apps.repository.core.RepositoryIndex;
 import org.eclipse.virgo.repository.ArtifactDescriptor;
 import org.eclipse.virgo.repository.Repository;
+import org.eclipse.virgo.repository.codec.IndexDelta;
+import org.eclipse.virgo.repository.codec.IndexDeltaCodec;
 import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 import org.slf4j.Logger;
@@ -38,6 +43,8 @@ import org.slf4j.LoggerFactory;
  */
 class HostedRepository {
 
+    private static final String BINARY_ETAG_SUFFIX = "-" + IndexFormat.BINARY.name().toLowerCase();
+
     private final String name; // hosted repository name
 
     private final Repository repository;
@@ -69,7 +76,32 @@ class HostedRepository {
     }
 
     RepositoryIndex getRepositoryIndex() throws IOException {
-        return new ImmutableHostedRepositoryIndex(this.persister);
+        return getRepositoryIndex(IndexFormat.XML);
+    }
+
+    RepositoryIndex getRepositoryIndex(IndexFormat format) throws IOException {
+        return new ImmutableHostedRepositoryIndex(this.persister, format);
+    }
+
+    /**
+     * Returns the changes made to the index since the version of the index identified by the supplied entity tag. The
+     * entity tag of the returned delta identifies the version of the index, in the same format as the base version,
+     * which results from applying the delta.
+     *
+     * @param baseETag the entity tag of a version of the index previously served
+     * @return the changes, or <code>null</code> if they are not known
+     */
+    RepositoryIndex getRepositoryIndexDelta(String baseETag) {
+        String suffix = baseETag.endsWith(BINARY_ETAG_SUFFIX) ? BINARY_ETAG_SUFFIX : "";
+        // read the generation first: the delta may then contain later changes, which re-applying the delta tolerates
+        String generation = this.persister.getGeneration();
+        IndexDelta delta = this.persister.getChangesSince(baseETag.substring(0, baseETag.length() - suffix.length()));
+        if (delta == null) {
+            return null;
+        }
+        ByteArrayOutputStream deltaBytes = new ByteArrayOutputStream();
+        new IndexDeltaCodec().write(delta, deltaBytes);
+        return new ImmutableRepositoryIndexDelta(deltaBytes.toByteArray(), generation + suffix);
     }
 
     private void registerMBean() {
@@ -112,12 +144,14 @@ class HostedRepository {
 
         private final File indexFile;
         private final int length;
-        private final long eTag;
+        private final String eTag;
 
-        private ImmutableHostedRepositoryIndex(ExportingArtifactDescriptorPersister persister) throws IOException {
+        private ImmutableHostedRepositoryIndex(ExportingArtifactDescriptorPersister persister, IndexFormat format) throws IOException {
             File indexFile = null;
+            // read the generation first: the exported file may then contain later changes, which clients tolerate
+            String generation = persister.getGeneration();
             try {
-                indexFile = persister.exportIndexFile();
+                indexFile = format == IndexFormat.XML ? persister.exportIndexFile() : persister.exportIndexFile(format);
             } catch (IOException e) {
                 LOGGER.error("Cannot get indexFile from lazy persister",e);
                 throw e;
@@ -126,7 +160,8 @@ class HostedRepository {
                 LOGGER.error("Cannot get indexFile from lazy persister");
                 throw new IllegalArgumentException("Exporting persister did not supply an index file");
             }
-            this.eTag = indexFile.lastModified();
+            // the entity tags of the formats must differ, as each format is a different representation of the index
+            this.eTag = format == IndexFormat.XML ? generation : generation + "-" + format.name().toLowerCase();
             this.length = (int) indexFile.length();
             this.indexFile = indexFile;
         }
@@ -135,7 +170,7 @@ class HostedRepository {
          * {@inheritDoc}
          */
         public String getETag() {
-            return Long.toString(this.eTag);
+            return this.eTag;
         }
 
         /**
@@ -152,4 +187,37 @@ class HostedRepository {
             return this.length;
         }
     }
+
+    private static class ImmutableRepositoryIndexDelta implements RepositoryIndex {
+
+        private final byte[] delta;
+
+        private final String eTag;
+
+        private ImmutableRepositoryIndexDelta(byte[] delta, String eTag) {
+            this.delta = delta;
+            this.eTag = eTag;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getETag() {
+            return this.eTag;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(this.delta);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int getLength() {
+            return this.delta.length;
+        }
+    }
 }
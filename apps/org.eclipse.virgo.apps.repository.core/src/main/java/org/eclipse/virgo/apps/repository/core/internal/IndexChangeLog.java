@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.apps.repository.core.internal;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.codec.IndexDelta;
+
+/**
+ * A bounded log of the changes made to the index of a hosted repository. Each set of changes recorded starts a new
+ * generation. The changes since any generation still covered by the log can be retrieved as an {@link IndexDelta}; once
+ * the log holds more than a given number of changes, the oldest generations are discarded.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class IndexChangeLog {
+
+    private final int maximumRetainedChanges;
+
+    private final Object monitor = new Object(); // protects all following private state
+        private final Deque<Generation> generations = new ArrayDeque<Generation>();
+        private long currentGeneration = 0;
+        private long oldestGeneration = 0;
+        private int retainedChanges = 0;
+
+    /**
+     * @param maximumRetainedChanges the number of added, updated and removed artifacts above which the oldest generations
+     *        are discarded
+     */
+    IndexChangeLog(int maximumRetainedChanges) {
+        this.maximumRetainedChanges = maximumRetainedChanges;
+    }
+
+    /**
+     * @return the current generation
+     */
+    long getGeneration() {
+        synchronized (this.monitor) {
+            return this.currentGeneration;
+        }
+    }
+
+    /**
+     * Records a set of changes as a new generation, unless there are no changes.
+     *
+     * @param updated the artifacts added or updated
+     * @param removed the URIs of the artifacts removed
+     */
+    void record(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) {
+        if (updated.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        synchronized (this.monitor) {
+            Generation generation = new Generation(++this.currentGeneration, updated, removed);
+            this.generations.addLast(generation);
+            this.retainedChanges += generation.size();
+            while (this.retainedChanges > this.maximumRetainedChanges) {
+                Generation discarded = this.generations.removeFirst();
+                this.retainedChanges -= discarded.size();
+                this.oldestGeneration = discarded.generation;
+            }
+        }
+    }
+
+    /**
+     * Returns the changes made after the given generation, up to and including the current generation.
+     *
+     * @param generation the generation from which changes are required
+     * @return the changes, or <code>null</code> if the generation is no longer, or has never been, covered by the log
+     */
+    IndexDelta getChangesSince(long generation) {
+        synchronized (this.monitor) {
+            if (generation < this.oldestGeneration || generation > this.currentGeneration) {
+                return null;
+            }
+            // later changes to an artifact supersede earlier ones; null marks a removal
+            Map<URI, RepositoryAwareArtifactDescriptor> changes = new LinkedHashMap<URI, RepositoryAwareArtifactDescriptor>();
+            Iterator<Generation> iterator = this.generations.descendingIterator();
+            while (iterator.hasNext()) {
+                Generation g = iterator.next();
+                if (g.generation <= generation) {
+                    break;
+                }
+                // within a generation, removals are applied before updates
+                for (RepositoryAwareArtifactDescriptor artifact : g.updated) {
+                    if (!changes.containsKey(artifact.getUri())) {
+                        changes.put(artifact.getUri(), artifact);
+                    }
+                }
+                for (URI uri : g.removed) {
+                    if (!changes.containsKey(uri)) {
+                        changes.put(uri, null);
+                    }
+                }
+            }
+            Set<RepositoryAwareArtifactDescriptor> updated = new HashSet<RepositoryAwareArtifactDescriptor>();
+            Set<URI> removed = new HashSet<URI>();
+            for (Entry<URI, RepositoryAwareArtifactDescriptor> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    removed.add(change.getKey());
+                } else {
+                    updated.add(change.getValue());
+                }
+            }
+            return new IndexDelta(updated, removed);
+        }
+    }
+
+    private static final class Generation {
+
+        private final long generation;
+
+        private final Set<RepositoryAwareArtifactDescriptor> updated;
+
+        private final Set<URI> removed;
+
+        private Generation(long generation, Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) {
+            this.generation = generation;
+            this.updated = new HashSet<RepositoryAwareArtifactDescriptor>(updated);
+            this.removed = new HashSet<URI>(removed);
+        }
+
+        private int size() {
+            return this.updated.size() + this.removed.size();
+        }
+    }
+}
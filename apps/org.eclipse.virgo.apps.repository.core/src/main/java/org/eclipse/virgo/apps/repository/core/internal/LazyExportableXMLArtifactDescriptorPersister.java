@@ -13,10 +13,21 @@ package org.eclipse.virgo.apps.repository.core.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.IncrementalArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.codec.IndexDelta;
 import org.eclipse.virgo.repository.codec.RepositoryCodec;
 import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.IndexFormatException;
@@ -25,58 +36,154 @@ import org.eclipse.virgo.repository.XmlArtifactDescriptorPersister;
 
 /**
  * An {@link ArtifactDescriptorPersister} which allows export of the persisted index file and only generates this when export is requested.
- * It delegates to {@link XmlArtifactDescriptorPersister}s to do the actual writing. <p /> 
+ * It delegates to {@link XmlArtifactDescriptorPersister}s to do the actual writing. An index file is generated, in its own pool, for each
+ * {@link IndexFormat} that has been given a codec.
+ * <p />
+ * Each change to the persisted set of artifacts starts a new generation, and the changes made since a recent generation
+ * can be retrieved so that clients which have an earlier index need not download the whole index again. A generation is
+ * identified by a token which is only meaningful to the persister instance which issued it. <p /> 
  *
  * <strong>Concurrent Semantics</strong><br />
  * This implementation is thread-safe.
  *
  */
-class LazyExportableXMLArtifactDescriptorPersister implements ExportingArtifactDescriptorPersister {
+class LazyExportableXMLArtifactDescriptorPersister implements ExportingArtifactDescriptorPersister, IncrementalArtifactDescriptorPersister {
+
+    private static final int MAXIMUM_RETAINED_CHANGES = 10000;
+
+    private static final char GENERATION_SEPARATOR = '-';
 
     private final String repositoryName;
-    
-    private final RepositoryCodec repositoryCodec;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final IndexChangeLog changeLog = new IndexChangeLog(MAXIMUM_RETAINED_CHANGES);
     
     private final Object monitorPersister = new Object(); // serialises access to following private state
-        private volatile boolean currentSetPersisted;
-        private final Set<RepositoryAwareArtifactDescriptor> artifactDescriptors = new HashSet<RepositoryAwareArtifactDescriptor>();
-        private final FilePool indexPool;
+        private final Map<URI, RepositoryAwareArtifactDescriptor> artifactDescriptors = new HashMap<URI, RepositoryAwareArtifactDescriptor>();
+        private final Map<IndexFormat, IndexExport> indexExports = new EnumMap<IndexFormat, IndexExport>(IndexFormat.class);
 
     public LazyExportableXMLArtifactDescriptorPersister(String repositoryName, RepositoryCodec repositoryCodec, FilePool indexPool) {
-        this.repositoryCodec = repositoryCodec;
         this.repositoryName = repositoryName;
-        this.currentSetPersisted = false;
-        this.indexPool = indexPool;
+        this.indexExports.put(IndexFormat.XML, new IndexExport(repositoryCodec, indexPool));
+    }
+
+    public LazyExportableXMLArtifactDescriptorPersister(String repositoryName, RepositoryCodec repositoryCodec, FilePool indexPool,
+        RepositoryCodec binaryRepositoryCodec, FilePool binaryIndexPool) {
+        this(repositoryName, repositoryCodec, indexPool);
+        this.indexExports.put(IndexFormat.BINARY, new IndexExport(binaryRepositoryCodec, binaryIndexPool));
     }
 
     public Set<RepositoryAwareArtifactDescriptor> loadArtifacts() throws IndexFormatException {
         synchronized (monitorPersister) {
             Set<RepositoryAwareArtifactDescriptor> artifactDescriptorsCopy = new HashSet<RepositoryAwareArtifactDescriptor>(this.artifactDescriptors.size());
-            artifactDescriptorsCopy.addAll(this.artifactDescriptors);
+            artifactDescriptorsCopy.addAll(this.artifactDescriptors.values());
             return artifactDescriptorsCopy;
         }
     }
 
     public void persistArtifactDescriptors(Set<RepositoryAwareArtifactDescriptor> descriptors) throws IOException {
         synchronized (monitorPersister) {
-            this.artifactDescriptors.clear();
-            this.artifactDescriptors.addAll(descriptors);
-            this.currentSetPersisted = false;
+            Set<URI> removed = new HashSet<URI>(this.artifactDescriptors.keySet());
+            Set<RepositoryAwareArtifactDescriptor> updated = new HashSet<RepositoryAwareArtifactDescriptor>();
+            for (RepositoryAwareArtifactDescriptor descriptor : descriptors) {
+                removed.remove(descriptor.getUri());
+                if (!isUnchanged(this.artifactDescriptors.get(descriptor.getUri()), descriptor)) {
+                    updated.add(descriptor);
+                }
+            }
+            applyChanges(updated, removed);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p />
+     * Changes are held in memory only, so there is never a need to persist the whole set.
+     */
+    public boolean persistArtifactDescriptorChanges(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) throws IOException {
+        synchronized (monitorPersister) {
+            applyChanges(updated, removed);
+        }
+        return false;
+    }
+
+    private void applyChanges(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) {
+        if (updated.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        for (URI uri : removed) {
+            this.artifactDescriptors.remove(uri);
+        }
+        for (RepositoryAwareArtifactDescriptor descriptor : updated) {
+            this.artifactDescriptors.put(descriptor.getUri(), descriptor);
+        }
+        this.changeLog.record(updated, removed);
+        for (IndexExport indexExport : this.indexExports.values()) {
+            indexExport.currentSetPersisted = false;
+        }
+    }
+
+    private static boolean isUnchanged(RepositoryAwareArtifactDescriptor existing, RepositoryAwareArtifactDescriptor descriptor) {
+        return existing != null && existing.equals(descriptor) && equal(existing.getFilename(), descriptor.getFilename())
+            && attributeValues(existing).equals(attributeValues(descriptor));
+    }
+
+    // attributes do not define equality, so compare their keys, values and properties
+    private static Set<List<Object>> attributeValues(ArtifactDescriptor descriptor) {
+        Set<List<Object>> attributeValues = new HashSet<List<Object>>();
+        for (Attribute attribute : descriptor.getAttributes()) {
+            attributeValues.add(Arrays.<Object> asList(attribute.getKey(), attribute.getValue(), attribute.getProperties()));
+        }
+        return attributeValues;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getGeneration() {
+        return this.epoch + GENERATION_SEPARATOR + this.changeLog.getGeneration();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public IndexDelta getChangesSince(String generation) {
+        int separator = generation.lastIndexOf(GENERATION_SEPARATOR);
+        if (separator < 0 || !this.epoch.equals(generation.substring(0, separator))) {
+            return null;
+        }
+        try {
+            return this.changeLog.getChangesSince(Long.parseLong(generation.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
     
     public File exportIndexFile() throws IOException {
+        return exportIndexFile(IndexFormat.XML);
+    }
+
+    public File exportIndexFile(IndexFormat format) throws IOException {
         File indexFile = null;
         synchronized (monitorPersister) {
+            IndexExport indexExport = this.indexExports.get(format);
+            if (indexExport == null) {
+                throw new IOException("Index format " + format + " is not exported by repository '" + this.repositoryName + "'.");
+            }
             try {
-                if (!currentSetPersisted) {
-                    indexFile = this.indexPool.generateNextPoolFile();
-                    ArtifactDescriptorPersister artifactDescriptorPersister = new XmlArtifactDescriptorPersister(this.repositoryCodec, this.repositoryName, indexFile);
-                    artifactDescriptorPersister.persistArtifactDescriptors(this.artifactDescriptors);
-                    this.indexPool.putFileInPool(indexFile);
-                    this.currentSetPersisted = true;
+                if (!indexExport.currentSetPersisted) {
+                    indexFile = indexExport.indexPool.generateNextPoolFile();
+                    ArtifactDescriptorPersister artifactDescriptorPersister = new XmlArtifactDescriptorPersister(indexExport.repositoryCodec, this.repositoryName, indexFile);
+                    artifactDescriptorPersister.persistArtifactDescriptors(new HashSet<RepositoryAwareArtifactDescriptor>(this.artifactDescriptors.values()));
+                    indexExport.indexPool.putFileInPool(indexFile);
+                    indexExport.currentSetPersisted = true;
                 } else {
-                    indexFile = this.indexPool.getMostRecentPoolFile();
+                    indexFile = indexExport.indexPool.getMostRecentPoolFile();
                 }
             } catch (FilePoolException e) {
                 throw new IOException(e.getMessage(), e);
@@ -85,4 +192,22 @@ class LazyExportableXMLArtifactDescriptorPersister implements ExportingArtifactD
         return indexFile;
     }
 
+    /**
+     * The codec and pool of the exported index files of one format, and whether the current set of artifacts has been
+     * exported in that format. Guarded by <code>monitorPersister</code>.
+     */
+    private static final class IndexExport {
+
+        private final RepositoryCodec repositoryCodec;
+
+        private final FilePool indexPool;
+
+        private boolean currentSetPersisted = false;
+
+        private IndexExport(RepositoryCodec repositoryCodec, FilePool indexPool) {
+            this.repositoryCodec = repositoryCodec;
+            this.indexPool = indexPool;
+        }
+    }
+
 }
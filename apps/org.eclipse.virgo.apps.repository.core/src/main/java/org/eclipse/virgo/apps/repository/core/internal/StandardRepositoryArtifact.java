@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.apps.repository.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.eclipse.virgo.apps.repository.core.RepositoryArtifact;
+
+/**
+ * A {@link RepositoryArtifact} read from the URI at which a hosted repository stores the artifact. The length and entity
+ * tag are only known for artifacts stored in files, in which case the entity tag is derived from the file's length and
+ * last modification time, as they were when the artifact was looked up.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class StandardRepositoryArtifact implements RepositoryArtifact {
+
+    private static final String FILE_SCHEME = "file";
+
+    private final URI uri;
+
+    private final long length;
+
+    private final String eTag;
+
+    StandardRepositoryArtifact(URI uri) {
+        this.uri = uri;
+        File file = FILE_SCHEME.equals(uri.getScheme()) ? new File(uri) : null;
+        if (file != null && file.isFile()) {
+            this.length = file.length();
+            this.eTag = Long.toString(this.length, 36) + "-" + Long.toString(file.lastModified(), 36);
+        } else {
+            this.length = -1;
+            this.eTag = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getETag() {
+        return this.eTag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getInputStream() throws IOException {
+        return this.uri.toURL().openStream();
+    }
+}
@@ -24,6 +24,8 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.Map.Entry;
 
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
+import org.eclipse.virgo.apps.repository.core.RepositoryArtifact;
 import org.eclipse.virgo.apps.repository.core.RepositoryIndex;
 import org.eclipse.virgo.apps.repository.core.RepositoryManager;
 import org.eclipse.virgo.kernel.services.work.WorkArea;
@@ -34,6 +36,7 @@ import org.eclipse.virgo.repository.ArtifactBridge;
 import org.eclipse.virgo.repository.Repository;
 import org.eclipse.virgo.repository.RepositoryCreationException;
 import org.eclipse.virgo.repository.RepositoryFactory;
+import org.eclipse.virgo.repository.codec.BinaryRepositoryCodec;
 import org.eclipse.virgo.repository.codec.XMLRepositoryCodec;
 import org.eclipse.virgo.repository.configuration.PersistentRepositoryConfiguration;
 import org.eclipse.virgo.repository.configuration.PropertiesRepositoryConfigurationReader;
@@ -49,6 +52,8 @@ import org.eclipse.virgo.util.math.OrderedPair;
  */
 class StandardRepositoryManager implements RepositoryManager {
 
+    private static final String BINARY_INDEX_FILE_NAME_SUFFIX = ".binary";
+
     private final EventLogger eventLogger;
 
     private final Map<String, HostedRepository> repositories = new HashMap<String, HostedRepository>();
@@ -74,8 +79,9 @@ class StandardRepositoryManager implements RepositoryManager {
                     HostedRepositoryUriMapper uriMapper = new HostedRepositoryUriMapper(port, repositoryName);
                     persistentRepositoryConfiguration.setUriMapper(uriMapper);
                     ExportableIndexFilePool filePool = new ExportableIndexFilePool(persistentRepositoryConfiguration.getIndexLocation(), repositoryName);
+                    ExportableIndexFilePool binaryFilePool = new ExportableIndexFilePool(persistentRepositoryConfiguration.getIndexLocation(), repositoryName + BINARY_INDEX_FILE_NAME_SUFFIX);
                     ExportingArtifactDescriptorPersister artifactDescriptorPersister = 
-                        new LazyExportableXMLArtifactDescriptorPersister(repositoryName, new XMLRepositoryCodec(), filePool);
+                        new LazyExportableXMLArtifactDescriptorPersister(repositoryName, new XMLRepositoryCodec(), filePool, new BinaryRepositoryCodec(), binaryFilePool);
                     Repository repository = repositoryFactory.createRepository(persistentRepositoryConfiguration, artifactDescriptorPersister);
                     HostedRepository hostedRepository = new HostedRepository(repository, artifactDescriptorPersister, uriMapper, objectNameFactory);
 
@@ -172,14 +178,44 @@ class StandardRepositoryManager implements RepositoryManager {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public RepositoryArtifact getRepositoryArtifact(String repositoryName, String type, String name, String version) {
+        HostedRepository hostedRepository = this.repositories.get(repositoryName);
+        if (hostedRepository != null) {
+            URI originalUri = hostedRepository.inverseMapping(type, name, version);
+            return null == originalUri ? null : new StandardRepositoryArtifact(originalUri);
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      * @throws IOException 
      */
     public RepositoryIndex getIndex(String repositoryName) throws IOException {
+        return getIndex(repositoryName, IndexFormat.XML);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RepositoryIndex getIndex(String repositoryName, IndexFormat format) throws IOException {
+        HostedRepository hostedRepository = this.repositories.get(repositoryName);
+        if (hostedRepository != null) {
+            return hostedRepository.getRepositoryIndex(format);
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RepositoryIndex getIndexDelta(String repositoryName, String eTag) throws IOException {
         HostedRepository hostedRepository = this.repositories.get(repositoryName);
         if (hostedRepository != null) {
-            return hostedRepository.getRepositoryIndex();
+            return hostedRepository.getRepositoryIndexDelta(eTag);
         }
         return null;
     }
@@ -12,21 +12,30 @@
 package org.eclipse.virgo.apps.repository.core.internal;
 
 import java.io.File;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
 
 import org.junit.Test;
 
 import org.eclipse.virgo.apps.repository.core.HostedRepositoryInfo;
+import org.eclipse.virgo.apps.repository.core.RepositoryIndex;
 import org.eclipse.virgo.apps.repository.core.internal.ExportingArtifactDescriptorPersister;
 import org.eclipse.virgo.apps.repository.core.internal.HostedRepository;
 import org.eclipse.virgo.apps.repository.core.internal.HostedRepositoryObjectNameFactory;
 import org.eclipse.virgo.apps.repository.core.internal.HostedRepositoryUriMapper;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
 import org.eclipse.virgo.repository.Repository;
+import org.eclipse.virgo.repository.codec.IndexDelta;
+import org.eclipse.virgo.repository.codec.IndexDeltaCodec;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 
 /**
  * Tests for {@link HostedRepository} class
@@ -43,6 +52,7 @@ public class HostedRepositoryTests {
         final File dummyIndexFile = new File("dummyIndexFile");
         ExportingArtifactDescriptorPersister persister = createMock(ExportingArtifactDescriptorPersister.class);
         expect(persister.exportIndexFile()).andReturn(dummyIndexFile).atLeastOnce();
+        expect(persister.getGeneration()).andReturn("epoch-0").anyTimes();
         replay(persister);
         
         final HostedRepositoryUriMapper uriMapper = new HostedRepositoryUriMapper(0, repository.getName());
@@ -57,4 +67,29 @@ public class HostedRepositoryTests {
         assertEquals("Uri prefix not same as mapper",uriMapper.getUriPrefix(), mBean.getUriPrefix());
     }
 
+    @Test
+    public void getRepositoryIndexDelta() throws Exception {
+        Repository repository = createMock(Repository.class);
+        expect(repository.getName()).andReturn("testHostRepoName").atLeastOnce();
+        replay(repository);
+
+        ExportingArtifactDescriptorPersister persister = createMock(ExportingArtifactDescriptorPersister.class);
+        expect(persister.getGeneration()).andReturn("epoch-2").anyTimes();
+        expect(persister.getChangesSince("epoch-1")).andReturn(
+            new IndexDelta(new HashSet<ArtifactDescriptor>(), Collections.singleton(URI.create("http://host/removed")))).times(2);
+        expect(persister.getChangesSince("stale")).andReturn(null);
+        replay(persister);
+
+        HostedRepository hr = new HostedRepository(repository, persister, new HostedRepositoryUriMapper(0, repository.getName()),
+            new HostedRepositoryObjectNameFactory("testHostedRepo"));
+
+        RepositoryIndex delta = hr.getRepositoryIndexDelta("epoch-1");
+        assertEquals("epoch-2", delta.getETag());
+        assertEquals(Collections.singleton(URI.create("http://host/removed")), new IndexDeltaCodec().read(delta.getInputStream()).getRemoved());
+
+        assertEquals("epoch-2-binary", hr.getRepositoryIndexDelta("epoch-1-binary").getETag());
+        assertNull(hr.getRepositoryIndexDelta("stale"));
+        verify(persister);
+    }
+
 }
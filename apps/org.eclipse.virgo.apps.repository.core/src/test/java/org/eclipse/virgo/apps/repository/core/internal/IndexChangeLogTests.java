@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.apps.repository.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.codec.IndexDelta;
+import org.eclipse.virgo.repository.internal.DelegatingRepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.IdentityUriMapper;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+/**
+ * Tests for {@link IndexChangeLog}
+ *
+ */
+public class IndexChangeLogTests {
+
+    private static final Set<URI> NONE_REMOVED = Collections.<URI> emptySet();
+
+    private static final Set<RepositoryAwareArtifactDescriptor> NONE_UPDATED = Collections.<RepositoryAwareArtifactDescriptor> emptySet();
+
+    @Test
+    public void emptyChangesAreIgnored() {
+        IndexChangeLog changeLog = new IndexChangeLog(10);
+        changeLog.record(NONE_UPDATED, NONE_REMOVED);
+        assertEquals(0, changeLog.getGeneration());
+        assertTrue(changeLog.getChangesSince(0).isEmpty());
+    }
+
+    @Test
+    public void laterChangesSupersedeEarlierOnes() {
+        IndexChangeLog changeLog = new IndexChangeLog(10);
+        RepositoryAwareArtifactDescriptor a1 = createArtifact("a", "1");
+        RepositoryAwareArtifactDescriptor a2 = createArtifact("a", "2");
+        RepositoryAwareArtifactDescriptor b1 = createArtifact("b", "1");
+
+        changeLog.record(Collections.singleton(a1), NONE_REMOVED);
+        changeLog.record(Collections.singleton(b1), NONE_REMOVED);
+        changeLog.record(Collections.singleton(a2), Collections.singleton(b1.getUri()));
+        assertEquals(3, changeLog.getGeneration());
+
+        IndexDelta delta = changeLog.getChangesSince(0);
+        assertEquals(Collections.<ArtifactDescriptor> singleton(a2), delta.getUpdated());
+        assertEquals(Collections.singleton(b1.getUri()), delta.getRemoved());
+
+        delta = changeLog.getChangesSince(1);
+        assertEquals(Collections.<ArtifactDescriptor> singleton(a2), delta.getUpdated());
+
+        assertTrue(changeLog.getChangesSince(3).isEmpty());
+        assertNull(changeLog.getChangesSince(4));
+    }
+
+    @Test
+    public void updateSupersedesRemovalInTheSameGeneration() {
+        IndexChangeLog changeLog = new IndexChangeLog(10);
+        RepositoryAwareArtifactDescriptor a1 = createArtifact("a", "1");
+        changeLog.record(Collections.singleton(a1), Collections.singleton(a1.getUri()));
+
+        IndexDelta delta = changeLog.getChangesSince(0);
+        assertEquals(Collections.<ArtifactDescriptor> singleton(a1), delta.getUpdated());
+        assertTrue(delta.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void oldGenerationsAreDiscarded() {
+        IndexChangeLog changeLog = new IndexChangeLog(2);
+        changeLog.record(Collections.singleton(createArtifact("a", "1")), NONE_REMOVED);
+        changeLog.record(Collections.singleton(createArtifact("b", "1")), NONE_REMOVED);
+        changeLog.record(Collections.singleton(createArtifact("c", "1")), NONE_REMOVED);
+
+        assertNull(changeLog.getChangesSince(0));
+        assertEquals(1, changeLog.getChangesSince(2).getUpdated().size());
+        assertEquals(2, changeLog.getChangesSince(1).getUpdated().size());
+    }
+
+    private static RepositoryAwareArtifactDescriptor createArtifact(String name, String version) {
+        return new DelegatingRepositoryAwareArtifactDescriptor(new StandardArtifactDescriptor(URI.create("http://host/" + name), "bundle", name,
+            new Version(version), name + ".jar", new HashSet<Attribute>()), "repo-name", new IdentityUriMapper());
+    }
+}
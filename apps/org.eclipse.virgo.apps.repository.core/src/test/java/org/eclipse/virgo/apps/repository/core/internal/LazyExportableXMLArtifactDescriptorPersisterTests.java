@@ -13,19 +13,24 @@ package org.eclipse.virgo.apps.repository.core.internal;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Test;
 import org.osgi.framework.Version;
 
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
 import org.eclipse.virgo.apps.repository.core.internal.ExportingArtifactDescriptorPersister;
 import org.eclipse.virgo.apps.repository.core.internal.FilePool;
 import org.eclipse.virgo.apps.repository.core.internal.LazyExportableXMLArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.ArtifactDescriptor;
 import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.codec.BinaryRepositoryCodec;
+import org.eclipse.virgo.repository.codec.IndexDelta;
 import org.eclipse.virgo.repository.codec.RepositoryCodec;
 import org.eclipse.virgo.repository.codec.XMLRepositoryCodec;
 import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
@@ -34,6 +39,9 @@ import org.eclipse.virgo.util.io.PathReference;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link LazyExportableXMLArtifactDescriptorPersister}
@@ -46,6 +54,10 @@ public class LazyExportableXMLArtifactDescriptorPersisterTests {
 
     private File nextPoolFile = new File("build/lazypersistertest/file002");
 
+    private File soleBinaryPoolFile = new File("build/lazypersistertest/binary001");
+
+    private File nextBinaryPoolFile = new File("build/lazypersistertest/binary002");
+
     @Test
     public void persistAndLoadArtifacts() throws Exception {
 
@@ -102,6 +114,81 @@ public class LazyExportableXMLArtifactDescriptorPersisterTests {
         assertEquals(removeRepositoryAwareness(testSet), decodedOutput);
     }
 
+    @Test
+    public void exportBinaryIndexFile() throws Exception {
+        RepositoryCodec repositoryCodec = new XMLRepositoryCodec();
+        RepositoryCodec binaryRepositoryCodec = new BinaryRepositoryCodec();
+
+        new PathReference(solePoolFile).createFile();
+        new PathReference(nextPoolFile).createFile();
+        new PathReference(soleBinaryPoolFile).createFile();
+        new PathReference(nextBinaryPoolFile).createFile();
+        FilePool filePool = new StubFilePool(solePoolFile, nextPoolFile);
+        FilePool binaryFilePool = new StubFilePool(soleBinaryPoolFile, nextBinaryPoolFile);
+
+        ExportingArtifactDescriptorPersister persister = new LazyExportableXMLArtifactDescriptorPersister("repo-name", repositoryCodec, filePool,
+            binaryRepositoryCodec, binaryFilePool);
+
+        Set<RepositoryAwareArtifactDescriptor> testSet = generateDescriptorSet();
+        persister.persistArtifactDescriptors(testSet);
+
+        File exportedFile = persister.exportIndexFile(IndexFormat.BINARY);
+        assertNotNull(exportedFile);
+        assertEquals(removeRepositoryAwareness(testSet), binaryRepositoryCodec.read(new FileInputStream(exportedFile)));
+
+        File exportedXmlFile = persister.exportIndexFile();
+        assertEquals(removeRepositoryAwareness(testSet), repositoryCodec.read(new FileInputStream(exportedXmlFile)));
+    }
+
+    @Test
+    public void exportUnsupportedIndexFormat() throws Exception {
+        new PathReference(solePoolFile).createFile();
+        new PathReference(nextPoolFile).createFile();
+        FilePool filePool = new StubFilePool(solePoolFile, nextPoolFile);
+
+        ExportingArtifactDescriptorPersister persister = new LazyExportableXMLArtifactDescriptorPersister("repo-name", new XMLRepositoryCodec(), filePool);
+        persister.persistArtifactDescriptors(generateDescriptorSet());
+
+        try {
+            persister.exportIndexFile(IndexFormat.BINARY);
+            fail("Binary index exported without a binary codec");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void changesSinceGeneration() throws Exception {
+        new PathReference(solePoolFile).createFile();
+        new PathReference(nextPoolFile).createFile();
+        FilePool filePool = new StubFilePool(solePoolFile, nextPoolFile);
+
+        LazyExportableXMLArtifactDescriptorPersister persister = new LazyExportableXMLArtifactDescriptorPersister("repo-name",
+            new XMLRepositoryCodec(), filePool);
+        String initialGeneration = persister.getGeneration();
+
+        Set<RepositoryAwareArtifactDescriptor> testSet = generateDescriptorSet();
+        persister.persistArtifactDescriptors(testSet);
+        String firstGeneration = persister.getGeneration();
+        assertFalse(initialGeneration.equals(firstGeneration));
+
+        persister.persistArtifactDescriptors(new HashSet<RepositoryAwareArtifactDescriptor>(testSet));
+        assertEquals("Persisting the same artifacts should not start a generation", firstGeneration, persister.getGeneration());
+
+        RepositoryAwareArtifactDescriptor raad3 = new StubRepositoryAwareArtifactDescriptor("repo-name",
+            new File("build/testlazypersister/raad3").toURI(), "bundle", "bundle.raad3", new Version("1.3"), "raad3", new HashSet<Attribute>());
+        URI removedUri = new File("build/testlazypersister/raad1").toURI();
+        persister.persistArtifactDescriptorChanges(Collections.singleton(raad3), Collections.singleton(removedUri));
+
+        IndexDelta delta = persister.getChangesSince(firstGeneration);
+        assertEquals(Collections.<ArtifactDescriptor> singleton(raad3), delta.getUpdated());
+        assertEquals(Collections.singleton(removedUri), delta.getRemoved());
+
+        assertEquals(persister.loadArtifacts(), persister.getChangesSince(initialGeneration).getUpdated());
+        assertTrue(persister.getChangesSince(persister.getGeneration()).isEmpty());
+        assertNull(persister.getChangesSince("unknown-1"));
+        assertNull(persister.getChangesSince("1234567890"));
+    }
+
     private static Set<ArtifactDescriptor> removeRepositoryAwareness(Set<RepositoryAwareArtifactDescriptor> raSet) {
         final Set<ArtifactDescriptor> result = new HashSet<ArtifactDescriptor>(raSet.size());
         for (ArtifactDescriptor artifactDescriptor : raSet) {
@@ -13,6 +13,7 @@ package org.eclipse.virgo.apps.repository.web;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -22,6 +23,8 @@ import org.springframework.util.FileCopyUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
+import org.eclipse.virgo.apps.repository.core.RepositoryArtifact;
 import org.eclipse.virgo.apps.repository.core.RepositoryIndex;
 import org.eclipse.virgo.apps.repository.core.RepositoryManager;
 
@@ -30,14 +33,40 @@ class RepositoryController {
     
     private final RepositoryManager repositoryManager;
     
-    private static final String INDEX_CONTENT_TYPE = "application/org.eclipse.virgo.repository.Index";
-    
     private static final String ARTEFACT_CONTENT_TYPE = "application/octet-stream";
     
     private static final String IF_NONE_MATCH_HEADER_NAME = "If-None-Match";
     
     private static final String ETAG_HEADER_NAME = "Etag";
     
+    private static final String ACCEPT_HEADER_NAME = "Accept";
+    
+    private static final String VARY_HEADER_NAME = "Vary";
+    
+    private static final String A_IM_HEADER_NAME = "A-IM";
+    
+    private static final String IM_HEADER_NAME = "IM";
+    
+    private static final String DELTA_INSTANCE_MANIPULATION = "virgo-delta";
+    
+    private static final String DELTA_CONTENT_TYPE = "application/org.eclipse.virgo.repository.IndexDelta";
+    
+    private static final int SC_IM_USED = 226;
+    
+    private static final String RANGE_HEADER_NAME = "Range";
+    
+    private static final String IF_RANGE_HEADER_NAME = "If-Range";
+    
+    private static final String ACCEPT_RANGES_HEADER_NAME = "Accept-Ranges";
+    
+    private static final String CONTENT_RANGE_HEADER_NAME = "Content-Range";
+    
+    private static final String BYTES_UNIT = "bytes";
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+    
     RepositoryController(RepositoryManager repositoryManager) {
         this.repositoryManager = repositoryManager;
     }
@@ -47,22 +76,24 @@ class RepositoryController {
         String path = request.getRequestURI();
         String repository = path.substring(path.lastIndexOf('/') + 1);
         
-        RepositoryIndex index = this.repositoryManager.getIndex(repository);
+        String eTagHeader = request.getHeader(IF_NONE_MATCH_HEADER_NAME);
+        if (eTagHeader != null && acceptsDelta(request.getHeader(A_IM_HEADER_NAME)) && sendIndexDelta(repository, eTagHeader, response)) {
+            return;
+        }
+        
+        IndexFormat format = selectIndexFormat(request.getHeader(ACCEPT_HEADER_NAME));
+        RepositoryIndex index = format == IndexFormat.XML ? this.repositoryManager.getIndex(repository) : this.repositoryManager.getIndex(repository, format);
         if (index != null) {
+            response.addHeader(VARY_HEADER_NAME, ACCEPT_HEADER_NAME + ", " + A_IM_HEADER_NAME);
+            
             String indexETag = index.getETag();
             
-            String eTagHeader = request.getHeader(IF_NONE_MATCH_HEADER_NAME);
-            if (eTagHeader != null) {
-                String[] eTags = eTagHeader.split(",");
-                for (String eTag : eTags) {
-                    if (eTag.equals(indexETag)) {
-                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                        return;
-                    }
-                }
+            if (matchesETag(eTagHeader, indexETag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
             }
             
-            response.setContentType(INDEX_CONTENT_TYPE);
+            response.setContentType(format.getContentType());
             response.setContentLength(index.getLength());
             response.addHeader(ETAG_HEADER_NAME, index.getETag());
                                                 
@@ -72,6 +103,100 @@ class RepositoryController {
         }
     }
     
+    /**
+     * Sends the changes to the index since the version identified by the client's entity tag, as an RFC 3229 delta, or
+     * a not modified status if there are none. Returns <code>false</code>, having sent nothing, if the changes are not
+     * known, in which case the whole index is sent instead.
+     */
+    private boolean sendIndexDelta(String repository, String eTagHeader, HttpServletResponse response) throws IOException {
+        String baseETag = eTagHeader.split(",")[0].trim();
+        RepositoryIndex delta = this.repositoryManager.getIndexDelta(repository, baseETag);
+        if (delta == null) {
+            return false;
+        }
+        response.addHeader(VARY_HEADER_NAME, ACCEPT_HEADER_NAME + ", " + A_IM_HEADER_NAME);
+        if (delta.getETag().equals(baseETag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        response.setStatus(SC_IM_USED);
+        response.addHeader(IM_HEADER_NAME, DELTA_INSTANCE_MANIPULATION);
+        response.setContentType(DELTA_CONTENT_TYPE);
+        response.setContentLength(delta.getLength());
+        response.addHeader(ETAG_HEADER_NAME, delta.getETag());
+        
+        FileCopyUtils.copy(delta.getInputStream(), response.getOutputStream());
+        return true;
+    }
+    
+    /**
+     * Returns <code>true</code> if and only if the supplied <code>If-None-Match</code> header names the supplied entity
+     * tag, or is <code>*</code>. Entity tags in the header may be separated by whitespace as well as commas.
+     */
+    static boolean matchesETag(String ifNoneMatchHeader, String eTag) {
+        if (ifNoneMatchHeader == null || eTag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatchHeader.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals(eTag) || candidate.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsDelta(String aImHeader) {
+        if (aImHeader == null) {
+            return false;
+        }
+        for (String instanceManipulation : aImHeader.split(",")) {
+            String[] parameters = instanceManipulation.split(";");
+            if (parameters[0].trim().equalsIgnoreCase(DELTA_INSTANCE_MANIPULATION)) {
+                return quality(parameters) > 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects the binary index format only if the client names it in its <code>Accept</code> header with a quality no
+     * lower than that of the XML format. The XML format is served otherwise, including to clients which accept any
+     * content type, so that existing clients continue to receive XML.
+     */
+    static IndexFormat selectIndexFormat(String acceptHeader) {
+        if (acceptHeader == null) {
+            return IndexFormat.XML;
+        }
+        float binaryQuality = 0;
+        float xmlQuality = 0;
+        for (String mediaRange : acceptHeader.split(",")) {
+            String[] parameters = mediaRange.split(";");
+            String type = parameters[0].trim();
+            float quality = quality(parameters);
+            if (type.equalsIgnoreCase(IndexFormat.BINARY.getContentType())) {
+                binaryQuality = Math.max(binaryQuality, quality);
+            } else if (type.equalsIgnoreCase(IndexFormat.XML.getContentType()) || type.equals("*/*") || type.equalsIgnoreCase("application/*")) {
+                xmlQuality = Math.max(xmlQuality, quality);
+            }
+        }
+        return binaryQuality > 0 && binaryQuality >= xmlQuality ? IndexFormat.BINARY : IndexFormat.XML;
+    }
+
+    private static float quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+    
     @RequestMapping(method = RequestMethod.GET, value="/*/*/*/*")
     void getArtifact(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String requestUri = request.getRequestURI();
@@ -82,12 +207,124 @@ class RepositoryController {
         String name = uriComponents[uriComponents.length - 2];
         String version = uriComponents[uriComponents.length - 1];
             
-        InputStream artefact = this.repositoryManager.getArtifact(repository, type, name, version);
-        if (artefact != null) {
-            response.setContentType(ARTEFACT_CONTENT_TYPE);
-            FileCopyUtils.copy(artefact, response.getOutputStream());
-        } else {
+        RepositoryArtifact artefact = this.repositoryManager.getRepositoryArtifact(repository, type, name, version);
+        if (artefact == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-        }                      
+            return;
+        }
+        
+        String artefactETag = artefact.getETag();
+        if (artefactETag != null) {
+            response.addHeader(ETAG_HEADER_NAME, artefactETag);
+            if (matchesETag(request.getHeader(IF_NONE_MATCH_HEADER_NAME), artefactETag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        
+        long length = artefact.getLength();
+        long[] range = null;
+        if (length >= 0) {
+            response.addHeader(ACCEPT_RANGES_HEADER_NAME, BYTES_UNIT);
+            String ifRangeHeader = request.getHeader(IF_RANGE_HEADER_NAME);
+            if (ifRangeHeader == null || ifRangeHeader.trim().equals(artefactETag)) {
+                range = parseRange(request.getHeader(RANGE_HEADER_NAME), length);
+            }
+        }
+        
+        if (range == UNSATISFIABLE_RANGE) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.addHeader(CONTENT_RANGE_HEADER_NAME, BYTES_UNIT + " */" + length);
+            return;
+        }
+        
+        response.setContentType(ARTEFACT_CONTENT_TYPE);
+        if (range == null) {
+            if (length >= 0 && length <= Integer.MAX_VALUE) {
+                response.setContentLength((int) length);
+            }
+            FileCopyUtils.copy(artefact.getInputStream(), response.getOutputStream());
+        } else {
+            long rangeLength = range[1] - range[0] + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.addHeader(CONTENT_RANGE_HEADER_NAME, BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + length);
+            if (rangeLength <= Integer.MAX_VALUE) {
+                response.setContentLength((int) rangeLength);
+            }
+            copyRange(artefact.getInputStream(), response.getOutputStream(), range[0], rangeLength);
+        }
+    }
+    
+    /**
+     * Parses a <code>Range</code> header holding a single byte range, as sent by clients resuming a download. Headers
+     * holding several ranges, or which cannot be parsed, are ignored and the whole artifact is served.
+     * 
+     * @return the first and last positions of the range, {@link #UNSATISFIABLE_RANGE} if the range lies beyond the end
+     *         of the artifact, or <code>null</code> if the whole artifact should be served
+     */
+    static long[] parseRange(String rangeHeader, long length) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        String range = rangeHeader.trim();
+        if (!range.startsWith(BYTES_UNIT + "=") || range.indexOf(',') != -1) {
+            return null;
+        }
+        range = range.substring(BYTES_UNIT.length() + 1).trim();
+        int dash = range.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        try {
+            String first = range.substring(0, dash).trim();
+            String last = range.substring(dash + 1).trim();
+            if (first.length() == 0) {
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                return new long[] { Math.max(0, length - suffixLength), length - 1 };
+            }
+            long firstPosition = Long.parseLong(first);
+            long lastPosition = last.length() == 0 ? Long.MAX_VALUE : Long.parseLong(last);
+            if (lastPosition < firstPosition) {
+                return null;
+            }
+            if (firstPosition >= length) {
+                return UNSATISFIABLE_RANGE;
+            }
+            return new long[] { firstPosition, Math.min(lastPosition, length - 1) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static void copyRange(InputStream input, OutputStream output, long first, long rangeLength) throws IOException {
+        try {
+            long skipped = 0;
+            while (skipped < first) {
+                long n = input.skip(first - skipped);
+                if (n <= 0) {
+                    if (input.read() == -1) {
+                        return;
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = rangeLength;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    break;
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+            output.flush();
+        } finally {
+            input.close();
+        }
     }
 }
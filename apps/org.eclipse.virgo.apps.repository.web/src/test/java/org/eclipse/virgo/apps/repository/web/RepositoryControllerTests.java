@@ -17,6 +17,9 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -28,6 +31,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.eclipse.virgo.apps.repository.core.IndexFormat;
+import org.eclipse.virgo.apps.repository.core.RepositoryArtifact;
 import org.eclipse.virgo.apps.repository.core.RepositoryIndex;
 import org.eclipse.virgo.apps.repository.core.RepositoryManager;
 
@@ -73,6 +78,146 @@ public class RepositoryControllerTests {
         }
     }
 
+    @Test
+    public void getBinaryIndex() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo");
+        request.setMethod("GET");
+        request.addHeader("Accept", "application/org.eclipse.virgo.repository.BinaryIndex, application/org.eclipse.virgo.repository.Index;q=0.5");
+
+        byte[] indexBytes = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+        RepositoryIndex repositoryIndex = createMock(RepositoryIndex.class);
+
+        try (InputStream indexBytesAsStream = new ByteArrayInputStream(indexBytes)) {
+            expect(repositoryIndex.getInputStream()).andReturn(indexBytesAsStream);
+            expect(repositoryIndex.getETag()).andReturn("123456789-binary").anyTimes();
+            expect(repositoryIndex.getLength()).andReturn(indexBytes.length);
+
+            expect(this.repositoryManager.getIndex("my-repo", IndexFormat.BINARY)).andReturn(repositoryIndex);
+
+            replay(this.repositoryManager, repositoryIndex);
+
+            repositoryController.getIndex(request, response);
+
+            verify(this.repositoryManager, repositoryIndex);
+
+            assertEquals("application/org.eclipse.virgo.repository.BinaryIndex", response.getContentType());
+            assertEquals("Accept, A-IM", response.getHeader("Vary"));
+            assertArrayEquals(indexBytes, response.getContentAsByteArray());
+        }
+    }
+
+    @Test
+    public void getIndexDelta() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo");
+        request.setMethod("GET");
+        request.addHeader("If-None-Match", "abc-1-binary");
+        request.addHeader("A-IM", "virgo-delta");
+
+        byte[] deltaBytes = new byte[] { 1, 2, 3 };
+
+        RepositoryIndex delta = createMock(RepositoryIndex.class);
+        expect(delta.getInputStream()).andReturn(new ByteArrayInputStream(deltaBytes));
+        expect(delta.getETag()).andReturn("abc-2-binary").anyTimes();
+        expect(delta.getLength()).andReturn(deltaBytes.length);
+
+        expect(this.repositoryManager.getIndexDelta("my-repo", "abc-1-binary")).andReturn(delta);
+
+        replay(this.repositoryManager, delta);
+
+        repositoryController.getIndex(request, response);
+
+        verify(this.repositoryManager, delta);
+
+        assertEquals(226, response.getStatus());
+        assertEquals("virgo-delta", response.getHeader("IM"));
+        assertEquals("abc-2-binary", response.getHeader("Etag"));
+        assertEquals("application/org.eclipse.virgo.repository.IndexDelta", response.getContentType());
+        assertArrayEquals(deltaBytes, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void getIndexDeltaWhenUnchanged() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo");
+        request.setMethod("GET");
+        request.addHeader("If-None-Match", "abc-1");
+        request.addHeader("A-IM", "virgo-delta");
+
+        RepositoryIndex delta = createMock(RepositoryIndex.class);
+        expect(delta.getETag()).andReturn("abc-1").anyTimes();
+
+        expect(this.repositoryManager.getIndexDelta("my-repo", "abc-1")).andReturn(delta);
+
+        replay(this.repositoryManager, delta);
+
+        repositoryController.getIndex(request, response);
+
+        verify(this.repositoryManager, delta);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+    }
+
+    @Test
+    public void getIndexWhenDeltaUnavailable() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo");
+        request.setMethod("GET");
+        request.addHeader("If-None-Match", "123456789");
+        request.addHeader("A-IM", "virgo-delta");
+
+        byte[] indexBytes = new byte[] { 1, 2, 3, 4 };
+
+        RepositoryIndex repositoryIndex = createMock(RepositoryIndex.class);
+        expect(repositoryIndex.getInputStream()).andReturn(new ByteArrayInputStream(indexBytes));
+        expect(repositoryIndex.getETag()).andReturn("abc-2").anyTimes();
+        expect(repositoryIndex.getLength()).andReturn(indexBytes.length);
+
+        expect(this.repositoryManager.getIndexDelta("my-repo", "123456789")).andReturn(null);
+        expect(this.repositoryManager.getIndex("my-repo")).andReturn(repositoryIndex);
+
+        replay(this.repositoryManager, repositoryIndex);
+
+        repositoryController.getIndex(request, response);
+
+        verify(this.repositoryManager, repositoryIndex);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(indexBytes, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void acceptsDelta() {
+        assertFalse(RepositoryController.acceptsDelta(null));
+        assertFalse(RepositoryController.acceptsDelta("vcdiff"));
+        assertFalse(RepositoryController.acceptsDelta("virgo-delta;q=0"));
+        assertTrue(RepositoryController.acceptsDelta("virgo-delta"));
+        assertTrue(RepositoryController.acceptsDelta("vcdiff, virgo-delta;q=0.5"));
+    }
+
+    @Test
+    public void selectIndexFormat() {
+        assertEquals(IndexFormat.XML, RepositoryController.selectIndexFormat(null));
+        assertEquals(IndexFormat.XML, RepositoryController.selectIndexFormat("*/*"));
+        assertEquals(IndexFormat.XML, RepositoryController.selectIndexFormat("application/org.eclipse.virgo.repository.Index"));
+        assertEquals(IndexFormat.XML,
+            RepositoryController.selectIndexFormat("application/org.eclipse.virgo.repository.BinaryIndex;q=0.5, */*"));
+        assertEquals(IndexFormat.XML, RepositoryController.selectIndexFormat("application/org.eclipse.virgo.repository.BinaryIndex;q=0"));
+        assertEquals(IndexFormat.BINARY, RepositoryController.selectIndexFormat("application/org.eclipse.virgo.repository.BinaryIndex"));
+        assertEquals(IndexFormat.BINARY,
+            RepositoryController.selectIndexFormat("application/org.eclipse.virgo.repository.BinaryIndex, */*;q=0.1"));
+    }
+
     @Test
     public void getIndexForUnknownRepository() throws Exception {
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -102,18 +247,125 @@ public class RepositoryControllerTests {
 
         byte[] artefactBytes = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
 
-        expect(this.repositoryManager.getArtifact("my-repo", "bundle", "com.foo", "1.0.0")).andReturn(new ByteArrayInputStream(artefactBytes));
+        RepositoryArtifact artefact = createArtefact(artefactBytes, "abc");
 
-        replay(this.repositoryManager);
+        replay(this.repositoryManager, artefact);
 
         repositoryController.getArtifact(request, response);
 
-        verify(this.repositoryManager);
+        verify(this.repositoryManager, artefact);
 
         assertEquals("application/octet-stream", response.getContentType());
+        assertEquals("abc", response.getHeader("Etag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(artefactBytes.length, response.getContentLength());
         assertArrayEquals(artefactBytes, response.getContentAsByteArray());
     }
 
+    @Test
+    public void getArtefactRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo/bundle/com.foo/1.0.0");
+        request.setMethod("GET");
+        request.addHeader("Range", "bytes=5-");
+        request.addHeader("If-Range", "abc");
+
+        RepositoryArtifact artefact = createArtefact(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, "abc");
+
+        replay(this.repositoryManager, artefact);
+
+        repositoryController.getArtifact(request, response);
+
+        verify(this.repositoryManager, artefact);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 5-7/8", response.getHeader("Content-Range"));
+        assertArrayEquals(new byte[] { 6, 7, 8 }, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void getChangedArtefactRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo/bundle/com.foo/1.0.0");
+        request.setMethod("GET");
+        request.addHeader("Range", "bytes=5-");
+        request.addHeader("If-Range", "old");
+
+        byte[] artefactBytes = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+        RepositoryArtifact artefact = createArtefact(artefactBytes, "abc");
+
+        replay(this.repositoryManager, artefact);
+
+        repositoryController.getArtifact(request, response);
+
+        verify(this.repositoryManager, artefact);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(artefactBytes, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void getUnmodifiedArtefact() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo/bundle/com.foo/1.0.0");
+        request.setMethod("GET");
+        request.addHeader("If-None-Match", "xyz, abc");
+
+        RepositoryArtifact artefact = createMock(RepositoryArtifact.class);
+        expect(artefact.getETag()).andReturn("abc").anyTimes();
+        expect(this.repositoryManager.getRepositoryArtifact("my-repo", "bundle", "com.foo", "1.0.0")).andReturn(artefact);
+
+        replay(this.repositoryManager, artefact);
+
+        repositoryController.getArtifact(request, response);
+
+        verify(this.repositoryManager, artefact);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void matchesETag() {
+        assertFalse(RepositoryController.matchesETag(null, "abc"));
+        assertFalse(RepositoryController.matchesETag("abc", null));
+        assertTrue(RepositoryController.matchesETag("abc", "abc"));
+        assertTrue(RepositoryController.matchesETag("xyz, abc", "abc"));
+        assertTrue(RepositoryController.matchesETag(" abc ,xyz", "abc"));
+        assertTrue(RepositoryController.matchesETag("*", "abc"));
+        assertFalse(RepositoryController.matchesETag("xyz,abcd", "abc"));
+    }
+
+    @Test
+    public void parseRange() {
+        assertNull(RepositoryController.parseRange(null, 10));
+        assertNull(RepositoryController.parseRange("items=0-4", 10));
+        assertNull(RepositoryController.parseRange("bytes=0-1,4-5", 10));
+        assertNull(RepositoryController.parseRange("bytes=5-2", 10));
+        assertNull(RepositoryController.parseRange("bytes=a-", 10));
+        assertArrayEquals(new long[] { 4, 9 }, RepositoryController.parseRange("bytes=4-", 10));
+        assertArrayEquals(new long[] { 4, 6 }, RepositoryController.parseRange("bytes=4-6", 10));
+        assertArrayEquals(new long[] { 4, 9 }, RepositoryController.parseRange("bytes=4-20", 10));
+        assertArrayEquals(new long[] { 7, 9 }, RepositoryController.parseRange("bytes=-3", 10));
+        assertArrayEquals(new long[] { 0, 9 }, RepositoryController.parseRange("bytes=-30", 10));
+        assertEquals(0, RepositoryController.parseRange("bytes=10-", 10).length);
+    }
+
+    private RepositoryArtifact createArtefact(byte[] artefactBytes, String eTag) throws Exception {
+        RepositoryArtifact artefact = createMock(RepositoryArtifact.class);
+        expect(artefact.getETag()).andReturn(eTag).anyTimes();
+        expect(artefact.getLength()).andReturn((long) artefactBytes.length).anyTimes();
+        expect(artefact.getInputStream()).andReturn(new ByteArrayInputStream(artefactBytes));
+        expect(this.repositoryManager.getRepositoryArtifact("my-repo", "bundle", "com.foo", "1.0.0")).andReturn(artefact);
+        return artefact;
+    }
+
     @Test
     public void getUnknownArtefact() throws Exception {
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -122,7 +374,7 @@ public class RepositoryControllerTests {
         request.setRequestURI("http://localhost:8080/org.eclipse.virgo.server.repository/my-repo/bundle/com.foo/1.0.0");
         request.setMethod("GET");
 
-        expect(this.repositoryManager.getArtifact("my-repo", "bundle", "com.foo", "1.0.0")).andReturn(null);
+        expect(this.repositoryManager.getRepositoryArtifact("my-repo", "bundle", "com.foo", "1.0.0")).andReturn(null);
 
         replay(this.repositoryManager);
 
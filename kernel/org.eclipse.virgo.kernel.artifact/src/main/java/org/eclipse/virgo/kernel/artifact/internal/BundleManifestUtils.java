@@ -11,22 +11,13 @@
 
 package org.eclipse.virgo.kernel.artifact.internal;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.jar.JarFile;
 
-import org.eclipse.virgo.kernel.artifact.fs.ArtifactFS;
-import org.eclipse.virgo.kernel.artifact.fs.ArtifactFSEntry;
-import org.eclipse.virgo.kernel.artifact.fs.internal.JarFileArtifactFS;
-import org.eclipse.virgo.util.io.FileCopyUtils;
+import org.eclipse.virgo.util.io.JarUtils;
 import org.eclipse.virgo.util.osgi.manifest.BundleManifest;
 import org.eclipse.virgo.util.osgi.manifest.BundleManifestFactory;
 
@@ -45,7 +36,11 @@ public final class BundleManifestUtils {
     /**
      * Reads the <code>BundleManifest</code> from the supplied <code>file</code>. The <code>File</code> can either be a
      * file, i.e. a jar archive, or a directory. If the file is an archive its manifest will only be read if its name
-     * ends with one of the supplied <code>archiveSuffixes</code>
+     * ends with one of the supplied <code>archiveSuffixes</code>. The manifest is read-only, as those read by artifact
+     * bridges are never changed.
+     * <p/>
+     * An archive's manifest is located through the archive's central directory, without opening the archive's other
+     * entries, and its bytes are parsed without first being decoded into characters.
      * 
      * @param file The file from which the manifest is to be read.
      * @param archiveSuffixes The suffixes with which an archive's file name must end
@@ -57,51 +52,40 @@ public final class BundleManifestUtils {
     public static BundleManifest readBundleManifest(File file, String... archiveSuffixes) throws IOException, SecurityException {
         String fileName = file.getName();
 
-        Reader reader = null;
+        ByteBuffer manifestBytes = null;
 
         if (file.isDirectory()) {
             File manifestFile = new File(file, JarFile.MANIFEST_NAME);
             if (manifestFile.exists()) {
-                reader = manifestReaderFromFile(manifestFile);
+                manifestBytes = manifestBytesFromFile(manifestFile);
             }
         } else {
             for (String suffix : archiveSuffixes) {
                 if (fileName.endsWith(suffix)) {
-                    reader = manifestReaderFromJar(file);
+                    manifestBytes = manifestBytesFromJar(file);
                 }
             }
         }
 
-        if (reader != null) {
-            return BundleManifestFactory.createBundleManifest(reader);
+        if (manifestBytes != null) {
+            return BundleManifestFactory.createReadOnlyBundleManifest(manifestBytes);
         } else {
             return null;
         }
     }
 
-    private static Reader manifestReaderFromJar(File file) throws IOException, SecurityException {
+    private static ByteBuffer manifestBytesFromJar(File file) throws IOException {
         if (!file.exists()) {
             throw new IOException("File '" + file + "' not found");
         }
-        ArtifactFS fs = new JarFileArtifactFS(file);
-        ArtifactFSEntry fsEntry = fs.getEntry(JarFile.MANIFEST_NAME);
-        if (fsEntry == null || !fsEntry.exists()) {
-            return null; // not an error -- no manifest means this isn't a bundle
-        }
-        StringWriter writer = new StringWriter();
-        InputStream inputStream = fsEntry.getInputStream();
-		FileCopyUtils.copy(new InputStreamReader(inputStream, UTF_8), writer);
-		inputStream.close();
-        return new StringReader(writer.toString());
+        return JarUtils.readManifest(file); // null is not an error -- no manifest means this isn't a bundle
     }
 
-    private static Reader manifestReaderFromFile(File file) throws IOException {
+    private static ByteBuffer manifestBytesFromFile(File file) throws IOException {
         try {
-            StringWriter writer = new StringWriter();
-            FileCopyUtils.copy(new InputStreamReader(new FileInputStream(file), UTF_8), writer);
-            return new StringReader(writer.toString());
+            return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
         } catch (IOException ioe) {
-            throw new IOException("Failed to create reader for manifest file.", ioe);
+            throw new IOException("Failed to read manifest file.", ioe);
         }
     }
 }
@@ -38,4 +38,12 @@ public interface ApplicationRecoverer {
      */
     void recoverDeployment(URI location, DeploymentOptions options) throws DeploymentException;
 
+    /**
+     * Returns whether deployments recovered concurrently are recovered in parallel. If they are not, recovering them
+     * on several threads only adds overhead.
+     * 
+     * @return <code>true</code> if and only if concurrent calls to {@link #recoverDeployment} can proceed in parallel
+     */
+    boolean isConcurrentRecoverySupported();
+
 }
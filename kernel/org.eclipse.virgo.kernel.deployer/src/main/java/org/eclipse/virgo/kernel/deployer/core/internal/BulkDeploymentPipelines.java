@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal;
+
+import org.eclipse.virgo.kernel.install.pipeline.Pipeline;
+
+/**
+ * {@link BulkDeploymentPipelines} holds the pipelines which {@link PipelinedApplicationDeployer} uses to install several
+ * install graphs with a single quasi framework resolve and commit.
+ * <p />
+ * Each install graph is passed through the install pipeline, which installs its bundles in a side state shared by all
+ * the graphs. The side state is then resolved and committed once. If that fails, each graph is passed through the
+ * install failure pipeline. Otherwise each graph is passed through the completion pipeline, which ends its installation
+ * and resolves it.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * This class is thread safe.
+ *
+ */
+final class BulkDeploymentPipelines {
+
+    private final Pipeline installPipeline;
+
+    private final Pipeline installFailurePipeline;
+
+    private final Pipeline completionPipeline;
+
+    BulkDeploymentPipelines(Pipeline installPipeline, Pipeline installFailurePipeline, Pipeline completionPipeline) {
+        this.installPipeline = installPipeline;
+        this.installFailurePipeline = installFailurePipeline;
+        this.completionPipeline = completionPipeline;
+    }
+
+    Pipeline getInstallPipeline() {
+        return this.installPipeline;
+    }
+
+    Pipeline getInstallFailurePipeline() {
+        return this.installFailurePipeline;
+    }
+
+    Pipeline getCompletionPipeline() {
+        return this.completionPipeline;
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentIdentity;
+
+/**
+ * {@link DeploymentLocks} provides the locks which {@link PipelinedApplicationDeployer} uses to keep conflicting
+ * deployment operations apart.
+ * <p />
+ * In serial mode every lock handed out is the same global lock, so deployment operations are performed one at a time,
+ * and {@link #lockOperation()} holds it for the whole of an operation, including starting the deployed artifact.
+ * In concurrent start mode operations are serialised per deployment location and per {@link DeploymentIdentity}, and
+ * a separate lock serialises each install pipeline as a whole, since the side state and its coregion are shared by
+ * every install pipeline. Only the work done outside install pipelines, such as starting and undeploying artifacts,
+ * therefore runs concurrently. Callers must acquire locks in the order operation, location, identity, quasi framework and must release every
+ * {@link HeldLock} they obtain.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * This class is thread safe.
+ *
+ */
+final class DeploymentLocks {
+
+    private final boolean concurrent;
+
+    private final ReentrantLock globalLock = new ReentrantLock();
+
+    private final ReentrantLock quasiFrameworkLock = new ReentrantLock();
+
+    private static final HeldLock NO_LOCK = new HeldLock() {
+
+        public void release() {
+        }
+    };
+
+    private final Object monitor = new Object();
+
+    private final Map<Object, KeyedLock> keyedLocks = new HashMap<Object, KeyedLock>();
+
+    DeploymentLocks(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    boolean isConcurrent() {
+        return this.concurrent;
+    }
+
+    /**
+     * Acquires the lock guarding a whole deployment operation. In serial mode this is the global lock, so that the
+     * operation, including starting the deployed artifact, does not overlap any other. In concurrent start mode no lock
+     * is acquired, and the operation relies on the location, identity and quasi framework locks alone.
+     *
+     * @return the acquired lock
+     */
+    HeldLock lockOperation() {
+        return this.concurrent ? NO_LOCK : new HeldReentrantLock(this.globalLock);
+    }
+
+    /**
+     * Acquires the lock guarding the given normalised deployment location.
+     *
+     * @param location the normalised location
+     * @return the acquired lock
+     */
+    HeldLock lockLocation(URI location) {
+        return lockKey(location);
+    }
+
+    /**
+     * Acquires the lock guarding the given deployment identity.
+     *
+     * @param deploymentIdentity the identity
+     * @return the acquired lock
+     */
+    HeldLock lockIdentity(DeploymentIdentity deploymentIdentity) {
+        return lockKey(new StandardDeploymentIdentity(deploymentIdentity.getType(), deploymentIdentity.getSymbolicName(),
+            deploymentIdentity.getVersion()));
+    }
+
+    /**
+     * Acquires the lock guarding the quasi framework, which must be held from the creation of an install environment
+     * until it has been destroyed.
+     *
+     * @return the acquired lock
+     */
+    HeldLock lockQuasiFramework() {
+        return new HeldReentrantLock(this.concurrent ? this.quasiFrameworkLock : this.globalLock);
+    }
+
+    private HeldLock lockKey(Object key) {
+        if (!this.concurrent) {
+            return new HeldReentrantLock(this.globalLock);
+        }
+        KeyedLock keyedLock;
+        synchronized (this.monitor) {
+            keyedLock = this.keyedLocks.get(key);
+            if (keyedLock == null) {
+                keyedLock = new KeyedLock(key);
+                this.keyedLocks.put(key, keyedLock);
+            }
+            keyedLock.users++;
+        }
+        keyedLock.lock.lock();
+        return keyedLock;
+    }
+
+    /**
+     * A lock which has been acquired from {@link DeploymentLocks} and which must be released by the acquiring thread.
+     */
+    interface HeldLock {
+
+        void release();
+    }
+
+    private static final class HeldReentrantLock implements HeldLock {
+
+        private final ReentrantLock lock;
+
+        private HeldReentrantLock(ReentrantLock lock) {
+            this.lock = lock;
+            this.lock.lock();
+        }
+
+        public void release() {
+            this.lock.unlock();
+        }
+    }
+
+    private final class KeyedLock implements HeldLock {
+
+        private final Object key;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /*
+         * Number of threads holding or waiting for this lock, guarded by the outer monitor. The lock is discarded when
+         * it has no users so that the map does not grow with every location ever deployed.
+         */
+        private int users = 0;
+
+        private KeyedLock(Object key) {
+            this.key = key;
+        }
+
+        public void release() {
+            this.lock.unlock();
+            synchronized (DeploymentLocks.this.monitor) {
+                if (--this.users == 0) {
+                    DeploymentLocks.this.keyedLocks.remove(this.key);
+                }
+            }
+        }
+    }
+}
@@ -14,10 +14,24 @@ package org.eclipse.virgo.kernel.deployer.core.internal;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.virgo.nano.core.KernelException;
 import org.eclipse.virgo.nano.deployer.api.core.ApplicationDeployer;
@@ -27,6 +41,7 @@ import org.eclipse.virgo.nano.deployer.api.core.DeployerLogEvents;
 import org.eclipse.virgo.nano.deployer.api.core.DeploymentException;
 import org.eclipse.virgo.nano.deployer.api.core.DeploymentIdentity;
 import org.eclipse.virgo.nano.deployer.api.core.DeploymentOptions;
+import org.eclipse.virgo.kernel.deployer.core.internal.DeploymentLocks.HeldLock;
 import org.eclipse.virgo.kernel.deployer.core.internal.event.DeploymentListener;
 import org.eclipse.virgo.kernel.deployer.model.DuplicateDeploymentIdentityException;
 import org.eclipse.virgo.kernel.deployer.model.DuplicateFileNameException;
@@ -35,6 +50,7 @@ import org.eclipse.virgo.kernel.deployer.model.GCRoots;
 import org.eclipse.virgo.kernel.deployer.model.RuntimeArtifactModel;
 import org.eclipse.virgo.kernel.install.artifact.ArtifactIdentity;
 import org.eclipse.virgo.kernel.install.artifact.ArtifactIdentityDeterminer;
+import org.eclipse.virgo.kernel.install.artifact.BundleInstallArtifact;
 import org.eclipse.virgo.kernel.install.artifact.InstallArtifact;
 import org.eclipse.virgo.kernel.install.artifact.InstallArtifactGraphInclosure;
 import org.eclipse.virgo.kernel.install.artifact.PlanInstallArtifact;
@@ -44,16 +60,22 @@ import org.eclipse.virgo.kernel.install.environment.InstallEnvironmentFactory;
 import org.eclipse.virgo.kernel.install.pipeline.Pipeline;
 import org.eclipse.virgo.kernel.osgi.framework.UnableToSatisfyBundleDependenciesException;
 import org.eclipse.virgo.kernel.osgi.framework.UnableToSatisfyDependenciesException;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiBundle;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiFramework;
 import org.eclipse.virgo.nano.serviceability.NonNull;
 import org.eclipse.virgo.medic.eventlog.EventLogger;
 import org.eclipse.virgo.repository.Repository;
 import org.eclipse.virgo.repository.WatchableRepository;
 import org.eclipse.virgo.util.common.GraphNode;
+import org.eclipse.virgo.util.common.GraphNode.DirectedAcyclicGraphVisitor;
 import org.eclipse.virgo.util.io.PathReference;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link PipelinedApplicationDeployer} is an implementation of {@link ApplicationDeployer} which creates a
@@ -63,16 +85,25 @@ import org.osgi.framework.Version;
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
- * This class is thread safe.
+ * This class is thread safe. By default deployment operations, including starting the deployed artifacts, are
+ * serialised by a single lock. If concurrent start is enabled in the {@link DeployerConfiguration}, operations are
+ * serialised only per location and per {@link DeploymentIdentity}. Every install pipeline still runs, from install
+ * through resolve and commit, under a single quasi framework lock, since the side state's coregion is shared by every
+ * pipeline, so installs remain serial and only starting and undeploying unrelated artifacts proceed in parallel.
+ * Read-only queries never take a deployment lock.
  * 
  */
 final class PipelinedApplicationDeployer implements ApplicationDeployer, ApplicationRecoverer {
     
     private static final String BUNDLE_TYPE = "bundle";
     
+    private static final int BULK_DEPLOYMENT_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    
     private final EventLogger eventLogger;
     
-    private final Object monitor = new Object();
+    private final DeploymentLocks locks;
     
     private final InstallEnvironmentFactory installEnvironmentFactory;
     
@@ -84,7 +115,7 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
     
     private final DeploymentListener deploymentListener;
     
-    private final Map<DeploymentIdentity, DeploymentOptions> deploymentOptionsMap = new HashMap<DeploymentIdentity, DeploymentOptions>();
+    private final Map<DeploymentIdentity, DeploymentOptions> deploymentOptionsMap = new ConcurrentHashMap<DeploymentIdentity, DeploymentOptions>();
     
     private final Pipeline pipeline;
     
@@ -94,10 +125,13 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
     
     private final BundleContext bundleContext;
     
+    private final BulkDeploymentPipelines bulkDeploymentPipelines;
+    
     public PipelinedApplicationDeployer(@NonNull Pipeline pipeline, @NonNull InstallArtifactGraphInclosure installArtifactGraphInclosure,
                                         @NonNull ArtifactIdentityDeterminer artifactIdentityDeterminer, @NonNull InstallEnvironmentFactory installEnvironmentFactory,
                                         @NonNull RuntimeArtifactModel ram, @NonNull DeploymentListener deploymentListener, @NonNull EventLogger eventLogger,
-                                        @NonNull DeployUriNormaliser normaliser, @NonNull DeployerConfiguration deployerConfiguration, @NonNull BundleContext bundleContext) {
+                                        @NonNull DeployUriNormaliser normaliser, @NonNull DeployerConfiguration deployerConfiguration, @NonNull BundleContext bundleContext,
+                                        @NonNull BulkDeploymentPipelines bulkDeploymentPipelines) {
         this.eventLogger = eventLogger;
         this.installArtifactGraphInclosure = installArtifactGraphInclosure;
         this.artifactIdentityDeterminer = artifactIdentityDeterminer;
@@ -107,16 +141,16 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
         this.deployUriNormaliser = normaliser;
         this.bundleContext = bundleContext;
         this.pipeline = pipeline;
+        this.bulkDeploymentPipelines = bulkDeploymentPipelines;
         this.deployerConfiguredTimeoutInSeconds = deployerConfiguration.getDeploymentTimeoutSeconds();
+        this.locks = new DeploymentLocks(deployerConfiguration.isConcurrentStartEnabled());
     }
     
     /**
      * {@inheritDoc}
      */
     public DeploymentIdentity deploy(URI location) throws DeploymentException {
-        synchronized (this.monitor) {
-            return deploy(location, new DeploymentOptions());
-        }
+        return deploy(location, new DeploymentOptions());
     }
     
     private URI normaliseDeploymentUri(URI uri) throws DeploymentException {
@@ -144,7 +178,8 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
     }
     
     private DeploymentIdentity doInstall(URI normalisedUri, DeploymentOptions deploymentOptions) throws DeploymentException {
-        synchronized (this.monitor) {
+        HeldLock locationLock = this.locks.lockLocation(normalisedUri);
+        try {
             InstallArtifact existingArtifact = this.ram.get(normalisedUri);
             
             if (existingArtifact != null) {
@@ -154,48 +189,60 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
                 }
             }
             
-            GraphNode<InstallArtifact> installNode;
-            boolean shared = false;
+            ArtifactIdentity artifactIdentity = determineIdentity(normalisedUri);
+            HeldLock identityLock = this.locks.lockIdentity(getDeploymentIdentity(artifactIdentity));
             try {
-                ArtifactIdentity artifactIdentity = determineIdentity(normalisedUri);
-                installNode = findSharedNode(artifactIdentity);
-                if (installNode == null) {
-                    installNode = this.installArtifactGraphInclosure.constructGraphNode(artifactIdentity, new File(normalisedUri), null, null);
-                } else {
-                    shared = true;
-                }
-            } catch (Exception e) {
-                throw new DeploymentException(e.getMessage() + ": uri='" + normalisedUri + "'", e);
+                return doInstall(normalisedUri, artifactIdentity, deploymentOptions);
+            } finally {
+                identityLock.release();
             }
-            
-            DeploymentIdentity deploymentIdentity;
-            
-            try {
-                deploymentIdentity = addGraphToModel(normalisedUri, installNode);
-            } catch (KernelException ke) {
-                if (!shared) {
-                    destroyInstallGraph(installNode);
-                }
-                throw new DeploymentException(ke.getMessage(), ke);
+        } finally {
+            locationLock.release();
+        }
+    }
+    
+    private DeploymentIdentity doInstall(URI normalisedUri, ArtifactIdentity artifactIdentity, DeploymentOptions deploymentOptions)
+        throws DeploymentException {
+        GraphNode<InstallArtifact> installNode;
+        boolean shared = false;
+        try {
+            installNode = findSharedNode(artifactIdentity);
+            if (installNode == null) {
+                installNode = this.installArtifactGraphInclosure.constructGraphNode(artifactIdentity, new File(normalisedUri), null, null);
+            } else {
+                shared = true;
             }
-            
+        } catch (Exception e) {
+            throw new DeploymentException(e.getMessage() + ": uri='" + normalisedUri + "'", e);
+        }
+        
+        DeploymentIdentity deploymentIdentity;
+        
+        try {
+            deploymentIdentity = addGraphToModel(normalisedUri, installNode);
+        } catch (KernelException ke) {
             if (!shared) {
-                this.deploymentOptionsMap.put(deploymentIdentity, deploymentOptions);
-                try {
-                    driveInstallPipeline(normalisedUri, installNode);
-                } catch (DeploymentException de) {
-                    removeFromModel(deploymentIdentity);
-                    destroyInstallGraph(installNode);
-                    throw de;
-                } catch (RuntimeException re) {
-                    removeFromModel(deploymentIdentity);
-                    destroyInstallGraph(installNode);
-                    throw re;
-                }
+                destroyInstallGraph(installNode);
             }
-            
-            return deploymentIdentity;
+            throw new DeploymentException(ke.getMessage(), ke);
         }
+        
+        if (!shared) {
+            this.deploymentOptionsMap.put(deploymentIdentity, deploymentOptions);
+            try {
+                driveInstallPipeline(normalisedUri, installNode);
+            } catch (DeploymentException de) {
+                removeFromModel(deploymentIdentity);
+                destroyInstallGraph(installNode);
+                throw de;
+            } catch (RuntimeException re) {
+                removeFromModel(deploymentIdentity);
+                destroyInstallGraph(installNode);
+                throw re;
+            }
+        }
+        
+        return deploymentIdentity;
     }
     
     private ArtifactIdentity determineIdentity(URI artifactUri) throws DeploymentException {
@@ -249,19 +296,31 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
         InstallArtifact installedArtifact;
         DeploymentIdentity deploymentIdentity;
         
-        synchronized (this.monitor) {
-            deploymentIdentity = install(location, deploymentOptions);
-            installedArtifact = this.ram.get(normalisedLocation);
-        }
-        
+        // In serial mode the whole deployment, including start, holds the global lock.
+        HeldLock operationLock = this.locks.lockOperation();
         try {
-            start(installedArtifact, deploymentOptions.getSynchronous());
-        } catch (DeploymentException de) {
-            synchronized (this.monitor) {
-                stopArtifact(installedArtifact);
-                uninstallArtifact(installedArtifact);
+            HeldLock locationLock = this.locks.lockLocation(normalisedLocation);
+            try {
+                deploymentIdentity = install(location, deploymentOptions);
+                installedArtifact = this.ram.get(normalisedLocation);
+            } finally {
+                locationLock.release();
             }
-            throw de;
+            
+            try {
+                start(installedArtifact, deploymentOptions.getSynchronous());
+            } catch (DeploymentException de) {
+                locationLock = this.locks.lockLocation(normalisedLocation);
+                try {
+                    stopArtifact(installedArtifact);
+                    uninstallArtifact(installedArtifact);
+                } finally {
+                    locationLock.release();
+                }
+                throw de;
+            }
+        } finally {
+            operationLock.release();
         }
         
         this.deploymentListener.deployed(normalisedLocation, deploymentOptions);
@@ -303,38 +362,67 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
         return this.ram.add(location, installArtifact);
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isConcurrentRecoverySupported() {
+        // in serial mode every recovery is performed under the global lock
+        return this.locks.isConcurrent();
+    }
+
     /**
      * {@inheritDoc}
      */
     public void recoverDeployment(URI uri, DeploymentOptions options) throws DeploymentException {
         
-        GraphNode<InstallArtifact> installNode = null;
-        boolean shared = false;
-        File artifact = new File(uri);
-        if (options.getRecoverable() && (!options.getDeployerOwned() || artifact.exists())) {
-            ArtifactIdentity artifactIdentity = determineIdentity(artifact, null);
-            installNode = findSharedNode(artifactIdentity);
+        InstallArtifact startArtifact = null;
+        HeldLock locationLock = this.locks.lockLocation(uri);
+        try {
+            GraphNode<InstallArtifact> installNode = null;
+            boolean shared = false;
+            File artifact = new File(uri);
+            if (options.getRecoverable() && (!options.getDeployerOwned() || artifact.exists())) {
+                ArtifactIdentity artifactIdentity = determineIdentity(artifact, null);
+                installNode = findSharedNode(artifactIdentity);
+                if (installNode == null) {
+                    installNode = this.installArtifactGraphInclosure.recoverInstallGraph(artifactIdentity, artifact);
+                } else {
+                    shared = true;
+                }
+            }
+            
             if (installNode == null) {
-                installNode = this.installArtifactGraphInclosure.recoverInstallGraph(artifactIdentity, artifact);
+                // Remove the URI from the recovery log.
+                this.deploymentListener.undeployed(uri);
             } else {
-                shared = true;
+                if (!shared) {
+                    driveInstallPipeline(uri, installNode);
+                    startArtifact = installNode.getValue();
+                }
+                
+                try {
+                    addGraphToModel(uri, installNode);
+                } catch (KernelException e) {
+                    throw new DeploymentException(e.getMessage(), e);
+                }
             }
+        } finally {
+            locationLock.release();
         }
         
-        if (installNode == null) {
-            // Remove the URI from the recovery log.
-            this.deploymentListener.undeployed(uri);
-        } else {
-            if (!shared) {
-                driveInstallPipeline(uri, installNode);
-                
-                start(installNode.getValue(), options.getSynchronous());
-            }
-            
+        if (startArtifact != null) {
+            // As with deploy, start without holding the location lock, which is the global lock in serial mode.
             try {
-                addGraphToModel(uri, installNode);
-            } catch (KernelException e) {
-                throw new DeploymentException(e.getMessage(), e);
+                start(startArtifact, options.getSynchronous());
+            } catch (DeploymentException de) {
+                locationLock = this.locks.lockLocation(uri);
+                try {
+                    stopArtifact(startArtifact);
+                    uninstallArtifact(startArtifact);
+                } finally {
+                    locationLock.release();
+                }
+                throw de;
             }
         }
     }
@@ -353,15 +441,21 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
     private void driveInstallPipeline(URI uri, GraphNode<InstallArtifact> installGraph) throws DeploymentException {
         
         refreshWatchedRepositories();
-        InstallEnvironment installEnvironment = this.installEnvironmentFactory.createInstallEnvironment(installGraph.getValue());
         
+        HeldLock quasiFrameworkLock = this.locks.lockQuasiFramework();
         try {
-            this.pipeline.process(installGraph, installEnvironment);
-        } catch (UnableToSatisfyBundleDependenciesException utsbde) {
-            logDependencySatisfactionException(uri, utsbde);
-            throw new DeploymentException("Dependency satisfaction failed", utsbde);
+            InstallEnvironment installEnvironment = this.installEnvironmentFactory.createInstallEnvironment(installGraph.getValue());
+            
+            try {
+                this.pipeline.process(installGraph, installEnvironment);
+            } catch (UnableToSatisfyBundleDependenciesException utsbde) {
+                logDependencySatisfactionException(uri, utsbde);
+                throw new DeploymentException("Dependency satisfaction failed", utsbde);
+            } finally {
+                installEnvironment.destroy();
+            }
         } finally {
-            installEnvironment.destroy();
+            quasiFrameworkLock.release();
         }
     }
     
@@ -392,20 +486,16 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
      * {@inheritDoc}
      */
     public DeploymentIdentity[] getDeploymentIdentities() {
-        synchronized (this.monitor) {
-            return this.ram.getDeploymentIdentities();
-        }
+        return this.ram.getDeploymentIdentities();
     }
     
     /**
      * {@inheritDoc}
      */
     public DeploymentIdentity getDeploymentIdentity(URI location) {
-        synchronized (this.monitor) {
-            InstallArtifact installArtifact = this.ram.get(location);
-            if (installArtifact != null) {
-                return getDeploymentIdentity(installArtifact);
-            }
+        InstallArtifact installArtifact = this.ram.get(location);
+        if (installArtifact != null) {
+            return getDeploymentIdentity(installArtifact);
         }
         return null;
     }
@@ -414,6 +504,10 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
         return new StandardDeploymentIdentity(installArtifact.getType(), installArtifact.getName(), installArtifact.getVersion().toString());
     }
     
+    private DeploymentIdentity getDeploymentIdentity(ArtifactIdentity artifactIdentity) {
+        return new StandardDeploymentIdentity(artifactIdentity.getType(), artifactIdentity.getName(), artifactIdentity.getVersion().toString());
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -429,9 +523,7 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
             this.eventLogger.log(DeployerLogEvents.UNSUPPORTED_URI_SCHEME, location.toString(), location.getScheme());
             return false;
         }
-        synchronized (this.monitor) {
-            return this.ram.get(normalisedLocation) != null;
-        }
+        return this.ram.get(normalisedLocation) != null;
     }
     
     /**
@@ -446,7 +538,8 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
         }
         
         DeploymentIdentity deploymentIdentity;
-        synchronized (this.monitor) {
+        HeldLock locationLock = this.locks.lockLocation(normalisedLocation);
+        try {
             InstallArtifact installArtifact = this.ram.get(normalisedLocation);
             if (installArtifact == null) {
                 this.eventLogger.log(DeployerLogEvents.REFRESH_REQUEST_URI_NOT_FOUND, location.toString());
@@ -477,6 +570,8 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
                     throw new DeploymentException("refresh failed", e);
                 }
             }
+        } finally {
+            locationLock.release();
         }
         return deploymentIdentity;
     }
@@ -490,9 +585,7 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
     }
     
     private DeploymentIdentity redeploy(DeploymentIdentity toUndeploy, URI toDeploy, DeploymentOptions deploymentOptions) throws DeploymentException {
-        synchronized (this.monitor) {
-            undeployInternal(toUndeploy, true, false);
-        }
+        undeployInternal(toUndeploy, true, false);
         return deploy(toDeploy, deploymentOptions);
     }
     
@@ -501,10 +594,7 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
      */
     public void refreshBundle(String bundleSymbolicName, String bundleVersion) throws DeploymentException {
         DeploymentIdentity deploymentIdentity = new StandardDeploymentIdentity(BUNDLE_TYPE, bundleSymbolicName, bundleVersion);
-        InstallArtifact bundleInstallArtifact;
-        synchronized (this.monitor) {
-            bundleInstallArtifact = this.ram.get(deploymentIdentity);
-        }
+        InstallArtifact bundleInstallArtifact = this.ram.get(deploymentIdentity);
         if (bundleInstallArtifact == null) {
             this.eventLogger.log(DeployerLogEvents.REFRESH_ARTEFACT_NOT_FOUND, BUNDLE_TYPE, bundleSymbolicName, bundleVersion);
             throw new DeploymentException("Refresh not possible as no " + BUNDLE_TYPE + " with name " + bundleSymbolicName + " and version "
@@ -557,31 +647,26 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
      */
     public void undeploy(String type, String symbolicName, String version) throws DeploymentException {
         DeploymentIdentity deploymentIdentity = new StandardDeploymentIdentity(type, symbolicName, version);
-        synchronized (this.monitor) {
-            undeployInternal(deploymentIdentity, false, false);
-        }
+        undeployInternal(deploymentIdentity, false, false);
     }
     
     /**
      * {@inheritDoc}
      */
     public void undeploy(DeploymentIdentity deploymentIdentity) throws DeploymentException {
-        synchronized (this.monitor) {
-            undeployInternal(deploymentIdentity, false, false);
-        }
+        undeployInternal(deploymentIdentity, false, false);
     }
     
     /**
      * {@inheritDoc}
      */
     public void undeploy(DeploymentIdentity deploymentIdentity, boolean deleted) throws DeploymentException {
-        synchronized (this.monitor) {
-            undeployInternal(deploymentIdentity, false, deleted);
-        }
+        undeployInternal(deploymentIdentity, false, deleted);
     }
     
     /**
-     * All the undeploy work goes on in here -- it is assumed that any required monitors are already held by the caller.
+     * All the undeploy work goes on in here. The location and identity locks of the artifact are acquired, in that order,
+     * before the artifact is removed from the model.
      * <p>
      * The deleted parameter indicates whether the undeployment is a consequence of the artifact having been deleted.
      * This affects the processing of "deployer owned" artifacts which undeploy would normally delete automatically. If
@@ -596,10 +681,23 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
      * @throws DeploymentException
      */
     private void undeployInternal(DeploymentIdentity deploymentIdentity, boolean redeploying, boolean deleted) throws DeploymentException {
-        DeploymentOptions options = this.deploymentOptionsMap.remove(deploymentIdentity);
-        URI location = doUndeploy(deploymentIdentity);
-        if (location != null && !redeploying) {
-            deleteArtifactIfNecessary(location, options, deleted);
+        URI location = this.ram.getLocation(deploymentIdentity);
+        HeldLock locationLock = location == null ? null : this.locks.lockLocation(location);
+        try {
+            HeldLock identityLock = this.locks.lockIdentity(deploymentIdentity);
+            try {
+                DeploymentOptions options = this.deploymentOptionsMap.remove(deploymentIdentity);
+                URI undeployedLocation = doUndeploy(deploymentIdentity);
+                if (undeployedLocation != null && !redeploying) {
+                    deleteArtifactIfNecessary(undeployedLocation, options, deleted);
+                }
+            } finally {
+                identityLock.release();
+            }
+        } finally {
+            if (locationLock != null) {
+                locationLock.release();
+            }
         }
     }
     
@@ -610,24 +708,22 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
     }
     
     private URI doUndeploy(DeploymentIdentity deploymentIdentity) throws DeploymentException {
-        synchronized (this.monitor) {
-            InstallArtifact installArtifact = this.ram.get(deploymentIdentity);
-            if (installArtifact == null) {
-                String type = deploymentIdentity.getType();
-                String symbolicName = deploymentIdentity.getSymbolicName();
-                String version = deploymentIdentity.getVersion();
-                this.eventLogger.log(DeployerLogEvents.UNDEPLOY_ARTEFACT_NOT_FOUND, type, symbolicName, version);
-                throw new DeploymentException("Undeploy not possible as no " + type + " with name " + symbolicName + " and version " + version
-                                              + " is deployed");
-            } else {
-                URI location = this.ram.getLocation(deploymentIdentity);
-                
-                this.ram.delete(deploymentIdentity);
-                
-                stopArtifact(installArtifact);
-                uninstallArtifact(installArtifact);
-                return location;
-            }
+        InstallArtifact installArtifact = this.ram.get(deploymentIdentity);
+        if (installArtifact == null) {
+            String type = deploymentIdentity.getType();
+            String symbolicName = deploymentIdentity.getSymbolicName();
+            String version = deploymentIdentity.getVersion();
+            this.eventLogger.log(DeployerLogEvents.UNDEPLOY_ARTEFACT_NOT_FOUND, type, symbolicName, version);
+            throw new DeploymentException("Undeploy not possible as no " + type + " with name " + symbolicName + " and version " + version
+                                          + " is deployed");
+        } else {
+            URI location = this.ram.getLocation(deploymentIdentity);
+            
+            this.ram.delete(deploymentIdentity);
+            
+            stopArtifact(installArtifact);
+            uninstallArtifact(installArtifact);
+            return location;
         }
     }
     
@@ -665,9 +761,455 @@ final class PipelinedApplicationDeployer implements ApplicationDeployer, Applica
         
     }
     
-    @Override
-    public DeploymentIdentity[] bulkDeploy(List<URI> arg0, DeploymentOptions arg1) throws DeploymentException {
-        throw new UnsupportedOperationException();
+    /**
+     * {@inheritDoc}
+     * <p />
+     * The identities of the artifacts are determined and their install graphs are constructed in parallel. The install
+     * graphs are then installed in a single side state which is resolved and committed once, rather than once per
+     * artifact. Finally the artifacts are started concurrently, except that an artifact is started only after any other
+     * artifacts of the bulk deployment on which it depends.
+     * <p />
+     * Artifacts which are already deployed are deployed individually. If the combined resolution or commit fails, the
+     * artifacts are deployed individually so that the failure is diagnosed against the artifact which caused it. An
+     * artifact which fails to deploy does not prevent the remaining artifacts from being deployed.
+     */
+    public DeploymentIdentity[] bulkDeploy(List<URI> uris, DeploymentOptions deploymentOptions) throws DeploymentException {
+        List<DeploymentIdentity> deploymentIdentities = new ArrayList<DeploymentIdentity>();
+        if (uris == null || uris.isEmpty()) {
+            return new DeploymentIdentity[0];
+        }
+        
+        List<URI> bulkLocations = new ArrayList<URI>();
+        for (URI uri : uris) {
+            try {
+                URI normalisedLocation = normaliseDeploymentUri(uri);
+                if (this.ram.get(normalisedLocation) != null) {
+                    deploymentIdentities.add(deploy(normalisedLocation, deploymentOptions));
+                } else if (!bulkLocations.contains(normalisedLocation)) {
+                    bulkLocations.add(normalisedLocation);
+                }
+            } catch (DeploymentException de) {
+                logBulkDeploymentFailure(uri, de);
+            }
+        }
+        
+        if (!bulkLocations.isEmpty()) {
+            ExecutorService executor = createBulkDeploymentExecutor(bulkLocations.size());
+            try {
+                List<URI> individualLocations = new ArrayList<URI>();
+                List<BulkDeploymentItem> installedItems = bulkInstall(bulkLocations, deploymentOptions, executor, individualLocations);
+                
+                for (BulkDeploymentItem startedItem : bulkStart(installedItems, deploymentOptions.getSynchronous(), executor)) {
+                    deploymentIdentities.add(startedItem.deploymentIdentity);
+                }
+                
+                for (URI location : individualLocations) {
+                    try {
+                        deploymentIdentities.add(deploy(location, deploymentOptions));
+                    } catch (DeploymentException de) {
+                        logBulkDeploymentFailure(location, de);
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        
+        return deploymentIdentities.toArray(new DeploymentIdentity[deploymentIdentities.size()]);
+    }
+    
+    /**
+     * Installs the artifacts at the given normalised locations and returns those which were installed. The locations of
+     * any artifacts which must instead be deployed individually are added to the given list.
+     * <p/>
+     * The location locks of all the artifacts, followed by their identity locks, are held while the artifacts are
+     * installed. Each kind of lock is acquired in a consistent order so that concurrent bulk deployments cannot
+     * deadlock.
+     */
+    private List<BulkDeploymentItem> bulkInstall(List<URI> locations, DeploymentOptions deploymentOptions, ExecutorService executor,
+        List<URI> individualLocations) {
+        List<BulkDeploymentItem> items = new ArrayList<BulkDeploymentItem>();
+        for (URI location : locations) {
+            items.add(new BulkDeploymentItem(location));
+        }
+        
+        List<BulkDeploymentItem> installedItems = new ArrayList<BulkDeploymentItem>();
+        List<HeldLock> heldLocks = new ArrayList<HeldLock>();
+        try {
+            List<URI> sortedLocations = new ArrayList<URI>(locations);
+            Collections.sort(sortedLocations);
+            for (URI location : sortedLocations) {
+                heldLocks.add(this.locks.lockLocation(location));
+            }
+            
+            items = performInParallel(items, executor, new BulkDeploymentOperation() {
+                
+                public void perform(BulkDeploymentItem item) throws DeploymentException {
+                    item.artifactIdentity = determineIdentity(item.location);
+                    item.deploymentIdentity = getDeploymentIdentity(item.artifactIdentity);
+                }
+            });
+            
+            List<BulkDeploymentItem> sortedItems = new ArrayList<BulkDeploymentItem>(items);
+            Collections.sort(sortedItems, new Comparator<BulkDeploymentItem>() {
+                
+                public int compare(BulkDeploymentItem item1, BulkDeploymentItem item2) {
+                    return item1.deploymentIdentity.toString().compareTo(item2.deploymentIdentity.toString());
+                }
+            });
+            for (BulkDeploymentItem item : sortedItems) {
+                heldLocks.add(this.locks.lockIdentity(item.deploymentIdentity));
+            }
+            
+            items = performInParallel(items, executor, new BulkDeploymentOperation() {
+                
+                public void perform(BulkDeploymentItem item) throws DeploymentException {
+                    try {
+                        item.installNode = findSharedNode(item.artifactIdentity);
+                        if (item.installNode == null) {
+                            item.installNode = PipelinedApplicationDeployer.this.installArtifactGraphInclosure.constructGraphNode(
+                                item.artifactIdentity, new File(item.location), null, null);
+                        } else {
+                            item.shared = true;
+                        }
+                    } catch (Exception e) {
+                        throw new DeploymentException(e.getMessage() + ": uri='" + item.location + "'", e);
+                    }
+                }
+            });
+            
+            List<BulkDeploymentItem> pipelineItems = new ArrayList<BulkDeploymentItem>();
+            for (BulkDeploymentItem item : items) {
+                try {
+                    item.deploymentIdentity = addGraphToModel(item.location, item.installNode);
+                } catch (KernelException | DeploymentException e) {
+                    if (!item.shared) {
+                        destroyBulkInstallGraph(item);
+                    }
+                    logBulkDeploymentFailure(item.location, e);
+                    continue;
+                }
+                if (item.shared) {
+                    installedItems.add(item);
+                } else {
+                    this.deploymentOptionsMap.put(item.deploymentIdentity, deploymentOptions);
+                    pipelineItems.add(item);
+                }
+            }
+            
+            if (!pipelineItems.isEmpty()) {
+                if (driveBulkInstallPipeline(pipelineItems)) {
+                    installedItems.addAll(pipelineItems);
+                } else {
+                    for (BulkDeploymentItem item : pipelineItems) {
+                        individualLocations.add(item.location);
+                    }
+                }
+            }
+        } finally {
+            for (int index = heldLocks.size() - 1; index >= 0; index--) {
+                heldLocks.get(index).release();
+            }
+        }
+        
+        for (BulkDeploymentItem item : installedItems) {
+            this.deploymentListener.deployed(item.location, deploymentOptions);
+        }
+        return installedItems;
+    }
+    
+    /**
+     * Drives the install graphs of the given items through the bulk deployment pipelines using a single side state.
+     * Items which fail individually are discarded and removed from the given list. Returns <code>false</code> if the
+     * combined resolution or commit of the side state failed, in which case all the remaining items have been discarded.
+     */
+    private boolean driveBulkInstallPipeline(List<BulkDeploymentItem> items) {
+        
+        refreshWatchedRepositories();
+        
+        HeldLock quasiFrameworkLock = this.locks.lockQuasiFramework();
+        try {
+            InstallEnvironment sharedInstallEnvironment = this.installEnvironmentFactory.createInstallEnvironment(items.get(0).installNode.getValue());
+            try {
+                for (Iterator<BulkDeploymentItem> iterator = items.iterator(); iterator.hasNext();) {
+                    BulkDeploymentItem item = iterator.next();
+                    item.installEnvironment = this.installEnvironmentFactory.createInstallEnvironment(item.installNode.getValue(),
+                        sharedInstallEnvironment);
+                    try {
+                        this.bulkDeploymentPipelines.getInstallPipeline().process(item.installNode, item.installEnvironment);
+                    } catch (Exception e) {
+                        iterator.remove();
+                        uninstallQuasiBundles(item);
+                        discardBulkDeploymentItem(item, e);
+                    }
+                }
+                
+                if (items.isEmpty()) {
+                    return true;
+                }
+                
+                QuasiFramework quasiFramework = sharedInstallEnvironment.getQuasiFramework();
+                if (!quasiFramework.resolve().isEmpty()) {
+                    failBulkInstall(items, null);
+                    return false;
+                }
+                
+                determineStartPrerequisites(items);
+                
+                try {
+                    quasiFramework.commit();
+                } catch (BundleException e) {
+                    failBulkInstall(items, e);
+                    return false;
+                }
+                
+                for (Iterator<BulkDeploymentItem> iterator = items.iterator(); iterator.hasNext();) {
+                    BulkDeploymentItem item = iterator.next();
+                    try {
+                        this.bulkDeploymentPipelines.getCompletionPipeline().process(item.installNode, item.installEnvironment);
+                    } catch (UnableToSatisfyBundleDependenciesException utsbde) {
+                        iterator.remove();
+                        logDependencySatisfactionException(item.location, utsbde);
+                        discardBulkDeploymentItem(item, utsbde);
+                    } catch (Exception e) {
+                        iterator.remove();
+                        discardBulkDeploymentItem(item, e);
+                    }
+                }
+                return true;
+            } finally {
+                for (BulkDeploymentItem item : items) {
+                    if (item.installEnvironment != null) {
+                        item.installEnvironment.destroy();
+                    }
+                }
+                sharedInstallEnvironment.destroy();
+            }
+        } finally {
+            quasiFrameworkLock.release();
+        }
+    }
+    
+    private void failBulkInstall(List<BulkDeploymentItem> items, Exception cause) {
+        this.logger.info("Combined resolution of bulk deployment failed, deploying artifacts individually", cause);
+        for (BulkDeploymentItem item : items) {
+            try {
+                this.bulkDeploymentPipelines.getInstallFailurePipeline().process(item.installNode, item.installEnvironment);
+            } catch (Exception e) {
+                this.logger.warn(String.format("exception thrown while failing the bulk install of '%s'", item.location), e);
+            }
+            removeBulkDeploymentItem(item);
+        }
+    }
+    
+    private void discardBulkDeploymentItem(BulkDeploymentItem item, Exception cause) {
+        removeBulkDeploymentItem(item);
+        logBulkDeploymentFailure(item.location, cause);
+    }
+    
+    private void removeBulkDeploymentItem(BulkDeploymentItem item) {
+        this.deploymentOptionsMap.remove(item.deploymentIdentity);
+        try {
+            removeFromModel(item.deploymentIdentity);
+        } catch (DeploymentException e) {
+            this.logger.warn(String.format("failed to remove '%s' from the runtime artifact model", item.deploymentIdentity), e);
+        }
+        destroyBulkInstallGraph(item);
+    }
+    
+    private void destroyBulkInstallGraph(BulkDeploymentItem item) {
+        try {
+            destroyInstallGraph(item.installNode);
+        } catch (DeploymentException e) {
+            this.logger.warn(String.format("failed to destroy the install graph of '%s'", item.location), e);
+        }
+    }
+    
+    /**
+     * Removes any bundles of the given item's install graph from the shared side state so that they do not take part in
+     * the combined resolution.
+     */
+    private void uninstallQuasiBundles(BulkDeploymentItem item) {
+        for (QuasiBundle quasiBundle : getQuasiBundles(item.installNode)) {
+            try {
+                quasiBundle.uninstall();
+            } catch (BundleException e) {
+                this.logger.warn(String.format("failed to uninstall '%s' from the side state", quasiBundle), e);
+            }
+        }
+    }
+    
+    /**
+     * Records, for each of the given items, the other items whose bundles it depends on in the resolved side state.
+     */
+    private void determineStartPrerequisites(List<BulkDeploymentItem> items) {
+        Map<Long, BulkDeploymentItem> itemsByBundleId = new HashMap<Long, BulkDeploymentItem>();
+        for (BulkDeploymentItem item : items) {
+            for (QuasiBundle quasiBundle : getQuasiBundles(item.installNode)) {
+                itemsByBundleId.put(quasiBundle.getBundleId(), item);
+            }
+        }
+        for (BulkDeploymentItem item : items) {
+            for (QuasiBundle quasiBundle : getQuasiBundles(item.installNode)) {
+                for (QuasiBundle dependent : quasiBundle.getDependents()) {
+                    BulkDeploymentItem dependentItem = itemsByBundleId.get(dependent.getBundleId());
+                    if (dependentItem != null && dependentItem != item) {
+                        dependentItem.startPrerequisites.add(item);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static List<QuasiBundle> getQuasiBundles(GraphNode<InstallArtifact> installGraph) {
+        final List<QuasiBundle> quasiBundles = new ArrayList<QuasiBundle>();
+        installGraph.visit(new DirectedAcyclicGraphVisitor<InstallArtifact>() {
+            
+            public boolean visit(GraphNode<InstallArtifact> graph) {
+                InstallArtifact installArtifact = graph.getValue();
+                if (installArtifact instanceof BundleInstallArtifact) {
+                    QuasiBundle quasiBundle = ((BundleInstallArtifact) installArtifact).getQuasiBundle();
+                    if (quasiBundle != null) {
+                        quasiBundles.add(quasiBundle);
+                    }
+                }
+                return true;
+            }
+        });
+        return quasiBundles;
+    }
+    
+    /**
+     * Starts the given items and returns those which started successfully. Items are started concurrently in layers:
+     * an item is started once every item it depends on has been started. Items which depend on each other in a cycle
+     * are started together.
+     */
+    private List<BulkDeploymentItem> bulkStart(List<BulkDeploymentItem> items, final boolean synchronous, ExecutorService executor) {
+        List<BulkDeploymentItem> startedItems = new ArrayList<BulkDeploymentItem>();
+        List<BulkDeploymentItem> pendingItems = new ArrayList<BulkDeploymentItem>(items);
+        Set<BulkDeploymentItem> processedItems = new HashSet<BulkDeploymentItem>();
+        
+        while (!pendingItems.isEmpty()) {
+            List<BulkDeploymentItem> layer = new ArrayList<BulkDeploymentItem>();
+            for (BulkDeploymentItem item : pendingItems) {
+                if (processedItems.containsAll(item.startPrerequisites)) {
+                    layer.add(item);
+                }
+            }
+            if (layer.isEmpty()) {
+                layer.addAll(pendingItems);
+            }
+            pendingItems.removeAll(layer);
+            
+            startedItems.addAll(performInParallel(layer, executor, new BulkDeploymentOperation() {
+                
+                public void perform(BulkDeploymentItem item) throws DeploymentException {
+                    InstallArtifact installArtifact = item.installNode.getValue();
+                    try {
+                        start(installArtifact, synchronous);
+                    } catch (DeploymentException de) {
+                        HeldLock locationLock = PipelinedApplicationDeployer.this.locks.lockLocation(item.location);
+                        try {
+                            stopArtifact(installArtifact);
+                            uninstallArtifact(installArtifact);
+                        } finally {
+                            locationLock.release();
+                        }
+                        throw de;
+                    }
+                }
+            }));
+            processedItems.addAll(layer);
+        }
+        return startedItems;
+    }
+    
+    /**
+     * Performs the given operation on each of the given items in parallel and returns the items for which the operation
+     * succeeded, in their original order. Failures are logged.
+     */
+    private List<BulkDeploymentItem> performInParallel(List<BulkDeploymentItem> items, ExecutorService executor,
+        final BulkDeploymentOperation operation) {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final BulkDeploymentItem item : items) {
+            futures.add(executor.submit(new Callable<Void>() {
+                
+                public Void call() throws Exception {
+                    operation.perform(item);
+                    return null;
+                }
+            }));
+        }
+        
+        List<BulkDeploymentItem> succeededItems = new ArrayList<BulkDeploymentItem>();
+        boolean interrupted = false;
+        for (int index = 0; index < items.size(); index++) {
+            BulkDeploymentItem item = items.get(index);
+            while (true) {
+                try {
+                    futures.get(index).get();
+                    succeededItems.add(item);
+                    break;
+                } catch (InterruptedException e) {
+                    // The items hold locks and resources which must be accounted for, so wait for the operation to finish.
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    logBulkDeploymentFailure(item.location, e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return succeededItems;
+    }
+    
+    private void logBulkDeploymentFailure(URI location, Throwable cause) {
+        this.logger.warn(String.format("Bulk deployment of '%s' failed", location), cause);
+    }
+    
+    private static ExecutorService createBulkDeploymentExecutor(int itemCount) {
+        return Executors.newFixedThreadPool(Math.min(itemCount, BULK_DEPLOYMENT_THREADS), new ThreadFactory() {
+            
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+            
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bulk-deployment-" + this.threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    private interface BulkDeploymentOperation {
+        
+        void perform(BulkDeploymentItem item) throws DeploymentException;
+    }
+    
+    /**
+     * The state of a single artifact of a bulk deployment. The fields of an item are written by at most one thread at a
+     * time and are published to other threads by the executor.
+     */
+    private static final class BulkDeploymentItem {
+        
+        private final URI location;
+        
+        private final Set<BulkDeploymentItem> startPrerequisites = new HashSet<BulkDeploymentItem>();
+        
+        private ArtifactIdentity artifactIdentity;
+        
+        private DeploymentIdentity deploymentIdentity;
+        
+        private GraphNode<InstallArtifact> installNode;
+        
+        private boolean shared;
+        
+        private InstallEnvironment installEnvironment;
+        
+        private BulkDeploymentItem(URI location) {
+            this.location = location;
+        }
     }
     
 }
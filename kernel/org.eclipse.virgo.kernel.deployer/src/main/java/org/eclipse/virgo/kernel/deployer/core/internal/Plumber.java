@@ -52,6 +52,12 @@ final class Plumber {
 
     private final Pipeline refreshSubpipeline;
 
+    private final Pipeline bulkInstallPipeline;
+
+    private final Pipeline bulkInstallFailurePipeline;
+
+    private final Pipeline bulkCompletionPipeline;
+
     private final QuasiFrameworkFactory quasiFrameworkFactory;
 
     public Plumber(@NonNull PackageAdmin packageAdmin, @NonNull BundleContext bundleContext, @NonNull PipelineFactory pipelineFactory,
@@ -62,6 +68,9 @@ final class Plumber {
         this.quasiFrameworkFactory = quasiFrameworkFactory;
         this.refreshSubpipeline = this.pipelineFactory.create();
         this.pipeline = this.pipelineFactory.create();
+        this.bulkInstallPipeline = this.pipelineFactory.create();
+        this.bulkInstallFailurePipeline = this.pipelineFactory.create();
+        this.bulkCompletionPipeline = this.pipelineFactory.create();
         initialisePipelines();
     }
 
@@ -73,6 +82,10 @@ final class Plumber {
         return this.refreshSubpipeline;
     }
 
+    public BulkDeploymentPipelines getBulkDeploymentPipelines() {
+        return new BulkDeploymentPipelines(this.bulkInstallPipeline, this.bulkInstallFailurePipeline, this.bulkCompletionPipeline);
+    }
+
     private void initialisePipelines() {
         // new ManifestUpgrader(), new ImportExpander(this.bundleInstaller), new
         // PlanResolver(this.installArtifactTreeInclosure));
@@ -124,6 +137,15 @@ final class Plumber {
             new CommitStage());
 
         this.pipeline.appendStage(beginInstallStage).appendStage(installStages).appendStage(endInstallStage);
+
+        // Bulk deployment splits the install stages around a single quasi resolve and commit of all the install graphs.
+        Pipeline bulkInstallStages = this.pipelineFactory.createCompensatingPipeline(failInstallStage);
+
+        bulkInstallStages.appendStage(transformationStage).appendStage(new QuasiInstallStage());
+
+        this.bulkInstallPipeline.appendStage(beginInstallStage).appendStage(bulkInstallStages);
+        this.bulkInstallFailurePipeline.appendStage(failInstallStage);
+        this.bulkCompletionPipeline.appendStage(endInstallStage);
     }
 
     private void plumbMainPipelineResolveStages() {
@@ -156,6 +178,7 @@ final class Plumber {
         resolveStages.appendStage(new ResolveStage(this.packageAdmin, this.quasiFrameworkFactory));
 
         this.pipeline.appendStage(beginResolveStage).appendStage(resolveStages).appendStage(endResolveStage);
+        this.bulkCompletionPipeline.appendStage(beginResolveStage).appendStage(resolveStages).appendStage(endResolveStage);
     }
 
     private void plumbRefreshPipeline(TransformationStage transformationStage) {
@@ -33,18 +33,29 @@ final class StandardDeployerConfiguration implements DeployerConfiguration {
 
     private final int scanIntervalMillis;
 
+    private final boolean concurrentStartEnabled;
+
+    private final boolean pickupWatchServiceEnabled;
+
     /**
-     * Construct a deployment configuration using the given <code>deploymentTimeout</code>, <code>pickupDirectory</code>
-     * and <code>scanIntervalMillis</code>.
+     * Construct a deployment configuration using the given <code>deploymentTimeout</code>, <code>pickupDirectory</code>,
+     * <code>scanIntervalMillis</code>, <code>concurrentStart</code> and <code>pickupWatchService</code>.
      * 
      * @param deploymentTimeout The timeout period, in seconds
      * @param pickupDirectory The deployer's pickup directory
      * @param scanIntervalMillis The deployer's scan interval in milliseconds
+     * @param concurrentStart <code>"true"</code> to enable concurrent start, any other value, including
+     *        <code>null</code>, to disable it
+     * @param pickupWatchService <code>"true"</code> to watch the pickup directory for changes, any other value, including
+     *        <code>null</code>, to list it on every scan
      */
-    StandardDeployerConfiguration(int deploymentTimeout, File pickupDirectory, int scanIntervalMillis) {
+    StandardDeployerConfiguration(int deploymentTimeout, File pickupDirectory, int scanIntervalMillis, String concurrentStart,
+        String pickupWatchService) {
         this.deploymentTimeoutSeconds = deploymentTimeout;
         this.deploymentPickupDirectory = new PathReference(pickupDirectory);
         this.scanIntervalMillis = scanIntervalMillis;
+        this.concurrentStartEnabled = Boolean.parseBoolean(concurrentStart);
+        this.pickupWatchServiceEnabled = Boolean.parseBoolean(pickupWatchService);
     }
 
     /**
@@ -68,11 +79,27 @@ final class StandardDeployerConfiguration implements DeployerConfiguration {
         return this.scanIntervalMillis;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isConcurrentStartEnabled() {
+        return this.concurrentStartEnabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isPickupWatchServiceEnabled() {
+        return this.pickupWatchServiceEnabled;
+    }
+
     /**
      * {@inheritDoc}
      */
     public String toString() {
-        return String.format("Timeout: '%s', Pickup directory: '%s', Scan interval in millis: '%s'", this.deploymentTimeoutSeconds,
-            this.deploymentPickupDirectory, this.scanIntervalMillis);
+        return String.format(
+            "Timeout: '%s', Pickup directory: '%s', Scan interval in millis: '%s', Concurrent start: '%s', Pickup watch service: '%s'",
+            this.deploymentTimeoutSeconds, this.deploymentPickupDirectory, this.scanIntervalMillis, this.concurrentStartEnabled,
+            this.pickupWatchServiceEnabled);
     }
 }
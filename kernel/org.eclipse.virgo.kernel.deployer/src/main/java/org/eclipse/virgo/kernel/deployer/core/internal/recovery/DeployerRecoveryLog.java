@@ -14,36 +14,45 @@ package org.eclipse.virgo.kernel.deployer.core.internal.recovery;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.eclipse.virgo.nano.deployer.api.core.DeploymentOptions;
 import org.eclipse.virgo.nano.deployer.api.core.FatalDeploymentException;
 import org.eclipse.virgo.util.io.PathReference;
+import org.eclipse.virgo.util.io.RecordJournal;
+import org.eclipse.virgo.util.io.RecordJournal.RecordHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * {@link DeployerRecoveryLog} maintains the deployer's recoverable state across restarts.
  * <p />
- * 
+ * The state is kept in an append-only {@link RecordJournal} of deploy and undeploy records. Records written
+ * concurrently are committed together, with one write and one force for the whole group. A record whose write was
+ * interrupted by a crash is detected when the journal is opened and the journal is truncated to the last complete
+ * record. A record whose write failed is truncated before further records are written.
+ * <p />
+ * Once undeploy records and superseded deploy records make up most of the journal, it is compacted in the background
+ * by writing the current state to a new journal and switching it for the old one. A journal in the text format used by
+ * earlier releases is converted when it is opened.
+ * <p />
+ *
  * <strong>Concurrent Semantics</strong><br />
- * 
+ *
  * This class is thread safe.
- * 
+ *
  */
 final class DeployerRecoveryLog {
 
@@ -51,9 +60,25 @@ final class DeployerRecoveryLog {
 
     private static final String REDEPLOY_COMPRESSION_FILE_NAME = "deployed.compress";
 
-    private static final int INITIAL_REDEPLOY_DATA_SIZE = 32 * 1024;
+    private static final int JOURNAL_VERSION = 1;
+
+    private static final byte[] JOURNAL_HEADER_DATA = new byte[0];
+
+    private static final int MAX_PAYLOAD_LENGTH = 1024 * 1024;
+
+    private static final byte DEPLOY_RECORD = 1;
+
+    private static final byte UNDEPLOY_RECORD = 2;
+
+    private static final int RECOVERABLE_OPTION = 1;
 
-    private static final int COMPRESSION_THRESHOLD = 10;
+    private static final int DEPLOYER_OWNED_OPTION = 2;
+
+    private static final int SYNCHRONOUS_OPTION = 4;
+
+    private static final int COMPACTION_RATIO = 2;
+
+    private static final int INITIAL_REDEPLOY_DATA_SIZE = 32 * 1024;
 
     private static final int COMMAND_LENGTH = 3;
 
@@ -67,8 +92,32 @@ final class DeployerRecoveryLog {
 
     private final PathReference redeployCompressionDataset;
 
+    /**
+     * The journal. Only accessed by the writer.
+     */
+    private final RecordJournal journal;
+
     private final long redeployFileLastModified;
 
+    private final Object monitor = new Object();
+
+    /**
+     * The recovery state as recorded in the journal. Guarded by <code>monitor</code>, and only changed by the writer.
+     */
+    private final Map<URI, DeploymentOptions> recoveryState = new LinkedHashMap<URI, DeploymentOptions>(20);
+
+    /**
+     * The records waiting to be written by the next writer. Guarded by <code>monitor</code>.
+     */
+    private Batch openBatch = new Batch();
+
+    /**
+     * Whether a thread is currently writing to, or compacting, the journal. Guarded by <code>monitor</code>.
+     */
+    private boolean writing = false;
+
+    private boolean compactionScheduled = false;
+
     DeployerRecoveryLog(PathReference workArea) {
         PathReference recoveryArea = workArea.newChild("recovery");
         recoveryArea.createDirectory();
@@ -76,174 +125,321 @@ final class DeployerRecoveryLog {
         this.redeployDataset = recoveryArea.newChild(REDEPLOY_FILE_NAME);
         this.redeployFileLastModified = this.redeployDataset.toFile().lastModified();
         this.redeployCompressionDataset = recoveryArea.newChild(REDEPLOY_COMPRESSION_FILE_NAME);
+        this.journal = new RecordJournal(this.redeployDataset.toFile(), JOURNAL_VERSION, JOURNAL_HEADER_DATA.length, MAX_PAYLOAD_LENGTH);
 
         // Recover from a crash during compression
         if (!this.redeployDataset.exists() && this.redeployCompressionDataset.exists()) {
             this.redeployCompressionDataset.copy(this.redeployDataset);
             if (!this.redeployCompressionDataset.delete()) {
-                logger.warn("Could not delete '%s' in recovery after compression failure.", this.redeployCompressionDataset);
+                logger.warn("Could not delete '{}' in recovery after compression failure.", this.redeployCompressionDataset);
             }
+        } else if (this.redeployCompressionDataset.exists()) {
+            // A compression was interrupted before the journal was replaced
+            this.redeployCompressionDataset.delete();
+        }
+
+        try {
+            openJournal();
+        } catch (IOException e) {
+            throw new FatalDeploymentException("Failed to open redeploy dataset '" + this.redeployDataset + "'", e);
+        }
+
+        if (isCompactionDue()) {
+            scheduleCompaction();
         }
     }
 
     /**
      * Get the URIs that need to be recovered along with their deployment options.
-     * 
+     *
      * @return a map of URI to deployment options
      */
     public Map<URI, DeploymentOptions> getRecoveryState() {
-        Map<URI, DeploymentOptions> redeploySet = new LinkedHashMap<URI, DeploymentOptions>(20);
+        synchronized (this.monitor) {
+            return new LinkedHashMap<URI, DeploymentOptions>(this.recoveryState);
+        }
+    }
 
-        String redeployData = readRedployData();
+    /**
+     * Add the given location and deployment options to the recovery state.
+     *
+     * @param location
+     * @param deploymentOptions
+     */
+    void add(URI location, DeploymentOptions deploymentOptions) {
+        append(new Record(location, deploymentOptions));
+    }
+
+    /**
+     * Remove the given location and associated deployment options from the recovery state.
+     *
+     * @param location
+     */
+    void remove(URI location) {
+        append(new Record(location, null));
+    }
+
+    /**
+     * Closes the journal. Records added or removed subsequently cause the journal to be reopened.
+     */
+    void close() {
+        acquireWriter();
+        try {
+            this.journal.close();
+        } finally {
+            releaseWriter();
+        }
+    }
 
-        int recordCount = 0;
-        int undeployCount = 0;
+    /**
+     * Rewrites the journal so that it contains only the current recovery state. To avoid corruption if a crash occurs,
+     * write to a redeploy compression file and then switch this for the redeploy dataset.
+     */
+    void compact() {
+        acquireWriter();
+        try {
+            Map<URI, DeploymentOptions> state = getRecoveryState();
+            try {
+                this.journal.rewrite(this.redeployCompressionDataset.toFile(), JOURNAL_HEADER_DATA, encode(state));
+                this.logger.debug("Compacted redeploy dataset to {} records", this.journal.getRecordCount());
+            } catch (IOException e) {
+                logger.warn("Problem while compacting redeploy dataset", e);
+                // Carry on with the existing redeploy dataset
+                this.redeployCompressionDataset.delete();
+            }
+        } finally {
+            releaseWriter();
+        }
+    }
 
-        for (String uriCommandString : redeployData.split(URI_SEPARATOR)) {
-            recordCount++;
-            // Skip short command strings as there will typically be one
-            // at the end of the dataset.
-            if (uriCommandString.length() >= COMMAND_LENGTH) {
-                String uriCommand = uriCommandString.substring(0, COMMAND_LENGTH);
-                String uriString = uriCommandString.substring(COMMAND_LENGTH);
+    /**
+     * Adds the given record to the open batch and waits for the batch to be written. If no other thread is writing,
+     * this thread writes the open batch, including any records added by other threads.
+     */
+    private void append(Record record) {
+        Batch batch;
+        boolean writer = false;
+        synchronized (this.monitor) {
+            batch = this.openBatch;
+            batch.records.add(record);
+            boolean interrupted = false;
+            while (!batch.completed && this.writing) {
                 try {
-                    URI uri = new URI(uriString);
-                    if (UNDEPLOY_URI_COMMAND.equals(uriCommand)) {
-                        undeployCount++;
-                        redeploySet.remove(uri);
-                    } else {
-                        char[] commands = uriCommand.toCharArray();
-                        DeploymentOptions options = new DeploymentOptions(fromCommandOption(commands[0]), fromCommandOption(commands[1]),
-                            fromCommandOption(commands[2]));
-
-                        redeploySet.put(uri, options);
-                    }
-                } catch (URISyntaxException e) {
-                    logger.error("Invalid URI in command string '%s' read from redeploy dataset", e, uriCommandString);
-                    // skip and carry on
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
             }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.completed) {
+                // Only the open batch can be incomplete when nobody is writing
+                this.writing = true;
+                this.openBatch = new Batch();
+                writer = true;
+            }
         }
 
-        // If there is a significant amount of wasted space in the redeploy
-        // dataset, rewrite it.
-        if (COMPRESSION_THRESHOLD * undeployCount > recordCount) {
-            rewriteRedeploySet(redeploySet);
+        if (writer) {
+            IOException failure = null;
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                // The journal discards the partially written batch
+                failure = e;
+            }
+            boolean compactionDue = failure == null && isCompactionDue();
+            synchronized (this.monitor) {
+                batch.complete(failure);
+                this.writing = false;
+                this.monitor.notifyAll();
+            }
+            if (compactionDue) {
+                scheduleCompaction();
+            }
         }
 
-        return redeploySet;
+        IOException failure;
+        synchronized (this.monitor) {
+            failure = batch.failure;
+        }
+        if (failure != null) {
+            throw new FatalDeploymentException("Failed to record (un)deployment", failure);
+        }
     }
 
-    private String readRedployData() {
-        StringBuffer redeployData = new StringBuffer(INITIAL_REDEPLOY_DATA_SIZE);
-        Reader redeployDataReader = null;
-        try {
-            redeployDataReader = new BufferedReader(new InputStreamReader(new FileInputStream(redeployDataset.toFile()), UTF_8));
-            try {
-                char[] chars = new char[INITIAL_REDEPLOY_DATA_SIZE];
-                int numRead;
-                while (-1 != (numRead = redeployDataReader.read(chars))) {
-                    redeployData.append(String.valueOf(chars, 0, numRead));
-                }
-            } catch (IOException e) {
-                logger.error("Problem reading redeploy dataset", e);
-            } finally {
+    private void writeBatch(Batch batch) throws IOException {
+        List<byte[]> payloads = new ArrayList<byte[]>(batch.records.size());
+        for (Record record : batch.records) {
+            payloads.add(record.encode());
+        }
+        this.journal.append(payloads);
+
+        synchronized (this.monitor) {
+            for (Record record : batch.records) {
+                record.applyTo(this.recoveryState);
+            }
+        }
+    }
+
+    private void acquireWriter() {
+        synchronized (this.monitor) {
+            boolean interrupted = false;
+            while (this.writing) {
                 try {
-                    redeployDataReader.close();
-                } catch (IOException e) {
-                    logger.error("Problem closing redeploy dataset", e);
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
             }
-        } catch (FileNotFoundException e) {
-            // Ignore - this is acceptable if there are no deployed applications
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            this.writing = true;
         }
-        return redeployData.toString();
     }
 
-    /**
-     * Write the given set of URIs to the redeploy dataset. To avoid corruption if a crash occurs, write to a redeploy
-     * compression file and then switch this for the redeploy dataset.
-     * 
-     * @param redeploySet the URIs to be written
-     */
-    private void rewriteRedeploySet(Map<URI, DeploymentOptions> redeploySet) {
-        this.redeployCompressionDataset.delete();
-        try (Writer redeployDataWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.redeployCompressionDataset.toFile()),
-            UTF_8))) {
-            for (Entry<URI, DeploymentOptions> redeployEntry : redeploySet.entrySet()) {
-                recordUriCommand(redeployDataWriter, redeployEntry.getKey(), getCommandString(redeployEntry.getValue()));
-            }
-            redeployDataWriter.close();
-        } catch (IOException e) {
-            logger.warn("Problem while rewriting redeploy dataset", e);
-            // Return without replacing the redeploy dataset.
+    private void releaseWriter() {
+        synchronized (this.monitor) {
+            this.writing = false;
+            this.monitor.notifyAll();
         }
-        // Now switch the files
-        this.redeployDataset.delete();
-        this.redeployCompressionDataset.moveTo(this.redeployDataset);
     }
 
-    /**
-     * Add the given location and deployment options to the recovery state.
-     * 
-     * @param location
-     * @param deploymentOptions
-     */
-    void add(URI location, DeploymentOptions deploymentOptions) {
-        recordUriCommand(location, getCommandString(deploymentOptions));
+    private boolean isCompactionDue() {
+        synchronized (this.monitor) {
+            return this.journal.isCompactionDue(COMPACTION_RATIO * this.recoveryState.size());
+        }
     }
 
-    /**
-     * Return the command string for tagging the type of a log record based on the given deployment options.
-     * 
-     * @param deploymentOptions
-     * @return the command string
-     */
-    private String getCommandString(DeploymentOptions deploymentOptions) {
-        // boolean recoverable, boolean deployerOwned, boolean synchronous
-        StringBuilder command = new StringBuilder().append(toCommandOption(deploymentOptions.getRecoverable())).append(
-            toCommandOption(deploymentOptions.getDeployerOwned())).append(toCommandOption(deploymentOptions.getSynchronous()));
-        return command.toString();
+    private void scheduleCompaction() {
+        synchronized (this.monitor) {
+            if (this.compactionScheduled) {
+                return;
+            }
+            this.compactionScheduled = true;
+        }
+        Thread compactor = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    compact();
+                } finally {
+                    synchronized (DeployerRecoveryLog.this.monitor) {
+                        DeployerRecoveryLog.this.compactionScheduled = false;
+                    }
+                }
+            }
+        }, "deployer-recovery-log-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
     }
 
     /**
-     * Remove the given location and associated deployment options from the recovery state.
-     * 
-     * @param location
+     * Reads the journal into the recovery state, converting it from the text format if necessary, and truncates any
+     * incomplete or corrupt records from its end.
      */
-    void remove(URI location) {
-        recordUriCommand(location, UNDEPLOY_URI_COMMAND);
-    }
+    private void openJournal() throws IOException {
+        File journalFile = this.redeployDataset.toFile();
+        if (journalFile.exists() && !isJournal(journalFile)) {
+            Map<URI, DeploymentOptions> legacyState = readLegacyState(journalFile);
+            this.journal.rewrite(this.redeployCompressionDataset.toFile(), JOURNAL_HEADER_DATA, encode(legacyState));
+            this.recoveryState.putAll(legacyState);
+            this.logger.info("Converted redeploy dataset '{}' to journal format", this.redeployDataset);
+            return;
+        }
 
-    private void recordUriCommand(URI uri, String command) {
-        try (Writer writer = new FileWriter(this.redeployDataset.toFile(), true)) {
-            recordUriCommand(writer, uri, command);
-            writer.close();
-        } catch (IOException e) {
-            throw new FatalDeploymentException("Failed to record (un)deployment", e);
+        long discardedLength = this.journal.replay(JOURNAL_HEADER_DATA, new RecordHandler() {
+
+            public boolean handle(byte[] payload) {
+                Record record = Record.decode(payload);
+                if (record == null) {
+                    return false;
+                }
+                synchronized (DeployerRecoveryLog.this.monitor) {
+                    record.applyTo(DeployerRecoveryLog.this.recoveryState);
+                }
+                return true;
+            }
+        });
+        if (discardedLength < 0) {
+            if (journalFile.length() > 0) {
+                this.logger.warn("Redeploy dataset '{}' has an unrecognised header and is being discarded", this.redeployDataset);
+            }
+            this.journal.start(JOURNAL_HEADER_DATA);
+        } else if (discardedLength > 0) {
+            this.logger.warn("Truncating {} bytes of incomplete or corrupt records from redeploy dataset '{}'", discardedLength,
+                this.redeployDataset);
+            this.journal.truncate();
         }
+    }
 
+    private static boolean isJournal(File journalFile) throws IOException {
+        if (journalFile.length() == 0) {
+            return true;
+        }
+        try (InputStream input = new FileInputStream(journalFile)) {
+            // The text format starts with a command and never with a NUL character
+            return input.read() == 0;
+        }
     }
 
-    private static void recordUriCommand(Writer writer, URI uri, String command) throws IOException {
-        writer.write(command);
-        writer.write(uri.toString());
-        writer.write(URI_SEPARATOR);
+    private static List<byte[]> encode(Map<URI, DeploymentOptions> state) {
+        List<byte[]> payloads = new ArrayList<byte[]>(state.size());
+        for (Entry<URI, DeploymentOptions> entry : state.entrySet()) {
+            payloads.add(new Record(entry.getKey(), entry.getValue()).encode());
+        }
+        return payloads;
     }
 
     /**
-     * Converts boolean deployment option flag to a string representation for the logged command option
-     * 
-     * @param deploymentOption
-     * @return
+     * Reads the recovery state from a redeploy dataset in the text format used by earlier releases.
      */
-    private static char toCommandOption(boolean deploymentOption) {
-        return deploymentOption ? 'Y' : 'N';
+    private Map<URI, DeploymentOptions> readLegacyState(File legacyFile) throws IOException {
+        Map<URI, DeploymentOptions> redeploySet = new LinkedHashMap<URI, DeploymentOptions>(20);
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(legacyFile), UTF_8), INITIAL_REDEPLOY_DATA_SIZE)) {
+            StringBuilder uriCommandString = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == URI_SEPARATOR.charAt(0)) {
+                    applyLegacyCommand(redeploySet, uriCommandString.toString());
+                    uriCommandString.setLength(0);
+                } else {
+                    uriCommandString.append((char) c);
+                }
+            }
+            // Skip short command strings as there will typically be one at the end of the dataset.
+            applyLegacyCommand(redeploySet, uriCommandString.toString());
+        }
+        return redeploySet;
+    }
+
+    private void applyLegacyCommand(Map<URI, DeploymentOptions> redeploySet, String uriCommandString) {
+        if (uriCommandString.length() >= COMMAND_LENGTH) {
+            String uriCommand = uriCommandString.substring(0, COMMAND_LENGTH);
+            String uriString = uriCommandString.substring(COMMAND_LENGTH);
+            try {
+                URI uri = new URI(uriString);
+                if (UNDEPLOY_URI_COMMAND.equals(uriCommand)) {
+                    redeploySet.remove(uri);
+                } else {
+                    char[] commands = uriCommand.toCharArray();
+                    DeploymentOptions options = new DeploymentOptions(fromCommandOption(commands[0]), fromCommandOption(commands[1]),
+                        fromCommandOption(commands[2]));
+
+                    redeploySet.put(uri, options);
+                }
+            } catch (URISyntaxException e) {
+                logger.error("Invalid URI in command string '" + uriCommandString + "' read from redeploy dataset", e);
+                // skip and carry on
+            }
+        }
     }
 
     /**
      * Converts from a String command option to a boolean deployment option flag
-     * 
+     *
      * @param commandOption
      * @return
      */
@@ -254,7 +450,7 @@ final class DeployerRecoveryLog {
     /**
      * Get the last modified time of the deployer's recovery file. Any applications in the pickup directory with a later
      * last modified time will need to be redeployed.
-     * 
+     *
      * @return the last modified time of the deployer's recovery file
      */
     public long getRedeployFileLastModified() {
@@ -263,7 +459,7 @@ final class DeployerRecoveryLog {
 
     /**
      * Update the last modified time of the deployer's recovery file.
-     * 
+     *
      * @return <code>true</code> iff the operation succeeded
      */
     // TODO Make package private
@@ -271,4 +467,101 @@ final class DeployerRecoveryLog {
         return this.redeployDataset.touch();
     }
 
+    /**
+     * A deploy record, with deployment options, or an undeploy record, without.
+     */
+    private static final class Record {
+
+        private final URI location;
+
+        private final DeploymentOptions deploymentOptions;
+
+        private Record(URI location, DeploymentOptions deploymentOptions) {
+            this.location = location;
+            this.deploymentOptions = deploymentOptions;
+        }
+
+        private void applyTo(Map<URI, DeploymentOptions> state) {
+            if (this.deploymentOptions == null) {
+                state.remove(this.location);
+            } else {
+                state.put(this.location, this.deploymentOptions);
+            }
+        }
+
+        /**
+         * Encodes the record as a journal payload consisting of the record type, the deployment options and the UTF-8
+         * encoded location.
+         */
+        private byte[] encode() {
+            byte[] locationBytes = this.location.toString().getBytes(UTF_8);
+            byte[] payload = new byte[2 + locationBytes.length];
+            if (this.deploymentOptions == null) {
+                payload[0] = UNDEPLOY_RECORD;
+            } else {
+                payload[0] = DEPLOY_RECORD;
+                payload[1] = toOptionBits(this.deploymentOptions);
+            }
+            System.arraycopy(locationBytes, 0, payload, 2, locationBytes.length);
+            return payload;
+        }
+
+        /**
+         * Decodes the given payload, returning <code>null</code> if it is not a valid record.
+         */
+        private static Record decode(byte[] payload) {
+            if (payload.length < 2) {
+                return null;
+            }
+            URI location;
+            try {
+                location = new URI(new String(payload, 2, payload.length - 2, UTF_8));
+            } catch (URISyntaxException e) {
+                return null;
+            }
+            if (payload[0] == DEPLOY_RECORD) {
+                return new Record(location, fromOptionBits(payload[1]));
+            } else if (payload[0] == UNDEPLOY_RECORD) {
+                return new Record(location, null);
+            }
+            return null;
+        }
+
+        private static byte toOptionBits(DeploymentOptions deploymentOptions) {
+            int options = 0;
+            if (deploymentOptions.getRecoverable()) {
+                options |= RECOVERABLE_OPTION;
+            }
+            if (deploymentOptions.getDeployerOwned()) {
+                options |= DEPLOYER_OWNED_OPTION;
+            }
+            if (deploymentOptions.getSynchronous()) {
+                options |= SYNCHRONOUS_OPTION;
+            }
+            return (byte) options;
+        }
+
+        private static DeploymentOptions fromOptionBits(byte options) {
+            // boolean recoverable, boolean deployerOwned, boolean synchronous
+            return new DeploymentOptions((options & RECOVERABLE_OPTION) != 0, (options & DEPLOYER_OWNED_OPTION) != 0,
+                (options & SYNCHRONOUS_OPTION) != 0);
+        }
+    }
+
+    /**
+     * Records which are written to the journal together.
+     */
+    private static final class Batch {
+
+        private final List<Record> records = new ArrayList<Record>();
+
+        private boolean completed = false;
+
+        private IOException failure;
+
+        private void complete(IOException failure) {
+            this.completed = true;
+            this.failure = failure;
+        }
+    }
 }
@@ -12,8 +12,17 @@
 package org.eclipse.virgo.kernel.deployer.core.internal.recovery;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.event.Event;
@@ -25,6 +34,7 @@ import org.eclipse.virgo.nano.deployer.api.core.DeploymentException;
 import org.eclipse.virgo.nano.deployer.api.core.DeploymentOptions;
 import org.eclipse.virgo.nano.deployer.api.core.FatalDeploymentException;
 import org.eclipse.virgo.kernel.deployer.core.internal.ApplicationRecoverer;
+import org.eclipse.virgo.kernel.deployer.management.StandardRecoveryStatistics;
 import org.eclipse.virgo.medic.eventlog.EventLogger;
 
 /**
@@ -33,6 +43,13 @@ import org.eclipse.virgo.medic.eventlog.EventLogger;
  * The recovery is run in another thread.
  * When complete (or if not enabled), fires the <code>recovery/COMPLETED</code> event.
  * <p />
+ * By default the entries are recovered one after another in recovery log order. If more than one recovery thread is
+ * configured, the entries are grouped into {@link RecoveryLayers layers} and the entries of each layer are recovered
+ * concurrently, with each layer completing before the next one starts. Recovering on several threads depends on the
+ * recoverer {@link ApplicationRecoverer#isConcurrentRecoverySupported() supporting concurrent recovery}, which the
+ * deployer does only when concurrent start is enabled. Otherwise the entries are recovered one after another whatever
+ * the number of recovery threads configured.
+ * <p />
  *
  * <strong>Concurrent Semantics</strong><br />
  * thread-safe
@@ -44,6 +61,8 @@ final class RecoveryAgent implements EventHandler {
     
     private static final String TOPIC_RECOVERY_COMPLETED = "org/eclipse/virgo/kernel/deployer/recovery/COMPLETED";
     
+    private static final int DEFAULT_RECOVERY_THREADS = 1;
+    
     private final ApplicationRecoverer recoverer;
     
     private final EventLogger eventLogger;
@@ -52,11 +71,43 @@ final class RecoveryAgent implements EventHandler {
     
     private final Map<URI, DeploymentOptions> recoveryState;
     
-    public RecoveryAgent(ApplicationRecoverer recoverer, DeployerRecoveryLog recoveryLog, EventLogger eventLogger, EventAdmin eventAdmin) {
+    private final StandardRecoveryStatistics recoveryStatistics;
+    
+    private final int recoveryThreads;
+    
+    /**
+     * Creates a new <code>RecoveryAgent</code>.
+     * 
+     * @param recoverer the recoverer used to recover each entry
+     * @param recoveryLog the recovery log holding the entries to be recovered
+     * @param eventLogger the event logger
+     * @param eventAdmin the event admin used to post <code>recovery/COMPLETED</code>
+     * @param recoveryStatistics the statistics to be updated as entries are recovered
+     * @param recoveryThreads the number of threads to recover entries with; <code>null</code> or a value which is not a
+     *        positive integer recovers entries one after another
+     */
+    public RecoveryAgent(ApplicationRecoverer recoverer, DeployerRecoveryLog recoveryLog, EventLogger eventLogger, EventAdmin eventAdmin,
+        StandardRecoveryStatistics recoveryStatistics, String recoveryThreads) {
         this.recoverer = recoverer;
         this.recoveryState = recoveryLog.getRecoveryState();
         this.eventLogger = eventLogger;
         this.eventAdmin = eventAdmin;
+        this.recoveryStatistics = recoveryStatistics;
+        this.recoveryThreads = parseRecoveryThreads(recoveryThreads);
+    }
+
+    private static int parseRecoveryThreads(String recoveryThreads) {
+        if (recoveryThreads != null) {
+            try {
+                int threads = Integer.parseInt(recoveryThreads.trim());
+                if (threads > 0) {
+                    return threads;
+                }
+            } catch (NumberFormatException ignored) {
+                // fall back to serial recovery
+            }
+        }
+        return DEFAULT_RECOVERY_THREADS;
     }
 
     void performRecovery() {                
@@ -64,17 +115,7 @@ final class RecoveryAgent implements EventHandler {
             Thread recoveryThread = new Thread(new Runnable() {
                 public void run() {
                 	try {	                    
-	                    for (Entry<URI, DeploymentOptions> redeployEntry : recoveryState.entrySet()) {
-	                        URI uri = redeployEntry.getKey();
-	                        DeploymentOptions deploymentOptions = redeployEntry.getValue();
-	                        try {
-	                            recoverer.recoverDeployment(uri, deploymentOptions);
-	                        } catch (DeploymentException e) {
-	                            eventLogger.log(DeployerLogEvents.RECOVERY_FAILED, e, uri);
-	                        } catch (FatalDeploymentException e) {
-	                            eventLogger.log(DeployerLogEvents.RECOVERY_FAILED, e, uri);
-	                        }
-	                    }
+	                    recoverAll();
                 	} finally {
                 		recoveryComplete();
                 	}
@@ -86,6 +127,85 @@ final class RecoveryAgent implements EventHandler {
         }
     }
 
+    /**
+     * Recovers all the entries in the recovery state, returning when each of them has been recovered or has failed.
+     */
+    void recoverAll() {
+        long start = System.nanoTime();
+        List<URI> locations = new ArrayList<URI>(this.recoveryState.keySet());
+        int threads = this.recoveryThreads > 1 && this.recoverer.isConcurrentRecoverySupported() ? this.recoveryThreads : 1;
+        List<List<URI>> layers;
+        if (threads > 1) {
+            layers = RecoveryLayers.computeLayers(locations);
+        } else {
+            layers = new ArrayList<List<URI>>();
+            layers.add(locations);
+        }
+        this.recoveryStatistics.recoveryStarted(threads, layers.size());
+
+        if (threads > 1) {
+            recoverLayers(layers, threads);
+        } else {
+            for (URI location : locations) {
+                recover(location);
+            }
+        }
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        this.recoveryStatistics.recoveryCompleted(totalMillis);
+        this.eventLogger.log(DeployerLogEvents.RECOVERY_COMPLETED, locations.size(), layers.size(), threads, totalMillis);
+    }
+
+    private void recoverLayers(List<List<URI>> layers, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new RecoveryThreadFactory());
+        try {
+            for (List<URI> layer : layers) {
+                List<Callable<Void>> recoveries = new ArrayList<Callable<Void>>(layer.size());
+                for (final URI location : layer) {
+                    recoveries.add(new Callable<Void>() {
+
+                        public Void call() {
+                            recover(location);
+                            return null;
+                        }
+                    });
+                }
+                List<Future<Void>> results = executor.invokeAll(recoveries);
+                for (int index = 0; index < results.size(); index++) {
+                    try {
+                        results.get(index).get();
+                    } catch (ExecutionException e) {
+                        this.eventLogger.log(DeployerLogEvents.RECOVERY_FAILED, e.getCause(), layer.get(index));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void recover(URI uri) {
+        DeploymentOptions deploymentOptions = this.recoveryState.get(uri);
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            this.recoverer.recoverDeployment(uri, deploymentOptions);
+            succeeded = true;
+        } catch (DeploymentException e) {
+            this.eventLogger.log(DeployerLogEvents.RECOVERY_FAILED, e, uri);
+        } catch (FatalDeploymentException e) {
+            this.eventLogger.log(DeployerLogEvents.RECOVERY_FAILED, e, uri);
+        } finally {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.recoveryStatistics.artifactRecovered(uri, millis, succeeded);
+            if (succeeded) {
+                this.eventLogger.log(DeployerLogEvents.ARTIFACT_RECOVERED, uri, millis);
+            }
+        }
+    }
+
 	private void recoveryComplete() {
 		this.recoveryState.clear();
 		eventAdmin.postEvent(new Event(TOPIC_RECOVERY_COMPLETED, (Map<String, ?>)null));
@@ -103,4 +223,15 @@ final class RecoveryAgent implements EventHandler {
             performRecovery();
         }
     }
+
+    private static final class RecoveryThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "deployer-recovery-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal.recovery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.virgo.util.osgi.manifest.BundleManifest;
+import org.eclipse.virgo.util.osgi.manifest.BundleManifestFactory;
+import org.eclipse.virgo.util.osgi.manifest.ExportedPackage;
+import org.eclipse.virgo.util.osgi.manifest.ImportedBundle;
+import org.eclipse.virgo.util.osgi.manifest.ImportedPackage;
+import org.eclipse.virgo.util.osgi.manifest.RequiredBundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RecoveryLayers} groups the artifacts in the recovery state into layers which can be recovered one after
+ * another, with the artifacts in each layer recovered concurrently.
+ * <p />
+ * An artifact is placed in a later layer than any artifact before it in the recovery log on which it depends. A bundle
+ * depends on the bundles which export a package it imports, which it requires or imports by symbolic name, or to which
+ * it attaches as a fragment. The dependencies of any other existing artifact, such as a plan, PAR or configuration file,
+ * cannot be determined from its manifest, so it is placed in a layer of its own after all the artifacts before it and
+ * all the artifacts after it are placed in later layers. An artifact which no longer exists has no dependencies.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Thread safe
+ *
+ */
+final class RecoveryLayers {
+
+    private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecoveryLayers.class);
+
+    private RecoveryLayers() {
+    }
+
+    /**
+     * Groups the given locations, in recovery log order, into layers.
+     *
+     * @param locations the locations to be recovered, in recovery log order
+     * @return the layers, each holding locations in recovery log order
+     */
+    static List<List<URI>> computeLayers(Collection<URI> locations) {
+        List<List<URI>> layers = new ArrayList<List<URI>>();
+
+        Map<String, Integer> packageLayers = new HashMap<String, Integer>();
+        Map<String, Integer> bundleLayers = new HashMap<String, Integer>();
+        int barrierLayer = -1;
+
+        for (URI location : locations) {
+            Dependencies dependencies = readDependencies(location);
+
+            int layer;
+            if (dependencies == null) {
+                layer = layers.size();
+                barrierLayer = layer;
+            } else {
+                layer = barrierLayer + 1;
+                for (String packageName : dependencies.importedPackages) {
+                    layer = laterLayer(layer, packageLayers.get(packageName));
+                }
+                for (String symbolicName : dependencies.requiredBundles) {
+                    layer = laterLayer(layer, bundleLayers.get(symbolicName));
+                }
+                for (String packageName : dependencies.exportedPackages) {
+                    recordProvider(packageLayers, packageName, layer);
+                }
+                if (dependencies.symbolicName != null) {
+                    recordProvider(bundleLayers, dependencies.symbolicName, layer);
+                }
+            }
+
+            while (layers.size() <= layer) {
+                layers.add(new ArrayList<URI>());
+            }
+            layers.get(layer).add(location);
+        }
+        return layers;
+    }
+
+    private static int laterLayer(int layer, Integer providerLayer) {
+        return providerLayer == null ? layer : Math.max(layer, providerLayer + 1);
+    }
+
+    private static void recordProvider(Map<String, Integer> providerLayers, String name, int layer) {
+        Integer providerLayer = providerLayers.get(name);
+        if (providerLayer == null || providerLayer < layer) {
+            providerLayers.put(name, layer);
+        }
+    }
+
+    /**
+     * Reads the dependencies of the artifact at the given location.
+     *
+     * @return the artifact's dependencies, or <code>null</code> if they cannot be determined
+     */
+    private static Dependencies readDependencies(URI location) {
+        File file;
+        try {
+            file = new File(location);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!file.exists()) {
+            return new Dependencies(null);
+        }
+
+        BundleManifest manifest;
+        try {
+            manifest = readManifest(file);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read manifest of '{}' to determine its recovery dependencies", file, e);
+            return null;
+        }
+        if (manifest == null || manifest.getBundleSymbolicName().getSymbolicName() == null) {
+            return null;
+        }
+
+        Dependencies dependencies = new Dependencies(manifest.getBundleSymbolicName().getSymbolicName());
+        for (ImportedPackage importedPackage : manifest.getImportPackage().getImportedPackages()) {
+            dependencies.importedPackages.add(importedPackage.getPackageName());
+        }
+        for (ExportedPackage exportedPackage : manifest.getExportPackage().getExportedPackages()) {
+            dependencies.exportedPackages.add(exportedPackage.getPackageName());
+        }
+        for (RequiredBundle requiredBundle : manifest.getRequireBundle().getRequiredBundles()) {
+            dependencies.requiredBundles.add(requiredBundle.getBundleSymbolicName());
+        }
+        for (ImportedBundle importedBundle : manifest.getImportBundle().getImportedBundles()) {
+            dependencies.requiredBundles.add(importedBundle.getBundleSymbolicName());
+        }
+        String host = manifest.getFragmentHost().getBundleSymbolicName();
+        if (host != null) {
+            dependencies.requiredBundles.add(host);
+        }
+        return dependencies;
+    }
+
+    private static BundleManifest readManifest(File file) throws IOException {
+        if (file.isDirectory()) {
+            File manifestFile = new File(file, MANIFEST_PATH);
+            if (!manifestFile.isFile()) {
+                return null;
+            }
+            try (InputStream input = new FileInputStream(manifestFile)) {
+                return createBundleManifest(input);
+            }
+        }
+
+        if (!isArchive(file)) {
+            return null;
+        }
+        try (ZipFile archive = new ZipFile(file)) {
+            ZipEntry entry = archive.getEntry(MANIFEST_PATH);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream input = archive.getInputStream(entry)) {
+                return createBundleManifest(input);
+            }
+        }
+    }
+
+    private static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".jar") || name.endsWith(".war");
+    }
+
+    private static BundleManifest createBundleManifest(InputStream input) throws IOException {
+        Reader reader = new InputStreamReader(input, UTF_8);
+        return BundleManifestFactory.createBundleManifest(reader);
+    }
+
+    private static final class Dependencies {
+
+        private final String symbolicName;
+
+        private final Set<String> importedPackages = new HashSet<String>();
+
+        private final Set<String> exportedPackages = new HashSet<String>();
+
+        private final Set<String> requiredBundles = new HashSet<String>();
+
+        private Dependencies(String symbolicName) {
+            this.symbolicName = symbolicName;
+        }
+    }
+}
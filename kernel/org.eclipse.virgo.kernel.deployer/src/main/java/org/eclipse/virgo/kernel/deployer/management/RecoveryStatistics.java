@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.management;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MXBean;
+
+/**
+ * MBean describing the most recent recovery of the deployer's recoverable artifacts at startup.
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Implementations must be thread-safe.
+ * 
+ */
+@MXBean
+public interface RecoveryStatistics {
+
+    /**
+     * Returns the number of threads used to recover artifacts.
+     * 
+     * @return the number of recovery threads
+     */
+    int getRecoveryThreads();
+
+    /**
+     * Returns the number of layers into which the recovered artifacts were grouped. Artifacts in the same layer are
+     * recovered concurrently.
+     * 
+     * @return the number of layers
+     */
+    int getLayerCount();
+
+    /**
+     * Returns the time taken to recover all the artifacts, or <code>-1</code> if recovery has not completed.
+     * 
+     * @return the total recovery time in milliseconds
+     */
+    long getTotalRecoveryMillis();
+
+    /**
+     * Returns the time taken to recover each artifact, keyed by the artifact's URI.
+     * 
+     * @return the recovery time of each artifact in milliseconds
+     */
+    Map<String, Long> getArtifactRecoveryMillis();
+
+    /**
+     * Returns the URIs of the artifacts which could not be recovered.
+     * 
+     * @return the URIs of the failed artifacts
+     */
+    List<String> getFailedArtifacts();
+}
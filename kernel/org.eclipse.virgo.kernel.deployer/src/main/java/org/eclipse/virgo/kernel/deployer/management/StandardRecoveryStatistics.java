@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.management;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Standard implementation of {@link RecoveryStatistics} which is updated by the deployer as it recovers artifacts.
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ * 
+ */
+public final class StandardRecoveryStatistics implements RecoveryStatistics {
+
+    private final Object monitor = new Object();
+
+    private int recoveryThreads;
+
+    private int layerCount;
+
+    private long totalRecoveryMillis = -1;
+
+    private final Map<String, Long> artifactRecoveryMillis = new LinkedHashMap<String, Long>();
+
+    private final List<String> failedArtifacts = new ArrayList<String>();
+
+    /**
+     * Records the start of recovery.
+     * 
+     * @param recoveryThreads the number of threads used to recover artifacts
+     * @param layerCount the number of layers into which the artifacts have been grouped
+     */
+    public void recoveryStarted(int recoveryThreads, int layerCount) {
+        synchronized (this.monitor) {
+            this.recoveryThreads = recoveryThreads;
+            this.layerCount = layerCount;
+            this.totalRecoveryMillis = -1;
+            this.artifactRecoveryMillis.clear();
+            this.failedArtifacts.clear();
+        }
+    }
+
+    /**
+     * Records the recovery of an artifact.
+     * 
+     * @param uri the artifact's URI
+     * @param millis the time taken to recover the artifact
+     * @param succeeded whether or not the artifact was recovered successfully
+     */
+    public void artifactRecovered(URI uri, long millis, boolean succeeded) {
+        synchronized (this.monitor) {
+            this.artifactRecoveryMillis.put(uri.toString(), millis);
+            if (!succeeded) {
+                this.failedArtifacts.add(uri.toString());
+            }
+        }
+    }
+
+    /**
+     * Records the completion of recovery.
+     * 
+     * @param totalRecoveryMillis the time taken to recover all the artifacts
+     */
+    public void recoveryCompleted(long totalRecoveryMillis) {
+        synchronized (this.monitor) {
+            this.totalRecoveryMillis = totalRecoveryMillis;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getRecoveryThreads() {
+        synchronized (this.monitor) {
+            return this.recoveryThreads;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getLayerCount() {
+        synchronized (this.monitor) {
+            return this.layerCount;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getTotalRecoveryMillis() {
+        synchronized (this.monitor) {
+            return this.totalRecoveryMillis;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Long> getArtifactRecoveryMillis() {
+        synchronized (this.monitor) {
+            return new LinkedHashMap<String, Long>(this.artifactRecoveryMillis);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getFailedArtifacts() {
+        synchronized (this.monitor) {
+            return new ArrayList<String>(this.failedArtifacts);
+        }
+    }
+}
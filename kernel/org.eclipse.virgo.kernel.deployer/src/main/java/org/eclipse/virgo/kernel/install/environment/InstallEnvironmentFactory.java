@@ -32,4 +32,14 @@ public interface InstallEnvironmentFactory {
      */
     InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact);
 
+    /**
+     * Returns a new {@link InstallEnvironment} with its own install log which shares the side state of the given
+     * <code>InstallEnvironment</code>. Destroying the returned environment does not destroy the shared side state.
+     * 
+     * @param installArtifact the root {@link InstallArtifact} being installed
+     * @param sharedInstallEnvironment the <code>InstallEnvironment</code> whose side state is to be shared
+     * @return an <code>InstallEnvironment</code>
+     */
+    InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact, InstallEnvironment sharedInstallEnvironment);
+
 }
@@ -35,10 +35,26 @@ final class StandardInstallEnvironment implements InstallEnvironment {
     
     private final QuasiFramework quasiFramework;
 
+    private final boolean ownsQuasiFramework;
+
     public StandardInstallEnvironment(Repository repository, InstallLog installLog, QuasiFramework quasiFramework) {
+        this(repository, installLog, quasiFramework, true);
+    }
+
+    /**
+     * Creates a {@link StandardInstallEnvironment} which destroys the given {@link QuasiFramework} when it is destroyed
+     * if and only if <code>ownsQuasiFramework</code> is <code>true</code>.
+     * 
+     * @param repository the repository
+     * @param installLog the install log
+     * @param quasiFramework the side state
+     * @param ownsQuasiFramework <code>true</code> if the side state is destroyed with this environment
+     */
+    public StandardInstallEnvironment(Repository repository, InstallLog installLog, QuasiFramework quasiFramework, boolean ownsQuasiFramework) {
         this.repository = repository;
         this.installLog = installLog;
         this.quasiFramework = quasiFramework;
+        this.ownsQuasiFramework = ownsQuasiFramework;
     }
 
     /** 
@@ -67,7 +83,9 @@ final class StandardInstallEnvironment implements InstallEnvironment {
      */
     @Override
     public void destroy() {
-        this.quasiFramework.destroy();
+        if (this.ownsQuasiFramework) {
+            this.quasiFramework.destroy();
+        }
     }
     
 }
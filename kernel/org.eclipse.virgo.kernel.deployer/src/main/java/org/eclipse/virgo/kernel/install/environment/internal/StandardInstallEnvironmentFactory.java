@@ -45,4 +45,12 @@ final class StandardInstallEnvironmentFactory implements InstallEnvironmentFacto
         return new StandardInstallEnvironment(null, new StandardInstallLog(this.eventLogger, installArtifact), this.quasiFrameworkFactory.create());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact, InstallEnvironment sharedInstallEnvironment) {
+        return new StandardInstallEnvironment(sharedInstallEnvironment.getRepository(), new StandardInstallLog(this.eventLogger, installArtifact),
+            sharedInstallEnvironment.getQuasiFramework(), false);
+    }
+
 }
@@ -0,0 +1,594 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.equinox.region.Region;
+import org.eclipse.virgo.kernel.artifact.fs.ArtifactFS;
+import org.eclipse.virgo.kernel.artifact.plan.PlanDescriptor.Provisioning;
+import org.eclipse.virgo.kernel.deployer.core.internal.event.DeploymentListener;
+import org.eclipse.virgo.kernel.install.artifact.ArtifactIdentity;
+import org.eclipse.virgo.kernel.install.artifact.ArtifactIdentityDeterminer;
+import org.eclipse.virgo.kernel.install.artifact.ArtifactStorage;
+import org.eclipse.virgo.kernel.install.artifact.BundleInstallArtifact;
+import org.eclipse.virgo.kernel.install.artifact.InstallArtifact;
+import org.eclipse.virgo.kernel.install.artifact.InstallArtifactGraphInclosure;
+import org.eclipse.virgo.kernel.install.artifact.internal.AbstractInstallArtifact;
+import org.eclipse.virgo.kernel.install.artifact.internal.StubArtifactStateMonitor;
+import org.eclipse.virgo.kernel.install.environment.InstallEnvironment;
+import org.eclipse.virgo.kernel.install.environment.InstallEnvironmentFactory;
+import org.eclipse.virgo.kernel.install.environment.InstallLog;
+import org.eclipse.virgo.kernel.install.pipeline.Pipeline;
+import org.eclipse.virgo.kernel.install.pipeline.stage.PipelineStage;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiBundle;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiExportPackage;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiFramework;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiImportPackage;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiRequiredBundle;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiResolutionFailure;
+import org.eclipse.virgo.medic.test.eventlog.MockEventLogger;
+import org.eclipse.virgo.nano.core.AbortableSignal;
+import org.eclipse.virgo.nano.deployer.api.core.DeployUriNormaliser;
+import org.eclipse.virgo.nano.deployer.api.core.DeployerConfiguration;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentException;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentIdentity;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentOptions;
+import org.eclipse.virgo.repository.Repository;
+import org.eclipse.virgo.test.stubs.framework.StubBundleContext;
+import org.eclipse.virgo.util.common.DirectedAcyclicGraph;
+import org.eclipse.virgo.util.common.GraphNode;
+import org.eclipse.virgo.util.common.ThreadSafeDirectedAcyclicGraph;
+import org.eclipse.virgo.util.io.PathReference;
+import org.eclipse.virgo.util.osgi.manifest.BundleManifest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Version;
+
+/**
+ * Tests for {@link PipelinedApplicationDeployer#bulkDeploy(List, DeploymentOptions)}.
+ */
+public class PipelinedApplicationDeployerBulkDeploymentTests {
+
+    private static final int ARTIFACT_COUNT = 16;
+
+    private static final String BUNDLE_TYPE = "bundle";
+
+    private final PathReference deploymentDirectory = new PathReference("build/bulkDeployment");
+
+    private final List<URI> locations = new ArrayList<URI>();
+
+    private final StubRuntimeArtifactModel ram = new StubRuntimeArtifactModel();
+
+    private final DirectedAcyclicGraph<InstallArtifact> dag = new ThreadSafeDirectedAcyclicGraph<InstallArtifact>();
+
+    private final List<StubQuasiFramework> quasiFrameworks = Collections.synchronizedList(new ArrayList<StubQuasiFramework>());
+
+    private final Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+
+    private final List<String> startedArtifacts = Collections.synchronizedList(new ArrayList<String>());
+
+    private final AtomicInteger mainPipelineCount = new AtomicInteger();
+
+    private final AtomicInteger completionPipelineCount = new AtomicInteger();
+
+    private volatile boolean failResolution = false;
+
+    private volatile String unconstructableArtifact = null;
+
+    private PipelinedApplicationDeployer deployer;
+
+    @Before
+    public void setUp() throws IOException {
+        this.deploymentDirectory.delete(true);
+        this.deploymentDirectory.createDirectory();
+        for (int i = 0; i < ARTIFACT_COUNT; i++) {
+            File artifact = new File(this.deploymentDirectory.toFile(), "bundle" + i + ".jar");
+            assertTrue(artifact.createNewFile());
+            this.locations.add(artifact.toURI());
+        }
+        this.deployer = createDeployer();
+    }
+
+    @After
+    public void tearDown() {
+        this.deploymentDirectory.delete(true);
+    }
+
+    @Test
+    public void bulkDeploymentResolvesAndCommitsOnce() throws DeploymentException {
+        DeploymentIdentity[] deploymentIdentities = this.deployer.bulkDeploy(this.locations, new DeploymentOptions(false, false, true));
+
+        assertEquals(ARTIFACT_COUNT, deploymentIdentities.length);
+        assertEquals(ARTIFACT_COUNT, this.ram.getDeploymentIdentities().length);
+        assertEquals(ARTIFACT_COUNT, this.startedArtifacts.size());
+        assertEquals(1, this.quasiFrameworks.size());
+        StubQuasiFramework quasiFramework = this.quasiFrameworks.get(0);
+        assertEquals(ARTIFACT_COUNT, quasiFramework.getBundles().size());
+        assertEquals(1, quasiFramework.resolveCount);
+        assertEquals(1, quasiFramework.commitCount);
+        assertTrue(quasiFramework.destroyed);
+        assertEquals(ARTIFACT_COUNT, this.completionPipelineCount.get());
+        assertEquals(0, this.mainPipelineCount.get());
+    }
+
+    @Test
+    public void bulkDeploymentStartsDependenciesFirst() throws DeploymentException {
+        this.dependents.put("bundle0", Collections.singletonList("bundle1"));
+        this.dependents.put("bundle1", Collections.singletonList("bundle2"));
+        this.dependents.put("bundle3", Collections.singletonList("bundle2"));
+
+        this.deployer.bulkDeploy(this.locations, new DeploymentOptions(false, false, true));
+
+        assertEquals(ARTIFACT_COUNT, this.startedArtifacts.size());
+        assertTrue(this.startedArtifacts.indexOf("bundle0") < this.startedArtifacts.indexOf("bundle1"));
+        assertTrue(this.startedArtifacts.indexOf("bundle1") < this.startedArtifacts.indexOf("bundle2"));
+        assertTrue(this.startedArtifacts.indexOf("bundle3") < this.startedArtifacts.indexOf("bundle2"));
+    }
+
+    @Test
+    public void bulkDeploymentStartsDependencyCycles() throws DeploymentException {
+        this.dependents.put("bundle0", Collections.singletonList("bundle1"));
+        this.dependents.put("bundle1", Collections.singletonList("bundle0"));
+
+        DeploymentIdentity[] deploymentIdentities = this.deployer.bulkDeploy(this.locations, new DeploymentOptions(false, false, true));
+
+        assertEquals(ARTIFACT_COUNT, deploymentIdentities.length);
+        assertEquals(ARTIFACT_COUNT, this.startedArtifacts.size());
+    }
+
+    @Test
+    public void combinedResolutionFailureFallsBackToIndividualDeployment() throws DeploymentException {
+        this.failResolution = true;
+
+        DeploymentIdentity[] deploymentIdentities = this.deployer.bulkDeploy(this.locations, new DeploymentOptions(false, false, true));
+
+        assertEquals(ARTIFACT_COUNT, deploymentIdentities.length);
+        assertEquals(ARTIFACT_COUNT, this.ram.getDeploymentIdentities().length);
+        assertEquals(ARTIFACT_COUNT, this.mainPipelineCount.get());
+        assertEquals(0, this.completionPipelineCount.get());
+        assertEquals(0, this.quasiFrameworks.get(0).commitCount);
+    }
+
+    @Test
+    public void failingArtifactDoesNotPreventBulkDeployment() throws DeploymentException {
+        this.unconstructableArtifact = "bundle5";
+
+        DeploymentIdentity[] deploymentIdentities = this.deployer.bulkDeploy(this.locations, new DeploymentOptions(false, false, true));
+
+        assertEquals(ARTIFACT_COUNT - 1, deploymentIdentities.length);
+        assertEquals(ARTIFACT_COUNT - 1, this.ram.getDeploymentIdentities().length);
+        assertEquals(1, this.quasiFrameworks.get(0).commitCount);
+    }
+
+    @Test
+    public void alreadyDeployedArtifactIsDeployedIndividually() throws DeploymentException {
+        this.deployer.deploy(this.locations.get(0), new DeploymentOptions(false, false, true));
+        assertEquals(1, this.mainPipelineCount.get());
+
+        DeploymentIdentity[] deploymentIdentities = this.deployer.bulkDeploy(this.locations, new DeploymentOptions(false, false, true));
+
+        assertEquals(ARTIFACT_COUNT, deploymentIdentities.length);
+        assertEquals(ARTIFACT_COUNT, this.ram.getDeploymentIdentities().length);
+        assertEquals(ARTIFACT_COUNT - 1, this.completionPipelineCount.get());
+    }
+
+    private PipelinedApplicationDeployer createDeployer() {
+        DeployerConfiguration deployerConfiguration = new DeployerConfiguration() {
+
+            public int getDeploymentTimeoutSeconds() {
+                return 60;
+            }
+
+            public PathReference getDeploymentPickupDirectory() {
+                return null;
+            }
+
+            public int getScanIntervalMillis() {
+                return 0;
+            }
+
+            public boolean isConcurrentStartEnabled() {
+                return true;
+            }
+
+            public boolean isPickupWatchServiceEnabled() {
+                return false;
+            }
+        };
+
+        DeployUriNormaliser normaliser = new DeployUriNormaliser() {
+
+            public URI normalise(URI uri) {
+                return uri;
+            }
+        };
+
+        DeploymentListener deploymentListener = new DeploymentListener() {
+
+            public void refreshed(URI sourceLocation) {
+            }
+
+            public void deployed(URI sourceLocation, DeploymentOptions deploymentOptions) {
+            }
+
+            public void undeployed(URI sourceLocation) {
+            }
+        };
+
+        ArtifactIdentityDeterminer artifactIdentityDeterminer = new ArtifactIdentityDeterminer() {
+
+            public ArtifactIdentity determineIdentity(File file, String scopeName) {
+                String name = file.getName();
+                return new ArtifactIdentity(BUNDLE_TYPE, name.substring(0, name.lastIndexOf('.')), Version.emptyVersion, scopeName);
+            }
+        };
+
+        InstallArtifactGraphInclosure installArtifactGraphInclosure = new InstallArtifactGraphInclosure() {
+
+            public GraphNode<InstallArtifact> constructGraphNode(ArtifactIdentity identity, File artifact, Map<String, String> properties,
+                String repositoryName) throws DeploymentException {
+                if (identity.getName().equals(unconstructableArtifact)) {
+                    throw new DeploymentException("cannot construct " + identity);
+                }
+                StubBundleInstallArtifact installArtifact = new StubBundleInstallArtifact(identity);
+                GraphNode<InstallArtifact> graphNode = dag.createRootNode(installArtifact);
+                installArtifact.setGraph(graphNode);
+                return graphNode;
+            }
+
+            public GraphNode<InstallArtifact> recoverInstallGraph(ArtifactIdentity identity, File location) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        InstallEnvironmentFactory installEnvironmentFactory = new InstallEnvironmentFactory() {
+
+            public InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact) {
+                StubQuasiFramework quasiFramework = new StubQuasiFramework();
+                quasiFrameworks.add(quasiFramework);
+                return new StubInstallEnvironment(quasiFramework, true);
+            }
+
+            public InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact, InstallEnvironment sharedInstallEnvironment) {
+                return new StubInstallEnvironment(sharedInstallEnvironment.getQuasiFramework(), false);
+            }
+        };
+
+        Pipeline mainPipeline = new StubPipeline() {
+
+            public void process(GraphNode<InstallArtifact> installGraph, InstallEnvironment installEnvironment) {
+                mainPipelineCount.incrementAndGet();
+            }
+        };
+
+        Pipeline installPipeline = new StubPipeline() {
+
+            public void process(GraphNode<InstallArtifact> installGraph, InstallEnvironment installEnvironment) throws DeploymentException {
+                StubBundleInstallArtifact installArtifact = (StubBundleInstallArtifact) installGraph.getValue();
+                try {
+                    installArtifact.setQuasiBundle(installEnvironment.getQuasiFramework().install(installArtifact.location, null));
+                } catch (BundleException e) {
+                    throw new DeploymentException("quasi install failed", e);
+                }
+            }
+        };
+
+        Pipeline installFailurePipeline = new StubPipeline() {
+
+            public void process(GraphNode<InstallArtifact> installGraph, InstallEnvironment installEnvironment) {
+            }
+        };
+
+        Pipeline completionPipeline = new StubPipeline() {
+
+            public void process(GraphNode<InstallArtifact> installGraph, InstallEnvironment installEnvironment) {
+                assertSame(quasiFrameworks.get(quasiFrameworks.size() - 1), installEnvironment.getQuasiFramework());
+                completionPipelineCount.incrementAndGet();
+            }
+        };
+
+        return new PipelinedApplicationDeployer(mainPipeline, installArtifactGraphInclosure, artifactIdentityDeterminer, installEnvironmentFactory,
+            this.ram, deploymentListener, new MockEventLogger(), normaliser, deployerConfiguration, new StubBundleContext(),
+            new BulkDeploymentPipelines(installPipeline, installFailurePipeline, completionPipeline));
+    }
+
+    private abstract static class StubPipeline implements Pipeline {
+
+        public Pipeline appendStage(PipelineStage stage) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final class StubBundleInstallArtifact extends AbstractInstallArtifact implements BundleInstallArtifact {
+
+        private final URI location;
+
+        private volatile QuasiBundle quasiBundle;
+
+        private StubBundleInstallArtifact(ArtifactIdentity identity) {
+            super(identity, new StubArtifactStorage(), new StubArtifactStateMonitor(), null, new MockEventLogger());
+            this.location = new File(deploymentDirectory.toFile(), identity.getName() + ".jar").toURI();
+        }
+
+        @Override
+        protected void doStart(AbortableSignal signal) throws DeploymentException {
+            startedArtifacts.add(getName());
+            signalSuccessfulCompletion(signal);
+        }
+
+        @Override
+        protected void doStop() throws DeploymentException {
+        }
+
+        @Override
+        protected void doUninstall() throws DeploymentException {
+        }
+
+        public BundleManifest getBundleManifest() {
+            return null;
+        }
+
+        public void setQuasiBundle(QuasiBundle quasiBundle) {
+            this.quasiBundle = quasiBundle;
+        }
+
+        public QuasiBundle getQuasiBundle() {
+            return this.quasiBundle;
+        }
+
+        public Bundle getBundle() {
+            return null;
+        }
+
+        public Map<String, String> getDeploymentProperties() {
+            return Collections.emptyMap();
+        }
+
+        public void deleteEntry(String targetPath) {
+        }
+
+        public void updateEntry(URI inputPath, String targetPath) {
+        }
+    }
+
+    private final class StubQuasiFramework implements QuasiFramework {
+
+        private final List<QuasiBundle> bundles = Collections.synchronizedList(new ArrayList<QuasiBundle>());
+
+        private volatile int resolveCount = 0;
+
+        private volatile int commitCount = 0;
+
+        private volatile boolean destroyed = false;
+
+        public QuasiBundle install(URI location, BundleManifest bundleManifest) {
+            String name = new File(location).getName();
+            QuasiBundle quasiBundle = new StubQuasiBundle(this, name.substring(0, name.lastIndexOf('.')), this.bundles.size());
+            this.bundles.add(quasiBundle);
+            return quasiBundle;
+        }
+
+        public List<QuasiBundle> getBundles() {
+            return new ArrayList<QuasiBundle>(this.bundles);
+        }
+
+        public QuasiBundle getBundle(long bundleId) {
+            for (QuasiBundle quasiBundle : getBundles()) {
+                if (quasiBundle.getBundleId() == bundleId) {
+                    return quasiBundle;
+                }
+            }
+            return null;
+        }
+
+        public Set<Region> getRegions() {
+            throw new UnsupportedOperationException();
+        }
+
+        public List<QuasiResolutionFailure> resolve() {
+            this.resolveCount++;
+            if (failResolution) {
+                final QuasiBundle unresolvedQuasiBundle = getBundles().get(0);
+                return Collections.<QuasiResolutionFailure> singletonList(new QuasiResolutionFailure() {
+
+                    public String getDescription() {
+                        return "missing dependency";
+                    }
+
+                    public QuasiBundle getUnresolvedQuasiBundle() {
+                        return unresolvedQuasiBundle;
+                    }
+                });
+            }
+            return Collections.emptyList();
+        }
+
+        public List<QuasiResolutionFailure> diagnose(long bundleId) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void commit() {
+            this.commitCount++;
+        }
+
+        public void destroy() {
+            this.destroyed = true;
+        }
+
+        private QuasiBundle getBundle(String symbolicName) {
+            for (QuasiBundle quasiBundle : getBundles()) {
+                if (quasiBundle.getSymbolicName().equals(symbolicName)) {
+                    return quasiBundle;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final class StubQuasiBundle implements QuasiBundle {
+
+        private final StubQuasiFramework quasiFramework;
+
+        private final String symbolicName;
+
+        private final long bundleId;
+
+        private StubQuasiBundle(StubQuasiFramework quasiFramework, String symbolicName, long bundleId) {
+            this.quasiFramework = quasiFramework;
+            this.symbolicName = symbolicName;
+            this.bundleId = bundleId;
+        }
+
+        public String getSymbolicName() {
+            return this.symbolicName;
+        }
+
+        public Version getVersion() {
+            return Version.emptyVersion;
+        }
+
+        public boolean isResolved() {
+            return !failResolution;
+        }
+
+        public void uninstall() {
+            this.quasiFramework.bundles.remove(this);
+        }
+
+        public Bundle getBundle() {
+            return null;
+        }
+
+        public long getBundleId() {
+            return this.bundleId;
+        }
+
+        public String getBundleLocation() {
+            return null;
+        }
+
+        public Region getRegion() {
+            return null;
+        }
+
+        public List<QuasiBundle> getFragments() {
+            return Collections.emptyList();
+        }
+
+        public List<QuasiBundle> getHosts() {
+            return Collections.emptyList();
+        }
+
+        public List<QuasiExportPackage> getExportPackages() {
+            return Collections.emptyList();
+        }
+
+        public List<QuasiImportPackage> getImportPackages() {
+            return Collections.emptyList();
+        }
+
+        public List<QuasiRequiredBundle> getRequiredBundles() {
+            return Collections.emptyList();
+        }
+
+        public List<QuasiBundle> getDependents() {
+            List<QuasiBundle> quasiBundles = new ArrayList<QuasiBundle>();
+            List<String> dependentNames = dependents.get(this.symbolicName);
+            if (dependentNames != null) {
+                for (String dependentName : dependentNames) {
+                    QuasiBundle dependent = this.quasiFramework.getBundle(dependentName);
+                    if (dependent != null) {
+                        quasiBundles.add(dependent);
+                    }
+                }
+            }
+            return quasiBundles;
+        }
+
+        public File getBundleFile() {
+            return null;
+        }
+
+        public void setProvisioning(Provisioning provisioning) {
+        }
+
+        public Provisioning getProvisioning() {
+            return Provisioning.AUTO;
+        }
+    }
+
+    private static final class StubArtifactStorage implements ArtifactStorage {
+
+        public void synchronize() {
+        }
+
+        public void synchronize(URI sourceUri) {
+        }
+
+        public void rollBack() {
+        }
+
+        public void delete() {
+        }
+
+        public ArtifactFS getArtifactFS() {
+            return null;
+        }
+    }
+
+    private static final class StubInstallEnvironment implements InstallEnvironment {
+
+        private final QuasiFramework quasiFramework;
+
+        private final boolean ownsQuasiFramework;
+
+        private StubInstallEnvironment(QuasiFramework quasiFramework, boolean ownsQuasiFramework) {
+            this.quasiFramework = quasiFramework;
+            this.ownsQuasiFramework = ownsQuasiFramework;
+        }
+
+        public Repository getRepository() {
+            return null;
+        }
+
+        public InstallLog getInstallLog() {
+            return null;
+        }
+
+        public QuasiFramework getQuasiFramework() {
+            return this.quasiFramework;
+        }
+
+        public void destroy() {
+            if (this.ownsQuasiFramework) {
+                this.quasiFramework.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.virgo.kernel.artifact.fs.ArtifactFS;
+import org.eclipse.virgo.kernel.deployer.core.internal.event.DeploymentListener;
+import org.eclipse.virgo.kernel.install.artifact.ArtifactIdentity;
+import org.eclipse.virgo.kernel.install.artifact.ArtifactIdentityDeterminer;
+import org.eclipse.virgo.kernel.install.artifact.ArtifactStorage;
+import org.eclipse.virgo.kernel.install.artifact.InstallArtifact;
+import org.eclipse.virgo.kernel.install.artifact.InstallArtifactGraphInclosure;
+import org.eclipse.virgo.kernel.install.artifact.internal.AbstractInstallArtifact;
+import org.eclipse.virgo.kernel.install.artifact.internal.StubArtifactStateMonitor;
+import org.eclipse.virgo.kernel.install.environment.InstallEnvironment;
+import org.eclipse.virgo.kernel.install.environment.InstallEnvironmentFactory;
+import org.eclipse.virgo.kernel.install.environment.InstallLog;
+import org.eclipse.virgo.kernel.install.pipeline.Pipeline;
+import org.eclipse.virgo.kernel.install.pipeline.stage.PipelineStage;
+import org.eclipse.virgo.kernel.osgi.quasi.QuasiFramework;
+import org.eclipse.virgo.medic.test.eventlog.MockEventLogger;
+import org.eclipse.virgo.nano.core.AbortableSignal;
+import org.eclipse.virgo.nano.deployer.api.core.DeployUriNormaliser;
+import org.eclipse.virgo.nano.deployer.api.core.DeployerConfiguration;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentException;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentIdentity;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentOptions;
+import org.eclipse.virgo.repository.Repository;
+import org.eclipse.virgo.test.stubs.framework.StubBundleContext;
+import org.eclipse.virgo.util.common.DirectedAcyclicGraph;
+import org.eclipse.virgo.util.common.GraphNode;
+import org.eclipse.virgo.util.common.ThreadSafeDirectedAcyclicGraph;
+import org.eclipse.virgo.util.io.PathReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+/**
+ * Stress tests which deploy a number of independent bundles from several threads using the serial and the concurrent
+ * start modes of {@link PipelinedApplicationDeployer}, checking which phases of the deployments overlap and comparing
+ * their wall-clock times.
+ */
+public class PipelinedApplicationDeployerConcurrencyTests {
+
+    private static final int ARTIFACT_COUNT = 32;
+
+    private static final int THREAD_COUNT = 8;
+
+    private static final long CONSTRUCT_MILLIS = 20;
+
+    private static final long PIPELINE_MILLIS = 2;
+
+    private static final long START_MILLIS = 20;
+
+    private final PathReference deploymentDirectory = new PathReference("build/concurrentDeployment");
+
+    private final List<URI> locations = new ArrayList<URI>();
+
+    private final AtomicInteger pipelineUsers = new AtomicInteger();
+
+    private final AtomicInteger maximumPipelineUsers = new AtomicInteger();
+
+    private final AtomicInteger constructors = new AtomicInteger();
+
+    private final AtomicInteger maximumConstructors = new AtomicInteger();
+
+    private final AtomicInteger starters = new AtomicInteger();
+
+    private final AtomicInteger maximumStarters = new AtomicInteger();
+
+    private final AtomicBoolean startsOverlapped = new AtomicBoolean();
+
+    private volatile CyclicBarrier constructionBarrier;
+
+    /*
+     * When set, the first two starts wait, for at most startOverlapMillis, for each other to be in progress.
+     */
+    private volatile CountDownLatch startOverlap;
+
+    private volatile long startOverlapMillis;
+
+    @Before
+    public void setUp() throws IOException {
+        this.deploymentDirectory.delete(true);
+        this.deploymentDirectory.createDirectory();
+        for (int i = 0; i < ARTIFACT_COUNT; i++) {
+            File artifact = new File(this.deploymentDirectory.toFile(), "bundle" + i + ".jar");
+            assertTrue(artifact.createNewFile());
+            this.locations.add(artifact.toURI());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.deploymentDirectory.delete(true);
+    }
+
+    @Test
+    public void serialDeployment() throws Exception {
+        StubRuntimeArtifactModel ram = new StubRuntimeArtifactModel();
+        deployAll(createDeployer(false, ram));
+
+        assertEquals(ARTIFACT_COUNT, ram.getDeploymentIdentities().length);
+        assertEquals(1, this.maximumPipelineUsers.get());
+        assertEquals(1, this.maximumConstructors.get());
+        assertEquals(1, this.maximumStarters.get());
+    }
+
+    @Test
+    public void serialDeploymentDoesNotOverlapStarts() throws Exception {
+        // the first start waits long enough for a second deployment to install and start, were it not held back
+        this.startOverlap = new CountDownLatch(2);
+        this.startOverlapMillis = 2000;
+        deployAll(createDeployer(false, new StubRuntimeArtifactModel()));
+
+        assertFalse(this.startsOverlapped.get());
+        assertEquals(1, this.maximumStarters.get());
+    }
+
+    @Test
+    public void concurrentStartOverlapsStarts() throws Exception {
+        this.startOverlap = new CountDownLatch(2);
+        this.startOverlapMillis = TimeUnit.SECONDS.toMillis(30);
+        StubRuntimeArtifactModel ram = new StubRuntimeArtifactModel();
+        deployAll(createDeployer(true, ram));
+
+        assertEquals(ARTIFACT_COUNT, ram.getDeploymentIdentities().length);
+        assertTrue(this.startsOverlapped.get());
+        assertTrue(this.maximumStarters.get() > 1);
+        assertEquals("install pipelines must not share the quasi framework", 1, this.maximumPipelineUsers.get());
+    }
+
+    @Test
+    public void concurrentStartIsFasterThanSerialDeployment() throws Exception {
+        long start = System.nanoTime();
+        deployAll(createDeployer(false, new StubRuntimeArtifactModel()));
+        long serialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        deployAll(createDeployer(true, new StubRuntimeArtifactModel()));
+        long concurrentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // serially every construction and start is waited for in turn; concurrently only the install pipelines are
+        assertTrue("concurrent start took " + concurrentMillis + "ms, serial deployment " + serialMillis + "ms", concurrentMillis < serialMillis);
+    }
+
+    @Test
+    public void concurrentStartConstructsUnrelatedArtifactsInParallel() throws Exception {
+        // every deployment must reach construction while another is also constructing, otherwise the barrier breaks
+        this.constructionBarrier = new CyclicBarrier(THREAD_COUNT);
+        deployAll(createDeployer(true, new StubRuntimeArtifactModel()));
+
+        assertEquals(THREAD_COUNT, this.maximumConstructors.get());
+    }
+
+    @Test
+    public void concurrentUndeployment() throws Exception {
+        StubRuntimeArtifactModel ram = new StubRuntimeArtifactModel();
+        final PipelinedApplicationDeployer deployer = createDeployer(true, ram);
+        deployAll(deployer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final DeploymentIdentity deploymentIdentity : deployer.getDeploymentIdentities()) {
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    public Void call() throws DeploymentException {
+                        deployer.undeploy(deploymentIdentity);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(0, ram.getDeploymentIdentities().length);
+    }
+
+    private void deployAll(final PipelinedApplicationDeployer deployer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<DeploymentIdentity>> futures = new ArrayList<Future<DeploymentIdentity>>();
+            for (final URI location : this.locations) {
+                futures.add(executor.submit(new Callable<DeploymentIdentity>() {
+
+                    public DeploymentIdentity call() throws DeploymentException {
+                        return deployer.deploy(location, new DeploymentOptions(false, false, true));
+                    }
+                }));
+            }
+            Set<DeploymentIdentity> deploymentIdentities = new HashSet<DeploymentIdentity>();
+            for (Future<DeploymentIdentity> future : futures) {
+                deploymentIdentities.add(future.get(60, TimeUnit.SECONDS));
+            }
+            assertEquals(ARTIFACT_COUNT, deploymentIdentities.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private PipelinedApplicationDeployer createDeployer(final boolean concurrent, StubRuntimeArtifactModel ram) {
+        DeployerConfiguration deployerConfiguration = new DeployerConfiguration() {
+
+            public int getDeploymentTimeoutSeconds() {
+                return 60;
+            }
+
+            public PathReference getDeploymentPickupDirectory() {
+                return null;
+            }
+
+            public int getScanIntervalMillis() {
+                return 0;
+            }
+
+            public boolean isConcurrentStartEnabled() {
+                return concurrent;
+            }
+
+            public boolean isPickupWatchServiceEnabled() {
+                return false;
+            }
+        };
+
+        DeployUriNormaliser normaliser = new DeployUriNormaliser() {
+
+            public URI normalise(URI uri) {
+                return uri;
+            }
+        };
+
+        DeploymentListener deploymentListener = new DeploymentListener() {
+
+            public void refreshed(URI sourceLocation) {
+            }
+
+            public void deployed(URI sourceLocation, DeploymentOptions deploymentOptions) {
+            }
+
+            public void undeployed(URI sourceLocation) {
+            }
+        };
+
+        ArtifactIdentityDeterminer artifactIdentityDeterminer = new ArtifactIdentityDeterminer() {
+
+            public ArtifactIdentity determineIdentity(File file, String scopeName) {
+                String name = file.getName();
+                return new ArtifactIdentity(BUNDLE_TYPE, name.substring(0, name.lastIndexOf('.')), Version.emptyVersion, scopeName);
+            }
+        };
+
+        final DirectedAcyclicGraph<InstallArtifact> dag = new ThreadSafeDirectedAcyclicGraph<InstallArtifact>();
+        InstallArtifactGraphInclosure installArtifactGraphInclosure = new InstallArtifactGraphInclosure() {
+
+            public GraphNode<InstallArtifact> constructGraphNode(ArtifactIdentity identity, File artifact, Map<String, String> properties,
+                String repositoryName) throws DeploymentException {
+                recordMaximum(constructors.incrementAndGet(), maximumConstructors);
+                try {
+                    CyclicBarrier barrier = constructionBarrier;
+                    if (barrier != null) {
+                        try {
+                            barrier.await(30, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            throw new DeploymentException("construction of " + identity + " did not overlap other constructions", e);
+                        }
+                    } else {
+                        pause(CONSTRUCT_MILLIS);
+                    }
+                } finally {
+                    constructors.decrementAndGet();
+                }
+                StubInstallArtifact installArtifact = new StubInstallArtifact(identity);
+                GraphNode<InstallArtifact> graphNode = dag.createRootNode(installArtifact);
+                installArtifact.setGraph(graphNode);
+                return graphNode;
+            }
+
+            public GraphNode<InstallArtifact> recoverInstallGraph(ArtifactIdentity identity, File location) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        InstallEnvironmentFactory installEnvironmentFactory = new InstallEnvironmentFactory() {
+
+            public InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact) {
+                return new StubInstallEnvironment();
+            }
+
+            public InstallEnvironment createInstallEnvironment(InstallArtifact installArtifact, InstallEnvironment sharedInstallEnvironment) {
+                return new StubInstallEnvironment();
+            }
+        };
+
+        Pipeline pipeline = new Pipeline() {
+
+            public void process(GraphNode<InstallArtifact> installGraph, InstallEnvironment installEnvironment) {
+                recordMaximum(pipelineUsers.incrementAndGet(), maximumPipelineUsers);
+                pause(PIPELINE_MILLIS);
+                pipelineUsers.decrementAndGet();
+            }
+
+            public Pipeline appendStage(PipelineStage stage) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        return new PipelinedApplicationDeployer(pipeline, installArtifactGraphInclosure, artifactIdentityDeterminer, installEnvironmentFactory, ram,
+            deploymentListener, new MockEventLogger(), normaliser, deployerConfiguration, new StubBundleContext(),
+            new BulkDeploymentPipelines(pipeline, pipeline, pipeline));
+    }
+
+    private static void recordMaximum(int value, AtomicInteger maximum) {
+        int current;
+        do {
+            current = maximum.get();
+        } while (value > current && !maximum.compareAndSet(current, value));
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class StubInstallArtifact extends AbstractInstallArtifact {
+
+        private StubInstallArtifact(ArtifactIdentity identity) {
+            super(identity, new StubArtifactStorage(), new StubArtifactStateMonitor(), null, new MockEventLogger());
+        }
+
+        @Override
+        protected void doStart(AbortableSignal signal) throws DeploymentException {
+            recordMaximum(starters.incrementAndGet(), maximumStarters);
+            try {
+                CountDownLatch overlap = startOverlap;
+                if (overlap != null && overlap.getCount() > 0) {
+                    overlap.countDown();
+                    try {
+                        if (overlap.await(startOverlapMillis, TimeUnit.MILLISECONDS)) {
+                            startsOverlapped.set(true);
+                        } else {
+                            // let the remaining starts through
+                            overlap.countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    pause(START_MILLIS);
+                }
+            } finally {
+                starters.decrementAndGet();
+            }
+            signalSuccessfulCompletion(signal);
+        }
+
+        @Override
+        protected void doStop() throws DeploymentException {
+        }
+
+        @Override
+        protected void doUninstall() throws DeploymentException {
+        }
+    }
+
+    private static final class StubArtifactStorage implements ArtifactStorage {
+
+        public void synchronize() {
+        }
+
+        public void synchronize(URI sourceUri) {
+        }
+
+        public void rollBack() {
+        }
+
+        public void delete() {
+        }
+
+        public ArtifactFS getArtifactFS() {
+            return null;
+        }
+    }
+
+    private static final class StubInstallEnvironment implements InstallEnvironment {
+
+        public Repository getRepository() {
+            return null;
+        }
+
+        public InstallLog getInstallLog() {
+            return null;
+        }
+
+        public QuasiFramework getQuasiFramework() {
+            return null;
+        }
+
+        public void destroy() {
+        }
+    }
+}
@@ -79,6 +79,7 @@ public class PipelinedApplicationDeployerTests {
         this.deployerConfiguration = createMock(DeployerConfiguration.class);
         this.installArtifact = createMock(InstallArtifact.class);
         expect(this.deployerConfiguration.getDeploymentTimeoutSeconds()).andReturn(5);
+        expect(this.deployerConfiguration.isConcurrentStartEnabled()).andReturn(false);
     }
 
     @After
@@ -91,7 +92,7 @@ public class PipelinedApplicationDeployerTests {
             this.normaliser, this.deployerConfiguration, this.installArtifact);
         this.pipelinedApplicationDeployer = new PipelinedApplicationDeployer(this.pipeline, this.installArtifactTreeInclosure,
             this.artifactIdentityDeterminer, this.installEnvironmentFactory, this.ram, this.deploymentListener, this.eventLogger, this.normaliser,
-            this.deployerConfiguration, this.stubBundleContext);
+            this.deployerConfiguration, this.stubBundleContext, new BulkDeploymentPipelines(this.pipeline, this.pipeline, this.pipeline));
     }
 
     private void verifyMocks() {
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.virgo.kernel.deployer.model.DuplicateLocationException;
+import org.eclipse.virgo.kernel.deployer.model.GCRoots;
+import org.eclipse.virgo.kernel.deployer.model.RuntimeArtifactModel;
+import org.eclipse.virgo.kernel.install.artifact.InstallArtifact;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentIdentity;
+
+/**
+ * A {@link RuntimeArtifactModel} for deployer tests which keeps artifacts in memory and is thread safe.
+ */
+final class StubRuntimeArtifactModel implements RuntimeArtifactModel, GCRoots {
+
+    private final Map<URI, InstallArtifact> artifactByUri = new ConcurrentHashMap<URI, InstallArtifact>();
+
+    private final Map<DeploymentIdentity, URI> uriByIdentity = new ConcurrentHashMap<DeploymentIdentity, URI>();
+
+    public synchronized DeploymentIdentity add(URI location, InstallArtifact installArtifact) throws DuplicateLocationException {
+        if (this.artifactByUri.containsKey(location)) {
+            throw new DuplicateLocationException(location.toString());
+        }
+        DeploymentIdentity deploymentIdentity = new StandardDeploymentIdentity(installArtifact.getType(), installArtifact.getName(),
+            installArtifact.getVersion().toString());
+        this.artifactByUri.put(location, installArtifact);
+        this.uriByIdentity.put(deploymentIdentity, location);
+        return deploymentIdentity;
+    }
+
+    public InstallArtifact get(DeploymentIdentity deploymentIdentity) {
+        URI location = this.uriByIdentity.get(deploymentIdentity);
+        return location == null ? null : this.artifactByUri.get(location);
+    }
+
+    public InstallArtifact get(URI location) {
+        return this.artifactByUri.get(location);
+    }
+
+    public URI getLocation(DeploymentIdentity deploymentIdentity) {
+        return this.uriByIdentity.get(deploymentIdentity);
+    }
+
+    public DeploymentIdentity[] getDeploymentIdentities() {
+        return this.uriByIdentity.keySet().toArray(new DeploymentIdentity[0]);
+    }
+
+    public synchronized InstallArtifact delete(DeploymentIdentity deploymentIdentity) {
+        URI location = this.uriByIdentity.remove(deploymentIdentity);
+        return location == null ? null : this.artifactByUri.remove(location);
+    }
+
+    public boolean isGCRoot(InstallArtifact installArtifact) {
+        return this.artifactByUri.containsValue(installArtifact);
+    }
+
+    public Iterator<InstallArtifact> iterator() {
+        return new ArrayList<InstallArtifact>(this.artifactByUri.values()).iterator();
+    }
+}
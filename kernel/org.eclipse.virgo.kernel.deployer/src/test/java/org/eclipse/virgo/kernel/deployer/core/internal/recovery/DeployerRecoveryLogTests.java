@@ -17,8 +17,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -106,4 +112,161 @@ public class DeployerRecoveryLogTests {
         }
         assertEquals(1, log.getRecoveryState().size());
     }
+
+    @Test
+    public void compaction() {
+        DeployerRecoveryLog log = new DeployerRecoveryLog(deployArea);
+        URI app1 = new File("app/one").toURI();
+        URI app2 = new File("app/two").toURI();
+        log.add(app2, new DeploymentOptions(false, true, false));
+        for (int i = 0; i < 10; i++) {
+            log.add(app1, new DeploymentOptions(true, true, true));
+            log.remove(app1);
+        }
+        long uncompactedLength = getJournal().length();
+
+        log.compact();
+        assertTrue(getJournal().length() < uncompactedLength);
+        assertFalse(new File(getJournal().getParentFile(), "deployed.compress").exists());
+
+        log.add(app1, new DeploymentOptions(true, true, true));
+
+        Map<URI, DeploymentOptions> recoveryState = new DeployerRecoveryLog(deployArea).getRecoveryState();
+        assertEquals(2, recoveryState.size());
+        assertTrue(recoveryState.get(app2).getDeployerOwned());
+        assertFalse(recoveryState.get(app2).getRecoverable());
+        assertTrue(recoveryState.containsKey(app1));
+    }
+
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        DeployerRecoveryLog log = new DeployerRecoveryLog(deployArea);
+        URI app1 = new File("app/one").toURI();
+        URI app2 = new File("app/two").toURI();
+        log.add(app1, new DeploymentOptions(true, true, true));
+        long completeLength = getJournal().length();
+        log.add(app2, new DeploymentOptions(true, true, true));
+        log.close();
+
+        truncateJournal(getJournal().length() - 3);
+
+        log = new DeployerRecoveryLog(deployArea);
+        Map<URI, DeploymentOptions> recoveryState = log.getRecoveryState();
+        assertEquals(1, recoveryState.size());
+        assertTrue(recoveryState.containsKey(app1));
+        assertEquals(completeLength, getJournal().length());
+
+        log.add(app2, new DeploymentOptions(true, true, true));
+        assertEquals(2, new DeployerRecoveryLog(deployArea).getRecoveryState().size());
+    }
+
+    @Test
+    public void partialWriteDoesNotHideLaterRecords() throws IOException {
+        DeployerRecoveryLog log = new DeployerRecoveryLog(deployArea);
+        URI app1 = new File("app/one").toURI();
+        URI app2 = new File("app/two").toURI();
+        URI app3 = new File("app/three").toURI();
+        log.add(app1, new DeploymentOptions(true, true, true));
+        log.close();
+
+        // a record whose write failed part way through
+        try (FileOutputStream out = new FileOutputStream(getJournal(), true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+        }
+
+        log.add(app2, new DeploymentOptions(true, true, true));
+        log.add(app3, new DeploymentOptions(false, false, false));
+
+        Map<URI, DeploymentOptions> recoveryState = new DeployerRecoveryLog(deployArea).getRecoveryState();
+        assertEquals(3, recoveryState.size());
+        assertTrue(recoveryState.containsKey(app2));
+        assertFalse(recoveryState.get(app3).getRecoverable());
+    }
+
+    @Test
+    public void corruptRecordIsTruncated() throws IOException {
+        DeployerRecoveryLog log = new DeployerRecoveryLog(deployArea);
+        URI app1 = new File("app/one").toURI();
+        log.add(app1, new DeploymentOptions(true, true, true));
+        long completeLength = getJournal().length();
+        log.add(new File("app/two").toURI(), new DeploymentOptions(true, true, true));
+        log.close();
+
+        try (RandomAccessFile journal = new RandomAccessFile(getJournal(), "rw")) {
+            journal.seek(journal.length() - 1);
+            journal.write('X');
+        }
+
+        Map<URI, DeploymentOptions> recoveryState = new DeployerRecoveryLog(deployArea).getRecoveryState();
+        assertEquals(1, recoveryState.size());
+        assertTrue(recoveryState.containsKey(app1));
+        assertEquals(completeLength, getJournal().length());
+    }
+
+    @Test
+    public void textFormatIsMigrated() throws IOException {
+        URI app1 = new File("app/one").toURI();
+        URI app2 = new File("app/two").toURI();
+        File journal = getJournal();
+        journal.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(journal)) {
+            out.write(("YNY" + app1 + ";NYN" + app2 + ";---" + app1 + ";YYY" + app1 + ";---" + app2 + ";").getBytes("UTF-8"));
+        }
+
+        DeployerRecoveryLog log = new DeployerRecoveryLog(deployArea);
+        Map<URI, DeploymentOptions> recoveryState = log.getRecoveryState();
+        assertEquals(1, recoveryState.size());
+        assertTrue(recoveryState.get(app1).getDeployerOwned());
+
+        log.add(app2, new DeploymentOptions(false, false, false));
+        recoveryState = new DeployerRecoveryLog(deployArea).getRecoveryState();
+        assertEquals(2, recoveryState.size());
+        assertFalse(recoveryState.get(app2).getRecoverable());
+    }
+
+    @Test
+    public void concurrentRecords() throws InterruptedException {
+        final DeployerRecoveryLog log = new DeployerRecoveryLog(deployArea);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int threadNumber = t;
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 20; i++) {
+                        URI app = new File("app/" + threadNumber + "/" + i).toURI();
+                        log.add(app, new DeploymentOptions(true, true, true));
+                        if (i % 2 == 1) {
+                            log.remove(app);
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80, log.getRecoveryState().size());
+        assertEquals(80, new DeployerRecoveryLog(deployArea).getRecoveryState().size());
+    }
+
+    private File getJournal() {
+        return new File(deployArea.toFile(), "recovery/deployed");
+    }
+
+    private void truncateJournal(long length) throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(getJournal(), "rw")) {
+            journal.setLength(length);
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal.recovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.virgo.kernel.deployer.core.internal.ApplicationRecoverer;
+import org.eclipse.virgo.kernel.deployer.management.StandardRecoveryStatistics;
+import org.eclipse.virgo.medic.test.eventlog.LoggedEvent;
+import org.eclipse.virgo.medic.test.eventlog.MockEventLogger;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentException;
+import org.eclipse.virgo.nano.deployer.api.core.DeploymentOptions;
+import org.eclipse.virgo.test.stubs.service.event.StubEventAdmin;
+import org.eclipse.virgo.util.io.PathReference;
+
+public class RecoveryAgentTests {
+
+    private final PathReference deployArea = new PathReference("build/recoveryAgent");
+
+    private final MockEventLogger eventLogger = new MockEventLogger();
+
+    private final StandardRecoveryStatistics recoveryStatistics = new StandardRecoveryStatistics();
+
+    private final URI one = new File("app/one").toURI();
+
+    private final URI two = new File("app/two").toURI();
+
+    private final URI three = new File("app/three").toURI();
+
+    private DeployerRecoveryLog recoveryLog;
+
+    @Before
+    public void setUp() {
+        this.deployArea.delete(true);
+        this.deployArea.createDirectory();
+        this.recoveryLog = new DeployerRecoveryLog(this.deployArea);
+        for (URI uri : new URI[] { this.one, this.two, this.three }) {
+            this.recoveryLog.add(uri, DeploymentOptions.DEFAULT_DEPLOYMENT_OPTIONS);
+        }
+    }
+
+    @Test
+    public void serialRecoveryPreservesLogOrder() {
+        RecordingRecoverer recoverer = new RecordingRecoverer(1);
+        createAgent(recoverer, null).recoverAll();
+
+        assertEquals(Arrays.asList(this.one, this.two, this.three), recoverer.getRecovered());
+        assertEquals(1, this.recoveryStatistics.getRecoveryThreads());
+        assertEquals(1, this.recoveryStatistics.getLayerCount());
+        assertEquals(3, this.recoveryStatistics.getArtifactRecoveryMillis().size());
+        assertTrue(this.recoveryStatistics.getTotalRecoveryMillis() >= 0);
+        assertTrue(this.eventLogger.isLogged("DE0201I", "DE0201I", "DE0201I", "DE0202I"));
+    }
+
+    @Test
+    public void parallelRecoveryRecoversIndependentArtifactsConcurrently() {
+        // each recovery waits for all three to have started, so this only completes if they run concurrently
+        RecordingRecoverer recoverer = new RecordingRecoverer(3);
+        createAgent(recoverer, "3").recoverAll();
+
+        assertEquals(3, recoverer.getRecovered().size());
+        assertEquals(3, this.recoveryStatistics.getRecoveryThreads());
+        assertEquals(1, this.recoveryStatistics.getLayerCount());
+        assertEquals(Collections.<String> emptyList(), this.recoveryStatistics.getFailedArtifacts());
+    }
+
+    @Test
+    public void recoveryIsSerialWhenTheRecovererDoesNotSupportConcurrentRecovery() {
+        RecordingRecoverer recoverer = new RecordingRecoverer(1);
+        recoverer.concurrentRecoverySupported = false;
+        createAgent(recoverer, "3").recoverAll();
+
+        assertEquals(Arrays.asList(this.one, this.two, this.three), recoverer.getRecovered());
+        assertEquals(1, this.recoveryStatistics.getRecoveryThreads());
+        assertEquals(1, this.recoveryStatistics.getLayerCount());
+    }
+
+    @Test
+    public void failedRecoveryIsRecorded() {
+        RecordingRecoverer recoverer = new RecordingRecoverer(1);
+        recoverer.fail(this.two);
+        createAgent(recoverer, null).recoverAll();
+
+        assertEquals(Collections.singletonList(this.two.toString()), this.recoveryStatistics.getFailedArtifacts());
+        assertEquals(3, this.recoveryStatistics.getArtifactRecoveryMillis().size());
+        assertTrue(this.eventLogger.isLogged("DE0201I", "DE0200E", "DE0201I", "DE0202I"));
+    }
+
+    @Test
+    public void unexpectedParallelRecoveryFailureIsLogged() {
+        RecordingRecoverer recoverer = new RecordingRecoverer(3);
+        recoverer.failUnexpectedly(this.two);
+        createAgent(recoverer, "3").recoverAll();
+
+        assertEquals(Collections.singletonList(this.two.toString()), this.recoveryStatistics.getFailedArtifacts());
+        List<String> codes = new ArrayList<String>();
+        for (LoggedEvent loggedEvent : this.eventLogger.getLoggedEvents()) {
+            codes.add(loggedEvent.getCode());
+        }
+        assertEquals(1, Collections.frequency(codes, "DE0200E"));
+        assertEquals(2, Collections.frequency(codes, "DE0201I"));
+    }
+
+    private RecoveryAgent createAgent(ApplicationRecoverer recoverer, String recoveryThreads) {
+        return new RecoveryAgent(recoverer, this.recoveryLog, this.eventLogger, new StubEventAdmin(), this.recoveryStatistics, recoveryThreads);
+    }
+
+    private static final class RecordingRecoverer implements ApplicationRecoverer {
+
+        private final List<URI> recovered = Collections.synchronizedList(new ArrayList<URI>());
+
+        private final CountDownLatch started;
+
+        private volatile URI failing;
+
+        private volatile URI failingUnexpectedly;
+
+        private volatile boolean concurrentRecoverySupported = true;
+
+        RecordingRecoverer(int concurrency) {
+            this.started = new CountDownLatch(concurrency);
+        }
+
+        public void recoverDeployment(URI location, DeploymentOptions options) throws DeploymentException {
+            this.started.countDown();
+            try {
+                if (!this.started.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Recoveries did not run concurrently");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.recovered.add(location);
+            if (location.equals(this.failing)) {
+                throw new DeploymentException("Recovery of " + location + " failed");
+            }
+            if (location.equals(this.failingUnexpectedly)) {
+                throw new IllegalStateException("Recovery of " + location + " failed unexpectedly");
+            }
+        }
+
+        public boolean isConcurrentRecoverySupported() {
+            return this.concurrentRecoverySupported;
+        }
+
+        void fail(URI location) {
+            this.failing = location;
+        }
+
+        void failUnexpectedly(URI location) {
+            this.failingUnexpectedly = location;
+        }
+
+        List<URI> getRecovered() {
+            return this.recovered;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.deployer.core.internal.recovery;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.virgo.util.io.PathReference;
+
+public class RecoveryLayersTests {
+
+    private final PathReference recoveryArea = new PathReference("build/recoveryLayers");
+
+    @Before
+    public void cleanup() {
+        this.recoveryArea.delete(true);
+        this.recoveryArea.createDirectory();
+    }
+
+    @Test
+    public void independentBundlesShareALayer() throws IOException {
+        URI a = bundleDirectory("a", "Export-Package", "p.a");
+        URI b = bundleDirectory("b", "Export-Package", "p.b");
+        URI missing = new File(this.recoveryArea.toFile(), "missing.jar").toURI();
+
+        assertEquals(layers(layer(a, b, missing)), RecoveryLayers.computeLayers(Arrays.asList(a, b, missing)));
+    }
+
+    @Test
+    public void dependentsFollowTheirProviders() throws IOException {
+        URI exporter = bundleDirectory("exporter", "Export-Package", "p");
+        URI importer = bundleDirectory("importer", "Import-Package", "p");
+        URI requirer = bundleJar("requirer", "Require-Bundle", "importer");
+        URI fragment = bundleDirectory("fragment", "Fragment-Host", "exporter");
+        URI independent = bundleDirectory("independent", "Import-Package", "q");
+
+        assertEquals(layers(layer(exporter, independent), layer(importer, fragment), layer(requirer)),
+            RecoveryLayers.computeLayers(Arrays.asList(exporter, importer, requirer, fragment, independent)));
+    }
+
+    @Test
+    public void laterProvidersAreNotDependedUpon() throws IOException {
+        URI importer = bundleDirectory("importer", "Import-Package", "p");
+        URI exporter = bundleDirectory("exporter", "Export-Package", "p");
+
+        assertEquals(layers(layer(importer, exporter)), RecoveryLayers.computeLayers(Arrays.asList(importer, exporter)));
+    }
+
+    @Test
+    public void artifactsWithoutBundleManifestsAreBarriers() throws IOException {
+        URI a = bundleDirectory("a", "Export-Package", "p.a");
+        File planFile = new File(this.recoveryArea.toFile(), "app.plan");
+        planFile.createNewFile();
+        URI plan = planFile.toURI();
+        URI b = bundleDirectory("b", "Export-Package", "p.b");
+        URI c = bundleDirectory("c", "Import-Package", "p.b");
+
+        assertEquals(layers(layer(a), layer(plan), layer(b), layer(c)), RecoveryLayers.computeLayers(Arrays.asList(a, plan, b, c)));
+    }
+
+    private URI bundleDirectory(String symbolicName, String header, String value) throws IOException {
+        File bundle = new File(this.recoveryArea.toFile(), symbolicName);
+        File metaInf = new File(bundle, "META-INF");
+        metaInf.mkdirs();
+        FileOutputStream out = new FileOutputStream(new File(metaInf, "MANIFEST.MF"));
+        try {
+            createManifest(symbolicName, header, value).write(out);
+        } finally {
+            out.close();
+        }
+        return bundle.toURI();
+    }
+
+    private URI bundleJar(String symbolicName, String header, String value) throws IOException {
+        File bundle = new File(this.recoveryArea.toFile(), symbolicName + ".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(bundle), createManifest(symbolicName, header, value));
+        out.close();
+        return bundle.toURI();
+    }
+
+    private static Manifest createManifest(String symbolicName, String header, String value) {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", symbolicName);
+        attributes.putValue(header, value);
+        return manifest;
+    }
+
+    private static List<URI> layer(URI... locations) {
+        return Arrays.asList(locations);
+    }
+
+    @SafeVarargs
+    private static List<List<URI>> layers(List<URI>... layers) {
+        return Arrays.asList(layers);
+    }
+}
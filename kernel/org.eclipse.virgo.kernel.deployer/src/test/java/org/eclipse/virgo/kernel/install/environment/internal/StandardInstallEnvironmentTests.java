@@ -12,6 +12,8 @@
 package org.eclipse.virgo.kernel.install.environment.internal;
 
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
@@ -40,4 +42,19 @@ public class StandardInstallEnvironmentTests {
         assertEquals(this.installLog, ie.getInstallLog());
     }
 
+    @Test
+    public void testDestroy() {
+        this.quasiFramework.destroy();
+        replay(this.quasiFramework);
+        new StandardInstallEnvironment(this.repository, this.installLog, this.quasiFramework).destroy();
+        verify(this.quasiFramework);
+    }
+
+    @Test
+    public void testDestroyWithSharedQuasiFramework() {
+        replay(this.quasiFramework);
+        new StandardInstallEnvironment(this.repository, this.installLog, this.quasiFramework, false).destroy();
+        verify(this.quasiFramework);
+    }
+
 }
@@ -11,10 +11,14 @@
 
 package org.eclipse.virgo.kernel.model.internal;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.equinox.region.Region;
 import org.eclipse.virgo.kernel.model.Artifact;
@@ -28,102 +32,225 @@ import org.slf4j.LoggerFactory;
  * Implementation of {@link RuntimeArtifactRepository} that notifies a collection of listeners that a change has
  * happened to this repository.
  * <p />
+ * Artifacts are indexed by type, name, version and region name so that lookups do not scan the repository.
+ * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
- * Threadsafe
+ * Threadsafe. Reads do not lock. Changes to artifacts with the same index key are serialized by one of a fixed set of
+ * stripes. Each change is recorded on its stripe while the stripe's lock is held and listeners are notified after the
+ * lock has been released, one change at a time and in the order the changes were made, so that listeners see the
+ * changes to any one artifact in order. A listener may call back into the repository: a change it makes is delivered by
+ * the thread that is already notifying the stripe once the current callback returns. Consequently a change made while
+ * another thread is notifying the same stripe may be delivered to listeners after the changing method has returned.
  * 
  * @see ArtifactRepositoryListener
  */
 public final class NotifyingRuntimeArtifactRepository implements RuntimeArtifactRepository {
 
+    private static final int LOCK_COUNT = 32;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final Object monitor = new Object();
+    private final Stripe[] stripes = new Stripe[LOCK_COUNT];
 
-    private final Set<Artifact> artifacts = new HashSet<Artifact>();
+    private final ConcurrentMap<ArtifactKey, Artifact> artifacts = new ConcurrentHashMap<ArtifactKey, Artifact>();
 
     private final List<ArtifactRepositoryListener> listeners;
 
     public NotifyingRuntimeArtifactRepository(ArtifactRepositoryListener... listeners) {
         this.listeners = Arrays.asList(listeners);
+        for (int i = 0; i < LOCK_COUNT; i++) {
+            this.stripes[i] = new Stripe();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean add(@NonNull Artifact artifact) {
-        synchronized (this.monitor) {
-            boolean result = this.artifacts.add(artifact);
+        ArtifactKey key = new ArtifactKey(artifact.getType(), artifact.getName(), artifact.getVersion(), artifact.getRegion());
+        Stripe stripe = getStripe(key);
+        boolean result;
+        synchronized (stripe) {
+            result = this.artifacts.putIfAbsent(key, artifact) == null;
             if (result) {
-                for (ArtifactRepositoryListener listener : listeners) {
-                    try {
-                        listener.added(artifact);
-                    } catch (Exception e) {
-                        logger.error(String.format("Exception calling added() on listener '%s'", listener.toString()), e);
-                    }
-                }
+                stripe.pendingChanges.add(new Change(artifact, true));
             }
-            return result;
         }
+        if (result) {
+            notifyListeners(stripe);
+        }
+        return result;
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean remove(@NonNull Artifact artifact) {
-        synchronized (this.monitor) {
-            boolean result = this.artifacts.remove(artifact);
-            if (result) {
-                for (ArtifactRepositoryListener listener : listeners) {
-                    try {
-                        listener.removed(artifact);
-                    } catch (Exception e) {
-                        logger.error(String.format("Exception calling removed() on listener '%s'", listener.toString()), e);
-                    }
-                }
-            }
-            return result;
+        ArtifactKey key = new ArtifactKey(artifact.getType(), artifact.getName(), artifact.getVersion(), artifact.getRegion());
+        Stripe stripe = getStripe(key);
+        boolean result;
+        synchronized (stripe) {
+            Artifact existing = this.artifacts.get(key);
+            result = existing != null && existing.equals(artifact) && remove(stripe, key, existing);
         }
+        if (result) {
+            notifyListeners(stripe);
+        }
+        return result;
     }
     
     /**
      * {@inheritDoc}
      */
     public boolean remove(@NonNull String type, @NonNull String name, @NonNull Version version, @NonNull Region region) {
-        synchronized (this.monitor) {
-            Artifact artifact = getArtifact(type, name, version, region);
-            if(artifact != null){
-                return remove(artifact);
-            } else {
-                return false;
-            }
+        ArtifactKey key = new ArtifactKey(type, name, version, region);
+        Stripe stripe = getStripe(key);
+        boolean result;
+        synchronized (stripe) {
+            Artifact existing = this.artifacts.get(key);
+            result = existing != null && remove(stripe, key, existing);
+        }
+        if (result) {
+            notifyListeners(stripe);
         }
+        return result;
     }
 
     /**
      * {@inheritDoc}
      */
     public Set<Artifact> getArtifacts() {
-        synchronized (this.monitor) {
-            return new HashSet<Artifact>(this.artifacts);
-        }
+        return new HashSet<Artifact>(this.artifacts.values());
     }
 
     /**
      * {@inheritDoc}
      */
     public Artifact getArtifact(@NonNull String type, @NonNull String name, @NonNull Version version, @NonNull Region region) {
-        synchronized (this.monitor) {
-            for (Artifact artifact : this.artifacts) {
-                if (artifact.getType().equals(type) && 
-                    artifact.getName().equals(name) && 
-                    artifact.getVersion().equals(version) &&
-                    artifact.getRegion().getName().equals(region.getName())){
-                    return artifact;
+        return this.artifacts.get(new ArtifactKey(type, name, version, region));
+    }
+
+    private boolean remove(Stripe stripe, ArtifactKey key, Artifact artifact) {
+        boolean result = this.artifacts.remove(key, artifact);
+        if (result) {
+            stripe.pendingChanges.add(new Change(artifact, false));
+        }
+        return result;
+    }
+
+    /**
+     * Delivers the stripe's pending changes to the listeners unless another thread is already doing so, in which case
+     * that thread delivers them. Listeners are always called without the stripe's lock held.
+     */
+    private void notifyListeners(Stripe stripe) {
+        while (true) {
+            Change change;
+            synchronized (stripe) {
+                if (stripe.notifying || stripe.pendingChanges.isEmpty()) {
+                    return;
+                }
+                stripe.notifying = true;
+                change = stripe.pendingChanges.remove();
+            }
+            try {
+                notifyListeners(change);
+            } finally {
+                synchronized (stripe) {
+                    stripe.notifying = false;
                 }
             }
-            return null;
+        }
+    }
+
+    private void notifyListeners(Change change) {
+        for (ArtifactRepositoryListener listener : listeners) {
+            try {
+                if (change.added) {
+                    listener.added(change.artifact);
+                } else {
+                    listener.removed(change.artifact);
+                }
+            } catch (Exception e) {
+                logger.error(String.format("Exception calling %s() on listener '%s'", change.added ? "added" : "removed", listener.toString()), e);
+            }
+        }
+    }
+
+    private Stripe getStripe(ArtifactKey key) {
+        return this.stripes[(key.hashCode() & Integer.MAX_VALUE) % LOCK_COUNT];
+    }
+
+    private static final class Stripe {
+
+        private final Queue<Change> pendingChanges = new ArrayDeque<Change>();
+
+        private boolean notifying;
+    }
+
+    private static final class Change {
+
+        private final Artifact artifact;
+
+        private final boolean added;
+
+        private Change(Artifact artifact, boolean added) {
+            this.artifact = artifact;
+            this.added = added;
+        }
+    }
+
+    private static final class ArtifactKey {
+
+        private final String type;
+
+        private final String name;
+
+        private final Version version;
+
+        private final String regionName;
+
+        private final int hashCode;
+
+        private ArtifactKey(String type, String name, Version version, Region region) {
+            this.type = type;
+            this.name = name;
+            this.version = version;
+            this.regionName = region == null ? null : region.getName();
+            this.hashCode = computeHashCode();
+        }
+
+        private int computeHashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((this.name == null) ? 0 : this.name.hashCode());
+            result = prime * result + ((this.regionName == null) ? 0 : this.regionName.hashCode());
+            result = prime * result + ((this.type == null) ? 0 : this.type.hashCode());
+            result = prime * result + ((this.version == null) ? 0 : this.version.hashCode());
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ArtifactKey)) {
+                return false;
+            }
+            ArtifactKey other = (ArtifactKey) obj;
+            return equal(this.type, other.type) && equal(this.name, other.name) && equal(this.version, other.version)
+                && equal(this.regionName, other.regionName);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
         }
     }
 
@@ -16,6 +16,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.eclipse.equinox.region.Region;
 import org.eclipse.equinox.region.RegionDigraph;
 import org.eclipse.virgo.kernel.model.Artifact;
 import org.eclipse.virgo.kernel.model.RuntimeArtifactRepository;
@@ -32,6 +33,9 @@ import org.eclipse.virgo.nano.serviceability.NonNull;
  * Implementation of {@link DependencyDeterminer} that returns the dependents of a {@link org.osgi.framework.Bundle
  * Bundle}. The dependents consist of any bundle that has been wired to as a result of <code>Import-Package</code>.
  * <p />
+ * Dependents are looked up in a {@link BundleWiringIndex}. A {@link QuasiFramework} is only created if the bundle is
+ * not indexed.
+ * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
@@ -46,11 +50,14 @@ public final class BundleDependencyDeterminer implements DependencyDeterminer {
 
     private final RegionDigraph regionDigraph;
 
+    private final BundleWiringIndex bundleWiringIndex;
+
     public BundleDependencyDeterminer(@NonNull QuasiFrameworkFactory quasiFrameworkFactory, @NonNull RuntimeArtifactRepository artifactRepository,
-        @NonNull RegionDigraph regionDigraph) {
+        @NonNull RegionDigraph regionDigraph, @NonNull BundleWiringIndex bundleWiringIndex) {
         this.quasiFrameworkFactory = quasiFrameworkFactory;
         this.artifactRepository = artifactRepository;
         this.regionDigraph = regionDigraph;
+        this.bundleWiringIndex = bundleWiringIndex;
     }
 
     /**
@@ -61,6 +68,11 @@ public final class BundleDependencyDeterminer implements DependencyDeterminer {
             return Collections.<Artifact> emptySet();
         }
 
+        Set<Artifact> indexedDependents = getIndexedDependents(rootArtifact);
+        if (indexedDependents != null) {
+            return indexedDependents;
+        }
+
         QuasiBundle rootBundle = getBundle(rootArtifact);
         if (rootBundle == null) {
             return Collections.<Artifact> emptySet();
@@ -103,6 +115,41 @@ public final class BundleDependencyDeterminer implements DependencyDeterminer {
         }
     }
 
+    private Set<Artifact> getIndexedDependents(Artifact rootArtifact) {
+        Set<Long> bundleIds = this.bundleWiringIndex.getBundleIds(rootArtifact.getName(), rootArtifact.getVersion());
+        if (bundleIds == null) {
+            return null;
+        }
+
+        for (Long bundleId : bundleIds) {
+            Region region = this.regionDigraph.getRegion(bundleId);
+            if (region != null && rootArtifact.getRegion().getName().equals(region.getName())) {
+                Set<Long> providers = this.bundleWiringIndex.getProviders(bundleId);
+                if (providers == null) {
+                    return null;
+                }
+                Set<Artifact> artifacts = new HashSet<Artifact>();
+                for (Long providerId : providers) {
+                    addDependentBundle(artifacts, providerId);
+                }
+                return artifacts;
+            }
+        }
+        return Collections.<Artifact> emptySet();
+    }
+
+    private void addDependentBundle(Set<Artifact> artifacts, long bundleId) {
+        BundleWiringIndex.BundleKey bundleKey = this.bundleWiringIndex.getBundleKey(bundleId);
+        Region region = this.regionDigraph.getRegion(bundleId);
+        if (bundleKey != null && region != null) {
+            Artifact artifact = this.artifactRepository.getArtifact(NativeBundleArtifact.TYPE, bundleKey.getSymbolicName(),
+                bundleKey.getVersion(), region);
+            if (artifact != null) {
+                artifacts.add(artifact);
+            }
+        }
+    }
+
     private QuasiBundle getBundle(Artifact artifact) {
         QuasiFramework framework = quasiFrameworkFactory.create();
         for (QuasiBundle bundle : framework.getBundles()) {
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.model.internal.bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.eclipse.virgo.nano.serviceability.NonNull;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the wiring of the bundles in the OSGi framework, maintained incrementally from {@link BundleEvent}s.
+ * <p />
+ * For each installed bundle, the index records the bundles which provide its imported packages, its required bundles
+ * and, for a fragment, its hosts. It also records the reverse relationship. A bundle's providers are recorded when the
+ * bundle is resolved and discarded when it is unresolved or uninstalled. A bundle is re-keyed by symbolic name and
+ * version when it is updated.
+ * <p />
+ * The index registers as a listener before it indexes the existing bundles, so no bundle installed in between is
+ * missed. Indexing a bundle is idempotent, so a bundle seen both by the initial scan and by an event is indexed once,
+ * and a bundle which was uninstalled before the scan reached it is not indexed.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Thread safe
+ *
+ */
+public final class BundleWiringIndex implements SynchronousBundleListener {
+
+    private static final String[] WIRING_NAMESPACES = { BundleRevision.PACKAGE_NAMESPACE, BundleRevision.BUNDLE_NAMESPACE,
+        BundleRevision.HOST_NAMESPACE };
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final BundleContext kernelBundleContext;
+
+    private final Object monitor = new Object();
+
+    private final Map<Long, Set<Long>> providers = new ConcurrentHashMap<Long, Set<Long>>();
+
+    private final Map<Long, Set<Long>> dependents = new ConcurrentHashMap<Long, Set<Long>>();
+
+    private final Map<BundleKey, Set<Long>> bundleIds = new ConcurrentHashMap<BundleKey, Set<Long>>();
+
+    private final Map<Long, BundleKey> bundleKeys = new ConcurrentHashMap<Long, BundleKey>();
+
+    private volatile boolean initialized = false;
+
+    public BundleWiringIndex(@NonNull BundleContext kernelBundleContext) {
+        this.kernelBundleContext = kernelBundleContext;
+    }
+
+    /**
+     * Registers the index as a {@link org.osgi.framework.BundleListener BundleListener} with the OSGi framework and
+     * indexes any existing {@link Bundle}s in all regions.
+     */
+    @PostConstruct
+    public void initialize() {
+        BundleContext systemBundleContext = getSystemBundleContext();
+        systemBundleContext.addBundleListener(this);
+        for (Bundle bundle : systemBundleContext.getBundles()) {
+            try {
+                processInstalled(bundle);
+                if ((bundle.getState() & (Bundle.INSTALLED | Bundle.UNINSTALLED)) == 0) {
+                    processResolved(bundle);
+                }
+            } catch (RuntimeException e) {
+                this.logger.error(String.format("Exception indexing the wiring of bundle '%s:%s'", bundle.getSymbolicName(),
+                    bundle.getVersion().toString()), e);
+            }
+        }
+        this.initialized = true;
+    }
+
+    /**
+     * Unregisters the index from the OSGi framework and discards its contents.
+     */
+    @PreDestroy
+    public void destroy() {
+        this.initialized = false;
+        getSystemBundleContext().removeBundleListener(this);
+        synchronized (this.monitor) {
+            this.providers.clear();
+            this.dependents.clear();
+            this.bundleIds.clear();
+            this.bundleKeys.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void bundleChanged(BundleEvent event) {
+        Bundle bundle = event.getBundle();
+        switch (event.getType()) {
+            case BundleEvent.INSTALLED:
+            case BundleEvent.UPDATED:
+                processInstalled(bundle);
+                break;
+            case BundleEvent.RESOLVED:
+                processResolved(bundle);
+                break;
+            case BundleEvent.UNRESOLVED:
+                processUnresolved(bundle);
+                break;
+            case BundleEvent.UNINSTALLED:
+                processUninstalled(bundle);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the ids of the installed bundles with the given symbolic name and version, or <code>null</code> if the
+     * index has not been initialized.
+     *
+     * @param symbolicName the bundle symbolic name
+     * @param version the bundle version
+     * @return the ids of the matching bundles or <code>null</code> if the index is not available
+     */
+    Set<Long> getBundleIds(String symbolicName, Version version) {
+        if (!this.initialized) {
+            return null;
+        }
+        Set<Long> ids = this.bundleIds.get(new BundleKey(symbolicName, version));
+        return ids == null ? Collections.<Long> emptySet() : ids;
+    }
+
+    /**
+     * Returns the ids of the bundles which the given bundle is wired to, or <code>null</code> if the bundle is not
+     * indexed.
+     *
+     * @param bundleId the id of the bundle
+     * @return the ids of the providing bundles or <code>null</code> if the bundle is unknown
+     */
+    Set<Long> getProviders(long bundleId) {
+        return this.initialized ? this.providers.get(bundleId) : null;
+    }
+
+    /**
+     * Returns the ids of the bundles which are wired to the given bundle, or <code>null</code> if the bundle is not
+     * indexed.
+     *
+     * @param bundleId the id of the bundle
+     * @return the ids of the dependent bundles or <code>null</code> if the bundle is unknown
+     */
+    Set<Long> getDependents(long bundleId) {
+        return this.initialized ? this.dependents.get(bundleId) : null;
+    }
+
+    /**
+     * Returns the symbolic name and version of the bundle with the given id, or <code>null</code> if the bundle is not
+     * indexed.
+     *
+     * @param bundleId the id of the bundle
+     * @return the bundle's key or <code>null</code> if the bundle is unknown
+     */
+    BundleKey getBundleKey(long bundleId) {
+        return this.initialized ? this.bundleKeys.get(bundleId) : null;
+    }
+
+    private void processInstalled(Bundle bundle) {
+        long bundleId = bundle.getBundleId();
+        BundleKey key = new BundleKey(bundle.getSymbolicName(), bundle.getVersion());
+        synchronized (this.monitor) {
+            if (bundle.getState() == Bundle.UNINSTALLED) {
+                // Uninstalled after the initial scan listed it, and its uninstalled event has been or will be processed
+                return;
+            }
+            BundleKey previousKey = this.bundleKeys.put(bundleId, key);
+            if (previousKey != null && !previousKey.equals(key)) {
+                // Updated to a different symbolic name or version
+                removeBundleId(previousKey, bundleId);
+            }
+            Set<Long> ids = new HashSet<Long>(getOrEmpty(this.bundleIds, key));
+            ids.add(bundleId);
+            this.bundleIds.put(key, Collections.unmodifiableSet(ids));
+
+            if (!this.providers.containsKey(bundleId)) {
+                this.providers.put(bundleId, Collections.<Long> emptySet());
+            }
+            if (!this.dependents.containsKey(bundleId)) {
+                this.dependents.put(bundleId, Collections.<Long> emptySet());
+            }
+        }
+    }
+
+    private void processResolved(Bundle bundle) {
+        long bundleId = bundle.getBundleId();
+        Set<Long> wiredProviders = getWiredProviders(bundle);
+        synchronized (this.monitor) {
+            if (!this.dependents.containsKey(bundleId)) {
+                // Resolved event for a bundle which has already been uninstalled
+                return;
+            }
+            removeProviders(bundleId);
+            this.providers.put(bundleId, Collections.unmodifiableSet(wiredProviders));
+            for (Long providerId : wiredProviders) {
+                Set<Long> providerDependents = new HashSet<Long>(getOrEmpty(this.dependents, providerId));
+                providerDependents.add(bundleId);
+                this.dependents.put(providerId, Collections.unmodifiableSet(providerDependents));
+            }
+        }
+    }
+
+    private void processUnresolved(Bundle bundle) {
+        long bundleId = bundle.getBundleId();
+        synchronized (this.monitor) {
+            if (this.providers.containsKey(bundleId)) {
+                removeProviders(bundleId);
+                this.providers.put(bundleId, Collections.<Long> emptySet());
+            }
+        }
+    }
+
+    private void processUninstalled(Bundle bundle) {
+        long bundleId = bundle.getBundleId();
+        synchronized (this.monitor) {
+            removeProviders(bundleId);
+            this.providers.remove(bundleId);
+            this.dependents.remove(bundleId);
+            BundleKey key = this.bundleKeys.remove(bundleId);
+            if (key != null) {
+                removeBundleId(key, bundleId);
+            }
+        }
+    }
+
+    private void removeBundleId(BundleKey key, long bundleId) {
+        Set<Long> ids = new HashSet<Long>(getOrEmpty(this.bundleIds, key));
+        ids.remove(bundleId);
+        if (ids.isEmpty()) {
+            this.bundleIds.remove(key);
+        } else {
+            this.bundleIds.put(key, Collections.unmodifiableSet(ids));
+        }
+    }
+
+    private void removeProviders(long bundleId) {
+        for (Long providerId : getOrEmpty(this.providers, bundleId)) {
+            Set<Long> providerDependents = this.dependents.get(providerId);
+            if (providerDependents != null) {
+                Set<Long> remainingDependents = new HashSet<Long>(providerDependents);
+                remainingDependents.remove(bundleId);
+                this.dependents.put(providerId, Collections.unmodifiableSet(remainingDependents));
+            }
+        }
+    }
+
+    private static Set<Long> getWiredProviders(Bundle bundle) {
+        Set<Long> wiredProviders = new HashSet<Long>();
+        BundleWiring wiring = bundle.adapt(BundleWiring.class);
+        if (wiring != null) {
+            for (String namespace : WIRING_NAMESPACES) {
+                for (BundleWire wire : getRequiredWires(wiring, namespace)) {
+                    long providerId = wire.getProviderWiring().getBundle().getBundleId();
+                    if (providerId != bundle.getBundleId()) {
+                        wiredProviders.add(providerId);
+                    }
+                }
+            }
+        }
+        return wiredProviders;
+    }
+
+    private static List<BundleWire> getRequiredWires(BundleWiring wiring, String namespace) {
+        List<BundleWire> wires = wiring.getRequiredWires(namespace);
+        return wires == null ? new ArrayList<BundleWire>() : wires;
+    }
+
+    private static <K> Set<Long> getOrEmpty(Map<K, Set<Long>> map, K key) {
+        Set<Long> value = map.get(key);
+        return value == null ? Collections.<Long> emptySet() : value;
+    }
+
+    private BundleContext getSystemBundleContext() {
+        return this.kernelBundleContext.getBundle(0L).getBundleContext();
+    }
+
+    static final class BundleKey {
+
+        private final String symbolicName;
+
+        private final Version version;
+
+        private BundleKey(String symbolicName, Version version) {
+            this.symbolicName = symbolicName;
+            this.version = version;
+        }
+
+        String getSymbolicName() {
+            return this.symbolicName;
+        }
+
+        Version getVersion() {
+            return this.version;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((this.symbolicName == null) ? 0 : this.symbolicName.hashCode());
+            result = prime * result + ((this.version == null) ? 0 : this.version.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BundleKey)) {
+                return false;
+            }
+            BundleKey other = (BundleKey) obj;
+            return equal(this.symbolicName, other.symbolicName) && equal(this.version, other.version);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -17,7 +17,13 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.equinox.region.Region;
 import org.eclipse.virgo.kernel.model.Artifact;
@@ -87,6 +93,87 @@ public class NotifyingArtifactRepositoryTests {
         assertEquals(stubArtifact2, retrieved);
     }
     
+    @Test
+    public void removeRequiresEqualArtifact() {
+        Region stubRegion = new StubRegion("test-region", null);
+        Artifact artifact = new StubCompositeArtifact("foo", "bar", stubRegion);
+        this.artifactRepository.add(artifact);
+        assertFalse(this.artifactRepository.remove(new StubCompositeArtifact("foo", "bar", stubRegion)));
+        assertTrue(this.artifactRepository.remove(artifact));
+        assertTrue(this.artifactRepository.getArtifacts().isEmpty());
+    }
+
+    @Test
+    public void readsDoNotWaitForListeners() throws Exception {
+        final CountDownLatch listenerEntered = new CountDownLatch(1);
+        final CountDownLatch listenerRelease = new CountDownLatch(1);
+        final NotifyingRuntimeArtifactRepository artifactRepository = new NotifyingRuntimeArtifactRepository(new ArtifactRepositoryListener() {
+
+            public void added(Artifact artifact) {
+                listenerEntered.countDown();
+                try {
+                    listenerRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            public void removed(Artifact artifact) {
+            }
+        });
+        final Artifact artifact = new StubCompositeArtifact();
+        Thread adder = new Thread(new Runnable() {
+
+            public void run() {
+                artifactRepository.add(artifact);
+            }
+        });
+        adder.start();
+        try {
+            assertTrue(listenerEntered.await(10, TimeUnit.SECONDS));
+            assertEquals(artifact, artifactRepository.getArtifact(artifact.getType(), artifact.getName(), artifact.getVersion(), artifact.getRegion()));
+            assertEquals(1, artifactRepository.getArtifacts().size());
+        } finally {
+            listenerRelease.countDown();
+            adder.join(10000);
+        }
+    }
+
+    @Test
+    public void listenerCanChangeTheRepositoryFromAnotherThread() throws Exception {
+        final List<String> events = new CopyOnWriteArrayList<String>();
+        final AtomicBoolean removerFinished = new AtomicBoolean();
+        final NotifyingRuntimeArtifactRepository[] holder = new NotifyingRuntimeArtifactRepository[1];
+        final NotifyingRuntimeArtifactRepository artifactRepository = new NotifyingRuntimeArtifactRepository(new ArtifactRepositoryListener() {
+
+            public void added(final Artifact artifact) {
+                events.add("added");
+                Thread remover = new Thread(new Runnable() {
+
+                    public void run() {
+                        holder[0].remove(artifact);
+                    }
+                });
+                remover.start();
+                try {
+                    remover.join(10000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                removerFinished.set(!remover.isAlive());
+            }
+
+            public void removed(Artifact artifact) {
+                events.add("removed");
+            }
+        });
+        holder[0] = artifactRepository;
+        assertTrue(artifactRepository.add(new StubCompositeArtifact()));
+        assertTrue(removerFinished.get());
+        assertEquals(Arrays.asList("added", "removed"), events);
+        assertTrue(artifactRepository.getArtifacts().isEmpty());
+    }
+
     private static class StubArtifactRepositoryListener implements ArtifactRepositoryListener {
 
         private final boolean throwException;
@@ -38,8 +38,13 @@ import org.eclipse.virgo.kernel.osgi.quasi.QuasiFrameworkFactory;
 import org.eclipse.virgo.kernel.osgi.quasi.QuasiImportPackage;
 import org.eclipse.virgo.kernel.osgi.quasi.QuasiRequiredBundle;
 import org.eclipse.virgo.nano.serviceability.Assert.FatalAssertionException;
+import org.eclipse.virgo.test.stubs.framework.StubBundle;
+import org.eclipse.virgo.test.stubs.framework.StubBundleContext;
 import org.junit.Before;
 import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Version;
 
 public class BundleDependencyDeterminerTests {
@@ -80,7 +85,10 @@ public class BundleDependencyDeterminerTests {
 
     private final Region regionB = createMock(Region.class);
 
-    private final BundleDependencyDeterminer determiner = new BundleDependencyDeterminer(quasiFrameworkFactory, artifactRepository, regionDigraph);
+    private final BundleWiringIndex bundleWiringIndex = new BundleWiringIndex(createMock(BundleContext.class));
+
+    private final BundleDependencyDeterminer determiner = new BundleDependencyDeterminer(quasiFrameworkFactory, artifactRepository, regionDigraph,
+        bundleWiringIndex);
 
     private QuasiBundle bundle1;
 
@@ -93,17 +101,22 @@ public class BundleDependencyDeterminerTests {
 
     @Test(expected = FatalAssertionException.class)
     public void nullFactory() {
-        new BundleDependencyDeterminer(null, artifactRepository, regionDigraph);
+        new BundleDependencyDeterminer(null, artifactRepository, regionDigraph, bundleWiringIndex);
     }
 
     @Test(expected = FatalAssertionException.class)
     public void nullRepository() {
-        new BundleDependencyDeterminer(quasiFrameworkFactory, null, regionDigraph);
+        new BundleDependencyDeterminer(quasiFrameworkFactory, null, regionDigraph, bundleWiringIndex);
     }
 
     @Test(expected = FatalAssertionException.class)
     public void nullRegionDigraph() {
-        new BundleDependencyDeterminer(quasiFrameworkFactory, artifactRepository, null);
+        new BundleDependencyDeterminer(quasiFrameworkFactory, artifactRepository, null, bundleWiringIndex);
+    }
+
+    @Test(expected = FatalAssertionException.class)
+    public void nullBundleWiringIndex() {
+        new BundleDependencyDeterminer(quasiFrameworkFactory, artifactRepository, regionDigraph, null);
     }
 
     @Test
@@ -277,6 +290,45 @@ public class BundleDependencyDeterminerTests {
             requiredArtifact);
     }
 
+    @Test
+    public void bundleWithImportFromIndex() {
+        StubBundle stubSystemBundle = new StubBundle(0L, "org.osgi.framework", new Version("0"), "loc");
+        StubBundleContext kernelBundleContext = new StubBundleContext();
+        kernelBundleContext.addInstalledBundle(stubSystemBundle);
+        BundleWiringIndex index = new BundleWiringIndex(kernelBundleContext);
+        index.initialize();
+
+        Bundle exporter = BundleWiringIndexTests.createMockBundle(EXPORTING_BUNDLE_ID, EXPORTING_BUNDLE_NAME);
+        Bundle importer = BundleWiringIndexTests.createMockBundle(BUNDLE_1_ID, TEST_BUNDLE_NAME);
+        BundleWiringIndexTests.expectWiring(importer, exporter);
+        replay(exporter, importer);
+
+        index.bundleChanged(new BundleEvent(BundleEvent.INSTALLED, exporter));
+        index.bundleChanged(new BundleEvent(BundleEvent.INSTALLED, importer));
+        index.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, importer));
+
+        expect(regionDigraph.getRegion(BUNDLE_1_ID)).andReturn(regionA);
+        expect(regionDigraph.getRegion(EXPORTING_BUNDLE_ID)).andReturn(regionB);
+        expect(regionA.getName()).andReturn(REGION_A_NAME).anyTimes();
+        expect(regionB.getName()).andReturn(REGION_B_NAME).anyTimes();
+
+        BundleArtifact bundleArtifact = createMockBundleArtifact(TEST_BUNDLE_NAME, TEST_BUNDLE_VERSION, regionA);
+        BundleArtifact exporterArtifact = createMockBundleArtifact(EXPORTING_BUNDLE_NAME, TEST_BUNDLE_VERSION, regionB);
+
+        this.artifactRepository.add(exporterArtifact);
+
+        replay(bundleArtifact, quasiFrameworkFactory, regionDigraph, regionA, regionB, exporterArtifact);
+
+        BundleDependencyDeterminer indexedDeterminer = new BundleDependencyDeterminer(quasiFrameworkFactory, artifactRepository, regionDigraph,
+            index);
+        Set<Artifact> dependents = indexedDeterminer.getDependents(bundleArtifact);
+        Set<Artifact> expected = new HashSet<Artifact>();
+        expected.add(exporterArtifact);
+        assertEquals(expected, dependents);
+
+        verify(bundleArtifact, quasiFrameworkFactory, regionDigraph, regionA, regionB, exporterArtifact);
+    }
+
     private List<QuasiBundle> getTestBundleSet() {
         List<QuasiBundle> bundles = new ArrayList<QuasiBundle>();
         bundles.add(bundle1);
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.model.internal.bundle;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.virgo.nano.serviceability.Assert.FatalAssertionException;
+import org.eclipse.virgo.test.stubs.framework.StubBundle;
+import org.eclipse.virgo.test.stubs.framework.StubBundleContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class BundleWiringIndexTests {
+
+    private static final long EXPORTER_ID = 1L;
+
+    private static final long IMPORTER_ID = 2L;
+
+    private final StubBundleContext kernelBundleContext = new StubBundleContext();
+
+    private final StubBundleContext systemBundleContext;
+
+    private final BundleWiringIndex index = new BundleWiringIndex(this.kernelBundleContext);
+
+    private Bundle exporter;
+
+    private Bundle importer;
+
+    {
+        StubBundle stubSystemBundle = new StubBundle(0L, "org.osgi.framework", new Version("0"), "loc");
+        this.systemBundleContext = (StubBundleContext) stubSystemBundle.getBundleContext();
+        this.kernelBundleContext.addInstalledBundle(stubSystemBundle);
+    }
+
+    @Before
+    public void setUp() {
+        this.exporter = createMockBundle(EXPORTER_ID, "exporter");
+        this.importer = createMockBundle(IMPORTER_ID, "importer");
+        expectWiring(this.exporter);
+        expectWiring(this.importer, this.exporter);
+        replay(this.exporter, this.importer);
+    }
+
+    @Test(expected = FatalAssertionException.class)
+    public void nullKernelBundleContext() {
+        new BundleWiringIndex(null);
+    }
+
+    @Test
+    public void initialize() {
+        StubBundle bundle = new StubBundle(5L, "existing", Version.emptyVersion, "loc");
+        this.systemBundleContext.addInstalledBundle(bundle);
+
+        assertEquals(0, this.systemBundleContext.getBundleListeners().size());
+        this.index.initialize();
+        assertEquals(1, this.systemBundleContext.getBundleListeners().size());
+        assertEquals(Collections.singleton(5L), this.index.getBundleIds("existing", Version.emptyVersion));
+        assertEquals(Collections.<Long> emptySet(), this.index.getProviders(5L));
+    }
+
+    @Test
+    public void destroy() {
+        this.index.initialize();
+        this.index.destroy();
+        assertEquals(0, this.systemBundleContext.getBundleListeners().size());
+        assertNull(this.index.getProviders(EXPORTER_ID));
+    }
+
+    @Test
+    public void notInitialized() {
+        installAndResolve();
+        assertNull(this.index.getBundleIds("importer", Version.emptyVersion));
+        assertNull(this.index.getProviders(IMPORTER_ID));
+    }
+
+    @Test
+    public void resolved() {
+        this.index.initialize();
+        installAndResolve();
+
+        assertEquals(Collections.singleton(IMPORTER_ID), this.index.getBundleIds("importer", Version.emptyVersion));
+        assertEquals(Collections.singleton(EXPORTER_ID), this.index.getProviders(IMPORTER_ID));
+        assertEquals(Collections.singleton(IMPORTER_ID), this.index.getDependents(EXPORTER_ID));
+        assertEquals(Collections.<Long> emptySet(), this.index.getProviders(EXPORTER_ID));
+        assertEquals("exporter", this.index.getBundleKey(EXPORTER_ID).getSymbolicName());
+    }
+
+    @Test
+    public void unresolved() {
+        this.index.initialize();
+        installAndResolve();
+        this.index.bundleChanged(new BundleEvent(BundleEvent.UNRESOLVED, this.importer));
+
+        assertEquals(Collections.<Long> emptySet(), this.index.getProviders(IMPORTER_ID));
+        assertEquals(Collections.<Long> emptySet(), this.index.getDependents(EXPORTER_ID));
+    }
+
+    @Test
+    public void uninstalled() {
+        this.index.initialize();
+        installAndResolve();
+        this.index.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, this.importer));
+
+        assertNull(this.index.getProviders(IMPORTER_ID));
+        assertNull(this.index.getBundleKey(IMPORTER_ID));
+        assertEquals(Collections.<Long> emptySet(), this.index.getBundleIds("importer", Version.emptyVersion));
+        assertEquals(Collections.<Long> emptySet(), this.index.getDependents(EXPORTER_ID));
+    }
+
+    @Test
+    public void updated() {
+        this.index.initialize();
+        StubBundle bundle = new StubBundle(7L, "before", Version.emptyVersion, "loc");
+        this.index.bundleChanged(new BundleEvent(BundleEvent.INSTALLED, bundle));
+        StubBundle updatedBundle = new StubBundle(7L, "after", new Version("2"), "loc");
+        this.index.bundleChanged(new BundleEvent(BundleEvent.UPDATED, updatedBundle));
+
+        assertEquals(Collections.<Long> emptySet(), this.index.getBundleIds("before", Version.emptyVersion));
+        assertEquals(Collections.singleton(7L), this.index.getBundleIds("after", new Version("2")));
+        assertEquals("after", this.index.getBundleKey(7L).getSymbolicName());
+
+        this.index.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, updatedBundle));
+        assertEquals(Collections.<Long> emptySet(), this.index.getBundleIds("after", new Version("2")));
+    }
+
+    @Test
+    public void bundleInstalledDuringInitializationIsIndexedOnce() {
+        StubBundle bundle = new StubBundle(8L, "racing", Version.emptyVersion, "loc");
+        this.systemBundleContext.addInstalledBundle(bundle);
+        this.index.initialize();
+        // the installed event for a bundle which the initial scan also found
+        this.index.bundleChanged(new BundleEvent(BundleEvent.INSTALLED, bundle));
+
+        assertEquals(Collections.singleton(8L), this.index.getBundleIds("racing", Version.emptyVersion));
+    }
+
+    @Test
+    public void bundleUninstalledBeforeInitialScanIsNotIndexed() {
+        StubBundle bundle = new StubBundle(9L, "uninstalled", Version.emptyVersion, "loc");
+        bundle.setState(Bundle.UNINSTALLED);
+        this.systemBundleContext.addInstalledBundle(bundle);
+        this.index.initialize();
+
+        assertEquals(Collections.<Long> emptySet(), this.index.getBundleIds("uninstalled", Version.emptyVersion));
+        assertNull(this.index.getBundleKey(9L));
+    }
+
+    private void installAndResolve() {
+        this.index.bundleChanged(new BundleEvent(BundleEvent.INSTALLED, this.exporter));
+        this.index.bundleChanged(new BundleEvent(BundleEvent.INSTALLED, this.importer));
+        this.index.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, this.exporter));
+        this.index.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, this.importer));
+    }
+
+    static Bundle createMockBundle(long bundleId, String symbolicName) {
+        Bundle bundle = createMock(Bundle.class);
+        expect(bundle.getBundleId()).andReturn(bundleId).anyTimes();
+        expect(bundle.getSymbolicName()).andReturn(symbolicName).anyTimes();
+        expect(bundle.getVersion()).andReturn(Version.emptyVersion).anyTimes();
+        expect(bundle.getState()).andReturn(Bundle.RESOLVED).anyTimes();
+        return bundle;
+    }
+
+    static void expectWiring(Bundle bundle, Bundle... providers) {
+        BundleWiring wiring = createMock(BundleWiring.class);
+        List<BundleWire> packageWires = new ArrayList<BundleWire>();
+        Set<Object> mocks = new HashSet<Object>();
+        for (Bundle provider : providers) {
+            BundleWire wire = createMock(BundleWire.class);
+            BundleWiring providerWiring = createMock(BundleWiring.class);
+            expect(wire.getProviderWiring()).andReturn(providerWiring).anyTimes();
+            expect(providerWiring.getBundle()).andReturn(provider).anyTimes();
+            packageWires.add(wire);
+            mocks.add(wire);
+            mocks.add(providerWiring);
+        }
+        expect(wiring.getRequiredWires(BundleRevision.PACKAGE_NAMESPACE)).andReturn(packageWires).anyTimes();
+        expect(wiring.getRequiredWires(BundleRevision.BUNDLE_NAMESPACE)).andReturn(new ArrayList<BundleWire>()).anyTimes();
+        expect(wiring.getRequiredWires(BundleRevision.HOST_NAMESPACE)).andReturn(new ArrayList<BundleWire>()).anyTimes();
+        expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+        mocks.add(wiring);
+        replay(mocks.toArray());
+    }
+}
@@ -83,6 +83,13 @@ public class EmptyRepository implements Repository {
             return this;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        public Query addVersionRangeFilter(String name, String value, VersionRange versionRange) {
+            return this;
+        }
+
         /**
          * {@inheritDoc}
          */
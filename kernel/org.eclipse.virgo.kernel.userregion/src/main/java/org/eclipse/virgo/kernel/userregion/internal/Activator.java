@@ -44,6 +44,7 @@ import org.eclipse.virgo.kernel.userregion.internal.equinox.StandardPackageAdmin
 import org.eclipse.virgo.kernel.userregion.internal.equinox.TransformedManifestProvidingBundleFileWrapper;
 import org.eclipse.virgo.kernel.userregion.internal.importexpansion.ImportExpansionHandler;
 import org.eclipse.virgo.kernel.userregion.internal.management.StateDumpMXBeanExporter;
+import org.eclipse.virgo.kernel.userregion.internal.management.StateSnapshotMXBeanExporter;
 import org.eclipse.virgo.kernel.userregion.internal.quasi.ResolutionFailureDetective;
 import org.eclipse.virgo.kernel.userregion.internal.quasi.StandardQuasiFrameworkFactory;
 import org.eclipse.virgo.kernel.userregion.internal.quasi.StandardResolutionFailureDetective;
@@ -91,6 +92,8 @@ public class Activator implements BundleActivator {
     private volatile EquinoxHookRegistrar hookRegistrar;
 
     private StateDumpMXBeanExporter stateDumpMBeanExorter;
+
+    private StateSnapshotMXBeanExporter stateSnapshotMBeanExporter;
     
     private ConsoleConfigurationConvertor consoleConfigurationConvertor = null;
 
@@ -118,8 +121,8 @@ public class Activator implements BundleActivator {
         this.registrationTracker.track(context.registerService(OsgiFramework.class.getName(), osgiFramework, null));
 
         DumpExtractor dumpExtractor = new StandardDumpExtractor(workArea);
-        QuasiFrameworkFactory quasiFrameworkFactory = createQuasiFrameworkFactory(context, rfd, repository, bundleTransformerHandler, regionDigraph,
-            dumpExtractor);
+        StandardQuasiFrameworkFactory quasiFrameworkFactory = createQuasiFrameworkFactory(context, rfd, repository, bundleTransformerHandler,
+            regionDigraph, dumpExtractor);
         this.registrationTracker.track(context.registerService(QuasiFrameworkFactory.class.getName(), quasiFrameworkFactory, null));
 
         EquinoxHookRegistrar hookRegistrar = createHookRegistrar(context, packageAdmin, bundleTransformerHandler);
@@ -140,6 +143,7 @@ public class Activator implements BundleActivator {
         context.registerService(ConfigurationDeployer.class, new UserRegionConfigurationDeployer(context), null);
         initializeConsoleConfigurationConvertor(context);
         this.stateDumpMBeanExorter = new StateDumpMXBeanExporter(quasiFrameworkFactory);
+        this.stateSnapshotMBeanExporter = new StateSnapshotMXBeanExporter(quasiFrameworkFactory);
     }
 
     /**
@@ -174,7 +178,7 @@ public class Activator implements BundleActivator {
         return new EquinoxOsgiFramework(context, bundleTransformerHandler);
     }
 
-    private QuasiFrameworkFactory createQuasiFrameworkFactory(BundleContext bundleContext, ResolutionFailureDetective detective,
+    private StandardQuasiFrameworkFactory createQuasiFrameworkFactory(BundleContext bundleContext, ResolutionFailureDetective detective,
         Repository repository, TransformedManifestProvidingBundleFileWrapper bundleTransformerHandler, RegionDigraph regionDigraph,
         DumpExtractor dumpExtractor) {
         return new StandardQuasiFrameworkFactory(bundleContext, detective, repository, bundleTransformerHandler, regionDigraph, dumpExtractor);
@@ -244,6 +248,12 @@ public class Activator implements BundleActivator {
             this.stateDumpMBeanExorter = null;
         }
 
+        StateSnapshotMXBeanExporter localStateSnapshotMBeanExporter = this.stateSnapshotMBeanExporter;
+        if (localStateSnapshotMBeanExporter != null) {
+            localStateSnapshotMBeanExporter.close();
+            this.stateSnapshotMBeanExporter = null;
+        }
+
         EquinoxHookRegistrar hookRegistrar = this.hookRegistrar;
         if (hookRegistrar != null) {
             hookRegistrar.destroy();
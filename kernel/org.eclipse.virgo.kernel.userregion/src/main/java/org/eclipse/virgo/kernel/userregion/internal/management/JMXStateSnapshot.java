@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2012 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+package org.eclipse.virgo.kernel.userregion.internal.management;
+
+import org.eclipse.virgo.kernel.userregion.internal.quasi.StandardQuasiFrameworkFactory;
+
+/**
+ * 
+ * MXBean implementation that reports the state snapshot statistics of a {@link StandardQuasiFrameworkFactory}
+ * 
+ * This class is thread safe
+ *
+ */
+final class JMXStateSnapshot implements StateSnapshotMXBean {
+
+	private final StandardQuasiFrameworkFactory quasiFrameworkFactory;
+
+	JMXStateSnapshot(StandardQuasiFrameworkFactory quasiFrameworkFactory) {
+		this.quasiFrameworkFactory = quasiFrameworkFactory;
+	}
+
+	@Override
+	public long getHitCount() {
+		return this.quasiFrameworkFactory.getStateSnapshotHitCount();
+	}
+
+	@Override
+	public long getRebuildCount() {
+		return this.quasiFrameworkFactory.getStateSnapshotRebuildCount();
+	}
+
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2012 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+package org.eclipse.virgo.kernel.userregion.internal.management;
+
+import javax.management.MXBean;
+
+/**
+ * 
+ * Reports how often quasi frameworks were created from the cached snapshot of the OSGi system state.
+ * 
+ * Implementations should be thread safe
+ *
+ */
+@MXBean
+public interface StateSnapshotMXBean {
+
+	/**
+	 * The number of quasi frameworks whose state was copied from an existing snapshot
+	 * 
+	 * @return the snapshot hit count
+	 */
+	public long getHitCount();
+
+	/**
+	 * The number of times the snapshot was rebuilt because the system state had changed
+	 * 
+	 * @return the snapshot rebuild count
+	 */
+	public long getRebuildCount();
+
+}
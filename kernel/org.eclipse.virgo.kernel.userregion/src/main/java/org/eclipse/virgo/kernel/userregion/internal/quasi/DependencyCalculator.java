@@ -47,7 +47,6 @@ import org.eclipse.virgo.kernel.osgi.framework.UnableToSatisfyDependenciesExcept
 import org.eclipse.virgo.kernel.userregion.internal.quasi.ResolutionFailureDetective.ResolverErrorsHolder;
 import org.eclipse.virgo.medic.dump.DumpGenerator;
 import org.eclipse.virgo.repository.ArtifactDescriptor;
-import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.Query;
 import org.eclipse.virgo.repository.Repository;
 import org.osgi.framework.BundleContext;
@@ -314,14 +313,15 @@ public final class DependencyCalculator {
         throws BundleException {
         VersionRange packageVersionRange = constraint.getVersionRange();
         Query query = this.repository.createQuery("type", BundleBridge.BRIDGE_TYPE);
-        boolean loosePackageVersionRange = false;
         if (packageVersionRange != null && packageVersionRange.getMaximum().equals(packageVersionRange.getMinimum())) {
             Map<String, Set<String>> properties = new HashMap<String, Set<String>>();
             properties.put("version", new HashSet<String>(Arrays.asList(packageVersionRange.getMaximum().toString())));
             query.addFilter("Export-Package", constraint.getName(), properties);
+        } else if (packageVersionRange != null) {
+            query.addVersionRangeFilter("Export-Package", constraint.getName(), new org.eclipse.virgo.util.osgi.manifest.VersionRange(
+                packageVersionRange.toString()));
         } else {
             query.addFilter("Export-Package", constraint.getName());
-            loosePackageVersionRange = packageVersionRange != null;
         }
 
         String bundleSymbolicName = constraint.getBundleSymbolicName();
@@ -340,26 +340,12 @@ public final class DependencyCalculator {
         Set<? extends ArtifactDescriptor> packageExportingArtefacts = query.run();
 
         for (ArtifactDescriptor packageExportingArtefact : packageExportingArtefacts) {
-            if ((!loosePackageVersionRange || packageVersionInRange(packageExportingArtefact, packageVersionRange, constraint.getName()))
-                && (!looseBundleVersionRange || bundleVersionInRange(packageExportingArtefact, bundleVersionRange))) {
+            if (!looseBundleVersionRange || bundleVersionInRange(packageExportingArtefact, bundleVersionRange)) {
                 addBundle(packageExportingArtefact, state, constraintSatisfiers);
             }
         }
     }
 
-    private boolean packageVersionInRange(ArtifactDescriptor packageExportingArtefact, VersionRange packageVersionRange, String packageName) {
-        for (Attribute attribute : packageExportingArtefact.getAttribute("Export-Package")) {
-            if (attribute.getValue().equals(packageName)) {
-                Set<String> versions = attribute.getProperties().get("version");
-                Version version = new org.osgi.framework.Version(versions == null || versions.isEmpty() ? "0" : versions.iterator().next());
-                if (packageVersionRange.isIncluded(version)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private boolean bundleVersionInRange(ArtifactDescriptor packageExportingArtefact, VersionRange bundleVersionRange) {
         return bundleVersionRange.isIncluded(packageExportingArtefact.getVersion());
     }
@@ -11,8 +11,6 @@
 
 package org.eclipse.virgo.kernel.userregion.internal.quasi;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -66,6 +64,8 @@ public final class StandardQuasiFrameworkFactory implements QuasiFrameworkFactor
 
     private final DumpExtractor dumpExtractor;
 
+    private final StateSnapshotCache stateSnapshotCache;
+
     public StandardQuasiFrameworkFactory(BundleContext bundleContext, ResolutionFailureDetective detective, Repository repository,
         TransformedManifestProvidingBundleFileWrapper bundleTransformationHandler, RegionDigraph regionDigraph, DumpExtractor dumpExtractor) {
         this.bundleContext = bundleContext;
@@ -77,6 +77,7 @@ public final class StandardQuasiFrameworkFactory implements QuasiFrameworkFactor
         this.bundleTransformationHandler = bundleTransformationHandler;
         this.regionDigraph = regionDigraph;
         this.dumpExtractor = dumpExtractor;
+        this.stateSnapshotCache = new StateSnapshotCache(this.platformAdmin);
     }
 
     /**
@@ -113,28 +114,26 @@ public final class StandardQuasiFrameworkFactory implements QuasiFrameworkFactor
         return digraph;
     }
 
-    @SuppressWarnings("deprecation")
     private State createState() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        State state;
-
-        try {
-            this.platformAdmin.getFactory().writeState(this.stateManager.getSystemState(), baos);
-            state = this.platformAdmin.getFactory().readState(new ByteArrayInputStream(baos.toByteArray()));
-        } catch (IOException ioe) {
-            throw new RuntimeException("Failed to create a copy of the OSGi state", ioe);
-        }
-
-        if (state.getResolver() == null) {
-            state.setResolver(this.platformAdmin.createResolver());
-        }
+        return this.stateSnapshotCache.fork(this.stateManager.getSystemState());
+    }
 
-        if (!state.isResolved()) {
-            state.resolve(true);
-        }
+    /**
+     * Returns the number of quasi frameworks whose state was copied from an existing snapshot of the OSGi system state.
+     * 
+     * @return the snapshot hit count
+     */
+    public long getStateSnapshotHitCount() {
+        return this.stateSnapshotCache.getHitCount();
+    }
 
-        return state;
+    /**
+     * Returns the number of times the snapshot of the OSGi system state was rebuilt because the system state changed.
+     * 
+     * @return the snapshot rebuild count
+     */
+    public long getStateSnapshotRebuildCount() {
+        return this.stateSnapshotCache.getRebuildCount();
     }
 
     private State readStateDump(File outdir) {
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.userregion.internal.quasi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.osgi.service.resolver.PlatformAdmin;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link StateSnapshotCache} provides private, resolved copies of the OSGi system state for use by quasi frameworks.
+ * <p />
+ * A resolved snapshot of the system state is taken the first time a copy is requested and is reused for as long as
+ * the time stamp of the system state is unchanged. Each copy is forked from the snapshot, so neither the system state
+ * need be written out nor the copy resolved again. When the time stamp of the system state changes, the snapshot is
+ * rebuilt on the next request.
+ * <p />
+ * Each copy is still read in full from the serialized snapshot rather than derived by adding and removing
+ * <code>BundleDescription</code>s, because a state copied with <code>StateObjectFactory.createState(State)</code> loses
+ * its resolution and an incrementally re-resolved copy could be wired differently from the framework. Only the
+ * writing and resolving of the system state is saved while the snapshot is current.
+ * <p />
+ * The number of requests served from an existing snapshot and the number of snapshot rebuilds are counted, and are
+ * published through the <code>StateSnapshot</code> MXBean.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * This class is thread safe.
+ *
+ */
+final class StateSnapshotCache {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final PlatformAdmin platformAdmin;
+
+    private final Object monitor = new Object();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong rebuildCount = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    StateSnapshotCache(PlatformAdmin platformAdmin) {
+        this.platformAdmin = platformAdmin;
+    }
+
+    /**
+     * Returns a new, resolved copy of the given system state. The copy may be freely modified by the caller.
+     *
+     * @param systemState the system state to copy
+     * @return a copy of the system state
+     */
+    State fork(State systemState) {
+        State state = readState(getSnapshot(systemState).getBytes());
+        prepareState(state);
+        return state;
+    }
+
+    /**
+     * Returns the number of copies which were forked from an existing snapshot.
+     *
+     * @return the hit count
+     */
+    long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Returns the number of times the snapshot was rebuilt from the system state.
+     *
+     * @return the rebuild count
+     */
+    long getRebuildCount() {
+        return this.rebuildCount.get();
+    }
+
+    private Snapshot getSnapshot(State systemState) {
+        long timeStamp = systemState.getTimeStamp();
+
+        Snapshot current = this.snapshot;
+        if (current != null && current.getTimeStamp() == timeStamp) {
+            this.hitCount.incrementAndGet();
+            return current;
+        }
+
+        synchronized (this.monitor) {
+            current = this.snapshot;
+            if (current != null && current.getTimeStamp() == timeStamp) {
+                this.hitCount.incrementAndGet();
+                return current;
+            }
+
+            Snapshot rebuilt = createSnapshot(systemState, timeStamp);
+            long rebuilds = this.rebuildCount.incrementAndGet();
+
+            // The system state may have changed while it was being written, in which case the snapshot must not be reused
+            if (systemState.getTimeStamp() == timeStamp) {
+                this.snapshot = rebuilt;
+            }
+
+            this.logger.debug("Rebuilt OSGi state snapshot for time stamp {}: {} hits, {} rebuilds", new Object[] { timeStamp,
+                this.hitCount.get(), rebuilds });
+            return rebuilt;
+        }
+    }
+
+    private Snapshot createSnapshot(State systemState, long timeStamp) {
+        byte[] bytes = writeState(systemState);
+        State state = readState(bytes);
+
+        if (!state.isResolved()) {
+            prepareState(state);
+            bytes = writeState(state);
+        }
+
+        return new Snapshot(timeStamp, bytes);
+    }
+
+    private void prepareState(State state) {
+        if (state.getResolver() == null) {
+            state.setResolver(this.platformAdmin.createResolver());
+        }
+
+        if (!state.isResolved()) {
+            state.resolve(true);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private byte[] writeState(State state) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            getFactory().writeState(state, baos);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to create a copy of the OSGi state", ioe);
+        }
+        return baos.toByteArray();
+    }
+
+    @SuppressWarnings("deprecation")
+    private State readState(byte[] bytes) {
+        try {
+            return getFactory().readState(new ByteArrayInputStream(bytes));
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to create a copy of the OSGi state", ioe);
+        }
+    }
+
+    private StateObjectFactory getFactory() {
+        return this.platformAdmin.getFactory();
+    }
+
+    private static final class Snapshot {
+
+        private final long timeStamp;
+
+        private final byte[] bytes;
+
+        private Snapshot(long timeStamp, byte[] bytes) {
+            this.timeStamp = timeStamp;
+            this.bytes = bytes;
+        }
+
+        long getTimeStamp() {
+            return this.timeStamp;
+        }
+
+        byte[] getBytes() {
+            return this.bytes;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.kernel.userregion.internal.quasi;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.easymock.IAnswer;
+import org.eclipse.osgi.internal.module.ResolverImpl;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.PlatformAdmin;
+import org.eclipse.osgi.service.resolver.Resolver;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+public class StateSnapshotCacheTests {
+
+    private final StateObjectFactory stateObjectFactory = StateObjectFactory.defaultFactory;
+
+    private StateSnapshotCache stateSnapshotCache;
+
+    private State systemState;
+
+    @Before
+    public void setUp() throws BundleException {
+        PlatformAdmin platformAdmin = createMock(PlatformAdmin.class);
+        expect(platformAdmin.getFactory()).andReturn(this.stateObjectFactory).anyTimes();
+        expect(platformAdmin.createResolver()).andAnswer(new IAnswer<Resolver>() {
+
+            @Override
+            public Resolver answer() {
+                return new ResolverImpl(false);
+            }
+        }).anyTimes();
+        replay(platformAdmin);
+
+        this.stateSnapshotCache = new StateSnapshotCache(platformAdmin);
+
+        this.systemState = this.stateObjectFactory.createState(true);
+        addBundle(1, "exporter", "Export-Package", "p");
+        addBundle(2, "importer", "Import-Package", "p");
+        this.systemState.resolve(false);
+    }
+
+    @Test
+    public void forkIsResolvedCopy() {
+        State fork = this.stateSnapshotCache.fork(this.systemState);
+
+        assertNotSame(this.systemState, fork);
+        assertTrue(fork.isResolved());
+        BundleDescription importer = fork.getBundle(2);
+        assertNotNull(importer);
+        assertNotSame(this.systemState.getBundle(2), importer);
+        assertTrue(importer.isResolved());
+        assertEquals(1, importer.getResolvedImports().length);
+    }
+
+    @Test
+    public void snapshotReusedWhileSystemStateUnchanged() {
+        State first = this.stateSnapshotCache.fork(this.systemState);
+        State second = this.stateSnapshotCache.fork(this.systemState);
+
+        assertNotSame(first, second);
+        assertEquals(1, this.stateSnapshotCache.getRebuildCount());
+        assertEquals(1, this.stateSnapshotCache.getHitCount());
+    }
+
+    @Test
+    public void forksAreIndependent() throws BundleException {
+        State first = this.stateSnapshotCache.fork(this.systemState);
+        first.removeBundle(2);
+
+        State second = this.stateSnapshotCache.fork(this.systemState);
+
+        assertNotNull(second.getBundle(2));
+        assertNotNull(this.systemState.getBundle(2));
+    }
+
+    @Test
+    public void snapshotRebuiltWhenSystemStateChanges() throws BundleException {
+        this.stateSnapshotCache.fork(this.systemState);
+
+        addBundle(3, "other", "Import-Package", "p");
+        this.systemState.resolve(true);
+
+        State fork = this.stateSnapshotCache.fork(this.systemState);
+
+        assertNotNull(fork.getBundle(3));
+        assertTrue(fork.getBundle(3).isResolved());
+        assertEquals(2, this.stateSnapshotCache.getRebuildCount());
+        assertEquals(0, this.stateSnapshotCache.getHitCount());
+    }
+
+    private void addBundle(long bundleId, String symbolicName, String header, String value) throws BundleException {
+        Dictionary<String, String> manifest = new Hashtable<String, String>();
+        manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+        manifest.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+        manifest.put(header, value);
+        this.systemState.addBundle(this.stateObjectFactory.createBundleDescription(this.systemState, manifest, symbolicName, bundleId));
+    }
+}
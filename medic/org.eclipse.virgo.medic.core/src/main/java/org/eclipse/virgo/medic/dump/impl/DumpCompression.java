@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.dump.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The ways in which the entries that dump contributors write through {@link StandardDump#createOutputStream(String)}
+ * may be compressed.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+enum DumpCompression {
+
+    /**
+     * Entries are written uncompressed, to files with the entries' names.
+     */
+    NONE("") {
+
+        @Override
+        OutputStream wrap(OutputStream out, String name) {
+            return out;
+        }
+    },
+
+    /**
+     * Each entry is gzip-compressed into a file with the entry's name and a <code>.gz</code> suffix.
+     */
+    GZIP(".gz") {
+
+        @Override
+        OutputStream wrap(OutputStream out, String name) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+    },
+
+    /**
+     * Each entry is compressed into a zip archive with the entry's name and a <code>.zip</code> suffix.
+     */
+    ZIP(".zip") {
+
+        @Override
+        OutputStream wrap(OutputStream out, String name) throws IOException {
+            ZipOutputStream zipOut = new ZipOutputStream(out);
+            zipOut.putNextEntry(new ZipEntry(name));
+            return zipOut;
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String suffix;
+
+    private DumpCompression(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Opens a buffered stream that writes the named entry to the given directory, compressing it as it is written.
+     *
+     * @param directory the directory of the dump
+     * @param name the name of the entry
+     * @return the stream
+     * @throws IOException if the stream cannot be opened
+     */
+    OutputStream createOutputStream(File directory, String name) throws IOException {
+        FileOutputStream out = new FileOutputStream(new File(directory, name + this.suffix));
+        try {
+            return new BufferedOutputStream(wrap(out, name), BUFFER_SIZE);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    abstract OutputStream wrap(OutputStream out, String name) throws IOException;
+
+    /**
+     * Returns the compression with the given name, ignoring case, or {@link #NONE} if there is no such compression.
+     *
+     * @param name the name of the compression, may be <code>null</code>
+     * @return the compression
+     */
+    static DumpCompression fromString(String name) {
+        if (name != null) {
+            for (DumpCompression compression : values()) {
+                if (compression.name().equalsIgnoreCase(name.trim())) {
+                    return compression;
+                }
+            }
+        }
+        return NONE;
+    }
+}
@@ -16,6 +16,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 import org.eclipse.virgo.medic.dump.Dump;
@@ -34,12 +35,20 @@ final class StandardDump implements Dump {
 
     private final long timestamp;
 
+    private final DumpCompression compression;
+
     StandardDump(String cause, long timestamp, Map<String, Object> context, Throwable[] throwables, File dumpDirectory) {
+        this(cause, timestamp, context, throwables, dumpDirectory, DumpCompression.NONE);
+    }
+
+    StandardDump(String cause, long timestamp, Map<String, Object> context, Throwable[] throwables, File dumpDirectory,
+        DumpCompression compression) {
         this.cause = cause;
         this.timestamp = timestamp;
         this.context = context;
         this.throwables = throwables;
         this.dumpDirectory = dumpDirectory;
+        this.compression = compression;
     }
 
     public String getCause() {
@@ -78,6 +87,14 @@ final class StandardDump implements Dump {
         }
     }
 
+    public OutputStream createOutputStream(String name) throws DumpContributionFailedException {
+        try {
+            return this.compression.createOutputStream(this.dumpDirectory, name);
+        } catch (IOException e) {
+            throw new DumpContributionFailedException("Unable to open output stream '" + name + "'", e);
+        }
+    }
+
 	File getDumpDirectory() {
 		return this.dumpDirectory;
 	}
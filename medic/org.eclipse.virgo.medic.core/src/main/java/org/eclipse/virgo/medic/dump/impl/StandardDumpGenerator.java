@@ -12,14 +12,24 @@
 package org.eclipse.virgo.medic.dump.impl;
 
 import java.io.File;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.virgo.medic.dump.DumpContributionFailedException;
 import org.eclipse.virgo.medic.dump.DumpContributor;
@@ -30,9 +40,34 @@ import org.eclipse.virgo.medic.impl.MedicLogEvents;
 import org.eclipse.virgo.medic.impl.config.ConfigurationProvider;
 
 
+/**
+ * A <code>StandardDumpGenerator</code> generates dumps by calling the available {@link DumpContributor
+ * DumpContributors}.
+ * <p />
+ * Contributors run concurrently, at most {@link ConfigurationProvider#KEY_DUMP_CONTRIBUTOR_THREADS} at a time for each
+ * dump. A dump is given a time budget, configured in seconds by {@link ConfigurationProvider#KEY_DUMP_CONTRIBUTOR_TIMEOUT}
+ * and counted from when its contributors are first submitted. Contributors still running when the budget is spent are
+ * interrupted and abandoned, and those not yet started are skipped, so that no contributor can hold up the completion
+ * of the dump. Contributors run on threads which are created as needed rather than taken from a fixed pool, so a
+ * contributor which ignores being interrupted holds on to its own thread but cannot prevent later contributors, or
+ * later dumps, from running. The entries that contributors write through
+ * {@link Dump#createOutputStream(String)} are compressed as configured by
+ * {@link ConfigurationProvider#KEY_DUMP_COMPRESSION}.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
 public final class StandardDumpGenerator implements DumpGenerator {
 
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd-HH-mm-SSS");
+    private static final DateTimeFormatter DUMP_ID_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-SSS").withZone(ZoneId.systemDefault());
+
+    private static final int DEFAULT_CONTRIBUTOR_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final int DEFAULT_CONTRIBUTOR_TIMEOUT_SECONDS = 60;
+
+    private static final long CONTRIBUTOR_THREAD_KEEP_ALIVE_SECONDS = 60;
 
     private static final Map<String, Object> NO_CONTEXT = new HashMap<String, Object>();
 
@@ -42,7 +77,11 @@ public final class StandardDumpGenerator implements DumpGenerator {
 
     private final EventLogger eventLogger;
     
-    private String latestDumpId = null;
+    private final AtomicReference<String> latestDumpId = new AtomicReference<String>();
+
+    private final Object monitor = new Object();
+
+    private ThreadPoolExecutor contributorExecutor;
 
     public StandardDumpGenerator(DumpContributorResolver accessor, ConfigurationProvider configurationProvider, EventLogger eventLogger) {
         this.dumpContributorsAccessor = accessor;
@@ -62,17 +101,79 @@ public final class StandardDumpGenerator implements DumpGenerator {
             return;
         }
 
-        for (DumpContributor dumpContributor : getDumpContributors(cause)) {
+        runContributors(getDumpContributors(cause), dump);
+        
+        this.eventLogger.log(MedicLogEvents.DUMP_GENERATED, dump.getDumpDirectory());
+    }
+
+    /**
+     * Runs the given contributors, no more than the configured number at a time, until they have all completed or the
+     * dump's time budget is spent.
+     */
+    private void runContributors(List<DumpContributor> dumpContributors, StandardDump dump) {
+        int threads = getConfiguredInteger(ConfigurationProvider.KEY_DUMP_CONTRIBUTOR_THREADS, DEFAULT_CONTRIBUTOR_THREADS);
+        int timeoutSeconds = getConfiguredInteger(ConfigurationProvider.KEY_DUMP_CONTRIBUTOR_TIMEOUT, DEFAULT_CONTRIBUTOR_TIMEOUT_SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+        CompletionService<DumpContributor> completionService = new ExecutorCompletionService<DumpContributor>(getContributorExecutor());
+        Map<Future<DumpContributor>, DumpContributor> runningContributors = new HashMap<Future<DumpContributor>, DumpContributor>();
+        Iterator<DumpContributor> waitingContributors = dumpContributors.iterator();
+
+        try {
+            while (runningContributors.size() < threads && waitingContributors.hasNext()) {
+                submit(waitingContributors.next(), dump, completionService, runningContributors);
+            }
+            while (!runningContributors.isEmpty()) {
+                Future<DumpContributor> completed = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    break;
+                }
+                runningContributors.remove(completed);
+                if (waitingContributors.hasNext()) {
+                    submit(waitingContributors.next(), dump, completionService, runningContributors);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Map.Entry<Future<DumpContributor>, DumpContributor> running : runningContributors.entrySet()) {
+            running.getKey().cancel(true);
+            this.eventLogger.log(MedicLogEvents.CONTRIBUTION_TIMED_OUT, running.getValue().getName(), dump.getTimestamp(), timeoutSeconds);
+        }
+        while (waitingContributors.hasNext()) {
+            this.eventLogger.log(MedicLogEvents.CONTRIBUTION_TIMED_OUT, waitingContributors.next().getName(), dump.getTimestamp(), timeoutSeconds);
+        }
+    }
+
+    private void submit(DumpContributor dumpContributor, StandardDump dump, CompletionService<DumpContributor> completionService,
+        Map<Future<DumpContributor>, DumpContributor> runningContributors) {
+        runningContributors.put(completionService.submit(new Contribution(dumpContributor, dump), dumpContributor), dumpContributor);
+    }
+
+    private ThreadPoolExecutor getContributorExecutor() {
+        synchronized (this.monitor) {
+            if (this.contributorExecutor == null) {
+                this.contributorExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, CONTRIBUTOR_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ContributorThreadFactory());
+            }
+            return this.contributorExecutor;
+        }
+    }
+
+    private int getConfiguredInteger(String key, int defaultValue) {
+        Object value = this.configurationProvider.getConfiguration().get(key);
+        if (value != null) {
             try {
-                dumpContributor.contribute(dump);
-            } catch (DumpContributionFailedException e) {
-                this.eventLogger.log(MedicLogEvents.CONTRIBUTION_FAILED, e, dumpContributor.getName(), dump.getTimestamp());
-            } catch (RuntimeException e) {
-                this.eventLogger.log(MedicLogEvents.CONTRIBUTION_ERROR, e, dumpContributor.getName(), dump.getTimestamp());
+                int intValue = Integer.parseInt(value.toString().trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+            } catch (NumberFormatException e) {
+                // fall back to the default
             }
         }
-        
-        this.eventLogger.log(MedicLogEvents.DUMP_GENERATED, dump.getDumpDirectory());
+        return defaultValue;
     }
 
     private StandardDump createDump(String cause, Map<String, Object> context, Throwable... throwables) throws DumpGenerationFailedException {        
@@ -89,7 +190,9 @@ public final class StandardDumpGenerator implements DumpGenerator {
             timestamp = System.currentTimeMillis();
         }        
 
-        return new StandardDump(cause, timestamp, context, throwables, dumpDirectory);
+        DumpCompression compression = DumpCompression.fromString((String) this.configurationProvider.getConfiguration().get(
+            ConfigurationProvider.KEY_DUMP_COMPRESSION));
+        return new StandardDump(cause, timestamp, context, throwables, dumpDirectory, compression);
     }
 
     private List<DumpContributor> getDumpContributors(String cause) {
@@ -125,16 +228,11 @@ public final class StandardDumpGenerator implements DumpGenerator {
     }
 
     private String getDumpId(long timestamp) {
-        Date date = new Date(timestamp);
-        synchronized (DATE_FORMAT) {
-            String dumpId = DATE_FORMAT.format(date);
-            if (dumpId.equals(latestDumpId)) {
-                dumpId = null;
-            } else {
-                latestDumpId = dumpId;
-            }            
-            return dumpId;
+        String dumpId = DUMP_ID_FORMATTER.format(Instant.ofEpochMilli(timestamp));
+        if (dumpId.equals(this.latestDumpId.getAndSet(dumpId))) {
+            dumpId = null;
         }
+        return dumpId;
     }
 
     private File getDumpDirectory(long timestamp) throws DumpGenerationFailedException {
@@ -167,6 +265,45 @@ public final class StandardDumpGenerator implements DumpGenerator {
     }
 
     public void close() {
+        synchronized (this.monitor) {
+            if (this.contributorExecutor != null) {
+                this.contributorExecutor.shutdownNow();
+                this.contributorExecutor = null;
+            }
+        }
         this.dumpContributorsAccessor.close();
     }
+
+    private final class Contribution implements Runnable {
+
+        private final DumpContributor dumpContributor;
+
+        private final StandardDump dump;
+
+        private Contribution(DumpContributor dumpContributor, StandardDump dump) {
+            this.dumpContributor = dumpContributor;
+            this.dump = dump;
+        }
+
+        public void run() {
+            try {
+                this.dumpContributor.contribute(this.dump);
+            } catch (DumpContributionFailedException e) {
+                eventLogger.log(MedicLogEvents.CONTRIBUTION_FAILED, e, this.dumpContributor.getName(), this.dump.getTimestamp());
+            } catch (RuntimeException e) {
+                eventLogger.log(MedicLogEvents.CONTRIBUTION_ERROR, e, this.dumpContributor.getName(), this.dump.getTimestamp());
+            }
+        }
+    }
+
+    private static final class ContributorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "medic-dump-contributor-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
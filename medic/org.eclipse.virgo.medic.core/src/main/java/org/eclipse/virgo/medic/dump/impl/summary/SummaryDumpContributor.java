@@ -31,7 +31,7 @@ public final class SummaryDumpContributor implements DumpContributor {
     public void contribute(Dump dump) throws DumpContributionFailedException {
         PrintWriter writer = null;
         try {
-            writer = new PrintWriter(dump.createFileWriter("summary.txt"));
+            writer = new PrintWriter(dump.createWriter("summary.txt"));
             processHeader(writer, dump.getTimestamp());
             processCause(writer, dump.getCause());
             processThrowables(writer, dump.getThrowables());
@@ -51,7 +51,7 @@ public class ThreadDumpContributor implements DumpContributor {
     public void contribute(Dump dump) throws DumpContributionFailedException {
         PrintWriter writer = null;
         try {
-            writer = new PrintWriter(dump.createFileWriter("thread.txt"));
+            writer = new PrintWriter(dump.createWriter("thread.txt"));
             processDeadlocks(writer);
             processAllThreads(writer);
             writer.close();
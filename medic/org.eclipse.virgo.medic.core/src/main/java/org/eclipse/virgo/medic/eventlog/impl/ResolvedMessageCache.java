@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.eventlog.impl;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * A <code>ResolvedMessageCache</code> remembers the outcome of searching a bundle's resource bundles for an event
+ * log message, keyed by bundle, locale, and event code. Messages that could not be found are remembered too.
+ * <p />
+ * The entries of a bundle are discarded when it is updated, uninstalled, resolved, or unresolved, as any of these
+ * may change the resources, including those of attached fragments, that the bundle can see. Entries are put into the
+ * {@link BundleMessages} of the bundle's generation in which the search began, so an outcome found while a bundle was
+ * changing is discarded along with that generation.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+public final class ResolvedMessageCache implements BundleListener {
+
+    private static final String MISSING_MESSAGE = new String("missing message");
+
+    private final ConcurrentMap<Long, BundleMessages> bundleMessages = new ConcurrentHashMap<Long, BundleMessages>();
+
+    /**
+     * Returns the cached messages of the given bundle. The returned messages are those of the bundle's current
+     * generation: once the bundle's entries are discarded, outcomes put into them are no longer seen by the cache, so a
+     * message resolved from resources the bundle could see before it changed is not cached for the changed bundle.
+     *
+     * @param bundle the bundle searched for messages
+     * @return the bundle's cached messages
+     */
+    public BundleMessages getBundleMessages(Bundle bundle) {
+        Long bundleId = bundle.getBundleId();
+        BundleMessages messages = this.bundleMessages.get(bundleId);
+        if (messages == null) {
+            messages = new BundleMessages();
+            BundleMessages existingMessages = this.bundleMessages.putIfAbsent(bundleId, messages);
+            if (existingMessages != null) {
+                messages = existingMessages;
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Discards the cached messages of the given bundle.
+     *
+     * @param bundle the bundle
+     */
+    public void invalidate(Bundle bundle) {
+        this.bundleMessages.remove(bundle.getBundleId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void bundleChanged(BundleEvent event) {
+        switch (event.getType()) {
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+            case BundleEvent.RESOLVED:
+            case BundleEvent.UNRESOLVED:
+                invalidate(event.getBundle());
+                break;
+        }
+    }
+
+    /**
+     * The cached messages of one generation of a bundle, keyed by locale and event code.
+     * <p />
+     *
+     * <strong>Concurrent Semantics</strong><br />
+     * Thread-safe.
+     *
+     */
+    public static final class BundleMessages {
+
+        private final ConcurrentMap<MessageKey, String> messages = new ConcurrentHashMap<MessageKey, String>();
+
+        private BundleMessages() {
+        }
+
+        /**
+         * Returns whether the outcome of resolving the given message is cached.
+         *
+         * @param locale the locale of the message
+         * @param eventCode the event code of the message
+         * @return <code>true</code> if the outcome is cached, otherwise <code>false</code>
+         */
+        public boolean contains(Locale locale, String eventCode) {
+            return this.messages.containsKey(new MessageKey(locale, eventCode));
+        }
+
+        /**
+         * Returns the cached message, or <code>null</code> if the message is not cached or is known to be missing.
+         *
+         * @param locale the locale of the message
+         * @param eventCode the event code of the message
+         * @return the cached message or <code>null</code>
+         */
+        public String get(Locale locale, String eventCode) {
+            String message = this.messages.get(new MessageKey(locale, eventCode));
+            return message == MISSING_MESSAGE ? null : message;
+        }
+
+        /**
+         * Caches the outcome of resolving a message.
+         *
+         * @param locale the locale of the message
+         * @param eventCode the event code of the message
+         * @param message the message, or <code>null</code> if the bundle has no such message
+         */
+        public void put(Locale locale, String eventCode, String message) {
+            this.messages.put(new MessageKey(locale, eventCode), message == null ? MISSING_MESSAGE : message);
+        }
+    }
+
+    private static final class MessageKey {
+
+        private final Locale locale;
+
+        private final String eventCode;
+
+        private MessageKey(Locale locale, String eventCode) {
+            this.locale = locale;
+            this.eventCode = eventCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.locale.hashCode() + this.eventCode.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MessageKey)) {
+                return false;
+            }
+            MessageKey other = (MessageKey) obj;
+            return this.locale.equals(other.locale) && this.eventCode.equals(other.eventCode);
+        }
+    }
+}
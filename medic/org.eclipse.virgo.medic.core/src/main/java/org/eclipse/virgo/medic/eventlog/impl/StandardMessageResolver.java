@@ -30,12 +30,31 @@ public final class StandardMessageResolver implements MessageResolver {
 
     private final Bundle secondaryBundle;
 
+    private final ResolvedMessageCache messageCache;
+
     public StandardMessageResolver(LocaleResolver localeResolver, PropertyResourceBundleResolver resourceBundleLocator, Bundle primaryBundle,
         Bundle secondaryBundle) {
+        this(localeResolver, resourceBundleLocator, primaryBundle, secondaryBundle, null);
+    }
+
+    /**
+     * Creates a <code>StandardMessageResolver</code> which remembers the messages it resolves in the given cache, so
+     * that repeated events skip searching the bundles' resource bundles. The cache must be notified of bundle events for
+     * its entries to be discarded when bundles change.
+     * 
+     * @param localeResolver the resolver of the default locale
+     * @param resourceBundleLocator the locator of the bundles' resource bundles
+     * @param primaryBundle the bundle searched first
+     * @param secondaryBundle the bundle searched when the primary bundle has no message
+     * @param messageCache the cache of resolved messages, or <code>null</code> if messages should not be cached
+     */
+    public StandardMessageResolver(LocaleResolver localeResolver, PropertyResourceBundleResolver resourceBundleLocator, Bundle primaryBundle,
+        Bundle secondaryBundle, ResolvedMessageCache messageCache) {
         this.localeResolver = localeResolver;
         this.resourceBundleLocator = resourceBundleLocator;
         this.primaryBundle = primaryBundle;
         this.secondaryBundle = secondaryBundle;
+        this.messageCache = messageCache;
     }
 
     public String resolveLogEventMessage(String eventCode) {
@@ -43,17 +62,29 @@ public final class StandardMessageResolver implements MessageResolver {
     }
 
     public String resolveLogEventMessage(String eventCode, Locale locale) {
-        List<String> candidatePropertiesFileNames = ResourceBundleUtils.generateCandidatePropertiesFileNames(RESOURCE_BUNDLE_NAME, locale);
-
-        String message = resolveMessageInBundle(this.primaryBundle, eventCode, candidatePropertiesFileNames);
+        String message = resolveMessageInBundle(this.primaryBundle, eventCode, locale);
 
         if (message == null) {
-            message = resolveMessageInBundle(this.secondaryBundle, eventCode, candidatePropertiesFileNames);
+            message = resolveMessageInBundle(this.secondaryBundle, eventCode, locale);
         }
 
         return message;
     }
 
+    private String resolveMessageInBundle(Bundle bundle, String key, Locale locale) {
+        if (this.messageCache == null) {
+            return resolveMessageInBundle(bundle, key, ResourceBundleUtils.generateCandidatePropertiesFileNames(RESOURCE_BUNDLE_NAME, locale));
+        }
+
+        ResolvedMessageCache.BundleMessages bundleMessages = this.messageCache.getBundleMessages(bundle);
+        String message = bundleMessages.get(locale, key);
+        if (message == null && !bundleMessages.contains(locale, key)) {
+            message = resolveMessageInBundle(bundle, key, ResourceBundleUtils.generateCandidatePropertiesFileNames(RESOURCE_BUNDLE_NAME, locale));
+            bundleMessages.put(locale, key, message);
+        }
+        return message;
+    }
+
     private String resolveMessageInBundle(Bundle bundle, String key, List<String> candidatePropertiesFileNames) {
         for (String candidatePropertiesFileName : candidatePropertiesFileNames) {
             List<PropertyResourceBundle> resourceBundles = this.resourceBundleLocator.getResourceBundles(bundle, candidatePropertiesFileName);
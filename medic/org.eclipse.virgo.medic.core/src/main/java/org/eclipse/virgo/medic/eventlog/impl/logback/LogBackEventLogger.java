@@ -20,7 +20,6 @@ import org.eclipse.virgo.medic.eventlog.impl.MessageResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.slf4j.helpers.MessageFormatter;
 
 
 class LogBackEventLogger implements EventLogger {
@@ -29,16 +28,30 @@ class LogBackEventLogger implements EventLogger {
 
     private static final String MISSING_MESSAGE_EVENT_CODE = "ME0001W";
 
+    private static final MessageTemplate MISSING_MESSAGE_TEMPLATE = new MessageTemplate(
+        "A message with the key '{}' was not found. The inserts for the message were '{}'");
+
     private final Logger localizedLogger = LoggerFactory.getLogger("org.eclipse.virgo.medic.eventlog.localized");
 
     private final Logger defaultLogger = LoggerFactory.getLogger("org.eclipse.virgo.medic.eventlog.default");
 
     private final MessageResolver messageResolver;
 
+    private final MessageTemplateCache messageTemplates;
+
     private final Locale defaultLocale = Locale.ENGLISH;
 
     LogBackEventLogger(MessageResolver messageResolver) {
+        this(messageResolver, new MessageTemplateCache());
+    }
+
+    /**
+     * Creates a <code>LogBackEventLogger</code> which keeps the templates of the messages it formats in the given cache.
+     * The cache may be shared between loggers.
+     */
+    LogBackEventLogger(MessageResolver messageResolver, MessageTemplateCache messageTemplates) {
         this.messageResolver = messageResolver;
+        this.messageTemplates = messageTemplates;
     }
 
     public void log(String code, Level level, Object... inserts) {
@@ -54,7 +67,7 @@ class LogBackEventLogger implements EventLogger {
             String localisedMessage = messageResolver.resolveLogEventMessage(eventCode);
 
             if (localisedMessage != null) {
-                logMessage(this.localizedLogger, localisedMessage, level, eventCode, throwable, inserts);
+                logMessage(this.localizedLogger, this.messageTemplates.getMessageTemplate(localisedMessage), level, eventCode, throwable, inserts);
             } else {
                 logMissingMessage(this.localizedLogger, eventCode, throwable, inserts);
             }
@@ -62,7 +75,7 @@ class LogBackEventLogger implements EventLogger {
             String defaultMessage = messageResolver.resolveLogEventMessage(eventCode, defaultLocale);
 
             if (defaultMessage != null) {
-                logMessage(this.defaultLogger, defaultMessage, level, eventCode, throwable, inserts);
+                logMessage(this.defaultLogger, this.messageTemplates.getMessageTemplate(defaultMessage), level, eventCode, throwable, inserts);
             } else {
                 logMissingMessage(this.defaultLogger, eventCode, throwable, inserts);
             }
@@ -76,14 +89,13 @@ class LogBackEventLogger implements EventLogger {
     }
 
     private void logMissingMessage(Logger logger, String eventCode, Throwable throwable, Object[] inserts) {
-        logMessage(logger, "A message with the key '{}' was not found. The inserts for the message were '{}'", Level.WARNING,
-            MISSING_MESSAGE_EVENT_CODE, throwable, eventCode, inserts);
+        logMessage(logger, MISSING_MESSAGE_TEMPLATE, Level.WARNING, MISSING_MESSAGE_EVENT_CODE, throwable, eventCode, inserts);
     }
 
-    private void logMessage(Logger logger, String message, Level level, String eventCode, Throwable throwable, Object... inserts) {
+    private void logMessage(Logger logger, MessageTemplate messageTemplate, Level level, String eventCode, Throwable throwable, Object... inserts) {
         try {
             MDC.put(MDC_KEY_MEDIC_EVENT_CODE, eventCode);
-            String formattedMessage = MessageFormatter.arrayFormat(message, (Object[]) inserts).getMessage();
+            String formattedMessage = messageTemplate.format((Object[]) inserts);
             switch (level) {
                 case ERROR:
                     logger.error(formattedMessage, throwable);
@@ -16,11 +16,19 @@ import org.eclipse.virgo.medic.eventlog.EventLoggerFactory;
 import org.eclipse.virgo.medic.eventlog.impl.LocaleResolver;
 import org.eclipse.virgo.medic.eventlog.impl.MessageResolver;
 import org.eclipse.virgo.medic.eventlog.impl.PropertyResourceBundleResolver;
+import org.eclipse.virgo.medic.eventlog.impl.ResolvedMessageCache;
 import org.eclipse.virgo.medic.eventlog.impl.StandardMessageResolver;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 
 
-public class LogBackEventLoggerFactory implements EventLoggerFactory {
+/**
+ * The event loggers created by a <code>LogBackEventLoggerFactory</code> share a cache of resolved messages and a
+ * bounded cache of message templates. The factory must be added as a {@link BundleListener} so that resolved messages
+ * are discarded when the bundles they came from change.
+ */
+public class LogBackEventLoggerFactory implements EventLoggerFactory, BundleListener {
 
     private final Bundle secondaryBundle;
 
@@ -28,6 +36,10 @@ public class LogBackEventLoggerFactory implements EventLoggerFactory {
 
     private final LocaleResolver localeResolver;
 
+    private final ResolvedMessageCache messageCache = new ResolvedMessageCache();
+
+    private final MessageTemplateCache messageTemplates = new MessageTemplateCache();
+
     public LogBackEventLoggerFactory(PropertyResourceBundleResolver resourceBundleResolver, LocaleResolver localeResolver, Bundle secondaryBundle) {
         this.secondaryBundle = secondaryBundle;
         this.resourceBundleResolver = resourceBundleResolver;
@@ -36,7 +48,11 @@ public class LogBackEventLoggerFactory implements EventLoggerFactory {
 
     public EventLogger createEventLogger(Bundle primaryBundle) {
         MessageResolver messageResolver = new StandardMessageResolver(this.localeResolver, resourceBundleResolver, primaryBundle,
-            this.secondaryBundle);
-        return new LogBackEventLogger(messageResolver);
+            this.secondaryBundle, this.messageCache);
+        return new LogBackEventLogger(messageResolver, this.messageTemplates);
+    }
+
+    public void bundleChanged(BundleEvent event) {
+        this.messageCache.bundleChanged(event);
     }
 }
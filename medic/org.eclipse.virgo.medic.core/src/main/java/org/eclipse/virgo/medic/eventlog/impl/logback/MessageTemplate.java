@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.eventlog.impl.logback;
+
+import java.util.Arrays;
+
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * A <code>MessageTemplate</code> is an event log message whose <code>{}</code> placeholders have been located in
+ * advance, so that formatting it with inserts does not search the message again.
+ * <p />
+ * Formatting produces the same result as {@link MessageFormatter#arrayFormat(String, Object[])}, including its
+ * handling of escaped placeholders. Inserts which end with a <code>Throwable</code> are passed to
+ * <code>MessageFormatter</code> as SLF4J's treatment of them varies between versions.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class MessageTemplate {
+
+    private static final String DELIMITER = "{}";
+
+    private static final char ESCAPE_CHAR = '\\';
+
+    private static final int PLACEHOLDER = 0;
+
+    private static final int ESCAPED_PLACEHOLDER = 1;
+
+    private static final int DOUBLE_ESCAPED_PLACEHOLDER = 2;
+
+    private final String message;
+
+    private final int[] delimiterIndices;
+
+    private final int[] delimiterKinds;
+
+    MessageTemplate(String message) {
+        this.message = message;
+
+        int count = 0;
+        for (int i = message.indexOf(DELIMITER); i != -1; i = message.indexOf(DELIMITER, i + 1)) {
+            count++;
+        }
+
+        int[] indices = new int[count];
+        int[] kinds = new int[count];
+        int delimiters = 0;
+        int i = message.indexOf(DELIMITER);
+        while (i != -1) {
+            indices[delimiters] = i;
+            if (i > 0 && message.charAt(i - 1) == ESCAPE_CHAR) {
+                if (i > 1 && message.charAt(i - 2) == ESCAPE_CHAR) {
+                    kinds[delimiters++] = DOUBLE_ESCAPED_PLACEHOLDER;
+                    i = message.indexOf(DELIMITER, i + 2);
+                } else {
+                    kinds[delimiters++] = ESCAPED_PLACEHOLDER;
+                    i = message.indexOf(DELIMITER, i + 1);
+                }
+            } else {
+                kinds[delimiters++] = PLACEHOLDER;
+                i = message.indexOf(DELIMITER, i + 2);
+            }
+        }
+
+        this.delimiterIndices = Arrays.copyOf(indices, delimiters);
+        this.delimiterKinds = Arrays.copyOf(kinds, delimiters);
+    }
+
+    String getMessage() {
+        return this.message;
+    }
+
+    String format(Object... inserts) {
+        if (inserts == null || inserts.length == 0 || this.delimiterIndices.length == 0) {
+            return this.message;
+        }
+        if (inserts[inserts.length - 1] instanceof Throwable) {
+            return MessageFormatter.arrayFormat(this.message, inserts).getMessage();
+        }
+
+        StringBuilder builder = new StringBuilder(this.message.length() + 16 * inserts.length);
+        int start = 0;
+        int delimiter = 0;
+        for (int insert = 0; insert < inserts.length; insert++) {
+            if (delimiter == this.delimiterIndices.length) {
+                break;
+            }
+            int index = this.delimiterIndices[delimiter];
+            switch (this.delimiterKinds[delimiter++]) {
+                case ESCAPED_PLACEHOLDER:
+                    builder.append(this.message, start, index - 1).append('{');
+                    start = index + 1;
+                    insert--;
+                    break;
+                case DOUBLE_ESCAPED_PLACEHOLDER:
+                    builder.append(this.message, start, index - 1);
+                    appendInsert(builder, inserts[insert]);
+                    start = index + 2;
+                    break;
+                default:
+                    builder.append(this.message, start, index);
+                    appendInsert(builder, inserts[insert]);
+                    start = index + 2;
+                    break;
+            }
+        }
+        return builder.append(this.message, start, this.message.length()).toString();
+    }
+
+    private static void appendInsert(StringBuilder builder, Object insert) {
+        if (insert == null) {
+            builder.append("null");
+        } else if (insert.getClass().isArray()) {
+            builder.append(MessageFormatter.format(DELIMITER, insert).getMessage());
+        } else {
+            String string;
+            try {
+                string = insert.toString();
+            } catch (RuntimeException e) {
+                string = MessageFormatter.format(DELIMITER, insert).getMessage();
+            }
+            builder.append(string);
+        }
+    }
+}
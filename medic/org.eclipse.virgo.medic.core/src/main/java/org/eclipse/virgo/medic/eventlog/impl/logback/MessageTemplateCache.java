@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.eventlog.impl.logback;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A <code>MessageTemplateCache</code> holds the {@link MessageTemplate}s of the most recently formatted event log
+ * messages, keyed by message. The least recently used template is discarded when the cache is full.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class MessageTemplateCache {
+
+    static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final Object monitor = new Object();
+
+    private final Map<String, MessageTemplate> templates;
+
+    MessageTemplateCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    MessageTemplateCache(final int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1 but was " + maximumSize);
+        }
+        this.templates = new LinkedHashMap<String, MessageTemplate>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MessageTemplate> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the template of the given message, creating it if it is not cached.
+     *
+     * @param message the message
+     * @return the message's template
+     */
+    MessageTemplate getMessageTemplate(String message) {
+        synchronized (this.monitor) {
+            MessageTemplate messageTemplate = this.templates.get(message);
+            if (messageTemplate == null) {
+                messageTemplate = new MessageTemplate(message);
+                this.templates.put(message, messageTemplate);
+            }
+            return messageTemplate;
+        }
+    }
+
+    /**
+     * Returns the number of cached templates.
+     *
+     * @return the number of templates
+     */
+    int size() {
+        synchronized (this.monitor) {
+            return this.templates.size();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleListener;
 import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceRegistration;
+import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
 import java.io.File;
@@ -78,6 +79,10 @@ public class LogController implements ConfigurationChangeListener {
     
     private volatile ConsoleHandler javaConsoleHandler;
     
+    private volatile AsynchronousLineAppender sysOutLineAppender;
+    
+    private volatile AsynchronousLineAppender sysErrLineAppender;
+    
     private DelegatingPrintStream delegatingSysOut = new StandardDelegatingPrintStream(System.out);
     
     private DelegatingPrintStream delegatingSysErr = new StandardDelegatingPrintStream(System.err);
@@ -118,7 +123,7 @@ public class LogController implements ConfigurationChangeListener {
         
         System.setProperty(PROPERTY_LOGBACK_CONTEXT_SELECTOR, DelegatingContextSelector.class.getName());
         
-        this.stackAccessor = new SecurityManagerExecutionStackAccessor();
+        this.stackAccessor = createExecutionStackAccessor();
         
         this.sysOut = System.out;
         this.sysErr = System.err;
@@ -165,6 +170,8 @@ public class LogController implements ConfigurationChangeListener {
             System.setErr(this.sysErr);
         }
         
+        closeLineAppenders();
+        
         SLF4JBridgeHandler.uninstall();
         enableJulConsoleLogger();
     }
@@ -192,18 +199,70 @@ public class LogController implements ConfigurationChangeListener {
         ServiceFactory<EventLogger> serviceFactory = new EventLoggerServiceFactory(this.eventLoggerFactory);
         registrationTracker.track(bundleContext.registerService(EventLoggerFactory.class, this.eventLoggerFactory, null));
         registrationTracker.track(bundleContext.registerService(EventLogger.class.getName(), serviceFactory, null));
+        bundleContext.addBundleListener(this.eventLoggerFactory);
     }
     
-    private PrintStream wrapPrintStream(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor stackAccessor, ConfigurationProvider configurationProvider, String configurationProperty) {
-        LoggingPrintStreamWrapper wrapper = new LoggingPrintStreamWrapper(printStream, loggerName, loggingLevel, stackAccessor, configurationProvider, configurationProperty);
+    private PrintStream wrapPrintStream(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor stackAccessor, ConfigurationProvider configurationProvider, String configurationProperty, AsynchronousLineAppender lineAppender) {
+        LoggingPrintStreamWrapper wrapper = new LoggingPrintStreamWrapper(printStream, loggerName, loggingLevel, stackAccessor, configurationProvider, configurationProperty, lineAppender);
         return wrapper;
     }
     
-    private PrintStream decoratePrintStream(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor stackAccessor, ConfigurationProvider configurationProvider, String configurationProperty) {
-        TeeLoggingPrintStreamWrapper decorator = new TeeLoggingPrintStreamWrapper(printStream, loggerName, loggingLevel, stackAccessor, configurationProvider, configurationProperty);
+    private PrintStream decoratePrintStream(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor stackAccessor, ConfigurationProvider configurationProvider, String configurationProperty, AsynchronousLineAppender lineAppender) {
+        TeeLoggingPrintStreamWrapper decorator = new TeeLoggingPrintStreamWrapper(printStream, loggerName, loggingLevel, stackAccessor, configurationProvider, configurationProperty, lineAppender);
         return decorator;
     }
     
+    /**
+     * Creates and starts an appender which logs captured lines on its own thread, if asynchronous capture of the
+     * system streams is configured. Otherwise returns <code>null</code> and captured lines are logged on the writing
+     * thread.
+     */
+    private static AsynchronousLineAppender createLineAppender(Dictionary<String, Object> configuration, String loggerName, LoggingLevel loggingLevel) {
+        if (!Boolean.valueOf((String)configuration.get(ConfigurationProvider.KEY_LOG_ASYNC_SYSSTREAMS))) {
+            return null;
+        }
+        
+        int bufferSize = getIntegerConfiguration(configuration, ConfigurationProvider.KEY_LOG_ASYNC_SYSSTREAMS_BUFFERSIZE, AsynchronousLineAppender.DEFAULT_BUFFER_SIZE);
+        int sampleRate = getIntegerConfiguration(configuration, ConfigurationProvider.KEY_LOG_ASYNC_SYSSTREAMS_SAMPLE_RATE, AsynchronousLineAppender.DEFAULT_SAMPLE_RATE);
+        OverflowPolicy overflowPolicy = OverflowPolicy.fromString((String)configuration.get(ConfigurationProvider.KEY_LOG_ASYNC_SYSSTREAMS_OVERFLOW_POLICY));
+        if (overflowPolicy == null) {
+            overflowPolicy = OverflowPolicy.BLOCK;
+        }
+        
+        AsynchronousLineAppender lineAppender = new AsynchronousLineAppender(LoggerFactory.getLogger(loggerName), loggingLevel, bufferSize, overflowPolicy, sampleRate);
+        lineAppender.start();
+        return lineAppender;
+    }
+    
+    private static int getIntegerConfiguration(Dictionary<String, Object> configuration, String key, int defaultValue) {
+        Object value = configuration.get(key);
+        if (value != null) {
+            try {
+                int intValue = Integer.parseInt(value.toString().trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+            } catch (NumberFormatException e) {
+                // fall back to the default
+            }
+        }
+        return defaultValue;
+    }
+    
+    private void closeLineAppenders() {
+        AsynchronousLineAppender lineAppender = this.sysOutLineAppender;
+        this.sysOutLineAppender = null;
+        if (lineAppender != null) {
+            lineAppender.close();
+        }
+        
+        lineAppender = this.sysErrLineAppender;
+        this.sysErrLineAppender = null;
+        if (lineAppender != null) {
+            lineAppender.close();
+        }
+    }
+    
     private ServiceRegistration<PrintStream> publishPrintStream(PrintStream printStream, String name) {
     	Dictionary<String, String> properties = new Hashtable<String, String>();
         properties.put("org.eclipse.virgo.medic.log.printStream", name);
@@ -264,6 +323,9 @@ public class LogController implements ConfigurationChangeListener {
     }
     
     private static ExecutionStackAccessor createExecutionStackAccessor() {
+        if (StackWalkerExecutionStackAccessor.isSupported()) {
+            return new StackWalkerExecutionStackAccessor();
+        }
         return new SecurityManagerExecutionStackAccessor();
     }
     
@@ -283,12 +345,15 @@ public class LogController implements ConfigurationChangeListener {
     }
 
     private synchronized void updateLogConfiguration(Dictionary<String, Object> configuration) {
+        closeLineAppenders();
+        
         String logSysOutConfiguration = (String)configuration.get(ConfigurationProvider.KEY_LOG_WRAP_SYSOUT);
         if (Boolean.valueOf(logSysOutConfiguration)) {
             delegatingSysOutRegistration = publishDelegatingPrintStream(delegatingSysOut, LOGGER_NAME_SYSOUT_DELEGATE);
             sysOutRegistration = publishPrintStream(this.sysOut, LOGGER_NAME_SYSOUT);
             
-            System.setOut(wrapPrintStream(System.out, LOGGER_NAME_SYSOUT, LoggingLevel.INFO, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSOUT));
+            this.sysOutLineAppender = createLineAppender(configuration, LOGGER_NAME_SYSOUT, LoggingLevel.INFO);
+            System.setOut(wrapPrintStream(System.out, LOGGER_NAME_SYSOUT, LoggingLevel.INFO, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSOUT, this.sysOutLineAppender));
         } else {
             if (Boolean.FALSE.toString().equals(logSysOutConfiguration)) {
                 if (delegatingSysOutRegistration != null) {
@@ -304,7 +369,8 @@ public class LogController implements ConfigurationChangeListener {
                 delegatingSysOutRegistration = publishDelegatingPrintStream(delegatingSysOut, LOGGER_NAME_SYSOUT_DELEGATE);
                 sysOutRegistration = publishPrintStream(this.sysOut, LOGGER_NAME_SYSOUT);
 
-                System.setOut(decoratePrintStream(System.out, LOGGER_NAME_SYSOUT, LoggingLevel.INFO, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSOUT));
+                this.sysOutLineAppender = createLineAppender(configuration, LOGGER_NAME_SYSOUT, LoggingLevel.INFO);
+                System.setOut(decoratePrintStream(System.out, LOGGER_NAME_SYSOUT, LoggingLevel.INFO, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSOUT, this.sysOutLineAppender));
 
                 if (!ConfigurationProvider.LOG_TEE_SYSSTREAMS.equals(logSysOutConfiguration)) {
                     System.out.println("Invalid value '" + logSysOutConfiguration + "' for configuration key '" + ConfigurationProvider.KEY_LOG_WRAP_SYSOUT + "'. Valid values are 'true | tee | false'. Defaulted to 'tee'.");
@@ -317,7 +383,8 @@ public class LogController implements ConfigurationChangeListener {
             delegatingSysErrRegistration = publishDelegatingPrintStream(delegatingSysErr, LOGGER_NAME_SYSERR_DELEGATE);
             sysErrRegistration = publishPrintStream(this.sysErr, LOGGER_NAME_SYSERR);
             
-            System.setErr(wrapPrintStream(System.err, LOGGER_NAME_SYSERR, LoggingLevel.ERROR, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSERR));
+            this.sysErrLineAppender = createLineAppender(configuration, LOGGER_NAME_SYSERR, LoggingLevel.ERROR);
+            System.setErr(wrapPrintStream(System.err, LOGGER_NAME_SYSERR, LoggingLevel.ERROR, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSERR, this.sysErrLineAppender));
         } else {
             if (Boolean.FALSE.toString().equals(logSysErrConfiguration)) {
                 if (delegatingSysErrRegistration != null) {
@@ -333,7 +400,8 @@ public class LogController implements ConfigurationChangeListener {
                 delegatingSysErrRegistration = publishDelegatingPrintStream(delegatingSysErr, LOGGER_NAME_SYSERR_DELEGATE);
                 sysErrRegistration = publishPrintStream(this.sysErr, LOGGER_NAME_SYSERR);
 
-                System.setErr(decoratePrintStream(System.err, LOGGER_NAME_SYSERR, LoggingLevel.ERROR, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSERR));
+                this.sysErrLineAppender = createLineAppender(configuration, LOGGER_NAME_SYSERR, LoggingLevel.ERROR);
+                System.setErr(decoratePrintStream(System.err, LOGGER_NAME_SYSERR, LoggingLevel.ERROR, stackAccessor, configurationProvider, ConfigurationProvider.KEY_LOG_WRAP_SYSERR, this.sysErrLineAppender));
                 
                 if (!ConfigurationProvider.LOG_TEE_SYSSTREAMS.equals(logSysErrConfiguration)) {
                     System.err.println("Invalid value '" + logSysErrConfiguration + "' for configuration key '" + ConfigurationProvider.KEY_LOG_WRAP_SYSERR + "'. Valid values are 'true | tee | false'. Defaulted to 'tee'.");
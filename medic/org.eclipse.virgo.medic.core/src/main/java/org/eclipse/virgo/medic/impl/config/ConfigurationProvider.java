@@ -17,12 +17,26 @@ public interface ConfigurationProvider {
     
     public static final String KEY_DUMP_ROOT_DIRECTORY = "dump.root.directory";
     
+    public static final String KEY_DUMP_COMPRESSION = "dump.compression";
+    
+    public static final String KEY_DUMP_CONTRIBUTOR_THREADS = "dump.contributor.threads";
+    
+    public static final String KEY_DUMP_CONTRIBUTOR_TIMEOUT = "dump.contributor.timeout";
+    
     public static final String KEY_LOG_WRAP_SYSOUT = "log.wrapSysOut";
     
     public static final String KEY_LOG_WRAP_SYSERR = "log.wrapSysErr";
     
     public static final String LOG_TEE_SYSSTREAMS = "tee";
     
+    public static final String KEY_LOG_ASYNC_SYSSTREAMS = "log.sysStreams.async";
+    
+    public static final String KEY_LOG_ASYNC_SYSSTREAMS_BUFFERSIZE = "log.sysStreams.async.bufferSize";
+    
+    public static final String KEY_LOG_ASYNC_SYSSTREAMS_OVERFLOW_POLICY = "log.sysStreams.async.overflowPolicy";
+    
+    public static final String KEY_LOG_ASYNC_SYSSTREAMS_SAMPLE_RATE = "log.sysStreams.async.sampleRate";
+    
     public static final String KEY_LOG_DUMP_BUFFERSIZE = "log.dump.bufferSize";
     
     public static final String KEY_LOG_DUMP_LEVEL = "log.dump.level";
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * An <code>AsynchronousLineAppender</code> logs complete lines of captured output on a dedicated appender thread.
+ * <p />
+ * Lines are handed over through a bounded ring buffer so that the threads writing to a captured stream do not pay for
+ * formatting and I/O. When the buffer is full the line is handled according to the appender's {@link OverflowPolicy}.
+ * Lines appended before {@link #start()} is called are buffered, and lines appended after {@link #close()} is called
+ * are logged on the calling thread, as are lines that a writer blocked on a full buffer manages to buffer only once the
+ * appender thread has stopped.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+public final class AsynchronousLineAppender {
+
+    /**
+     * The default number of lines that may be waiting to be logged.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * The default number of overflowing lines of which one is kept under {@link OverflowPolicy#SAMPLE}.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 100;
+
+    private static final int MAXIMUM_DRAIN_BATCH_SIZE = 256;
+
+    private static final String END_OF_LINES = new String("end of lines");
+
+    private final BlockingQueue<String> lines;
+
+    private final Logger logger;
+
+    private final LoggingLevel loggingLevel;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int sampleRate;
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private final AtomicLong droppedLineCount = new AtomicLong();
+
+    private final Thread appenderThread;
+
+    private final Object bufferedLinesMonitor = new Object();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new <code>AsynchronousLineAppender</code> that logs lines to the given <code>Logger</code>.
+     *
+     * @param logger the logger to log lines to
+     * @param loggingLevel the level at which lines are logged
+     * @param bufferSize the maximum number of lines waiting to be logged
+     * @param overflowPolicy how a line is handled when the buffer is full
+     * @param sampleRate under {@link OverflowPolicy#SAMPLE}, the number of overflowing lines of which one is kept
+     */
+    public AsynchronousLineAppender(Logger logger, LoggingLevel loggingLevel, int bufferSize, OverflowPolicy overflowPolicy, int sampleRate) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1 but was " + bufferSize);
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1 but was " + sampleRate);
+        }
+        this.lines = new ArrayBlockingQueue<String>(bufferSize);
+        this.logger = logger;
+        this.loggingLevel = loggingLevel;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+
+        this.appenderThread = new Thread(new Runnable() {
+
+            public void run() {
+                drain();
+            }
+        }, "medic-appender-" + logger.getName());
+        this.appenderThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the appender thread.
+     */
+    public void start() {
+        this.appenderThread.start();
+    }
+
+    /**
+     * Stops the appender thread once it has logged every buffered line. Subsequently appended lines are logged on the
+     * calling thread.
+     */
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        if (this.appenderThread.isAlive()) {
+            try {
+                this.lines.put(END_OF_LINES);
+                this.appenderThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // writers blocked on a full buffer may have buffered lines after the appender thread last drained it
+        logBufferedLines(new ArrayList<String>());
+    }
+
+    /**
+     * Appends a complete line to be logged.
+     *
+     * @param line the line
+     */
+    public void append(String line) {
+        if (this.closed || isAppenderThread()) {
+            log(line);
+        } else {
+            if (!this.lines.offer(line)) {
+                overflow(line);
+            }
+            if (this.closed && !this.appenderThread.isAlive()) {
+                // the line may have been buffered after the buffer was last drained
+                logBufferedLines(new ArrayList<String>());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the calling thread is this appender's thread.
+     *
+     * @return <code>true</code> if the caller is the appender thread, otherwise <code>false</code>
+     */
+    public boolean isAppenderThread() {
+        return Thread.currentThread() == this.appenderThread;
+    }
+
+    /**
+     * Returns the number of lines that have been discarded because the buffer was full.
+     *
+     * @return the number of discarded lines
+     */
+    public long getDroppedLineCount() {
+        return this.droppedLineCount.get();
+    }
+
+    private void overflow(String line) {
+        switch (this.overflowPolicy) {
+            case BLOCK:
+                put(line);
+                break;
+            case DROP:
+                this.droppedLineCount.incrementAndGet();
+                break;
+            case SAMPLE:
+                if (this.overflowCount.incrementAndGet() % this.sampleRate == 0) {
+                    put(line);
+                } else {
+                    this.droppedLineCount.incrementAndGet();
+                }
+                break;
+        }
+    }
+
+    private void put(String line) {
+        try {
+            this.lines.put(line);
+        } catch (InterruptedException e) {
+            this.droppedLineCount.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<String> batch = new ArrayList<String>(MAXIMUM_DRAIN_BATCH_SIZE);
+        boolean endOfLines = false;
+        try {
+            while (!endOfLines) {
+                batch.add(this.lines.take());
+                this.lines.drainTo(batch, MAXIMUM_DRAIN_BATCH_SIZE - 1);
+                for (String line : batch) {
+                    if (line == END_OF_LINES) {
+                        endOfLines = true;
+                    } else {
+                        log(line);
+                    }
+                }
+                batch.clear();
+            }
+            logBufferedLines(batch);
+        } catch (InterruptedException e) {
+            logBufferedLines(batch);
+        }
+    }
+
+    private void logBufferedLines(List<String> batch) {
+        // serialised so that lines drained by one thread are not overtaken by lines drained later by another
+        synchronized (this.bufferedLinesMonitor) {
+            batch.clear();
+            this.lines.drainTo(batch);
+            for (String line : batch) {
+                if (line != END_OF_LINES) {
+                    log(line);
+                }
+            }
+        }
+    }
+
+    private void log(String line) {
+        switch (this.loggingLevel) {
+            case DEBUG:     this.logger.debug(line); break;
+            case ERROR:     this.logger.error(line); break;
+            case INFO:      this.logger.info(line);  break;
+            case WARNING:   this.logger.warn(line);  break;
+        }
+    }
+}
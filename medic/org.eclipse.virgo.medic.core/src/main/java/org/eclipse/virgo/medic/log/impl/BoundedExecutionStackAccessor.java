@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+/**
+ * An {@link ExecutionStackAccessor} which can return the top of the execution stack without capturing the rest of it.
+ */
+public interface BoundedExecutionStackAccessor extends ExecutionStackAccessor {
+
+    /**
+     * Returns at most <code>maximumDepth</code> elements of the current execution stack, in the same order as
+     * {@link #getExecutionStack()}. Fewer elements are returned only if the stack is not as deep as
+     * <code>maximumDepth</code>.
+     * 
+     * @param maximumDepth the maximum number of elements to return
+     * @return the top of the execution stack
+     */
+    Class<?>[] getExecutionStack(int maximumDepth);
+}
@@ -12,6 +12,7 @@
 package org.eclipse.virgo.medic.log.impl;
 
 import java.io.PrintStream;
+import java.nio.CharBuffer;
 import java.util.Locale;
 
 import org.eclipse.virgo.medic.impl.config.ConfigurationProvider;
@@ -58,6 +59,10 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
 
     private static final String NULL_STRING = "null";
     
+    private static final int MAXIMUM_RETAINED_ENTRY_CAPACITY = 8192;
+    
+    private final AsynchronousLineAppender lineAppender;
+    
     /**
      * Creates a new LoggingPrintStreamWrapper for the given PrintStream. Data written to
      * the stream is logged via SLF4j to a logger with the supplied <code>loggerName</code>.<br/>
@@ -71,6 +76,23 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
      * @param configurationProperty 
      */
     public LoggingPrintStreamWrapper(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor executionStackAccessor, ConfigurationProvider configurationProvider, String configurationProperty) {
+        this(printStream, loggerName, loggingLevel, executionStackAccessor, configurationProvider, configurationProperty, null);
+    }
+
+    /**
+     * Creates a new LoggingPrintStreamWrapper for the given PrintStream. Complete lines written to the stream are
+     * handed to the supplied {@link AsynchronousLineAppender}, which logs them on its own thread, rather than being
+     * logged on the writing thread. If <code>lineAppender</code> is <code>null</code> lines are logged synchronously.
+     * 
+     * @param printStream The PrintStream instance to wrap
+     * @param loggerName The name of the logger
+     * @param loggingLevel The level of the log entries created
+     * @param executionStackAccessor 
+     * @param configurationProvider 
+     * @param configurationProperty 
+     * @param lineAppender The appender which logs complete lines, or <code>null</code>
+     */
+    public LoggingPrintStreamWrapper(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor executionStackAccessor, ConfigurationProvider configurationProvider, String configurationProperty, AsynchronousLineAppender lineAppender) {
         super(printStream);
         
         this.loggerName = loggerName;
@@ -84,7 +106,9 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
         
         this.configurationProperty = configurationProperty;
         
-        this.originalPrintStream = printStream;        
+        this.originalPrintStream = printStream;
+        
+        this.lineAppender = lineAppender;
     }
 
     /**
@@ -134,15 +158,24 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
     }
 
     private void internalAppend(CharSequence csq, int start, int end) {
+        StringBuilder entryBuilder = entryBuilders.get();
+        int segmentStart = start;
         for (int i = start; i < end; i++) {
-            boolean loggedEntry = internalAppend(csq.charAt(i));
-            if (loggedEntry && i < (end - 1)) {
-                char c = csq.charAt(i + 1);
-                if (c == '\n' || c == '\r') {
-                    i++;
+            char c = csq.charAt(i);
+            if (c == '\n' || c == '\r') {
+                entryBuilder.append(csq, segmentStart, i);
+                createEntryAndLog(entryBuilder);
+                entryBuilder = entryBuilders.get();
+                if (i < (end - 1)) {
+                    c = csq.charAt(i + 1);
+                    if (c == '\n' || c == '\r') {
+                        i++;
+                    }
                 }
+                segmentStart = i + 1;
             }
         }
+        entryBuilder.append(csq, segmentStart, end);
     }
 
     @Override
@@ -233,8 +266,7 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
     }
     
     private void internalPrint(char[] ca) {
-        final String s = new String(ca);
-        this.internalAppend(s, 0, s.length());
+        this.internalAppend(CharBuffer.wrap(ca), 0, ca.length);
     }
 
     @Override
@@ -299,11 +331,7 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
     }
 
     private void internalPrint(Object obj) {
-        if (obj == null) {
-            entryBuilders.get().append(NULL_STRING);
-        } else {
-            internalPrint(obj.toString().toCharArray());
-        }
+        internalPrint(String.valueOf(obj));
     }
 
     @Override
@@ -452,9 +480,7 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
     	if (!isLoggingEnabled()) {
     		super.write(buf, off, len);
     	} else {
-	        byte[] outputBytes = new byte[len];
-	        System.arraycopy(buf, off, outputBytes, 0, len);
-	        this.internalPrint(new String(outputBytes));
+	        this.internalPrint(new String(buf, off, len));
     	}
     }
 
@@ -473,17 +499,25 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
     
     private void createEntryAndLog(final StringBuilder stringBuilder) {
         final String string = stringBuilder.toString();
+        if (stringBuilder.capacity() > MAXIMUM_RETAINED_ENTRY_CAPACITY) {
+            entryBuilders.remove();
+        } else {
+            stringBuilder.setLength(0);
+        }
+        if (this.lineAppender != null) {
+            this.lineAppender.append(string);
+            return;
+        }
         switch (this.loggingLevel) {
             case DEBUG:     getLogger().debug(string); break;
             case ERROR:     getLogger().error(string); break;
             case INFO:      getLogger().info(string);  break;
             case WARNING:   getLogger().warn(string);  break;
         }
-        entryBuilders.remove();
     }
     
     private boolean isLoggingEnabled() {
-    	return isEnabledInConfiguration() && !isWithinLogback();
+    	return isEnabledInConfiguration() && !isOnAppenderThread() && !isWithinLogback();
     }
 
 	private boolean isWithinLogback() {
@@ -502,6 +536,13 @@ public final class LoggingPrintStreamWrapper extends PrintStream {
     	return false;
 	}
 
+    /**
+     * Output written by the appender thread itself, for example by a console appender, must not be captured again.
+     */
+    private boolean isOnAppenderThread() {
+        return this.lineAppender != null && this.lineAppender.isAppenderThread();
+    }
+
 	private boolean isEnabledInConfiguration() {
 		return Boolean.valueOf((String)this.configurationProvider.getConfiguration().get(this.configurationProperty));
 	}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+/**
+ * The ways in which an {@link AsynchronousLineAppender} can handle a line when its buffer is full.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Fully thread-safe constants.
+ *
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The writing thread waits until there is room for the line.
+     */
+    BLOCK,
+
+    /**
+     * The line is discarded.
+     */
+    DROP,
+
+    /**
+     * The writing thread waits for one line in every sample rate lines which overflow, and the rest are discarded.
+     */
+    SAMPLE;
+
+    /**
+     * Returns the policy with the given name, ignoring case, or <code>null</code> if there is no such policy.
+     *
+     * @param name the name of the policy
+     * @return the policy, or <code>null</code>
+     */
+    public static OverflowPolicy fromString(String name) {
+        if (name != null) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name.trim())) {
+                    return policy;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * An {@link ExecutionStackAccessor} which uses <code>java.lang.StackWalker</code> to capture only as much of the
+ * execution stack as is needed. <code>StackWalker</code> is not available on Java 8, so it is used reflectively and
+ * {@link #isSupported()} reports whether it is available.
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ * 
+ */
+public final class StackWalkerExecutionStackAccessor implements BoundedExecutionStackAccessor {
+
+    private static final Class<?>[] NO_CLASSES = new Class<?>[0];
+
+    private static final Object STACK_WALKER;
+
+    private static final Method WALK;
+
+    private static final MethodHandle GET_DECLARING_CLASS;
+
+    static {
+        Object stackWalker = null;
+        Method walk = null;
+        MethodHandle getDeclaringClass = null;
+        try {
+            Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> optionClass = Class.forName("java.lang.StackWalker$Option");
+            Class<?> stackFrameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            Object retainClassReference = optionClass.getField("RETAIN_CLASS_REFERENCE").get(null);
+            stackWalker = stackWalkerClass.getMethod("getInstance", optionClass).invoke(null, retainClassReference);
+            walk = stackWalkerClass.getMethod("walk", Function.class);
+            getDeclaringClass = MethodHandles.publicLookup().findVirtual(stackFrameClass, "getDeclaringClass", MethodType.methodType(Class.class)).asType(
+                MethodType.methodType(Class.class, Object.class));
+        } catch (ClassNotFoundException e) {
+            // Java 8
+        } catch (ReflectiveOperationException e) {
+            stackWalker = null;
+        }
+        STACK_WALKER = walk == null || getDeclaringClass == null ? null : stackWalker;
+        WALK = walk;
+        GET_DECLARING_CLASS = getDeclaringClass;
+    }
+
+    /**
+     * Returns whether <code>StackWalker</code> is available, which it is from Java 9 on.
+     * 
+     * @return <code>true</code> if a <code>StackWalkerExecutionStackAccessor</code> can be used
+     */
+    public static boolean isSupported() {
+        return STACK_WALKER != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Class<?>[] getExecutionStack() {
+        return walk(Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Class<?>[] getExecutionStack(int maximumDepth) {
+        return walk(maximumDepth);
+    }
+
+    private Class<?>[] walk(final int maximumDepth) {
+        if (STACK_WALKER == null) {
+            throw new UnsupportedOperationException("java.lang.StackWalker is not available");
+        }
+        Function<Stream<?>, Class<?>[]> collector = new Function<Stream<?>, Class<?>[]>() {
+
+            public Class<?>[] apply(Stream<?> frames) {
+                List<Class<?>> classes = new ArrayList<Class<?>>(Math.min(maximumDepth, 32));
+                Iterator<?> iterator = frames.iterator();
+                while (iterator.hasNext() && classes.size() < maximumDepth) {
+                    Class<?> frameClass = declaringClass(iterator.next());
+                    // skip this class's own frames so that the stack starts with the caller
+                    if (!classes.isEmpty() || frameClass != StackWalkerExecutionStackAccessor.class) {
+                        classes.add(frameClass);
+                    }
+                }
+                return classes.toArray(NO_CLASSES);
+            }
+        };
+        try {
+            return (Class<?>[]) WALK.invoke(STACK_WALKER, collector);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to walk the execution stack", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Unable to walk the execution stack", e.getCause());
+        }
+    }
+
+    private static Class<?> declaringClass(Object frame) {
+        try {
+            return (Class<?>) GET_DECLARING_CLASS.invokeExact(frame);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to determine the class of a stack frame", e);
+        }
+    }
+}
@@ -11,23 +11,99 @@
 
 package org.eclipse.virgo.medic.log.impl;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.FrameworkUtil;
 
-public final class StandardCallingBundleResolver implements CallingBundleResolver {
+/**
+ * A {@link CallingBundleResolver} which selects the logging caller's class from the execution stack and finds the
+ * bundle which loaded it.
+ * <p />
+ * If the {@link ExecutionStackAccessor} is a {@link BoundedExecutionStackAccessor}, the stack is captured in
+ * increasingly deep prefixes until the caller's class is found, so the whole stack is rarely captured. This relies on
+ * the {@link ClassSelector} selecting the first suitable class in the stack.
+ * <p />
+ * The bundle of each class is cached in a {@link ClassValue}, which does not prevent the class from being unloaded.
+ * The cache is invalidated whenever a bundle is uninstalled, of which the resolver must be told as a
+ * {@link BundleListener}.
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ * 
+ */
+public final class StandardCallingBundleResolver implements CallingBundleResolver, BundleListener {
+
+    private static final int[] STACK_DEPTHS = { 16, 64 };
 
     private final ExecutionStackAccessor stackAccessor;
 
     private final ClassSelector classSelector;
 
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final ClassValue<CachedBundle> bundles = new ClassValue<CachedBundle>() {
+
+        @Override
+        protected CachedBundle computeValue(Class<?> type) {
+            return new CachedBundle(FrameworkUtil.getBundle(type), StandardCallingBundleResolver.this.generation.get());
+        }
+    };
+
     public StandardCallingBundleResolver(ExecutionStackAccessor stackAccessor, ClassSelector classSelector) {
         this.stackAccessor = stackAccessor;
         this.classSelector = classSelector;
     }
 
     public Bundle getCallingBundle() {
-        Class<?>[] executionStack = this.stackAccessor.getExecutionStack();
-        Class<?> loggingCallersClass = classSelector.select(executionStack);
-        return FrameworkUtil.getBundle(loggingCallersClass);
+        Class<?> loggingCallersClass = selectLoggingCallersClass();
+        return loggingCallersClass == null ? null : getBundle(loggingCallersClass);
+    }
+
+    private Class<?> selectLoggingCallersClass() {
+        if (this.stackAccessor instanceof BoundedExecutionStackAccessor) {
+            BoundedExecutionStackAccessor boundedStackAccessor = (BoundedExecutionStackAccessor) this.stackAccessor;
+            for (int depth : STACK_DEPTHS) {
+                Class<?>[] executionStack = boundedStackAccessor.getExecutionStack(depth);
+                Class<?> loggingCallersClass = this.classSelector.select(executionStack);
+                if (loggingCallersClass != null || executionStack.length < depth) {
+                    return loggingCallersClass;
+                }
+            }
+        }
+        return this.classSelector.select(this.stackAccessor.getExecutionStack());
+    }
+
+    private Bundle getBundle(Class<?> clazz) {
+        CachedBundle cachedBundle = this.bundles.get(clazz);
+        if (cachedBundle.generation != this.generation.get()) {
+            this.bundles.remove(clazz);
+            cachedBundle = this.bundles.get(clazz);
+        }
+        return cachedBundle.bundle;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void bundleChanged(BundleEvent event) {
+        if (BundleEvent.UNINSTALLED == event.getType()) {
+            this.generation.incrementAndGet();
+        }
+    }
+
+    private static final class CachedBundle {
+
+        private final Bundle bundle;
+
+        private final int generation;
+
+        private CachedBundle(Bundle bundle, int generation) {
+            this.bundle = bundle;
+            this.generation = generation;
+        }
     }
 }
@@ -12,6 +12,7 @@
 package org.eclipse.virgo.medic.log.impl;
 
 import java.io.PrintStream;
+import java.nio.CharBuffer;
 import java.util.Locale;
 
 import org.eclipse.virgo.medic.impl.config.ConfigurationProvider;
@@ -60,6 +61,10 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
     
     private static final String NULL_STRING = "null";
     
+    private static final int MAXIMUM_RETAINED_ENTRY_CAPACITY = 8192;
+    
+    private final AsynchronousLineAppender lineAppender;
+    
     /**
      * Creates a new LoggingPrintStreamWrapper for the given PrintStream. Data written to
      * the stream is logged via SLF4j to a logger with the supplied <code>loggerName</code>.<br/>
@@ -73,6 +78,23 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
      * @param configurationProperty 
      */
     public TeeLoggingPrintStreamWrapper(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor executionStackAccessor, ConfigurationProvider configurationProvider, String configurationProperty) {
+        this(printStream, loggerName, loggingLevel, executionStackAccessor, configurationProvider, configurationProperty, null);
+    }
+
+    /**
+     * Creates a new TeeLoggingPrintStreamWrapper for the given PrintStream. Complete lines written to the stream are
+     * handed to the supplied {@link AsynchronousLineAppender}, which logs them on its own thread, rather than being
+     * logged on the writing thread. If <code>lineAppender</code> is <code>null</code> lines are logged synchronously.
+     * 
+     * @param printStream The PrintStream instance to wrap
+     * @param loggerName The name of the logger
+     * @param loggingLevel The level of the log entries created
+     * @param executionStackAccessor 
+     * @param configurationProvider 
+     * @param configurationProperty 
+     * @param lineAppender The appender which logs complete lines, or <code>null</code>
+     */
+    public TeeLoggingPrintStreamWrapper(PrintStream printStream, String loggerName, LoggingLevel loggingLevel, ExecutionStackAccessor executionStackAccessor, ConfigurationProvider configurationProvider, String configurationProperty, AsynchronousLineAppender lineAppender) {
         super(printStream);
         
         this.logger = LoggerFactory.getLogger(loggerName);
@@ -86,7 +108,9 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
         
         this.configurationProperty = configurationProperty;
         
-        this.originalPrintStream = printStream;        
+        this.originalPrintStream = printStream;
+        
+        this.lineAppender = lineAppender;
     }
 
     /**
@@ -134,15 +158,24 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
     }
 
     private void internalAppend(CharSequence csq, int start, int end) {
+        StringBuilder entryBuilder = entryBuilders.get();
+        int segmentStart = start;
         for (int i = start; i < end; i++) {
-            boolean loggedEntry = internalAppend(csq.charAt(i));
-            if (loggedEntry && i < (end - 1)) {
-                char c = csq.charAt(i + 1);
-                if (c == '\n' || c == '\r') {
-                    i++;
+            char c = csq.charAt(i);
+            if (c == '\n' || c == '\r') {
+                entryBuilder.append(csq, segmentStart, i);
+                createEntryAndLog(entryBuilder);
+                entryBuilder = entryBuilders.get();
+                if (i < (end - 1)) {
+                    c = csq.charAt(i + 1);
+                    if (c == '\n' || c == '\r') {
+                        i++;
+                    }
                 }
+                segmentStart = i + 1;
             }
         }
+        entryBuilder.append(csq, segmentStart, end);
     }
 
     @Override
@@ -223,8 +256,7 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
     }
     
     private void internalPrint(char[] ca) {
-        final String s = new String(ca);
-        this.internalAppend(s, 0, s.length());
+        this.internalAppend(CharBuffer.wrap(ca), 0, ca.length);
     }
 
     @Override
@@ -284,11 +316,7 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
     }
 
     private void internalPrint(Object obj) {
-        if (obj == null) {
-            entryBuilders.get().append(NULL_STRING);
-        } else {
-            internalPrint(obj.toString().toCharArray());
-        }
+        internalPrint(String.valueOf(obj));
     }
 
     @Override
@@ -421,9 +449,7 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
     public void write(byte[] buf, int off, int len) {
         super.write(buf, off, len);
     	if (isLoggingEnabled()) {
-	        byte[] outputBytes = new byte[len];
-	        System.arraycopy(buf, off, outputBytes, 0, len);
-	        this.internalPrint(new String(outputBytes));
+	        this.internalPrint(new String(buf, off, len));
     	}
     }
 
@@ -441,17 +467,25 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
     
     private void createEntryAndLog(final StringBuilder stringBuilder) {
         final String string = stringBuilder.toString();
+        if (stringBuilder.capacity() > MAXIMUM_RETAINED_ENTRY_CAPACITY) {
+            entryBuilders.remove();
+        } else {
+            stringBuilder.setLength(0);
+        }
+        if (this.lineAppender != null) {
+            this.lineAppender.append(string);
+            return;
+        }
         switch (this.loggingLevel) {
             case DEBUG:     this.logger.debug(string); break;
             case ERROR:     this.logger.error(string); break;
             case INFO:      this.logger.info(string);  break;
             case WARNING:   this.logger.warn(string);  break;
         }
-        entryBuilders.remove();
     }
     
     private boolean isLoggingEnabled() {
-    	return isEnabledInConfiguration() && !isWithinLogback() && !isWithinTeeOperation() && !isWithinGoGoCall();
+    	return isEnabledInConfiguration() && !isOnAppenderThread() && !isWithinLogback() && !isWithinTeeOperation() && !isWithinGoGoCall();
     }
 
     private boolean isWithinLogback() {
@@ -503,6 +537,13 @@ public final class TeeLoggingPrintStreamWrapper extends PrintStream {
         return false;
     }
 
+    /**
+     * Output written by the appender thread itself, for example by a console appender, must not be captured again.
+     */
+    private boolean isOnAppenderThread() {
+        return this.lineAppender != null && this.lineAppender.isAppenderThread();
+    }
+
 	private boolean isEnabledInConfiguration() {
 		return ConfigurationProvider.LOG_TEE_SYSSTREAMS.equals((String)this.configurationProvider.getConfiguration().get(this.configurationProperty));
 	}
@@ -12,10 +12,12 @@
 package org.eclipse.virgo.medic.log.impl.logback;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.virgo.medic.log.LoggingConfiguration;
 import org.eclipse.virgo.medic.log.impl.CallingBundleResolver;
@@ -26,16 +28,27 @@ import org.osgi.framework.BundleListener;
 
 import ch.qos.logback.classic.LoggerContext;
 
-
+/**
+ * A {@link ContextSelectorDelegate} which selects the {@link LoggerContext} configured by the logging configuration of
+ * the bundle making the logging call.
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe. Looking up an existing context does not lock, so threads logging concurrently do not contend. Contexts
+ * are created and configured under a lock, so that each context is configured once. The configurations of bundles are
+ * held in a synchronized map with weak keys, which is locked only briefly on each lookup, so that a configuration
+ * cached for a bundle that is uninstalled while it is logging does not keep the bundle alive.
+ * 
+ */
 public class StandardContextSelectorDelegate implements ContextSelectorDelegate, BundleListener {
 
     private final CallingBundleResolver loggingCallerLocator;
 
-    private final Map<String, LoggerContext> loggerContexts = new HashMap<String, LoggerContext>();
-    
-    private final Map<Bundle, LoggingConfiguration> loggingConfigurations = new WeakHashMap<Bundle, LoggingConfiguration>();
+    private final ConcurrentMap<String, LoggerContext> loggerContexts = new ConcurrentHashMap<String, LoggerContext>();
+
+    private final Map<Bundle, LoggingConfiguration> loggingConfigurations = Collections.synchronizedMap(new WeakHashMap<Bundle, LoggingConfiguration>());
 
-    private final Object monitor = new Object();
+    private final Object creationMonitor = new Object();
 
     private final ConfigurationLocator configurationLocator;
 
@@ -52,17 +65,11 @@ public class StandardContextSelectorDelegate implements ContextSelectorDelegate,
     }
 
     public LoggerContext detachLoggerContext(String name) {
-        synchronized (monitor) {
-            return this.loggerContexts.remove(name);
-        }
+        return this.loggerContexts.remove(name);
     }
 
     public List<String> getContextNames() {
-        synchronized (this.monitor) {
-            List<String> names = new ArrayList<String>();
-            names.addAll(this.loggerContexts.keySet());
-            return names;
-        }
+        return new ArrayList<String>(this.loggerContexts.keySet());
     }
 
     public LoggerContext getLoggerContext() {
@@ -71,30 +78,29 @@ public class StandardContextSelectorDelegate implements ContextSelectorDelegate,
         LoggingConfiguration loggingConfiguration = null;
         
         if (callingBundle != null) {
-        	synchronized(this.monitor) {
-        		loggingConfiguration = this.loggingConfigurations.get(callingBundle);
-        	}
+            loggingConfiguration = this.loggingConfigurations.get(callingBundle);
         }
-        
+
         if (loggingConfiguration == null) {
-        	loggingConfiguration = locateConfiguration(callingBundle);
-        	if (loggingConfiguration != null && callingBundle != null) {
-	        	synchronized(this.monitor) {
-	        		this.loggingConfigurations.put(callingBundle, loggingConfiguration);	
-	        	}
-        	}
+            loggingConfiguration = locateConfiguration(callingBundle);
+            if (loggingConfiguration != null && callingBundle != null) {
+                this.loggingConfigurations.put(callingBundle, loggingConfiguration);
+            }
         }
 
         if (loggingConfiguration != null) {
-            synchronized (this.monitor) {
-                LoggerContext existingContext = this.loggerContexts.get(loggingConfiguration.getName());
+            LoggerContext existingContext = this.loggerContexts.get(loggingConfiguration.getName());
+            if (existingContext != null) {
+                return existingContext;
+            }
+            synchronized (this.creationMonitor) {
+                existingContext = this.loggerContexts.get(loggingConfiguration.getName());
                 if (existingContext != null) {
                     return existingContext;
-                } else {
-                    LoggerContext configuredContext = createConfiguredContext(loggingConfiguration);
-                    this.loggerContexts.put(loggingConfiguration.getName(), configuredContext);
-                    return configuredContext;
                 }
+                LoggerContext configuredContext = createConfiguredContext(loggingConfiguration);
+                this.loggerContexts.put(loggingConfiguration.getName(), configuredContext);
+                return configuredContext;
             }
         }
 
@@ -119,9 +125,7 @@ public class StandardContextSelectorDelegate implements ContextSelectorDelegate,
     }
 
     public LoggerContext getLoggerContext(String name) {
-        synchronized (monitor) {
-            return this.loggerContexts.get(name);
-        }
+        return this.loggerContexts.get(name);
     }
 
     public void configureDefaultContext(LoggerContext defaultContext) {
@@ -133,9 +137,7 @@ public class StandardContextSelectorDelegate implements ContextSelectorDelegate,
                 this.configurer.applyConfiguration(configuration, defaultContext);
 
                 // Remember the default context.
-                synchronized (this.monitor) {
-                    this.loggerContexts.put(configuration.getName(), defaultContext);
-                }
+                this.loggerContexts.put(configuration.getName(), defaultContext);
             } catch (LoggerContextConfigurationFailedException lccfe) {
                 lccfe.printStackTrace(System.err);
             }
@@ -143,10 +145,11 @@ public class StandardContextSelectorDelegate implements ContextSelectorDelegate,
     }
 
 	public void bundleChanged(BundleEvent event) {
-		if (BundleEvent.UPDATED == event.getType()) {
-			synchronized (this.monitor) {
-				this.loggingConfigurations.remove(event.getBundle());
-			}
+		if (BundleEvent.UPDATED == event.getType() || BundleEvent.UNINSTALLED == event.getType()) {
+			this.loggingConfigurations.remove(event.getBundle());
+		}
+		if (this.loggingCallerLocator instanceof BundleListener) {
+			((BundleListener) this.loggingCallerLocator).bundleChanged(event);
 		}
 	}
 }
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+package org.eclipse.virgo.medic.management;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A sparse index of the lines of an uncompressed dump entry. The offset of every {@value #LINES_PER_CHECKPOINT}th line
+ * is recorded as a checkpoint, so that any page of the entry's lines can be read with a single positioned read, from
+ * the nearest checkpoint before the page, rather than by scanning the file from its start, while the index stays small
+ * however many lines the entry has.
+ * <p/>
+ * Lines are terminated by <code>\n</code>, <code>\r</code>, or <code>\r\n</code>, as with
+ * {@link RandomAccessFile#readLine()}.
+ * <p/>
+ * An index records the length and modification time of the file it was built from; {@link #isCurrent(File)} is used to
+ * detect that the file has since changed.
+ *
+ * This class is thread safe
+ */
+final class DumpEntryIndex {
+
+    static final int LINES_PER_CHECKPOINT = 128;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int INITIAL_CHECKPOINT_CAPACITY = 64;
+
+    /**
+     * The offset of line <code>i * LINES_PER_CHECKPOINT</code> is held at index <code>i</code>.
+     */
+    private final long[] checkpoints;
+
+    private final int lineCount;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private DumpEntryIndex(long[] checkpoints, int lineCount, long length, long lastModified) {
+        this.checkpoints = checkpoints;
+        this.lineCount = lineCount;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Builds the index of the given file with a single buffered pass over its contents.
+     *
+     * @param file the dump entry to index
+     * @return the index
+     * @throws IOException if the file cannot be read
+     */
+    static DumpEntryIndex build(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long[] checkpoints = new long[INITIAL_CHECKPOINT_CAPACITY];
+        int checkpointCount = 0;
+        int lines = 0;
+        long position = 0;
+        boolean atLineStart = true;
+        boolean afterCarriageReturn = false;
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (afterCarriageReturn) {
+                        afterCarriageReturn = false;
+                        if (b == '\n') {
+                            continue;
+                        }
+                    }
+                    if (atLineStart) {
+                        if (lines % LINES_PER_CHECKPOINT == 0) {
+                            if (checkpointCount == checkpoints.length) {
+                                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+                            }
+                            checkpoints[checkpointCount++] = position;
+                        }
+                        lines++;
+                        atLineStart = false;
+                    }
+                    if (b == '\n') {
+                        atLineStart = true;
+                    } else if (b == '\r') {
+                        atLineStart = true;
+                        afterCarriageReturn = true;
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return new DumpEntryIndex(Arrays.copyOf(checkpoints, checkpointCount), lines, position, lastModified);
+    }
+
+    /**
+     * Returns whether the given file still has the length and modification time that it had when this index was built.
+     *
+     * @param file the indexed file
+     * @return <code>true</code> if the index can still be used to read the file
+     */
+    boolean isCurrent(File file) {
+        return file.length() == this.length && file.lastModified() == this.lastModified;
+    }
+
+    /**
+     * @return the number of lines in the indexed file
+     */
+    int getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Returns the number of lines that start before the given byte position in the indexed file. The lines after the
+     * nearest checkpoint before the position are counted by reading them.
+     *
+     * @param file the indexed file
+     * @param position a byte position in the file
+     * @return the number of lines
+     * @throws IOException if the file cannot be read
+     */
+    int getLineCountBefore(File file, long position) throws IOException {
+        if (position >= this.length) {
+            return this.lineCount;
+        }
+        int checkpoint = Arrays.binarySearch(this.checkpoints, position);
+        checkpoint = checkpoint < 0 ? -(checkpoint + 1) - 1 : checkpoint - 1;
+        if (checkpoint < 0) {
+            return 0;
+        }
+        byte[] bytes = read(file, this.checkpoints[checkpoint], position);
+        int lines = checkpoint * LINES_PER_CHECKPOINT;
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            lines++;
+            lineStart = nextLineStart(bytes, lineEnd(bytes, lineStart));
+        }
+        return lines;
+    }
+
+    /**
+     * Reads up to <code>limit</code> lines of the indexed file, starting with the line at <code>offset</code>. The
+     * lines are read from the nearest checkpoint before <code>offset</code> to the nearest checkpoint after the last
+     * line. Line terminators are not included in the returned lines.
+     *
+     * @param file the indexed file
+     * @param offset the zero-based number of the first line to read
+     * @param limit the maximum number of lines to read
+     * @param charset the charset in which the file was written
+     * @return the lines, which are fewer than <code>limit</code> if the end of the file is reached
+     * @throws IOException if the file cannot be read
+     */
+    String[] readLines(File file, int offset, int limit, Charset charset) throws IOException {
+        if (offset < 0 || offset >= this.lineCount || limit <= 0) {
+            return new String[0];
+        }
+        int end = (int) Math.min((long) offset + limit, this.lineCount);
+        int firstCheckpoint = offset / LINES_PER_CHECKPOINT;
+        int lastCheckpoint = (end - 1) / LINES_PER_CHECKPOINT + 1;
+        long stop = lastCheckpoint < this.checkpoints.length ? this.checkpoints[lastCheckpoint] : this.length;
+        byte[] page = read(file, this.checkpoints[firstCheckpoint], stop);
+
+        String[] lines = new String[end - offset];
+        int lineStart = 0;
+        for (int line = firstCheckpoint * LINES_PER_CHECKPOINT; line < end; line++) {
+            int lineEnd = lineEnd(page, lineStart);
+            if (line >= offset) {
+                lines[line - offset] = new String(page, lineStart, lineEnd - lineStart, charset);
+            }
+            lineStart = nextLineStart(page, lineEnd);
+        }
+        return lines;
+    }
+
+    private static byte[] read(File file, long start, long stop) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (stop - start));
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) == -1) {
+                    break;
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        return Arrays.copyOf(bytes.array(), bytes.position());
+    }
+
+    /**
+     * Returns the position of the terminator of the line starting at the given position, or the end of the bytes if
+     * the line is not terminated.
+     */
+    private static int lineEnd(byte[] bytes, int lineStart) {
+        int position = lineStart;
+        while (position < bytes.length && bytes[position] != '\n' && bytes[position] != '\r') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the start of the line after the line terminator at the given position.
+     */
+    private static int nextLineStart(byte[] bytes, int lineEnd) {
+        if (lineEnd >= bytes.length) {
+            return bytes.length;
+        }
+        if (bytes[lineEnd] == '\r' && lineEnd + 1 < bytes.length && bytes[lineEnd + 1] == '\n') {
+            return lineEnd + 2;
+        }
+        return lineEnd + 1;
+    }
+}
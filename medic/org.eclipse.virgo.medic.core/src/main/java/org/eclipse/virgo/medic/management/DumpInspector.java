@@ -59,6 +59,28 @@ public interface DumpInspector {
 	 */
 	String[] getDumpEntry(String dumpId, String item);
 
+	/**
+	 * Return the number of lines in the requested dump item
+	 * 
+	 * @param dumpId
+	 * @param item
+	 * @return number of lines in the dump file, 0 if it cannot be read
+	 */
+	int getDumpEntryLineCount(String dumpId, String item);
+
+	/**
+	 * Return a page of the requested dump item as an array of Strings, one per line. Pages 
+	 * of uncompressed items are read directly from an index of the item's lines so that 
+	 * paging through large dumps takes the same time for every page.
+	 * 
+	 * @param dumpId
+	 * @param item
+	 * @param offset zero-based number of the first line to return
+	 * @param limit maximum number of lines to return
+	 * @return array of lines from the dump file, empty when offset is past the last line
+	 */
+	String[] getDumpEntryPage(String dumpId, String item, int offset, int limit);
+
 	/**
 	 * Create a new Dump
 	 * 
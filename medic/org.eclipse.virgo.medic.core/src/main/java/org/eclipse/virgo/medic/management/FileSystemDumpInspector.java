@@ -10,12 +10,20 @@
  *******************************************************************************/
 package org.eclipse.virgo.medic.management;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
 
 import org.eclipse.virgo.medic.dump.DumpGenerator;
 import org.eclipse.virgo.medic.impl.config.ConfigurationProvider;
@@ -27,6 +35,10 @@ import org.slf4j.LoggerFactory;
  * 
  * Utility class for the viewing of produced Dumps.
  * 
+ * Uncompressed dump entries are read through a sparse {@link DumpEntryIndex} of their line offsets, built once 
+ * per entry and rebuilt if the entry changes, so that a page of a large entry is read without scanning more than 
+ * a few lines before it. Entries compressed by the dump generator are decompressed as they are read.
+ * 
  * This class is thread safe
  */
 public class FileSystemDumpInspector implements DumpInspector {
@@ -35,11 +47,25 @@ public class FileSystemDumpInspector implements DumpInspector {
 
 	private static final long LARGE_FILE_SIZE_LIMIT = 1024000l;
 	
+	private static final String TRUNCATED_MESSAGE = "File exceeds 1MB, truncated.";
+	
+	private static final int MAX_PAGE_SIZE = 10000;
+	
+	private static final int MAX_CACHED_INDICES = 32;
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private static final String GZIP_SUFFIX = ".gz";
+	
+	private static final String ZIP_SUFFIX = ".zip";
+	
     private final Logger logger = LoggerFactory.getLogger(FileSystemDumpInspector.class);
     
 	private final DumpGenerator generator;
     
 	private final ConfigurationProvider configurationProvider;
+	
+	private final ConcurrentMap<File, DumpEntryIndex> dumpEntryIndices = new ConcurrentHashMap<File, DumpEntryIndex>();
     
     /**
      * 
@@ -102,42 +128,64 @@ public class FileSystemDumpInspector implements DumpInspector {
     
 	@Override
 	public String[] getDumpEntry(String dumpId, String entryName) {
-		if(dumpId == null || entryName == null){
+		File dumpEntry = getDumpEntryFile(dumpId, entryName);
+		if(dumpEntry == null){
 			return new String[0];
 		}
-		List<String> lines = new ArrayList<String>();
-		File dumpDir = getDumpDirectory();
-		if(dumpDir != null && dumpDir.exists() && dumpDir.isDirectory()){
-			File dumpEntry = new File(dumpDir, dumpId + File.separatorChar + entryName);
-			if(dumpEntry != null){
-				RandomAccessFile reader = null;
-				try {
-					reader = new RandomAccessFile(dumpEntry, "r");
-					while (reader.getFilePointer() < reader.length()){
-						if(reader.getFilePointer() > LARGE_FILE_SIZE_LIMIT){
-							lines.add("File exceeds 1MB, truncated.");
-							break;
-						}
-						String rawLine = reader.readLine();
-						if(rawLine != null){
-							lines.add(this.escapeAngleBrackets(rawLine));
-						}
-					}
-					reader.close();
-				} catch (IOException e) {
-					logger.error("Error while reading dump file " + dumpEntry.getPath(), e);
-					try {
-						if(reader != null){
-							reader.close();
-						}
-					} catch (IOException e1) {
-						// no-op to close stream
-					}
-					// no-op just return the default empty value and let the js deal with it
-				}
+		try {
+			if(isCompressed(entryName)){
+				List<String> lines = readCompressedLines(dumpEntry, 0, Integer.MAX_VALUE, LARGE_FILE_SIZE_LIMIT);
+				return escapeAngleBrackets(lines.toArray(new String[lines.size()]));
+			}
+			DumpEntryIndex index = getDumpEntryIndex(dumpEntry);
+			int lineCount = index.getLineCountBefore(dumpEntry, LARGE_FILE_SIZE_LIMIT + 1);
+			String[] lines = escapeAngleBrackets(index.readLines(dumpEntry, 0, lineCount, Charset.defaultCharset()));
+			if(lineCount < index.getLineCount()){
+				lines = Arrays.copyOf(lines, lines.length + 1);
+				lines[lines.length - 1] = TRUNCATED_MESSAGE;
 			}
+			return lines;
+		} catch (IOException e) {
+			logger.error("Error while reading dump file " + dumpEntry.getPath(), e);
+			// no-op just return the default empty value and let the js deal with it
+			return new String[0];
+		}
+	}
+
+	@Override
+	public int getDumpEntryLineCount(String dumpId, String entryName) {
+		File dumpEntry = getDumpEntryFile(dumpId, entryName);
+		if(dumpEntry == null){
+			return 0;
+		}
+		try {
+			if(isCompressed(entryName)){
+				return countCompressedLines(dumpEntry);
+			}
+			return getDumpEntryIndex(dumpEntry).getLineCount();
+		} catch (IOException e) {
+			logger.error("Error while indexing dump file " + dumpEntry.getPath(), e);
+			return 0;
+		}
+	}
+
+	@Override
+	public String[] getDumpEntryPage(String dumpId, String entryName, int offset, int limit) {
+		File dumpEntry = getDumpEntryFile(dumpId, entryName);
+		if(dumpEntry == null || offset < 0 || limit <= 0){
+			return new String[0];
+		}
+		int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+		try {
+			if(isCompressed(entryName)){
+				List<String> lines = readCompressedLines(dumpEntry, offset, pageSize, Long.MAX_VALUE);
+				return escapeAngleBrackets(lines.toArray(new String[lines.size()]));
+			}
+			return escapeAngleBrackets(getDumpEntryIndex(dumpEntry).readLines(dumpEntry, offset, pageSize, Charset.defaultCharset()));
+		} catch (IOException e) {
+			logger.error("Error while reading dump file " + dumpEntry.getPath(), e);
+			return new String[0];
 		}
-		return lines.toArray(new String[lines.size()]);
 	}
 	
 	@Override
@@ -152,6 +200,11 @@ public class FileSystemDumpInspector implements DumpInspector {
 			File root = new File(dumpDir, dumpId);
 			if(root.exists() && root.isDirectory()){
 				FileSystemUtils.deleteRecursively(root);
+				for (File indexedEntry : this.dumpEntryIndices.keySet()) {
+					if(root.equals(indexedEntry.getParentFile())){
+						this.dumpEntryIndices.remove(indexedEntry);
+					}
+				}
 			}
 		}
 	}
@@ -165,6 +218,101 @@ public class FileSystemDumpInspector implements DumpInspector {
 		return null;
 	}
 	
+	private File getDumpEntryFile(String dumpId, String entryName){
+		if(dumpId == null || entryName == null){
+			return null;
+		}
+		File dumpDir = getDumpDirectory();
+		if(dumpDir != null && dumpDir.exists() && dumpDir.isDirectory()){
+			File dumpEntry = new File(dumpDir, dumpId + File.separatorChar + entryName);
+			if(dumpEntry.isFile()){
+				return dumpEntry;
+			}
+		}
+		return null;
+	}
+	
+	private DumpEntryIndex getDumpEntryIndex(File dumpEntry) throws IOException {
+		DumpEntryIndex index = this.dumpEntryIndices.get(dumpEntry);
+		if(index == null || !index.isCurrent(dumpEntry)){
+			index = DumpEntryIndex.build(dumpEntry);
+			if(this.dumpEntryIndices.size() >= MAX_CACHED_INDICES){
+				this.dumpEntryIndices.clear();
+			}
+			this.dumpEntryIndices.put(dumpEntry, index);
+		}
+		return index;
+	}
+	
+	private static boolean isCompressed(String entryName){
+		return entryName.endsWith(GZIP_SUFFIX) || entryName.endsWith(ZIP_SUFFIX);
+	}
+	
+	private static BufferedReader openCompressedEntry(File dumpEntry) throws IOException {
+		InputStream in = new FileInputStream(dumpEntry);
+		try {
+			if(dumpEntry.getName().endsWith(GZIP_SUFFIX)){
+				in = new GZIPInputStream(in, BUFFER_SIZE);
+			} else {
+				ZipInputStream zipIn = new ZipInputStream(in);
+				in = zipIn;
+				zipIn.getNextEntry();
+			}
+			return new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()), BUFFER_SIZE);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Compressed entries cannot be read from an arbitrary position, so their lines are read from the start, 
+	 * skipping those before the requested page. The size limit is applied to the decompressed characters, 
+	 * counting one for each line terminator.
+	 */
+	private static List<String> readCompressedLines(File dumpEntry, int offset, int limit, long sizeLimit) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = openCompressedEntry(dumpEntry);
+		try {
+			long size = 0;
+			int lineNumber = 0;
+			String line;
+			while (lines.size() < limit && (line = reader.readLine()) != null){
+				if(size > sizeLimit){
+					lines.add(TRUNCATED_MESSAGE);
+					break;
+				}
+				size += line.length() + 1;
+				if(lineNumber++ >= offset){
+					lines.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+	
+	private static int countCompressedLines(File dumpEntry) throws IOException {
+		BufferedReader reader = openCompressedEntry(dumpEntry);
+		try {
+			int lineCount = 0;
+			while (reader.readLine() != null){
+				lineCount++;
+			}
+			return lineCount;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private String[] escapeAngleBrackets(String[] lines) {
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = escapeAngleBrackets(lines[i]);
+		}
+		return lines;
+	}
+	
 	private String escapeAngleBrackets(String unfriendlyMarkup) {
 		String processed = unfriendlyMarkup.replace("<", "&#60;");
 		processed = processed.replace(">", "&#62;");
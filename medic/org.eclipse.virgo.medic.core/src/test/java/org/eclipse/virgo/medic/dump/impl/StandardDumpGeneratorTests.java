@@ -17,13 +17,30 @@ import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
-
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.virgo.medic.dump.Dump;
+import org.eclipse.virgo.medic.dump.DumpContributionFailedException;
 import org.eclipse.virgo.medic.dump.DumpContributor;
 import org.eclipse.virgo.medic.dump.DumpGenerationFailedException;
 import org.eclipse.virgo.medic.dump.DumpGenerator;
@@ -140,4 +157,161 @@ public class StandardDumpGeneratorTests {
 
         verify(accessor, configurationProvider);
     }
+
+    @Test
+    public void contributorsRunConcurrently() {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicBoolean concurrent = new AtomicBoolean(true);
+        DumpContributor barrierContributor = new StubDumpContributor("barrier") {
+
+            public void contribute(Dump dump) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    concurrent.set(false);
+                }
+            }
+        };
+
+        DumpGenerator dumpGenerator = createDumpGenerator(barrierContributor, barrierContributor, "2", "30", null);
+        dumpGenerator.generateDump("foo");
+
+        assertTrue(concurrent.get());
+    }
+
+    @Test
+    public void slowContributorIsAbandoned() throws InterruptedException {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicBoolean fastContributed = new AtomicBoolean(false);
+        DumpContributor slowContributor = new StubDumpContributor("slow") {
+
+            public void contribute(Dump dump) {
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(5));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+        DumpContributor fastContributor = new StubDumpContributor("fast") {
+
+            public void contribute(Dump dump) {
+                fastContributed.set(true);
+            }
+        };
+
+        DumpGenerator dumpGenerator = createDumpGenerator(slowContributor, fastContributor, "2", "1", null);
+        long start = System.nanoTime();
+        dumpGenerator.generateDump("foo");
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+        assertTrue(fastContributed.get());
+        // the generator does not wait for an abandoned contributor to respond to being interrupted
+        assertTrue(interrupted.await(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void contributorIgnoringInterruptionDoesNotHoldUpLaterDumps() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fastContributions = new AtomicInteger();
+        DumpContributor fastContributor = new StubDumpContributor("fast") {
+
+            public void contribute(Dump dump) {
+                fastContributions.incrementAndGet();
+            }
+        };
+        DumpContributor stuckContributor = new StubDumpContributor("stuck") {
+
+            public void contribute(Dump dump) {
+                while (true) {
+                    try {
+                        release.await();
+                        return;
+                    } catch (InterruptedException e) {
+                        // ignored, as some contributors, such as those blocked in native code, do
+                    }
+                }
+            }
+        };
+
+        final DumpGenerator dumpGenerator = createDumpGenerator(fastContributor, stuckContributor, "1", "1", null);
+        try {
+            Thread dumps = new Thread(new Runnable() {
+
+                public void run() {
+                    dumpGenerator.generateDump("foo");
+                    dumpGenerator.generateDump("bar");
+                }
+            });
+            dumps.start();
+            dumps.join(TimeUnit.SECONDS.toMillis(30));
+
+            assertFalse(dumps.isAlive());
+            assertEquals(2, fastContributions.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void gzipCompressedContribution() throws IOException {
+        final AtomicReference<File> entry = new AtomicReference<File>();
+        DumpContributor writingContributor = new StubDumpContributor("writing") {
+
+            public void contribute(Dump dump) throws DumpContributionFailedException {
+                entry.set(dump.createFile("entry.txt"));
+                try (Writer writer = dump.createWriter("entry.txt")) {
+                    writer.write("compressed contribution\n");
+                } catch (IOException e) {
+                    throw new DumpContributionFailedException(e.getMessage());
+                }
+            }
+        };
+
+        DumpGenerator dumpGenerator = createDumpGenerator(writingContributor, new StubDumpContributor("idle"), "2", "30", "gzip");
+        dumpGenerator.generateDump("foo");
+
+        File compressedEntry = new File(entry.get().getPath() + ".gz");
+        assertFalse(entry.get().exists());
+        assertTrue(compressedEntry.exists());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(compressedEntry))))) {
+            assertEquals("compressed contribution", reader.readLine());
+        }
+    }
+
+    private static DumpGenerator createDumpGenerator(DumpContributor dumpContributor1, DumpContributor dumpContributor2, String threads,
+        String timeout, String compression) {
+        DumpContributorResolver accessor = createMock(DumpContributorResolver.class);
+        expect(accessor.getDumpContributors()).andReturn(Arrays.asList(dumpContributor1, dumpContributor2)).anyTimes();
+
+        ConfigurationProvider configurationProvider = createMock(ConfigurationProvider.class);
+        Dictionary<String, Object> configuration = new Hashtable<String, Object>();
+        configuration.put(ConfigurationProvider.KEY_DUMP_ROOT_DIRECTORY, "build");
+        configuration.put(ConfigurationProvider.KEY_DUMP_CONTRIBUTOR_THREADS, threads);
+        configuration.put(ConfigurationProvider.KEY_DUMP_CONTRIBUTOR_TIMEOUT, timeout);
+        if (compression != null) {
+            configuration.put(ConfigurationProvider.KEY_DUMP_COMPRESSION, compression);
+        }
+        expect(configurationProvider.getConfiguration()).andReturn(configuration).anyTimes();
+
+        replay(accessor, configurationProvider);
+
+        return new StandardDumpGenerator(accessor, configurationProvider, createMock(EventLogger.class));
+    }
+
+    private static class StubDumpContributor implements DumpContributor {
+
+        private final String name;
+
+        private StubDumpContributor(String name) {
+            this.name = name;
+        }
+
+        public void contribute(Dump dump) throws DumpContributionFailedException {
+        }
+
+        public String getName() {
+            return this.name;
+        }
+    }
 }
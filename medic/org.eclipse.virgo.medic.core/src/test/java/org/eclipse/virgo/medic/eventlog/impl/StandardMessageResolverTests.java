@@ -16,6 +16,7 @@ import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -26,15 +27,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.PropertyResourceBundle;
 
+import org.easymock.IAnswer;
 import org.junit.Test;
 import org.eclipse.virgo.medic.eventlog.impl.LocaleResolver;
 import org.eclipse.virgo.medic.eventlog.impl.MessageResolver;
 import org.eclipse.virgo.medic.eventlog.impl.PropertyResourceBundleResolver;
+import org.eclipse.virgo.medic.eventlog.impl.ResolvedMessageCache;
 import org.eclipse.virgo.medic.eventlog.impl.StandardMessageResolver;
 import org.eclipse.virgo.test.stubs.framework.StubBundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Version;
 
 public class StandardMessageResolverTests {
 
@@ -80,4 +86,83 @@ public class StandardMessageResolverTests {
         assertNull(this.messageResolver.resolveLogEventMessage("ABC123", Locale.FRANCE));
         verify(this.localeResolver, this.resourceBundleResolver);
     }
+
+    @Test
+    public void resolveFromCache() throws FileNotFoundException, IOException {
+        StubBundle primaryBundle = new StubBundle(1L, "primary", Version.emptyVersion, "primary");
+        StubBundle secondaryBundle = new StubBundle(2L, "secondary", Version.emptyVersion, "secondary");
+        ResolvedMessageCache messageCache = new ResolvedMessageCache();
+        MessageResolver cachingMessageResolver = new StandardMessageResolver(this.localeResolver, this.resourceBundleResolver, primaryBundle,
+            secondaryBundle, messageCache);
+
+        try (InputStream messageProperties = new FileInputStream("src/test/resources/messages.properties")) {
+            expect(this.resourceBundleResolver.getResourceBundles(eq(primaryBundle), isA(String.class))).andReturn(
+                Collections.<PropertyResourceBundle> emptyList()).atLeastOnce();
+            expect(this.resourceBundleResolver.getResourceBundles(secondaryBundle, "EventLogMessages_it.properties")).andReturn(
+                Arrays.asList(new PropertyResourceBundle(messageProperties)));
+            replay(this.localeResolver, this.resourceBundleResolver);
+
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+            verify(this.localeResolver, this.resourceBundleResolver);
+
+            reset(this.resourceBundleResolver);
+            replay(this.resourceBundleResolver);
+
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+            verify(this.resourceBundleResolver);
+        }
+    }
+
+    @Test
+    public void bundleUpdateInvalidatesCachedMessages() throws FileNotFoundException, IOException {
+        StubBundle primaryBundle = new StubBundle(1L, "primary", Version.emptyVersion, "primary");
+        ResolvedMessageCache messageCache = new ResolvedMessageCache();
+        MessageResolver cachingMessageResolver = new StandardMessageResolver(this.localeResolver, this.resourceBundleResolver, primaryBundle,
+            this.secondaryBundle, messageCache);
+
+        try (InputStream messageProperties = new FileInputStream("src/test/resources/messages.properties");
+            InputStream updatedMessageProperties = new FileInputStream("src/test/resources/messages.properties")) {
+            expect(this.resourceBundleResolver.getResourceBundles(primaryBundle, "EventLogMessages_it.properties")).andReturn(
+                Arrays.asList(new PropertyResourceBundle(messageProperties))).andReturn(
+                Arrays.asList(new PropertyResourceBundle(updatedMessageProperties)));
+            replay(this.localeResolver, this.resourceBundleResolver);
+
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+
+            messageCache.bundleChanged(new BundleEvent(BundleEvent.UPDATED, primaryBundle));
+
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+
+            verify(this.localeResolver, this.resourceBundleResolver);
+        }
+    }
+
+    @Test
+    public void messageResolvedWhileBundleChangesIsNotCached() throws FileNotFoundException, IOException {
+        final StubBundle primaryBundle = new StubBundle(1L, "primary", Version.emptyVersion, "primary");
+        final ResolvedMessageCache messageCache = new ResolvedMessageCache();
+        MessageResolver cachingMessageResolver = new StandardMessageResolver(this.localeResolver, this.resourceBundleResolver, primaryBundle,
+            this.secondaryBundle, messageCache);
+
+        try (InputStream messageProperties = new FileInputStream("src/test/resources/messages.properties");
+            InputStream updatedMessageProperties = new FileInputStream("src/test/resources/messages.properties")) {
+            expect(this.resourceBundleResolver.getResourceBundles(primaryBundle, "EventLogMessages_it.properties")).andAnswer(
+                new IAnswer<List<PropertyResourceBundle>>() {
+
+                    public List<PropertyResourceBundle> answer() throws Throwable {
+                        messageCache.bundleChanged(new BundleEvent(BundleEvent.UPDATED, primaryBundle));
+                        return Arrays.asList(new PropertyResourceBundle(messageProperties));
+                    }
+                }).andReturn(Arrays.asList(new PropertyResourceBundle(updatedMessageProperties)));
+            replay(this.localeResolver, this.resourceBundleResolver);
+
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+            assertEquals("Bar", cachingMessageResolver.resolveLogEventMessage("ABC123", Locale.ITALIAN));
+
+            verify(this.localeResolver, this.resourceBundleResolver);
+        }
+    }
 }
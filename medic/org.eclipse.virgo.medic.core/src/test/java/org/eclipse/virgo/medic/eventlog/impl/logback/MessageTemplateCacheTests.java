@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.eventlog.impl.logback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class MessageTemplateCacheTests {
+
+    @Test
+    public void templatesAreReused() {
+        MessageTemplateCache cache = new MessageTemplateCache();
+
+        assertSame(cache.getMessageTemplate("a {}"), cache.getMessageTemplate("a {}"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedTemplateIsDiscardedWhenFull() {
+        MessageTemplateCache cache = new MessageTemplateCache(2);
+
+        MessageTemplate a = cache.getMessageTemplate("a {}");
+        MessageTemplate b = cache.getMessageTemplate("b {}");
+        cache.getMessageTemplate("a {}");
+        cache.getMessageTemplate("c {}");
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.getMessageTemplate("a {}"));
+        assertNotSame(b, cache.getMessageTemplate("b {}"));
+    }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.eventlog.impl.logback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+public class MessageTemplateTests {
+
+    private static final String[] MESSAGES = { "", "no placeholders", "{}", "a {} b {} c", "{}{}{}", "a \\{} b {} c", "a \\\\{} b {} c",
+        "trailing \\{}", "{ } {x} {}}", "a {} b \\{} c {}" };
+
+    private static final Object[][] INSERTS = { {}, { "x" }, { "x", 2 }, { null, "y", 3L }, { new int[] { 1, 2 }, new Object[] { "a", null } },
+        { "x", "y", "z", "extra" }, { "x", new IllegalStateException("bang") } };
+
+    @Test
+    public void formatMatchesMessageFormatter() {
+        for (String message : MESSAGES) {
+            MessageTemplate messageTemplate = new MessageTemplate(message);
+            for (Object[] inserts : INSERTS) {
+                assertEquals(message, MessageFormatter.arrayFormat(message, inserts).getMessage(), messageTemplate.format(inserts));
+            }
+        }
+    }
+
+    @Test
+    public void messageWithoutPlaceholdersIsNotCopied() {
+        String message = "no placeholders";
+        assertSame(message, new MessageTemplate(message).format("x", "y"));
+    }
+
+    @Test
+    public void nullInserts() {
+        assertEquals("a {} b", new MessageTemplate("a {} b").format((Object[]) null));
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.virgo.medic.impl.config.ConfigurationChangeListener;
+import org.eclipse.virgo.medic.impl.config.ConfigurationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class AsynchronousLineAppenderTests {
+
+    private static final int WRITER_COUNT = 8;
+
+    private static final int LINES_PER_WRITER = 500;
+
+    private static final Pattern LINE_PATTERN = Pattern.compile("writer (\\d+) wrote line (\\d+) of " + LINES_PER_WRITER + "\\.");
+
+    private AsynchronousLineAppender lineAppender;
+
+    @Before
+    public void resetLoggingEvents() {
+        CapturingAppender.getAndResetLoggingEvents();
+    }
+
+    @After
+    public void closeLineAppender() {
+        if (this.lineAppender != null) {
+            this.lineAppender.close();
+        }
+    }
+
+    @Test
+    public void concurrentWritersProduceIntactLines() throws InterruptedException {
+        this.lineAppender = createLineAppender(16, OverflowPolicy.BLOCK, 1);
+        this.lineAppender.start();
+
+        final PrintStream wrapper = new LoggingPrintStreamWrapper(new PrintStream(new ByteArrayOutputStream()), getClass().getName(),
+            LoggingLevel.INFO, new EmptyExecutionStackAccessor(), new StubConfigurationProvider(), "theProperty", this.lineAppender);
+
+        Thread[] writers = new Thread[WRITER_COUNT];
+        for (int w = 0; w < WRITER_COUNT; w++) {
+            final int writer = w;
+            writers[w] = new Thread(new Runnable() {
+
+                public void run() {
+                    for (int line = 0; line < LINES_PER_WRITER; line++) {
+                        wrapper.print("writer ");
+                        wrapper.print(writer);
+                        wrapper.append(" wrote line ");
+                        wrapper.print(line);
+                        wrapper.print(new char[] {' ', 'o', 'f', ' '});
+                        wrapper.printf("%d.%n", LINES_PER_WRITER);
+                    }
+                }
+            });
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        this.lineAppender.close();
+
+        List<LoggingEvent> loggingEvents = CapturingAppender.getAndResetLoggingEvents();
+        assertEquals(WRITER_COUNT * LINES_PER_WRITER, loggingEvents.size());
+
+        int[] nextLines = new int[WRITER_COUNT];
+        for (LoggingEvent loggingEvent : loggingEvents) {
+            Matcher matcher = LINE_PATTERN.matcher(loggingEvent.getMessage());
+            assertTrue("Corrupted line '" + loggingEvent.getMessage() + "'", matcher.matches());
+            int writer = Integer.parseInt(matcher.group(1));
+            assertEquals(nextLines[writer]++, Integer.parseInt(matcher.group(2)));
+        }
+        assertEquals(0, this.lineAppender.getDroppedLineCount());
+    }
+
+    @Test
+    public void dropPolicyDiscardsLinesWhenBufferIsFull() {
+        this.lineAppender = createLineAppender(2, OverflowPolicy.DROP, 1);
+
+        this.lineAppender.append("a");
+        this.lineAppender.append("b");
+        this.lineAppender.append("c");
+        this.lineAppender.append("d");
+
+        assertEquals(2, this.lineAppender.getDroppedLineCount());
+
+        this.lineAppender.start();
+        this.lineAppender.close();
+
+        List<LoggingEvent> loggingEvents = CapturingAppender.getAndResetLoggingEvents();
+        assertEquals(2, loggingEvents.size());
+        assertEquals("a", loggingEvents.get(0).getMessage());
+        assertEquals("b", loggingEvents.get(1).getMessage());
+    }
+
+    @Test
+    public void samplePolicyKeepsOneInEverySampleRateOverflowingLines() throws InterruptedException {
+        this.lineAppender = createLineAppender(1, OverflowPolicy.SAMPLE, 2);
+
+        this.lineAppender.append("a");
+        this.lineAppender.append("b");
+
+        Thread sampledWriter = new Thread(new Runnable() {
+
+            public void run() {
+                lineAppender.append("c");
+            }
+        });
+        sampledWriter.start();
+
+        this.lineAppender.start();
+        sampledWriter.join();
+        this.lineAppender.close();
+
+        List<LoggingEvent> loggingEvents = CapturingAppender.getAndResetLoggingEvents();
+        assertEquals(2, loggingEvents.size());
+        assertEquals("a", loggingEvents.get(0).getMessage());
+        assertEquals("c", loggingEvents.get(1).getMessage());
+        assertEquals(1, this.lineAppender.getDroppedLineCount());
+    }
+
+    @Test
+    public void linesAppendedAfterCloseAreLoggedByTheWriter() {
+        this.lineAppender = createLineAppender(1, OverflowPolicy.BLOCK, 1);
+        this.lineAppender.start();
+        this.lineAppender.close();
+
+        this.lineAppender.append("a");
+
+        List<LoggingEvent> loggingEvents = CapturingAppender.getAndResetLoggingEvents();
+        assertEquals(1, loggingEvents.size());
+        assertEquals("a", loggingEvents.get(0).getMessage());
+        assertEquals(Thread.currentThread().getName(), loggingEvents.get(0).getThreadName());
+    }
+
+    @Test
+    public void lineOfWriterBlockedWhenClosingIsLogged() throws InterruptedException {
+        this.lineAppender = createLineAppender(1, OverflowPolicy.BLOCK, 1);
+
+        this.lineAppender.append("a");
+
+        Thread blockedWriter = new Thread(new Runnable() {
+
+            public void run() {
+                lineAppender.append("b");
+            }
+        });
+        blockedWriter.start();
+        while (blockedWriter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        this.lineAppender.close();
+        blockedWriter.join();
+
+        List<LoggingEvent> loggingEvents = CapturingAppender.getAndResetLoggingEvents();
+        assertEquals(2, loggingEvents.size());
+        assertEquals("a", loggingEvents.get(0).getMessage());
+        assertEquals("b", loggingEvents.get(1).getMessage());
+        assertEquals(0, this.lineAppender.getDroppedLineCount());
+    }
+
+    private AsynchronousLineAppender createLineAppender(int bufferSize, OverflowPolicy overflowPolicy, int sampleRate) {
+        return new AsynchronousLineAppender(LoggerFactory.getLogger(getClass()), LoggingLevel.INFO, bufferSize, overflowPolicy, sampleRate);
+    }
+
+    private static final class EmptyExecutionStackAccessor implements ExecutionStackAccessor {
+
+        public Class<?>[] getExecutionStack() {
+            return new Class<?>[0];
+        }
+    }
+
+    private final static class StubConfigurationProvider implements ConfigurationProvider {
+
+        private final Hashtable<String, Object> configuration;
+
+        private StubConfigurationProvider() {
+            this.configuration = new Hashtable<String, Object>();
+            this.configuration.put("theProperty", "true");
+        }
+
+        public Dictionary<String, Object> getConfiguration() {
+            return this.configuration;
+        }
+
+        public void addChangeListener(ConfigurationChangeListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean removeChangeListener(ConfigurationChangeListener listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
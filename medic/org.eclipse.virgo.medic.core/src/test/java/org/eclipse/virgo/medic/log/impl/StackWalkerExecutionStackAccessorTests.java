@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StackWalkerExecutionStackAccessorTests {
+
+    @Before
+    public void stackWalkerIsAvailable() {
+        assumeTrue(StackWalkerExecutionStackAccessor.isSupported());
+    }
+
+    @Test
+    public void getClasses() {
+        Class<?>[] classes = new StackWalkerExecutionStackAccessor().getExecutionStack();
+        assertTrue(classes.length > 1);
+        assertEquals("Unexpected class in stack: " + classes[0], StackWalkerExecutionStackAccessorTests.class, classes[0]);
+    }
+
+    @Test
+    public void stackMatchesSecurityManagerStack() {
+        Class<?>[] securityManagerClasses = new SecurityManagerExecutionStackAccessor().getExecutionStack();
+        Class<?>[] classes = new StackWalkerExecutionStackAccessor().getExecutionStack();
+        // the security manager's stack also includes reflection frames, so only compare this class's caller
+        assertEquals(securityManagerClasses[0], classes[0]);
+    }
+
+    @Test
+    public void getTopOfStack() {
+        StackWalkerExecutionStackAccessor accessor = new StackWalkerExecutionStackAccessor();
+        Class<?>[] classes = accessor.getExecutionStack();
+        Class<?>[] topOfStack = accessor.getExecutionStack(2);
+        assertArrayEquals(Arrays.copyOf(classes, 2), topOfStack);
+        assertEquals(classes.length, accessor.getExecutionStack(classes.length + 10).length);
+    }
+}
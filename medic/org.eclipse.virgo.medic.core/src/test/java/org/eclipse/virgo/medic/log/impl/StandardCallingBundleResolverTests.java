@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.medic.log.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StandardCallingBundleResolverTests {
+
+    private static final int STACK_DEPTH = 100;
+
+    @Test
+    public void topOfStackIsSearchedFirst() {
+        RecordingStackAccessor stackAccessor = new RecordingStackAccessor(20);
+        new StandardCallingBundleResolver(stackAccessor, new PackageNameFilteringClassSelector(Arrays.asList("java.lang"))).getCallingBundle();
+        assertEquals(Arrays.asList(16, 64), stackAccessor.depths);
+    }
+
+    @Test
+    public void wholeStackIsSearchedIfNecessary() {
+        RecordingStackAccessor stackAccessor = new RecordingStackAccessor(80);
+        new StandardCallingBundleResolver(stackAccessor, new PackageNameFilteringClassSelector(Arrays.asList("java.lang"))).getCallingBundle();
+        assertEquals(Arrays.asList(16, 64, STACK_DEPTH), stackAccessor.depths);
+    }
+
+    @Test
+    public void noCallingBundleIfNoClassIsSelected() {
+        RecordingStackAccessor stackAccessor = new RecordingStackAccessor(STACK_DEPTH);
+        assertNull(new StandardCallingBundleResolver(stackAccessor, new PackageNameFilteringClassSelector(Arrays.asList("java.lang"))).getCallingBundle());
+        assertEquals(Arrays.asList(16, 64, STACK_DEPTH), stackAccessor.depths);
+    }
+
+    /**
+     * A stack of <code>java.lang</code> classes with a single test class at a given position.
+     */
+    private static final class RecordingStackAccessor implements BoundedExecutionStackAccessor {
+
+        private final Class<?>[] stack = new Class<?>[STACK_DEPTH];
+
+        private final List<Integer> depths = new ArrayList<Integer>();
+
+        private RecordingStackAccessor(int callerPosition) {
+            Arrays.fill(this.stack, Object.class);
+            if (callerPosition < STACK_DEPTH) {
+                this.stack[callerPosition] = StandardCallingBundleResolverTests.class;
+            }
+        }
+
+        public Class<?>[] getExecutionStack() {
+            this.depths.add(STACK_DEPTH);
+            return this.stack.clone();
+        }
+
+        public Class<?>[] getExecutionStack(int maximumDepth) {
+            this.depths.add(maximumDepth);
+            return Arrays.copyOf(this.stack, Math.min(maximumDepth, STACK_DEPTH));
+        }
+    }
+}
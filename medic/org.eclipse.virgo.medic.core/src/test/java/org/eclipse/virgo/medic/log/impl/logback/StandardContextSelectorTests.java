@@ -22,9 +22,19 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
 
 import ch.qos.logback.classic.LoggerContext;
 
@@ -78,6 +88,68 @@ public class StandardContextSelectorTests {
         verify(this.configurationLocator, this.loggingCallerLocator, this.loggerContextConfigurer, loggingConfiguration);
     }
 
+    @Test
+    public void loggerContextIsConfiguredOnceWhenRequestedConcurrently() throws Exception {
+        final AtomicInteger configurationCount = new AtomicInteger();
+        final LoggingConfiguration loggingConfiguration = new StubLoggingConfiguration();
+        final StandardContextSelectorDelegate delegate = new StandardContextSelectorDelegate(new CallingBundleResolver() {
+
+            public Bundle getCallingBundle() {
+                return StandardContextSelectorTests.this.bundle;
+            }
+        }, new ConfigurationLocator() {
+
+            public LoggingConfiguration locateConfiguration(Bundle bundle) {
+                return loggingConfiguration;
+            }
+        }, this.bundle, new LoggerContextConfigurer() {
+
+            public void applyConfiguration(LoggingConfiguration configuration, LoggerContext loggerContext) {
+                configurationCount.incrementAndGet();
+            }
+        });
+
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<LoggerContext>> results = new ArrayList<Future<LoggerContext>>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(new Callable<LoggerContext>() {
+
+                    public LoggerContext call() throws Exception {
+                        start.await();
+                        return delegate.getLoggerContext();
+                    }
+                }));
+            }
+            start.countDown();
+            LoggerContext loggerContext = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<LoggerContext> result : results) {
+                assertSame(loggerContext, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, configurationCount.get());
+    }
+
+    @Test
+    public void configurationIsLocatedAgainAfterUninstall() throws LoggerContextConfigurationFailedException {
+        LoggingConfiguration loggingConfiguration = new StubLoggingConfiguration();
+        expect(this.loggingCallerLocator.getCallingBundle()).andReturn(this.bundle).times(3);
+        expect(this.configurationLocator.locateConfiguration(this.bundle)).andReturn(loggingConfiguration).times(2);
+        this.loggerContextConfigurer.applyConfiguration(eq(loggingConfiguration), isA(LoggerContext.class));
+        replay(this.configurationLocator, this.loggingCallerLocator, this.loggerContextConfigurer);
+
+        LoggerContext loggerContext = this.contextSelectorDelegate.getLoggerContext();
+        assertSame(loggerContext, this.contextSelectorDelegate.getLoggerContext());
+        this.contextSelectorDelegate.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, this.bundle));
+        assertSame(loggerContext, this.contextSelectorDelegate.getLoggerContext());
+
+        verify(this.configurationLocator, this.loggingCallerLocator, this.loggerContextConfigurer);
+    }
+
     @Test
     public void loggerContextWithNoLocatedConfiguration() {
         expect(this.loggingCallerLocator.getCallingBundle()).andReturn(this.bundle);
@@ -88,4 +160,15 @@ public class StandardContextSelectorTests {
         assertNull(loggerContext);
         verify(this.configurationLocator, this.loggingCallerLocator);
     }
+
+    private static final class StubLoggingConfiguration implements LoggingConfiguration {
+
+        public String getConfiguration() {
+            return "";
+        }
+
+        public String getName() {
+            return "the-configuration";
+        }
+    }
 }
@@ -10,9 +10,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertArrayEquals;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.virgo.medic.dump.DumpGenerator;
 import org.eclipse.virgo.medic.impl.config.ConfigurationChangeListener;
@@ -29,7 +33,11 @@ public class FileSystemDumpInspectorTests {
 	@Before
 	public void setup() {
 		this.dumpGenerator = createMock(DumpGenerator.class);
-		this.fileSystemDumpInspector = new FileSystemDumpInspector(dumpGenerator, new ConfigurationProvider() {
+		this.fileSystemDumpInspector = createDumpInspector("src/test/resources/testDumps/serviceability/dump");
+	}
+	
+	private FileSystemDumpInspector createDumpInspector(final String dumpDirectory) {
+		return new FileSystemDumpInspector(dumpGenerator, new ConfigurationProvider() {
 			
 			@Override
 			public boolean removeChangeListener(ConfigurationChangeListener listener) {
@@ -39,7 +47,7 @@ public class FileSystemDumpInspectorTests {
 			@Override
 			public Dictionary<String, Object> getConfiguration() {
 				Dictionary<String, Object> props = new Hashtable<String, Object>();
-				props.put(KEY_DUMP_ROOT_DIRECTORY, "src/test/resources/testDumps/serviceability/dump");
+				props.put(KEY_DUMP_ROOT_DIRECTORY, dumpDirectory);
 				return props;
 			}
 			
@@ -83,6 +91,53 @@ public class FileSystemDumpInspectorTests {
 		assertTrue(dumpEntry.length == 0);
 	}
 	
+	@Test
+	public void testGetDumpEntryLineCount() {
+		assertEquals(2, fileSystemDumpInspector.getDumpEntryLineCount("testDump", "testDumpItem.txt"));
+		assertEquals(0, fileSystemDumpInspector.getDumpEntryLineCount("testDump", "notHere"));
+	}
+	
+	@Test
+	public void testGetDumpEntryPage() {
+		assertArrayEquals(new String[]{"bar"}, fileSystemDumpInspector.getDumpEntryPage("testDump", "testDumpItem.txt", 1, 10));
+		assertArrayEquals(new String[]{"foo"}, fileSystemDumpInspector.getDumpEntryPage("testDump", "testDumpItem.txt", 0, 1));
+		assertEquals(0, fileSystemDumpInspector.getDumpEntryPage("testDump", "testDumpItem.txt", 2, 10).length);
+		assertEquals(0, fileSystemDumpInspector.getDumpEntryPage("testDump", "notHere", 0, 10).length);
+	}
+	
+	@Test
+	public void testLargeDumpEntryPaging() throws IOException {
+		File dump = new File("build/pagedDumps/largeDump");
+		dump.mkdirs();
+		String[] terminators = {"\n", "\r\n", "\r"};
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dump, "large.txt")));
+		Writer compressedWriter = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(new File(dump, "large.txt.gz"))));
+		try {
+			for (int i = 0; i < 100000; i++) {
+				String line = "line <" + i + ">" + terminators[i % terminators.length];
+				writer.write(line);
+				compressedWriter.write(line);
+			}
+		} finally {
+			writer.close();
+			compressedWriter.close();
+		}
+		
+		FileSystemDumpInspector dumpInspector = createDumpInspector("build/pagedDumps");
+		for (String entry : new String[]{"large.txt", "large.txt.gz"}) {
+			assertEquals(100000, dumpInspector.getDumpEntryLineCount("largeDump", entry));
+			assertArrayEquals(new String[]{"line &#60;70000&#62;", "line &#60;70001&#62;"}, dumpInspector.getDumpEntryPage("largeDump", entry, 70000, 2));
+			assertArrayEquals(new String[]{"line &#60;99999&#62;"}, dumpInspector.getDumpEntryPage("largeDump", entry, 99999, 10));
+			assertArrayEquals(new String[]{"line &#60;255&#62;", "line &#60;256&#62;", "line &#60;257&#62;"}, dumpInspector.getDumpEntryPage("largeDump", entry, 255, 3));
+			String[] dumpEntry = dumpInspector.getDumpEntry("largeDump", entry);
+			assertTrue(dumpEntry.length < 100000);
+			assertEquals("File exceeds 1MB, truncated.", dumpEntry[dumpEntry.length - 1]);
+		}
+		
+		dumpInspector.deleteDump("largeDump");
+		assertFalse(dump.exists());
+	}
+	
 	@Test
 	public void testCreateDump(){
 		this.dumpGenerator.generateDump("Generated via JMX");
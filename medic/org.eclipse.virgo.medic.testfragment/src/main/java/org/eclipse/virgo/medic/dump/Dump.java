@@ -11,9 +11,12 @@
 
 package org.eclipse.virgo.medic.dump;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Map;
 
@@ -72,6 +75,36 @@ public interface Dump {
      */
     FileOutputStream createFileOutputStream(String name) throws DumpContributionFailedException;
 
+    /**
+     * Creates a buffered {@link OutputStream} that writes to an entry with the supplied name, within this dump's output
+     * location. If the dump is configured to be compressed the entry is compressed as it is written, and the name of
+     * the file that holds it will have a suffix, such as <code>.gz</code>, appended.
+     * <p />
+     * The default implementation buffers the stream returned by {@link #createFileOutputStream(String)} and does not
+     * compress the entry.
+     * @param name 
+     * 
+     * @return an <code>OutputStream</code> to which a contribution to the dump can be written
+     * @throws DumpContributionFailedException 
+     */
+    default OutputStream createOutputStream(String name) throws DumpContributionFailedException {
+        return new BufferedOutputStream(createFileOutputStream(name));
+    }
+
+    /**
+     * Creates a buffered {@link Writer} that writes to an entry with the supplied name, within this dump's output
+     * location. The entry is compressed in the same way as those written with {@link #createOutputStream(String)}.
+     * <p />
+     * The default implementation writes to the stream returned by {@link #createOutputStream(String)}.
+     * @param name 
+     * 
+     * @return a <code>Writer</code> to which a contribution to the dump can be written
+     * @throws DumpContributionFailedException 
+     */
+    default Writer createWriter(String name) throws DumpContributionFailedException {
+        return new OutputStreamWriter(createOutputStream(name));
+    }
+
     /**
      * Creates a {@link File} with the supplied name, within this dump's output location.
      * @param name 
@@ -45,4 +45,25 @@ public interface DeployerConfiguration {
      * @return the scan interval in milliseconds.
      */
     int getScanIntervalMillis();
+
+    /**
+     * Get whether concurrent start is enabled. When it is enabled, unrelated artifacts may be started and undeployed in
+     * parallel. Installing and resolving artifacts remains serial, as every install pipeline uses the same side state.
+     * Concurrent start is disabled unless an implementation enables it.
+     *
+     * @return <code>true</code> if and only if concurrent start is enabled.
+     */
+    default boolean isConcurrentStartEnabled() {
+        return false;
+    }
+
+    /**
+     * Get whether the pickup directory is watched for changes using the file system's watch service rather than being
+     * listed in full on every scan. The watch service is not used unless an implementation enables it.
+     *
+     * @return <code>true</code> if and only if the pickup directory is watched for changes.
+     */
+    default boolean isPickupWatchServiceEnabled() {
+        return false;
+    }
 }
@@ -56,6 +56,8 @@ public enum DeployerLogEvents implements LogEvent {
     WATCHED_REPOSITORIES_REFRESH_FAILED(91, Level.WARNING), //
  
     RECOVERY_FAILED(200, Level.ERROR), //
+    ARTIFACT_RECOVERED(201, Level.INFO), //
+    RECOVERY_COMPLETED(202, Level.INFO), //
 
     DUPLICATE_PACKAGE_DURING_SCOPING(300, Level.ERROR), //
     DUPLICATE_BSN_IN_SCOPE(301, Level.ERROR), //
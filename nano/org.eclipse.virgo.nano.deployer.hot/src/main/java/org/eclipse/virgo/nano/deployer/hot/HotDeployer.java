@@ -52,12 +52,13 @@ public final class HotDeployer {
      */
     public HotDeployer(@NonNull DeployerConfiguration deployerConfiguration, @NonNull ApplicationDeployer deployer, EventLogger eventLogger) {
         this.pickupDir = createHotDeployDir(deployerConfiguration.getDeploymentPickupDirectory());
-        FileSystemChecker checker = createFileSystemChecker(deployer, eventLogger);
+        FileSystemChecker checker = createFileSystemChecker(deployerConfiguration, deployer, eventLogger);
         this.thread = new Thread(new WatchTask(checker, this.pickupDir, deployerConfiguration.getScanIntervalMillis()), "fs-watcher");
     }
 
-	private FileSystemChecker createFileSystemChecker(ApplicationDeployer deployer, EventLogger eventLogger) {
-		FileSystemChecker checker = new FileSystemChecker(this.pickupDir, EXCLUDE_PATTERN, this.logger);
+	private FileSystemChecker createFileSystemChecker(DeployerConfiguration deployerConfiguration, ApplicationDeployer deployer, EventLogger eventLogger) {
+		FileSystemChecker checker = new FileSystemChecker(this.pickupDir, EXCLUDE_PATTERN, this.logger,
+            deployerConfiguration.isPickupWatchServiceEnabled());
         checker.addListener(new HotDeploymentFileSystemListener(deployer, eventLogger));
 		return checker;
 	}
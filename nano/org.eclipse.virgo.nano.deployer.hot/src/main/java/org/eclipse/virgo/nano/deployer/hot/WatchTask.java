@@ -2,6 +2,7 @@
 package org.eclipse.virgo.nano.deployer.hot;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.virgo.util.io.FileSystemChecker;
 import org.eclipse.virgo.util.io.FileSystemListener;
@@ -11,6 +12,11 @@ import org.slf4j.LoggerFactory;
 /**
  * Task that monitors a given directory and notifies configured {@link FileSystemListener FileSystemListeners}.
  * <p/>
+ * If the checker watches its directory, the task blocks until the watch service reports a change, or the scan interval
+ * elapses, and checks straight away. While a new or modified file is still settling, the directory is checked again
+ * after the settle interval, which is the time a file's size must remain unchanged before it is announced. The settle
+ * interval defaults to the scan interval. If the directory is not watched, it is checked once every scan interval.
+ * <p/>
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
@@ -23,33 +29,55 @@ final class WatchTask implements Runnable {
 
     private final int scanIntervalMillis;
 
+    private final int settleIntervalMillis;
+
     private final FileSystemChecker checker;
 
     private final File watchDir;
 
     WatchTask(FileSystemChecker checker, File watchDir, int scanIntervalMillis) {
+        this(checker, watchDir, scanIntervalMillis, scanIntervalMillis);
+    }
+
+    WatchTask(FileSystemChecker checker, File watchDir, int scanIntervalMillis, int settleIntervalMillis) {
         this.checker = checker;
         this.watchDir = watchDir;
         this.scanIntervalMillis = scanIntervalMillis;
+        this.settleIntervalMillis = settleIntervalMillis;
     }
 
     /**
-     * Watches the configured directory for modifications.
+     * Watches the configured directory for modifications, closing the checker when interrupted.
      */
     @Override
     public void run() {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                Thread.sleep(this.scanIntervalMillis);
-            } catch (InterruptedException e) {
-                break;
-            }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    awaitCheck();
+                } catch (InterruptedException e) {
+                    break;
+                }
 
-            try {
-                this.checker.check();
-            } catch (Throwable e) {
-                this.logger.error("Error watching directory '{}'", e, this.watchDir.getAbsolutePath());
+                try {
+                    this.checker.check();
+                } catch (Throwable e) {
+                    this.logger.error("Error watching directory '{}'", e, this.watchDir.getAbsolutePath());
+                }
             }
+        } finally {
+            this.checker.close();
+        }
+    }
+
+    private void awaitCheck() throws InterruptedException {
+        if (!this.checker.isWatching()) {
+            Thread.sleep(this.scanIntervalMillis);
+        } else if (this.checker.hasUnsettledFiles()) {
+            // a file is announced only once its size is unchanged between two checks, so leave it time to settle
+            Thread.sleep(this.settleIntervalMillis);
+        } else {
+            this.checker.awaitChange(this.scanIntervalMillis, TimeUnit.MILLISECONDS);
         }
     }
 }
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.nano.deployer.hot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.virgo.util.io.FileSystemChecker;
+import org.eclipse.virgo.util.io.FileSystemEvent;
+import org.eclipse.virgo.util.io.FileSystemListener;
+import org.eclipse.virgo.util.io.PathReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatchTaskTests {
+
+    private static final int SCAN_INTERVAL_MILLIS = 60000;
+
+    private static final int SETTLE_INTERVAL_MILLIS = 200;
+
+    private final PathReference watchDir = new PathReference("build/watchTask");
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+    private Thread watchThread;
+
+    @Before
+    public void setUp() {
+        this.watchDir.delete(true);
+        this.watchDir.createDirectory();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (this.watchThread != null) {
+            this.watchThread.interrupt();
+            this.watchThread.join(10000);
+        }
+        this.watchDir.delete(true);
+    }
+
+    @Test
+    public void watchedDirectoryChangesAreCheckedWithoutWaitingForTheScanInterval() throws Exception {
+        FileSystemChecker checker = new FileSystemChecker(this.watchDir.toFile(), null, null, true);
+        assertTrue(checker.isWatching());
+        checker.addListener(new FileSystemListener() {
+
+            public void onChange(String path, FileSystemEvent event) {
+                events.add(new File(path).getName() + " " + event);
+            }
+
+            public void onInitialEvent(List<String> paths) {
+            }
+        });
+
+        this.watchThread = new Thread(new WatchTask(checker, this.watchDir.toFile(), SCAN_INTERVAL_MILLIS, SETTLE_INTERVAL_MILLIS), "watch-task-test");
+        this.watchThread.start();
+
+        writeFile(new File(this.watchDir.toFile(), "app.jar"));
+
+        // far less than the scan interval, but allows for watch services which poll
+        assertEquals("app.jar CREATED", this.events.poll(20, TimeUnit.SECONDS));
+    }
+
+    private static void writeFile(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -80,7 +80,9 @@ public class StandardApplicationDeployer implements ApplicationDeployer {
         int deployerTimeout = parseInt(this.kernelConfig.getProperty("deployer.timeout"));
         String pickupDirectory = this.kernelConfig.getProperty("deployer.pickupDirectory");
         int scanInterval = parseInt(this.kernelConfig.getProperty("deployer.scanIntervalMillis"));
-        DeployerConfiguration deployerConfiguration = new StandardDeployerConfiguration(deployerTimeout, new File(pickupDirectory), scanInterval);
+        boolean pickupWatchService = Boolean.parseBoolean(this.kernelConfig.getProperty("deployer.pickupWatchService"));
+        DeployerConfiguration deployerConfiguration = new StandardDeployerConfiguration(deployerTimeout, new File(pickupDirectory), scanInterval,
+            pickupWatchService);
         this.hotDeployerEnabler = new HotDeployerEnabler(this, deployerConfiguration, this.eventLogger);
         this.hotDeployerEnabler.startHotDeployer();
     }
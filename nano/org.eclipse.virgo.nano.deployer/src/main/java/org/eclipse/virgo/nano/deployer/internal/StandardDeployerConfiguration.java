@@ -35,6 +35,8 @@ public final class StandardDeployerConfiguration implements DeployerConfiguratio
 
     private final int scanIntervalMillis;
 
+    private final boolean pickupWatchServiceEnabled;
+
     /**
      * Construct a deployment configuration using the given <code>deploymentTimeout</code>, and
      * <code>pickupDirectory</code>.
@@ -44,9 +46,23 @@ public final class StandardDeployerConfiguration implements DeployerConfiguratio
      * @param scanIntervalMillis The deployer's scan interval in milliseconds
      */
     public StandardDeployerConfiguration(int deploymentTimeout, File pickupDirectory, int scanIntervalMillis) {
+        this(deploymentTimeout, pickupDirectory, scanIntervalMillis, false);
+    }
+
+    /**
+     * Construct a deployment configuration using the given <code>deploymentTimeout</code>, <code>pickupDirectory</code>,
+     * <code>scanIntervalMillis</code> and <code>pickupWatchService</code>.
+     * 
+     * @param deploymentTimeout The timeout period, in seconds
+     * @param pickupDirectory The deployer's pickup directory
+     * @param scanIntervalMillis The deployer's scan interval in milliseconds
+     * @param pickupWatchService whether to watch the pickup directory for changes rather than list it on every scan
+     */
+    public StandardDeployerConfiguration(int deploymentTimeout, File pickupDirectory, int scanIntervalMillis, boolean pickupWatchService) {
         this.deploymentTimeoutSeconds = deploymentTimeout;
         this.deploymentPickupDirectory = new PathReference(pickupDirectory);
         this.scanIntervalMillis = scanIntervalMillis;
+        this.pickupWatchServiceEnabled = pickupWatchService;
     }
 
     /**
@@ -70,6 +86,22 @@ public final class StandardDeployerConfiguration implements DeployerConfiguratio
         return this.scanIntervalMillis;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The nano deployer always deploys serially.
+     */
+    public boolean isConcurrentStartEnabled() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isPickupWatchServiceEnabled() {
+        return this.pickupWatchServiceEnabled;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -79,6 +79,7 @@ public class HotDeployerTests {
         DeployerConfiguration deployerConfiguration = createMock(DeployerConfiguration.class);
         expect(deployerConfiguration.getDeploymentPickupDirectory()).andReturn(new PathReference("build/pickup"));
         expect(deployerConfiguration.getScanIntervalMillis()).andReturn(1000);
+        expect(deployerConfiguration.isPickupWatchServiceEnabled()).andReturn(false);
 
         replay(deployerConfiguration);
 
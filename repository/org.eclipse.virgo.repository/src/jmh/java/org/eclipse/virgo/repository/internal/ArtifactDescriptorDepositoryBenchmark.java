@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.builder.ArtifactDescriptorBuilder;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link StandardArtifactDescriptorDepository} with {@link IndexedArtifactDescriptorDepository} on the queries
+ * issued when resolving bundle dependencies: by name, by name and version, by highest version in a range, and by
+ * exported package.
+ * <p />
+ * Run with <code>gradlew :repository:org.eclipse.virgo.repository:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactDescriptorDepositoryBenchmark {
+
+    private static final String TYPE = "bundle";
+
+    private static final String EXPORT_PACKAGE = "Export-Package";
+
+    private static final int PACKAGES_PER_BUNDLE = 4;
+
+    private static final VersionRange VERSION_RANGE = new VersionRange("[1.0.0,3.0.0)");
+
+    @Param({ "5000", "50000" })
+    private int artifactCount;
+
+    @Param({ "standard", "indexed" })
+    private String depositoryType;
+
+    private ArtifactDescriptorDepository depository;
+
+    private Set<Attribute>[] nameFilters;
+
+    private Set<Attribute>[] nameAndVersionFilters;
+
+    private Set<Attribute>[] packageFilters;
+
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Set<RepositoryAwareArtifactDescriptor> artifactDescriptors = new HashSet<RepositoryAwareArtifactDescriptor>();
+        for (int i = 0; i < this.artifactCount; i++) {
+            artifactDescriptors.add(createDescriptor(i));
+        }
+        if ("standard".equals(this.depositoryType)) {
+            this.depository = new StandardArtifactDescriptorDepository(artifactDescriptors);
+        } else {
+            this.depository = new IndexedArtifactDescriptorDepository(artifactDescriptors);
+        }
+
+        Random random = new Random(0);
+        int queryCount = 1024;
+        this.nameFilters = new Set[queryCount];
+        this.nameAndVersionFilters = new Set[queryCount];
+        this.packageFilters = new Set[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            int i = random.nextInt(this.artifactCount);
+            this.nameFilters[q] = filters(TYPE, name(i), null, null);
+            this.nameAndVersionFilters[q] = filters(TYPE, name(i), version(i), null);
+            this.packageFilters[q] = filters(TYPE, null, null, packageName(i, random.nextInt(PACKAGES_PER_BUNDLE)));
+        }
+    }
+
+    @Benchmark
+    public Set<RepositoryAwareArtifactDescriptor> queryByName() {
+        return this.depository.resolveArtifactDescriptors(this.nameFilters[nextQuery()]);
+    }
+
+    @Benchmark
+    public Set<RepositoryAwareArtifactDescriptor> queryByNameAndVersion() {
+        return this.depository.resolveArtifactDescriptors(this.nameAndVersionFilters[nextQuery()]);
+    }
+
+    @Benchmark
+    public Set<RepositoryAwareArtifactDescriptor> queryHighestVersionInRange() {
+        return this.depository.resolveArtifactDescriptors(this.nameFilters[nextQuery()], VERSION_RANGE, VersionRangeMatchingStrategy.HIGHEST);
+    }
+
+    @Benchmark
+    public Set<RepositoryAwareArtifactDescriptor> queryByExportedPackage() {
+        return this.depository.resolveArtifactDescriptors(this.packageFilters[nextQuery()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Set<RepositoryAwareArtifactDescriptor> queryByExportedPackageConcurrently() {
+        return this.depository.resolveArtifactDescriptors(this.packageFilters[(int) (Thread.currentThread().getId() + nextQuery()) & 1023]);
+    }
+
+    private int nextQuery() {
+        return this.next++ & 1023;
+    }
+
+    private static RepositoryAwareArtifactDescriptor createDescriptor(int i) {
+        ArtifactDescriptorBuilder builder = new ArtifactDescriptorBuilder().setUri(URI.create("file:/repository/" + name(i) + ".jar")).setType(
+            TYPE).setName(name(i)).setVersion(version(i));
+        for (int p = 0; p < PACKAGES_PER_BUNDLE; p++) {
+            builder.addAttribute(new StandardAttribute(EXPORT_PACKAGE, packageName(i, p)));
+        }
+        return new DelegatingRepositoryAwareArtifactDescriptor(builder.build(), "benchmark", new IdentityUriMapper());
+    }
+
+    private static Set<Attribute> filters(String type, String name, String version, String exportedPackage) {
+        Set<Attribute> filters = new HashSet<Attribute>();
+        filters.add(new StandardAttribute(ArtifactDescriptor.TYPE, type));
+        if (name != null) {
+            filters.add(new StandardAttribute(ArtifactDescriptor.NAME, name));
+        }
+        if (version != null) {
+            filters.add(new StandardAttribute(ArtifactDescriptor.VERSION, version));
+        }
+        if (exportedPackage != null) {
+            filters.add(new StandardAttribute(EXPORT_PACKAGE, exportedPackage));
+        }
+        return filters;
+    }
+
+    private static String name(int i) {
+        return "org.example.bundle" + (i / 4);
+    }
+
+    private static String version(int i) {
+        return (i % 4) + ".0.0";
+    }
+
+    private static String packageName(int i, int p) {
+        return name(i) + ".package" + p;
+    }
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Set;
+
+/**
+ * <p>
+ * An {@link ArtifactDescriptorPersister} which can persist changes to the set of {@link RepositoryAwareArtifactDescriptor}s
+ * it last persisted without rewriting the whole set, typically by appending them to a journal. A repository which
+ * knows what has changed since it last persisted its artifacts uses this interface in preference to
+ * {@link #persistArtifactDescriptors(Set)} when its persister implements it.
+ * </p>
+ * <p>
+ * Changes are applied in the order in which they are persisted. An updated descriptor replaces any descriptor with the
+ * same URI and a removed URI removes any descriptor with that URI, so persisting a change which has already been
+ * persisted, including by a later call to <code>persistArtifactDescriptors</code>, has no further effect.
+ * {@link #loadArtifacts()} returns the last set of descriptors persisted with the subsequent changes applied.
+ * </p>
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * Implementations should be Threadsafe
+ * 
+ */
+public interface IncrementalArtifactDescriptorPersister extends ArtifactDescriptorPersister {
+
+    /**
+     * Persist changes to the set of {@link RepositoryAwareArtifactDescriptor}s last persisted. A URI is never both
+     * updated and removed by the same call.
+     * 
+     * @param updated the descriptors which have been added or replaced
+     * @param removed the URIs of the descriptors which have been removed
+     * @return <code>true</code> if enough changes have accumulated that the caller should persist the whole set with
+     *         {@link #persistArtifactDescriptors(Set)}, <code>false</code> otherwise
+     * 
+     * @throws IOException
+     */
+    boolean persistArtifactDescriptorChanges(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) throws IOException;
+}
@@ -61,7 +61,10 @@ public interface Query {
 
                 Set<Set<T>> grouped = RepositoryUtils.groupByTypeAndName(unfiltered);
                 for (Set<T> group : grouped) {
-                    result.add(RepositoryUtils.selectHighestVersionInRange(group, versionRange));
+                    T highest = RepositoryUtils.selectHighestVersionInRange(group, versionRange);
+                    if (highest != null) {
+                        result.add(highest);
+                    }
                 }
 
                 return result;
@@ -75,7 +78,10 @@ public interface Query {
 
                 Set<Set<T>> grouped = RepositoryUtils.groupByTypeAndName(unfiltered);
                 for (Set<T> group : grouped) {
-                    result.add(RepositoryUtils.selectLowestVersionInRange(group, versionRange));
+                    T lowest = RepositoryUtils.selectLowestVersionInRange(group, versionRange);
+                    if (lowest != null) {
+                        result.add(lowest);
+                    }
                 }
 
                 return result;
@@ -107,6 +113,22 @@ public interface Query {
      */
     public Query addFilter(String name, String value, Map<String, Set<String>> properties);
 
+    /**
+     * Apply a new filter to this <code>Query</code> such that, for an {@link ArtifactDescriptor} to match this
+     * <code>Query</code>, it must have an <code>Attribute</code> with the specified name and value whose
+     * <code>version</code> property is included in the specified range. An <code>Attribute</code> with no
+     * <code>version</code> property has version <code>0.0.0</code>.
+     * <p/>
+     * This is typically used to find the bundles which export a package at a version in a range, for example
+     * <code>addVersionRangeFilter("Export-Package", "org.foo", range)</code>.
+     * 
+     * @param name The name of the attribute
+     * @param value The value of the attribute
+     * @param versionRange The range which must include the version of the attribute
+     * @return the Query to allow method chaining
+     */
+    public Query addVersionRangeFilter(String name, String value, VersionRange versionRange);
+
     /**
      * Apply a new VersionRange filter to this <code>Query</code>. </p> This filter is applied after all other
      * <code>Attribute</code> based filters and uses {@link VersionRangeMatchingStrategy#HIGHEST} matching strategy.
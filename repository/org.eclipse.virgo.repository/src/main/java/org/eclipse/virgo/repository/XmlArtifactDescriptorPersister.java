@@ -11,33 +11,79 @@
 
 package org.eclipse.virgo.repository;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 import org.eclipse.virgo.repository.codec.RepositoryCodec;
+import org.eclipse.virgo.repository.codec.StreamingRepositoryCodec;
+import org.eclipse.virgo.repository.codec.StreamingRepositoryCodec.ArtifactDescriptorHandler;
 import org.eclipse.virgo.repository.internal.DelegatingRepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.internal.IdentityUriMapper;
 import org.eclipse.virgo.util.io.IOUtils;
 import org.eclipse.virgo.util.io.PathReference;
+import org.eclipse.virgo.util.io.RecordJournal;
+import org.eclipse.virgo.util.io.RecordJournal.RecordHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * <p>
  * An implementation of {@link ArtifactDescriptorPersister} that will convert a collection of 
  * {@link ArtifactDescriptor}s to and from a (binary) file. The file is supplied on construction and is immutable.
+ * If the {@link RepositoryCodec} is a {@link StreamingRepositoryCodec}, artifacts are loaded as they are decoded
+ * rather than after the whole file has been decoded.
+ * </p>
+ * <p>
+ * Changes persisted with {@link #persistArtifactDescriptorChanges(Set, Set)} are appended to a journal next to the
+ * file, named after it with the suffix <code>.journal</code>, which is a {@link RecordJournal}. The journal header identifies the version of the file to which the journal applies by its length and checksum, so a
+ * journal left behind by a crash while the file was being rewritten is ignored. Loading the artifacts replays the
+ * journal over the file up to the last complete record. Persisting the whole set rewrites the file, through a temporary
+ * file which is moved into place, and discards the journal.
  * </p>
  * 
  * <strong>Concurrent Semantics</strong><br />
  * This class is thread-safe.
  * 
  */
-public final class XmlArtifactDescriptorPersister implements ArtifactDescriptorPersister {
+public final class XmlArtifactDescriptorPersister implements IncrementalArtifactDescriptorPersister {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XmlArtifactDescriptorPersister.class);
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int JOURNAL_VERSION = 1;
+
+    private static final int JOURNAL_HEADER_DATA_LENGTH = 16;
+
+    private static final int MAX_PAYLOAD_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte UPDATE_RECORD = 1;
+
+    private static final byte REMOVE_RECORD = 2;
 
     private final RepositoryCodec codec;
 
@@ -45,30 +91,142 @@ public final class XmlArtifactDescriptorPersister implements ArtifactDescriptorP
 
     private final File persistenceFile;
 
+    private final File journalFile;
+
+    /**
+     * The journal of changes to the persistence file. Guarded by <code>monitor</code>.
+     */
+    private final RecordJournal journal;
+
+    private final File temporaryFile;
+
+    private final Object monitor = new Object();
+
+    /**
+     * Whether the length, checksum and artifact count of the persistence file are known. Guarded by <code>monitor</code>.
+     */
+    private boolean snapshotKnown = false;
+
+    private long snapshotLength;
+
+    private long snapshotChecksum;
+
+    private int snapshotArtifactCount;
+
     /**
      * @param codec De/Serialiser
      * @param repositoryName local name of repository persisted
      * @param persistenceFile where to persist the repository
      */
     public XmlArtifactDescriptorPersister(RepositoryCodec codec, String repositoryName, File persistenceFile) {
+        this(codec, repositoryName, persistenceFile, null);
+    }
+
+    private XmlArtifactDescriptorPersister(RepositoryCodec codec, String repositoryName, File persistenceFile, RecordJournal journal) {
         this.codec = codec;
         this.repositoryName = repositoryName;
         this.persistenceFile = persistenceFile;
+        this.journalFile = new File(persistenceFile.getPath() + JOURNAL_SUFFIX);
+        this.temporaryFile = new File(persistenceFile.getPath() + TEMPORARY_SUFFIX);
+        this.journal = journal == null ? new RecordJournal(this.journalFile, JOURNAL_VERSION, JOURNAL_HEADER_DATA_LENGTH, MAX_PAYLOAD_LENGTH)
+            : journal;
+    }
+
+    /**
+     * Moves the persistence file, together with its journal, to the given file and returns a persister of the moved file
+     * which can persist further changes without reading it again. This persister must not be used afterwards.
+     * <p/>
+     * The journal is moved first, so that if the persistence file cannot be moved it is left without the changes in its
+     * journal rather than the moved file being left with changes it does not have.
+     * 
+     * @param persistenceFile the file to move the persistence file to
+     * @return a persister of the moved file
+     * @throws IOException if the files cannot be moved
+     */
+    public XmlArtifactDescriptorPersister moveTo(File persistenceFile) throws IOException {
+        synchronized (this.monitor) {
+            if (persistenceFile.equals(this.persistenceFile)) {
+                return this;
+            }
+            RecordJournal movedJournal = this.journal.moveTo(new File(persistenceFile.getPath() + JOURNAL_SUFFIX));
+            RecordJournal.moveAtomically(this.persistenceFile, persistenceFile);
+            XmlArtifactDescriptorPersister moved = new XmlArtifactDescriptorPersister(this.codec, this.repositoryName, persistenceFile, movedJournal);
+            moved.snapshotKnown = this.snapshotKnown;
+            moved.snapshotLength = this.snapshotLength;
+            moved.snapshotChecksum = this.snapshotChecksum;
+            moved.snapshotArtifactCount = this.snapshotArtifactCount;
+            return moved;
+        }
+    }
+
+    /**
+     * Deletes the journal of the persistence file, for use when the persistence file itself is being discarded.
+     * 
+     * @return <code>true</code> if there is no longer a journal, otherwise <code>false</code>
+     */
+    public boolean deleteJournal() {
+        synchronized (this.monitor) {
+            return this.journal.delete();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void persistArtifactDescriptors(Set<RepositoryAwareArtifactDescriptor> artifacts) throws IOException {
-        OutputStream stream = null;
-        try {
+        synchronized (this.monitor) {
             if (!this.persistenceFile.exists()) {
                 createPersistenceFile();
             }
-            stream = new FileOutputStream(this.persistenceFile);
-            this.codec.write(new HashSet<ArtifactDescriptor>(artifacts), stream);
-        } finally {
-            IOUtils.closeQuietly(stream);
+            CRC32 checksum = new CRC32();
+            FileOutputStream fileStream = null;
+            try {
+                fileStream = new FileOutputStream(this.temporaryFile);
+                OutputStream stream = new CheckedOutputStream(new BufferedOutputStream(fileStream), checksum);
+                this.codec.write(new HashSet<ArtifactDescriptor>(artifacts), stream);
+                stream.flush();
+                fileStream.getFD().sync();
+            } finally {
+                IOUtils.closeQuietly(fileStream);
+            }
+            long length = this.temporaryFile.length();
+            RecordJournal.moveAtomically(this.temporaryFile, this.persistenceFile);
+
+            this.snapshotKnown = true;
+            this.snapshotLength = length;
+            this.snapshotChecksum = checksum.getValue();
+            this.snapshotArtifactCount = artifacts.size();
+
+            // the journal no longer matches the persistence file, so it would be ignored if it were left behind
+            if (!this.journal.delete()) {
+                LOGGER.warn("Unable to delete superseded journal '{}' of repository '{}'.", this.journalFile, this.repositoryName);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean persistArtifactDescriptorChanges(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>(removed.size() + updated.size());
+        for (URI uri : removed) {
+            records.add(payload(REMOVE_RECORD, uri.toString().getBytes(UTF_8)));
+        }
+        for (RepositoryAwareArtifactDescriptor descriptor : updated) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            this.codec.write(Collections.singleton(descriptor), encoded);
+            records.add(payload(UPDATE_RECORD, encoded.toByteArray()));
+        }
+
+        synchronized (this.monitor) {
+            if (!this.snapshotKnown) {
+                readSnapshot();
+            }
+            if (!this.journal.isStarted()) {
+                this.journal.start(journalHeaderData());
+            }
+            this.journal.append(records);
+            return this.journal.isCompactionDue(this.snapshotArtifactCount / 2);
         }
     }
 
@@ -82,22 +240,111 @@ public final class XmlArtifactDescriptorPersister implements ArtifactDescriptorP
      * {@inheritDoc}
      */
     public Set<RepositoryAwareArtifactDescriptor> loadArtifacts() throws IndexFormatException {
-        if (!this.persistenceFile.exists()) {
-            return new HashSet<RepositoryAwareArtifactDescriptor>();
-        }
-        InputStream stream = null;
-        try {
-            stream = new FileInputStream(this.persistenceFile);
+        synchronized (this.monitor) {
+            Map<URI, ArtifactDescriptor> descriptors = readSnapshot();
+            replayJournal(descriptors);
+
             IdentityUriMapper mapper = new IdentityUriMapper();
             HashSet<RepositoryAwareArtifactDescriptor> artifacts = new HashSet<RepositoryAwareArtifactDescriptor>();
-            for (ArtifactDescriptor descriptor : this.codec.read(stream)) {
+            for (ArtifactDescriptor descriptor : descriptors.values()) {
                 artifacts.add(new DelegatingRepositoryAwareArtifactDescriptor(descriptor, this.repositoryName, mapper));
             }
             return artifacts;
-        } catch (FileNotFoundException e) {
-            throw new IllegalStateException(e);
-        } finally {
-            IOUtils.closeQuietly(stream);
         }
     }
+
+    /**
+     * Reads the persistence file, recording its length, checksum and artifact count. Must be called while holding
+     * <code>monitor</code>.
+     */
+    private Map<URI, ArtifactDescriptor> readSnapshot() throws IndexFormatException {
+        final Map<URI, ArtifactDescriptor> descriptors = new LinkedHashMap<URI, ArtifactDescriptor>();
+        CRC32 checksum = new CRC32();
+        long length = 0;
+        if (this.persistenceFile.exists()) {
+            InputStream input = null;
+            try {
+                length = this.persistenceFile.length();
+                input = new CheckedInputStream(new FileInputStream(this.persistenceFile), checksum);
+                if (this.codec instanceof StreamingRepositoryCodec) {
+                    ((StreamingRepositoryCodec) this.codec).read(input, new ArtifactDescriptorHandler() {
+
+                        public void handle(ArtifactDescriptor descriptor) {
+                            descriptors.put(descriptor.getUri(), descriptor);
+                        }
+                    });
+                } else {
+                    for (ArtifactDescriptor descriptor : this.codec.read(input)) {
+                        descriptors.put(descriptor.getUri(), descriptor);
+                    }
+                }
+                // the codec need not read to the end, but the whole file is checksummed
+                byte[] buffer = new byte[8192];
+                while (input.read(buffer) != -1) {
+                    // checksum the remainder
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+        this.snapshotKnown = true;
+        this.snapshotLength = length;
+        this.snapshotChecksum = checksum.getValue();
+        this.snapshotArtifactCount = descriptors.size();
+        return descriptors;
+    }
+
+    /**
+     * Applies the journal's records to the given descriptors, if the journal applies to the persistence file. Must be
+     * called while holding <code>monitor</code>.
+     */
+    private void replayJournal(final Map<URI, ArtifactDescriptor> descriptors) {
+        try {
+            long discardedLength = this.journal.replay(journalHeaderData(), new RecordHandler() {
+
+                public boolean handle(byte[] payload) {
+                    return applyRecord(payload, descriptors);
+                }
+            });
+            if (discardedLength < 0 && this.journalFile.exists()) {
+                LOGGER.debug("Ignoring journal '{}' which does not apply to index '{}'.", this.journalFile, this.persistenceFile);
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Unable to read journal '%s' of repository '%s'.", this.journalFile, this.repositoryName), e);
+        }
+    }
+
+    private byte[] journalHeaderData() {
+        return ByteBuffer.allocate(JOURNAL_HEADER_DATA_LENGTH).putLong(this.snapshotLength).putLong(this.snapshotChecksum).array();
+    }
+
+    private boolean applyRecord(byte[] payload, Map<URI, ArtifactDescriptor> descriptors) {
+        if (payload[0] == REMOVE_RECORD) {
+            try {
+                descriptors.remove(new URI(new String(payload, 1, payload.length - 1, UTF_8)));
+                return true;
+            } catch (URISyntaxException e) {
+                return false;
+            }
+        } else if (payload[0] == UPDATE_RECORD) {
+            try {
+                for (ArtifactDescriptor descriptor : this.codec.read(new ByteArrayInputStream(payload, 1, payload.length - 1))) {
+                    descriptors.put(descriptor.getUri(), descriptor);
+                }
+                return true;
+            } catch (IndexFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] payload(byte type, byte[] data) {
+        byte[] payload = new byte[data.length + 1];
+        payload[0] = type;
+        System.arraycopy(data, 0, payload, 1, data.length);
+        return payload;
+    }
 }
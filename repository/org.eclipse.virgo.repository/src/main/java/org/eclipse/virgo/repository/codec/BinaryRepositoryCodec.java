@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.IndexFormatException;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.StandardAttribute;
+import org.osgi.framework.Version;
+
+/**
+ * A {@link RepositoryCodec} which uses a compact, versioned binary format.
+ * <p />
+ * The format starts with a four byte magic number and a format version, followed by one record per artifact and an end
+ * marker. Types, names, versions, attribute keys and values, and property names and values are written through a
+ * string table which is built as the index is written: the first occurrence of a string is written in full and later
+ * occurrences refer to it by number. Package names and version ranges, which recur throughout the Import-Package and
+ * Export-Package attributes of an index, are therefore written once. Since the table is built in the same order when
+ * reading, each artifact can be decoded as soon as its record has been read, and the strings it shares with other
+ * artifacts are shared in memory too.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Threadsafe
+ *
+ */
+public final class BinaryRepositoryCodec implements StreamingRepositoryCodec {
+
+    private static final int MAGIC = 0x56524249;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int ARTIFACT_RECORD = 1;
+
+    private static final int END_RECORD = 0;
+
+    private static final int NEW_STRING = 0;
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(Set<? extends ArtifactDescriptor> artifacts, OutputStream outputStream) {
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            output.writeInt(MAGIC);
+            output.writeByte(FORMAT_VERSION);
+
+            Map<String, Integer> stringTable = new HashMap<String, Integer>();
+            for (ArtifactDescriptor artifact : artifacts) {
+                output.writeByte(ARTIFACT_RECORD);
+                writeArtifactDescriptor(output, stringTable, artifact);
+            }
+            output.writeByte(END_RECORD);
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write binary index", e);
+        }
+    }
+
+    private static void writeArtifactDescriptor(DataOutputStream output, Map<String, Integer> stringTable, ArtifactDescriptor artifact)
+        throws IOException {
+        writeRawString(output, artifact.getUri().toString());
+        writeString(output, stringTable, artifact.getType());
+        writeString(output, stringTable, artifact.getName());
+        writeString(output, stringTable, artifact.getVersion().toString());
+        writeNullableRawString(output, artifact.getFilename());
+
+        Set<Attribute> attributes = artifact.getAttributes();
+        writeVarInt(output, attributes.size());
+        for (Attribute attribute : attributes) {
+            writeString(output, stringTable, attribute.getKey());
+            writeString(output, stringTable, attribute.getValue() == null ? "" : attribute.getValue());
+
+            Map<String, Set<String>> properties = attribute.getProperties();
+            writeVarInt(output, properties.size());
+            for (Entry<String, Set<String>> property : properties.entrySet()) {
+                writeString(output, stringTable, property.getKey());
+                writeVarInt(output, property.getValue().size());
+                for (String value : property.getValue()) {
+                    writeString(output, stringTable, value);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream output, Map<String, Integer> stringTable, String string) throws IOException {
+        Integer index = stringTable.get(string);
+        if (index == null) {
+            stringTable.put(string, stringTable.size());
+            writeVarInt(output, NEW_STRING);
+            writeRawString(output, string);
+        } else {
+            writeVarInt(output, index + 1);
+        }
+    }
+
+    private static void writeNullableRawString(DataOutputStream output, String string) throws IOException {
+        if (string == null) {
+            writeVarInt(output, 0);
+        } else {
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarInt(output, bytes.length + 1);
+            output.write(bytes);
+        }
+    }
+
+    private static void writeRawString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<ArtifactDescriptor> read(InputStream inputStream) throws IndexFormatException {
+        final Set<ArtifactDescriptor> descriptors = new HashSet<ArtifactDescriptor>();
+        read(inputStream, new ArtifactDescriptorHandler() {
+
+            public void handle(ArtifactDescriptor artifactDescriptor) {
+                descriptors.add(artifactDescriptor);
+            }
+        });
+        return descriptors;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void read(InputStream inputStream, ArtifactDescriptorHandler handler) throws IndexFormatException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IndexFormatException("Not a binary repository index");
+            }
+            int formatVersion = input.readUnsignedByte();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IndexFormatException("Unsupported binary repository index version " + formatVersion);
+            }
+
+            StringTable stringTable = new StringTable();
+            int record;
+            while ((record = input.readUnsignedByte()) == ARTIFACT_RECORD) {
+                handler.handle(readArtifactDescriptor(input, stringTable));
+            }
+            if (record != END_RECORD) {
+                throw new IndexFormatException("Unexpected record type " + record + " in binary repository index");
+            }
+        } catch (EOFException e) {
+            throw new IndexFormatException("Binary repository index is truncated", e);
+        } catch (IOException e) {
+            throw new IndexFormatException("Could not read binary repository index", e);
+        }
+    }
+
+    private static ArtifactDescriptor readArtifactDescriptor(DataInputStream input, StringTable stringTable) throws IOException,
+        IndexFormatException {
+        URI uri;
+        try {
+            uri = new URI(readRawString(input));
+        } catch (URISyntaxException e) {
+            throw new IndexFormatException("Invalid artifact URI in binary repository index", e);
+        }
+        String type = readString(input, stringTable);
+        String name = readString(input, stringTable);
+        Version version = stringTable.getVersion(readString(input, stringTable));
+        String filename = readNullableRawString(input);
+
+        int attributeCount = readVarInt(input);
+        Set<Attribute> attributes = new HashSet<Attribute>(attributeCount * 2);
+        for (int a = 0; a < attributeCount; a++) {
+            String key = readString(input, stringTable);
+            String value = readString(input, stringTable);
+
+            int propertyCount = readVarInt(input);
+            Map<String, Set<String>> properties = new HashMap<String, Set<String>>(propertyCount * 2);
+            for (int p = 0; p < propertyCount; p++) {
+                String propertyName = readString(input, stringTable);
+                int valueCount = readVarInt(input);
+                Set<String> values = new HashSet<String>(valueCount * 2);
+                for (int v = 0; v < valueCount; v++) {
+                    values.add(readString(input, stringTable));
+                }
+                properties.put(propertyName, values);
+            }
+            attributes.add(new StandardAttribute(key, value, properties));
+        }
+
+        return new StandardArtifactDescriptor(uri, type, name, version, filename, attributes);
+    }
+
+    private static String readString(DataInputStream input, StringTable stringTable) throws IOException, IndexFormatException {
+        int reference = readVarInt(input);
+        if (reference == NEW_STRING) {
+            return stringTable.add(readRawString(input));
+        }
+        return stringTable.get(reference - 1);
+    }
+
+    private static String readNullableRawString(DataInputStream input) throws IOException, IndexFormatException {
+        int length = readVarInt(input);
+        return length == 0 ? null : readBytesAsString(input, length - 1);
+    }
+
+    private static String readRawString(DataInputStream input) throws IOException, IndexFormatException {
+        return readBytesAsString(input, readVarInt(input));
+    }
+
+    private static String readBytesAsString(DataInputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException, IndexFormatException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IndexFormatException("Malformed number in binary repository index");
+    }
+
+    /**
+     * Returns whether the supplied bytes start with the magic number of the binary format.
+     */
+    static boolean isBinaryIndex(byte[] header, int length) {
+        return length >= 4 && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * The strings read so far, in the order in which they were added to the table when it was written, and the
+     * versions parsed from them.
+     */
+    private static final class StringTable {
+
+        private final List<String> strings = new ArrayList<String>();
+
+        private final Map<String, Version> versions = new HashMap<String, Version>();
+
+        String add(String string) {
+            this.strings.add(string);
+            return string;
+        }
+
+        String get(int index) throws IndexFormatException {
+            if (index >= this.strings.size()) {
+                throw new IndexFormatException("Invalid string reference " + index + " in binary repository index");
+            }
+            return this.strings.get(index);
+        }
+
+        Version getVersion(String string) throws IndexFormatException {
+            Version version = this.versions.get(string);
+            if (version == null) {
+                try {
+                    version = new Version(string);
+                } catch (IllegalArgumentException e) {
+                    throw new IndexFormatException("Invalid artifact version '" + string + "' in binary repository index", e);
+                }
+                this.versions.put(string, version);
+            }
+            return version;
+        }
+    }
+}
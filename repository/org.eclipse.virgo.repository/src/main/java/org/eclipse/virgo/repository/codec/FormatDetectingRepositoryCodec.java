@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.IndexFormatException;
+
+/**
+ * A {@link RepositoryCodec} which reads both the binary format of {@link BinaryRepositoryCodec} and the XML format of
+ * {@link XMLRepositoryCodec}, telling them apart by the binary format's magic number, and which writes with a codec
+ * supplied on construction.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Threadsafe
+ *
+ */
+public final class FormatDetectingRepositoryCodec implements StreamingRepositoryCodec {
+
+    private static final int HEADER_LENGTH = 4;
+
+    private final StreamingRepositoryCodec binaryCodec = new BinaryRepositoryCodec();
+
+    private final StreamingRepositoryCodec xmlCodec = new XMLRepositoryCodec();
+
+    private final RepositoryCodec writeCodec;
+
+    /**
+     * @param writeCodec the codec with which to write artifacts
+     */
+    public FormatDetectingRepositoryCodec(RepositoryCodec writeCodec) {
+        this.writeCodec = writeCodec;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(Set<? extends ArtifactDescriptor> artifacts, OutputStream outputStream) {
+        this.writeCodec.write(artifacts, outputStream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<ArtifactDescriptor> read(InputStream inputStream) throws IndexFormatException {
+        InputStream bufferedStream = new BufferedInputStream(inputStream);
+        return detectCodec(bufferedStream).read(bufferedStream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void read(InputStream inputStream, ArtifactDescriptorHandler handler) throws IndexFormatException {
+        InputStream bufferedStream = new BufferedInputStream(inputStream);
+        detectCodec(bufferedStream).read(bufferedStream, handler);
+    }
+
+    private StreamingRepositoryCodec detectCodec(InputStream inputStream) throws IndexFormatException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int length = 0;
+        try {
+            inputStream.mark(HEADER_LENGTH);
+            int read;
+            while (length < HEADER_LENGTH && (read = inputStream.read(header, length, HEADER_LENGTH - length)) != -1) {
+                length += read;
+            }
+            inputStream.reset();
+        } catch (IOException e) {
+            throw new IndexFormatException("Could not read repository index", e);
+        }
+        return BinaryRepositoryCodec.isBinaryIndex(header, length) ? this.binaryCodec : this.xmlCodec;
+    }
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+
+/**
+ * The changes between two versions of a repository index: the artifacts which have been added or updated, and the URIs
+ * of the artifacts which have been removed. An artifact is updated by replacing the artifact with the same URI. Applying
+ * a delta to an index which already contains some of its changes yields the same index as applying it to the version
+ * from which it was computed.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * This class is immutable and thread safe.
+ *
+ */
+public final class IndexDelta {
+
+    private final Set<ArtifactDescriptor> updated;
+
+    private final Set<URI> removed;
+
+    /**
+     * @param updated the artifacts which have been added or updated
+     * @param removed the URIs of the artifacts which have been removed
+     */
+    public IndexDelta(Set<? extends ArtifactDescriptor> updated, Set<URI> removed) {
+        if (updated == null || removed == null) {
+            throw new IllegalArgumentException("Arguments can not be null");
+        }
+        this.updated = Collections.unmodifiableSet(new HashSet<ArtifactDescriptor>(updated));
+        this.removed = Collections.unmodifiableSet(new HashSet<URI>(removed));
+    }
+
+    /**
+     * @return the artifacts which have been added or updated
+     */
+    public Set<ArtifactDescriptor> getUpdated() {
+        return this.updated;
+    }
+
+    /**
+     * @return the URIs of the artifacts which have been removed
+     */
+    public Set<URI> getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * @return whether the delta contains no changes
+     */
+    public boolean isEmpty() {
+        return this.updated.isEmpty() && this.removed.isEmpty();
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.IndexFormatException;
+
+/**
+ * Serializes and deserializes an {@link IndexDelta}.
+ * <p />
+ * The format starts with a four byte magic number and a format version, followed by the number of removed URIs and the
+ * URIs themselves, and ends with the updated artifacts in the format of {@link BinaryRepositoryCodec}.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Threadsafe
+ *
+ */
+public final class IndexDeltaCodec {
+
+    private static final int MAGIC = 0x56524244;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final RepositoryCodec artifactCodec = new BinaryRepositoryCodec();
+
+    /**
+     * Write out an index delta
+     *
+     * @param delta the delta to write
+     * @param outputStream the output stream to write the delta to
+     */
+    public void write(IndexDelta delta, OutputStream outputStream) {
+        try {
+            DataOutputStream output = new DataOutputStream(outputStream);
+            output.writeInt(MAGIC);
+            output.writeByte(FORMAT_VERSION);
+            output.writeInt(delta.getRemoved().size());
+            for (URI uri : delta.getRemoved()) {
+                output.writeUTF(uri.toString());
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write index delta", e);
+        }
+        this.artifactCodec.write(delta.getUpdated(), outputStream);
+    }
+
+    /**
+     * Read in an index delta
+     *
+     * @param inputStream the input stream to read from
+     * @return the delta that was decoded
+     *
+     * @throws IndexFormatException if the delta cannot be read from the supplied input stream
+     */
+    public IndexDelta read(InputStream inputStream) throws IndexFormatException {
+        Set<URI> removed = new HashSet<URI>();
+        try {
+            DataInputStream input = new DataInputStream(inputStream);
+            if (input.readInt() != MAGIC) {
+                throw new IndexFormatException("Not an index delta");
+            }
+            int formatVersion = input.readUnsignedByte();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IndexFormatException("Unsupported index delta version " + formatVersion);
+            }
+            int removedCount = input.readInt();
+            if (removedCount < 0) {
+                throw new IndexFormatException("Invalid removed artifact count " + removedCount + " in index delta");
+            }
+            for (int i = 0; i < removedCount; i++) {
+                removed.add(new URI(input.readUTF()));
+            }
+        } catch (EOFException e) {
+            throw new IndexFormatException("Index delta is truncated", e);
+        } catch (IOException e) {
+            throw new IndexFormatException("Could not read index delta", e);
+        } catch (URISyntaxException e) {
+            throw new IndexFormatException("Invalid artifact URI in index delta", e);
+        }
+        Set<ArtifactDescriptor> updated = this.artifactCodec.read(inputStream);
+        return new IndexDelta(updated, removed);
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import java.io.InputStream;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.IndexFormatException;
+
+/**
+ * A {@link RepositoryCodec} which can pass each artifact to a handler as soon as it has been decoded, rather than
+ * collecting all the artifacts before returning them.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Threadsafe
+ *
+ */
+public interface StreamingRepositoryCodec extends RepositoryCodec {
+
+    /**
+     * Read in a collection of artifacts, passing each artifact to the supplied handler in the order in which it was
+     * decoded. If the input is not valid, the handler may have been passed some artifacts before the exception is
+     * thrown.
+     *
+     * @param inputStream the input stream to read from
+     * @param handler the handler to pass each decoded artifact to
+     *
+     * @throws IndexFormatException if the artifacts cannot be read from the supplied input stream
+     */
+    void read(InputStream inputStream, ArtifactDescriptorHandler handler) throws IndexFormatException;
+
+    /**
+     * A receiver of the artifacts decoded by a {@link StreamingRepositoryCodec}.
+     */
+    interface ArtifactDescriptorHandler {
+
+        /**
+         * Handle an artifact which has been decoded.
+         *
+         * @param artifactDescriptor the decoded artifact
+         */
+        void handle(ArtifactDescriptor artifactDescriptor);
+    }
+}
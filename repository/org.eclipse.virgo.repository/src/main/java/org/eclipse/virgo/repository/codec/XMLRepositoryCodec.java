@@ -35,7 +35,7 @@ import org.eclipse.virgo.repository.internal.StandardAttribute;
 import org.osgi.framework.Version;
 
 
-public final class XMLRepositoryCodec implements RepositoryCodec {
+public final class XMLRepositoryCodec implements StreamingRepositoryCodec {
 
     private static final String INDEX_NAMESPACE = "http://www.springsource.org/schema/repository";
 
@@ -140,6 +140,17 @@ public final class XMLRepositoryCodec implements RepositoryCodec {
     }
 
     public Set<ArtifactDescriptor> read(InputStream inputStream) throws IndexFormatException {
+        final Set<ArtifactDescriptor> descriptors = new HashSet<ArtifactDescriptor>();
+        read(inputStream, new ArtifactDescriptorHandler() {
+
+            public void handle(ArtifactDescriptor artifactDescriptor) {
+                descriptors.add(artifactDescriptor);
+            }
+        });
+        return descriptors;
+    }
+
+    public void read(InputStream inputStream, ArtifactDescriptorHandler handler) throws IndexFormatException {
         XMLInputFactory inputFactory = XMLInputFactory.newInstance();
         XMLStreamReader reader = null;
 
@@ -147,7 +158,7 @@ public final class XMLRepositoryCodec implements RepositoryCodec {
             reader = inputFactory.createXMLStreamReader(inputStream);
 
             reader.nextTag();
-            return readIndex(reader);
+            readIndex(reader, handler);
         } catch (XMLStreamException e) {
             throw new IndexFormatException("Could read read XML document", e);
         } finally {
@@ -161,16 +172,12 @@ public final class XMLRepositoryCodec implements RepositoryCodec {
         }
     }
 
-    private Set<ArtifactDescriptor> readIndex(XMLStreamReader reader) throws XMLStreamException {
-        Set<ArtifactDescriptor> descriptors = new HashSet<ArtifactDescriptor>();
-
+    private void readIndex(XMLStreamReader reader, ArtifactDescriptorHandler handler) throws XMLStreamException {
         reader.nextTag();
         while (reader.isStartElement() && TAG_ARTIFACT.equals(reader.getLocalName())) {
-            descriptors.add(readArtifactDescriptor(reader));
+            handler.handle(readArtifactDescriptor(reader));
             reader.nextTag();
         }
-
-        return descriptors;
     }
 
     private ArtifactDescriptor readArtifactDescriptor(XMLStreamReader reader) throws XMLStreamException {
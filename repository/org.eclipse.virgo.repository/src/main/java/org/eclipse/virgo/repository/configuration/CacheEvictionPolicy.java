@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.configuration;
+
+/**
+ * The policies for choosing which cached artifacts of a remote repository to discard when the cache exceeds its quota.
+ * 
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ * 
+ */
+public enum CacheEvictionPolicy {
+
+    /**
+     * Discard the artifacts which have gone unused for longest.
+     */
+    LRU,
+
+    /**
+     * Discard the artifacts which have been used least often, and of those, the ones which have gone unused for
+     * longest.
+     */
+    LFU
+}
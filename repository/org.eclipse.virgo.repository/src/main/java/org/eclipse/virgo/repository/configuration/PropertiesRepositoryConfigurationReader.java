@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 
 import org.eclipse.virgo.medic.eventlog.EventLogger;
 import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.internal.IdentityUriMapper;
 import org.eclipse.virgo.repository.internal.RepositoryLogEvents;
 import org.eclipse.virgo.util.common.StringUtils;
 import org.eclipse.virgo.util.math.OrderedPair;
@@ -51,12 +52,18 @@ public final class PropertiesRepositoryConfigurationReader {
 
     private static final String WATCH_INTERVAL_SUFFIX = ".watchInterval";
 
+    private static final String WATCH_SERVICE_SUFFIX = ".watchService";
+
     private static final String REMOTE_TYPE = "remote";
 
     private static final String URI_SUFFIX = ".uri";
 
     private static final String INDEX_REFRESH_INTERVAL_SUFFIX = ".indexRefreshInterval";
 
+    private static final String CACHE_QUOTA_SUFFIX = ".cacheQuota";
+
+    private static final String CACHE_EVICTION_POLICY_SUFFIX = ".cacheEvictionPolicy";
+
     private static final Pattern PROPERTY_PATTERN = Pattern.compile("(\\$\\{(([^\\}]+))\\})");
 
     private static final Pattern CONFIG_PATTERN = Pattern.compile("(.*)\\.(.*)");
@@ -65,6 +72,10 @@ public final class PropertiesRepositoryConfigurationReader {
 
     private static final int DEFAULT_WATCH_INTERVAL = 5;
 
+    private static final int DEFAULT_CACHE_QUOTA = 0; // megabytes; not positive means unbounded
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
     private final EventLogger eventLogger;
 
     private final File indexDirectory;
@@ -176,8 +187,13 @@ public final class PropertiesRepositoryConfigurationReader {
             
             File cacheDirectory = getCacheDirectory();
 
+            long cacheQuota = readIntProperty(repositoryName + CACHE_QUOTA_SUFFIX, configuration, DEFAULT_CACHE_QUOTA) * BYTES_PER_MEGABYTE;
+            String cacheEvictionPolicyProperty = expandProperties(configuration.getProperty(repositoryName + CACHE_EVICTION_POLICY_SUFFIX));
+            CacheEvictionPolicy cacheEvictionPolicy = CacheEvictionPolicy.LFU.name().equalsIgnoreCase(cacheEvictionPolicyProperty) ? CacheEvictionPolicy.LFU
+                : CacheEvictionPolicy.LRU;
+
             return new RemoteRepositoryConfiguration(repositoryName, new File(this.indexDirectory, repositoryName + ".index"), URI.create(uri),
-                indexRefreshInterval, mBeanDomain, cacheDirectory);
+                indexRefreshInterval, mBeanDomain, cacheDirectory, cacheQuota, cacheEvictionPolicy);
         } else {
             eventLogger.log(RepositoryLogEvents.MISSING_SPECIFICATION, repositoryName, REMOTE_TYPE, URI_SUFFIX);
         }
@@ -195,7 +211,9 @@ public final class PropertiesRepositoryConfigurationReader {
             watchDirPath = makeAbsoluteIfNecessary(watchDirPath);
             String watchIntervalProperty = repositoryName + WATCH_INTERVAL_SUFFIX;
             int watchInterval = readIntProperty(watchIntervalProperty, configuration, DEFAULT_WATCH_INTERVAL);
-            return new WatchedStorageRepositoryConfiguration(repositoryName, new File(this.indexDirectory, repositoryName + ".index"), this.artifactBridges, watchDirPath, watchInterval, mBeanDomain);
+            boolean watchService = Boolean.parseBoolean(expandProperties(configuration.getProperty(repositoryName + WATCH_SERVICE_SUFFIX)));
+            return new WatchedStorageRepositoryConfiguration(repositoryName, new File(this.indexDirectory, repositoryName + ".index"), this.artifactBridges, watchDirPath, watchInterval,
+                watchService, new IdentityUriMapper(), mBeanDomain);
         } 
         return null;
     }
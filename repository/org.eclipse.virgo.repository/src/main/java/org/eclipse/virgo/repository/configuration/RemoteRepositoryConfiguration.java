@@ -36,6 +36,10 @@ public class RemoteRepositoryConfiguration extends RepositoryConfiguration {
 
     private final File cacheDirectory;
 
+    private final long cacheQuota;
+
+    private final CacheEvictionPolicy cacheEvictionPolicy;
+
     /**
      * Creates configuration for a new <code>Repository</code> that is a proxy for a remote repository, with the remote
      * repository being accessible at the location identified by the supplied <code>repositoryUri</code>. The
@@ -52,11 +56,36 @@ public class RemoteRepositoryConfiguration extends RepositoryConfiguration {
      */
     public RemoteRepositoryConfiguration(String name, File indexLocation, URI repositoryUri, int indexUpdateInterval, String mBeanDomain,
         File cacheDirectory) {
+        this(name, indexLocation, repositoryUri, indexUpdateInterval, mBeanDomain, cacheDirectory, 0, CacheEvictionPolicy.LRU);
+    }
+
+    /**
+     * Creates configuration for a new <code>Repository</code> that is a proxy for a remote repository, with the remote
+     * repository being accessible at the location identified by the supplied <code>repositoryUri</code>. The
+     * <code>Repository</code> will have the supplied <code>name</code> and may write a local copy of the remote
+     * repository's index to the supplied <code>indexLocation</code>. Cached remote artifacts are discarded, according
+     * to the supplied <code>cacheEvictionPolicy</code>, to keep the cache within the supplied <code>cacheQuota</code>.
+     * 
+     * @param name The name of the repository
+     * @param indexLocation The location to which the repository should write its local copy of the index
+     * @param repositoryUri The location of the remote repository
+     * @param indexUpdateInterval The period, in seconds, between updates to the local copy of the remote index
+     * @param mBeanDomain the domain name of the management beans registered for this repository; if null no MBeans are
+     *        registered
+     * @param cacheDirectory the directory for cacheing remote artifacts
+     * @param cacheQuota the number of bytes of cached remote artifacts above which artifacts are discarded; if not
+     *        positive the cache is unbounded
+     * @param cacheEvictionPolicy the policy for choosing which cached artifacts to discard
+     */
+    public RemoteRepositoryConfiguration(String name, File indexLocation, URI repositoryUri, int indexUpdateInterval, String mBeanDomain,
+        File cacheDirectory, long cacheQuota, CacheEvictionPolicy cacheEvictionPolicy) {
         super(name, mBeanDomain);
         this.indexLocation = indexLocation;
         this.repositoryUri = repositoryUri;
         this.indexUpdateInterval = indexUpdateInterval;
         this.cacheDirectory = cacheDirectory;
+        this.cacheQuota = cacheQuota;
+        this.cacheEvictionPolicy = cacheEvictionPolicy;
     }
 
     /**
@@ -94,4 +123,23 @@ public class RemoteRepositoryConfiguration extends RepositoryConfiguration {
     public File getCacheDirectory() {
         return this.cacheDirectory;
     }
+
+    /**
+     * Returns the number of bytes of cached remote artifacts above which artifacts are discarded. The cache is
+     * unbounded if this is not positive.
+     * 
+     * @return the cache quota
+     */
+    public long getCacheQuota() {
+        return this.cacheQuota;
+    }
+
+    /**
+     * Returns the policy for choosing which cached remote artifacts to discard when the cache exceeds its quota.
+     * 
+     * @return the cache eviction policy
+     */
+    public CacheEvictionPolicy getCacheEvictionPolicy() {
+        return this.cacheEvictionPolicy;
+    }
 }
@@ -38,6 +38,11 @@ public class WatchedStorageRepositoryConfiguration extends PersistentRepositoryC
      */
     private final int watchInterval;
 
+    /**
+     * Whether the <code>directoryToWatch</code> is watched for changes rather than listed on every check
+     */
+    private final boolean watchServiceEnabled;
+
     /**
      * Creates configuration for a new <code>Repository</code> with watched storage. The <code>Repository</code> will
      * have the supplied <code>name</name> and will write its index to the supplied
@@ -76,12 +81,37 @@ public class WatchedStorageRepositoryConfiguration extends PersistentRepositoryC
      */
     public WatchedStorageRepositoryConfiguration(String name, File indexLocation, Set<ArtifactBridge> artifactBridges, String directoryToWatch, int watchInterval,
         UriMapper uriMapper, String mBeanDomain) {
+        this(name, indexLocation, artifactBridges, directoryToWatch, watchInterval, false, uriMapper, mBeanDomain);
+    }
+
+    /**
+     * Creates configuration for a new <code>Repository</code> with watched storage. The <code>Repository</code> will
+     * have the supplied <code>name</name> and will write its index to the supplied
+     * <code>indexLocation</code>. The <code>Repository</code> will watch the supplied <code>directory</code> adding
+     * artifacts as files are added to the directory, and removing artifacts as files are removed from the directory.
+     * The directory will be checked at the supplied <code>watchInterval</code>, measured in seconds. If
+     * <code>watchServiceEnabled</code>, each check examines only the files which the file system reports as changed,
+     * rather than listing the whole directory.
+     * 
+     * @param name The name of the repository
+     * @param indexLocation location of persistent indexes if any
+     * @param artifactBridges The artifact bridges to be used to generate artifacts when items are added to the
+     *        repository
+     * @param directoryToWatch The path of a directory to be watched
+     * @param watchInterval The period, in seconds, between checks of the watched directory; must be > 0.
+     * @param watchServiceEnabled whether to watch the directory for changes rather than list it on every check
+     * @param uriMapper used to map URIs stored in the repository's index
+     * @param mBeanDomain domain name of management beans registered -- none registered if null
+     */
+    public WatchedStorageRepositoryConfiguration(String name, File indexLocation, Set<ArtifactBridge> artifactBridges, String directoryToWatch, int watchInterval,
+        boolean watchServiceEnabled, UriMapper uriMapper, String mBeanDomain) {
         super(name, indexLocation, artifactBridges, uriMapper, mBeanDomain);
         this.directoryToWatch = validateWatchDirectory(directoryToWatch);
         if (watchInterval <= 0) {
             throw new IllegalArgumentException("watch interval (" + watchInterval + ") must be 1 or more seconds");
         }
         this.watchInterval = watchInterval;
+        this.watchServiceEnabled = watchServiceEnabled;
     }
 
     private File validateWatchDirectory(String watchDirPath) {
@@ -114,4 +144,13 @@ public class WatchedStorageRepositoryConfiguration extends PersistentRepositoryC
     public int getWatchInterval() {
         return this.watchInterval;
     }
+
+    /**
+     * Returns whether the watched directory is watched for changes rather than listed on every check
+     * 
+     * @return <code>true</code> if the file system's watch service is used, <code>false</code> otherwise
+     */
+    public boolean isWatchServiceEnabled() {
+        return this.watchServiceEnabled;
+    }
 }
@@ -17,7 +17,9 @@ import java.util.Set;
 
 import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 
 /**
@@ -75,6 +77,20 @@ public interface ArtifactDescriptorDepository {
      */
     Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters);
 
+    /**
+     * Return the stored Artefacts that match the provided set of filters, selected by the given
+     * {@link VersionRangeMatchingStrategy} from each group of matching Artefacts with the same type and name. The result
+     * must be the same as applying the strategy to the result of {@link #resolveArtifactDescriptors(Set)}, but an
+     * implementation which indexes Artefacts by version may compute it without resolving every matching Artefact.
+     * 
+     * @param filters the {@link Attribute Attributes} to filter on. Can be null.
+     * @param versionRange the range within which the strategy selects. Can be null.
+     * @param strategy the strategy to apply. Can be null, in which case all matching Artefacts are returned.
+     * @return <code>Set</code> of matching Artefacts
+     */
+    Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters, VersionRange versionRange,
+        VersionRangeMatchingStrategy strategy);
+
     /**
      * Request that the Depository store its current state to the configured location.
      * 
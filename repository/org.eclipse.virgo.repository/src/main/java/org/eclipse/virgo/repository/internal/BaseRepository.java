@@ -88,7 +88,8 @@ public abstract class BaseRepository implements Repository {
      * {@inheritDoc}
      */
     public final RepositoryAwareArtifactDescriptor get(String type, String name, VersionRange versionRange) {
-        Set<RepositoryAwareArtifactDescriptor> artifacts = createQuery(ArtifactDescriptor.TYPE, type).addFilter(ArtifactDescriptor.NAME, name).run();
+        Set<RepositoryAwareArtifactDescriptor> artifacts = createQuery(ArtifactDescriptor.TYPE, type).addFilter(ArtifactDescriptor.NAME, name).setVersionRangeFilter(
+            versionRange).run();
         return RepositoryUtils.selectHighestVersionInRange(artifacts, versionRange);
     }
 
@@ -0,0 +1,683 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.DuplicateArtifactException;
+import org.eclipse.virgo.repository.IndexFormatException;
+import org.eclipse.virgo.repository.Query;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * <code>IndexedArtifactDescriptorDepository</code> is an {@link ArtifactDescriptorDepository} which indexes its
+ * artifacts by attribute so that queries do not need to copy the whole depository.
+ * </p>
+ * <p>
+ * Each artifact is given an integer id and, for each attribute key and value, a {@link PostingList} records the ids of
+ * the artifacts with a matching attribute. A query intersects the posting lists of its filters, starting with the
+ * shortest. Attribute keys and values are interned so that the index holds a single copy of commonly repeated strings,
+ * such as artifact types and versions.
+ * </p>
+ * <p>
+ * The artifacts of each type and name, and the artifacts which export each package, are also held in a
+ * {@link VersionList} sorted by version. A version range filter on <code>Export-Package</code> takes the exporters in
+ * range from the package's list by binary search, and a query for the highest or lowest version in a range of an
+ * artifact of a given type and name walks the artifact's list from the end of the range until it finds an artifact
+ * which matches the query's other filters.
+ * </p>
+ * <p>
+ * {@link ArtifactBridge#HASH_KEY Hash} attributes are not indexed, as reading the value of a lazily computed hash would
+ * read the whole artifact. A hash filter is instead matched against the attributes of each artifact which matches the
+ * query's other filters, so only the hashes of those artifacts are computed.
+ * </p>
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * This implementation is thread-safe. Updates are serialised but queries take no lock. A query reads the current
+ * snapshot of the index, in which each posting list and version list is immutable and is replaced, rather than
+ * modified, by an update.
+ * An artifact becomes visible to queries only once it has been added to all of its posting lists and stops being
+ * visible before it is removed from any of them, so a query never sees a partially added or removed artifact.
+ *
+ * @see StandardArtifactDescriptorDepository
+ */
+public class IndexedArtifactDescriptorDepository implements ArtifactDescriptorDepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedArtifactDescriptorDepository.class);
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final Comparator<FilterList> SHORTEST_FIRST = new Comparator<FilterList>() {
+
+        public int compare(FilterList filterList1, FilterList filterList2) {
+            int size1 = filterList1.size();
+            int size2 = filterList2.size();
+            return size1 < size2 ? -1 : (size1 == size2 ? 0 : 1);
+        }
+    };
+
+    private final ArtifactDescriptorPersister artifactDescriptorPersister;
+
+    private final Object artifactsLock = new Object();
+
+    private volatile Snapshot snapshot;
+
+    private volatile int artifactDescriptorCount;
+
+    private final Map<RepositoryAwareArtifactDescriptor, Integer> ids = new HashMap<RepositoryAwareArtifactDescriptor, Integer>();
+
+    private final Map<String, String> internedStrings = new HashMap<String, String>();
+
+    private int nextId;
+
+    IndexedArtifactDescriptorDepository(ArtifactDescriptorPersister artifactDescriptorPersister,
+        Set<RepositoryAwareArtifactDescriptor> artifactDescriptors) throws IndexFormatException {
+        if (artifactDescriptorPersister == null || artifactDescriptors == null) {
+            throw new IllegalArgumentException("Arguments must not be null");
+        }
+        this.artifactDescriptorPersister = artifactDescriptorPersister;
+        Set<RepositoryAwareArtifactDescriptor> initialArtifactDescriptors = this.artifactDescriptorPersister.loadArtifacts();
+        initialArtifactDescriptors.addAll(artifactDescriptors);
+        initialise(initialArtifactDescriptors);
+    }
+
+    IndexedArtifactDescriptorDepository(Set<RepositoryAwareArtifactDescriptor> artifactDescriptors) {
+        if (artifactDescriptors == null) {
+            throw new IllegalArgumentException("Argument must not be null");
+        }
+        this.artifactDescriptorPersister = null;
+        initialise(new HashSet<RepositoryAwareArtifactDescriptor>(artifactDescriptors));
+    }
+
+    /**
+     * Constructor requiring only a persistence strategy. The {@link ArtifactDescriptorPersister} will be queried during
+     * initialisation to see if any existing meta data about artifacts has been stored, if they have they will be loaded
+     * and used to pre-populate the store of {@link ArtifactDescriptor}s in this Depository.
+     *
+     * @param artifactDescriptorPersister persistence strategy
+     * @throws IndexFormatException if initial load fails
+     */
+    public IndexedArtifactDescriptorDepository(ArtifactDescriptorPersister artifactDescriptorPersister) throws IndexFormatException {
+        this(artifactDescriptorPersister, new HashSet<RepositoryAwareArtifactDescriptor>(0));
+    }
+
+    private void initialise(Set<RepositoryAwareArtifactDescriptor> artifactDescriptors) {
+        synchronized (this.artifactsLock) {
+            this.snapshot = new Snapshot(Math.max(INITIAL_CAPACITY, artifactDescriptors.size() * 2));
+            for (RepositoryAwareArtifactDescriptor artifactDescriptor : artifactDescriptors) {
+                index(artifactDescriptor);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getArtifactDescriptorCount() {
+        return this.artifactDescriptorCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addArtifactDescriptor(RepositoryAwareArtifactDescriptor artifactDescriptor) throws IllegalArgumentException,
+        DuplicateArtifactException {
+        if (artifactDescriptor == null) {
+            throw new IllegalArgumentException("Argument can not be null");
+        }
+        synchronized (this.artifactsLock) {
+            Integer id = this.ids.get(artifactDescriptor);
+            if (id != null) {
+                throw new DuplicateArtifactException(this.snapshot.artifactDescriptors.get(id), artifactDescriptor);
+            }
+            index(artifactDescriptor);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RepositoryAwareArtifactDescriptor removeArtifactDescriptor(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("Argument can not be null");
+        }
+
+        Query uriQuery = new StandardQuery(this, "uri", uri.toString());
+        synchronized (this.artifactsLock) {
+            Set<RepositoryAwareArtifactDescriptor> artifacts = uriQuery.run();
+
+            if (artifacts.size() > 1) {
+                LOGGER.debug("More than one artifact with URI '{}' in depository {}.", uri, this);
+                throw new IllegalStateException("Internal failure: multiple artifacts with the same URI.");
+            }
+
+            RepositoryAwareArtifactDescriptor artifact = null;
+
+            if (!artifacts.isEmpty()) {
+                artifact = artifacts.iterator().next();
+                unindex(artifact);
+            }
+
+            return artifact;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean removeArtifactDescriptor(RepositoryAwareArtifactDescriptor artifactDescriptor) {
+        synchronized (this.artifactsLock) {
+            return unindex(artifactDescriptor);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void persist() throws IOException {
+        if (null != this.artifactDescriptorPersister) {
+            synchronized (this.artifactsLock) {
+                this.artifactDescriptorPersister.persistArtifactDescriptors(allArtifactDescriptors(this.snapshot));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters) {
+        Snapshot current = this.snapshot;
+        if (filters == null || filters.isEmpty()) {
+            return allArtifactDescriptors(current);
+        }
+
+        FilterList[] filterLists = filterLists(current, filters);
+        if (filterLists == null) {
+            return new HashSet<RepositoryAwareArtifactDescriptor>();
+        }
+        return intersect(current, filterLists);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters, VersionRange versionRange,
+        VersionRangeMatchingStrategy strategy) {
+        if ((strategy == VersionRangeMatchingStrategy.HIGHEST || strategy == VersionRangeMatchingStrategy.LOWEST) && filters != null) {
+            Attribute typeFilter = findUnqualifiedFilter(filters, ArtifactDescriptor.TYPE);
+            Attribute nameFilter = findUnqualifiedFilter(filters, ArtifactDescriptor.NAME);
+            if (typeFilter != null && nameFilter != null) {
+                Set<Attribute> otherFilters = new HashSet<Attribute>(filters);
+                otherFilters.remove(typeFilter);
+                otherFilters.remove(nameFilter);
+                return selectInRange(typeFilter.getValue(), nameFilter.getValue(), otherFilters, versionRange,
+                    strategy == VersionRangeMatchingStrategy.HIGHEST);
+            }
+        }
+        Set<RepositoryAwareArtifactDescriptor> resolved = resolveArtifactDescriptors(filters);
+        return strategy == null ? resolved : strategy.match(resolved, versionRange);
+    }
+
+    private static Attribute findUnqualifiedFilter(Set<Attribute> filters, String key) {
+        for (Attribute filter : filters) {
+            if (key.equals(filter.getKey()) && !(filter instanceof VersionRangeAttribute) && filter.getProperties().isEmpty()) {
+                return filter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the highest or lowest version in the given range of the artifact with the given type and name which
+     * matches the given filters, if any.
+     */
+    private Set<RepositoryAwareArtifactDescriptor> selectInRange(String type, String name, Set<Attribute> filters,
+        VersionRange versionRange, boolean highest) {
+        Snapshot current = this.snapshot;
+        Set<RepositoryAwareArtifactDescriptor> results = new HashSet<RepositoryAwareArtifactDescriptor>();
+
+        VersionList versions = current.getVersionList(type, name);
+        if (versions == null) {
+            return results;
+        }
+        FilterList[] filterLists = filters.isEmpty() ? new FilterList[0] : filterLists(current, filters);
+        if (filterLists == null) {
+            return results;
+        }
+
+        int from = versionRange == null ? 0 : versions.fromIndex(versionRange);
+        int to = versionRange == null ? versions.size() : versions.toIndex(versionRange);
+        for (int count = 0; count < to - from; count++) {
+            int id = versions.idAt(highest ? to - 1 - count : from + count);
+            RepositoryAwareArtifactDescriptor artifactDescriptor = current.artifactDescriptors.get(id);
+            if (artifactDescriptor != null && containedInAll(id, filterLists, 0)) {
+                results.add(artifactDescriptor);
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the lists to be intersected for the given filters, shortest first, or <code>null</code> if no artifact
+     * can match one of the filters.
+     */
+    private static FilterList[] filterLists(Snapshot snapshot, Set<Attribute> filters) {
+        FilterList[] filterLists = new FilterList[filters.size()];
+        int filterIndex = 0;
+        for (Attribute filter : filters) {
+            FilterList filterList = filterList(snapshot, filter);
+            if (filterList == null) {
+                return null;
+            }
+            filterLists[filterIndex++] = filterList;
+        }
+        Arrays.sort(filterLists, SHORTEST_FIRST);
+        return filterLists;
+    }
+
+    private static FilterList filterList(Snapshot snapshot, Attribute filter) {
+        if (!isIndexed(filter.getKey())) {
+            return new FilterList(snapshot.artifactDescriptors, filter);
+        }
+        if (filter instanceof VersionRangeAttribute && Constants.EXPORT_PACKAGE.equals(filter.getKey())) {
+            VersionList versions = snapshot.exportedPackageVersions.get(filter.getValue());
+            if (versions == null) {
+                return null;
+            }
+            VersionRange versionRange = ((VersionRangeAttribute) filter).getVersionRange();
+            int from = versions.fromIndex(versionRange);
+            int to = versions.toIndex(versionRange);
+            if (from >= to) {
+                return null;
+            }
+            int[] ids = new int[to - from];
+            for (int index = from; index < to; index++) {
+                ids[index - from] = versions.idAt(index);
+            }
+            Arrays.sort(ids);
+            return new FilterList(PostingList.ofIds(ids), null);
+        }
+
+        PostingList list = snapshot.getPostingList(filter.getKey(), filter.getValue());
+        if (list == null) {
+            return null;
+        }
+        boolean unqualified = !(filter instanceof VersionRangeAttribute) && filter.getProperties().isEmpty();
+        return new FilterList(list, unqualified ? null : filter);
+    }
+
+    private static Set<RepositoryAwareArtifactDescriptor> intersect(Snapshot snapshot, FilterList[] filterLists) {
+        Set<RepositoryAwareArtifactDescriptor> results = new HashSet<RepositoryAwareArtifactDescriptor>();
+        FilterList shortest = filterLists[0];
+        if (shortest.list == null) {
+            // every filter is unindexed, so each artifact must be checked
+            for (int id = 0; id < snapshot.artifactDescriptors.length(); id++) {
+                RepositoryAwareArtifactDescriptor artifactDescriptor = snapshot.artifactDescriptors.get(id);
+                if (artifactDescriptor != null && containedInAll(id, filterLists, 0)) {
+                    results.add(artifactDescriptor);
+                }
+            }
+            return results;
+        }
+
+        int previousId = -1;
+        for (int index = 0; index < shortest.list.size(); index++) {
+            int id = shortest.list.idAt(index);
+            if (id == previousId || !shortest.matchesAt(index)) {
+                continue;
+            }
+            previousId = id;
+            if (containedInAll(id, filterLists, 1)) {
+                RepositoryAwareArtifactDescriptor artifactDescriptor = snapshot.artifactDescriptors.get(id);
+                if (artifactDescriptor != null) {
+                    results.add(artifactDescriptor);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static boolean containedInAll(int id, FilterList[] filterLists, int fromIndex) {
+        for (int index = fromIndex; index < filterLists.length; index++) {
+            if (!filterLists[index].contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<RepositoryAwareArtifactDescriptor> allArtifactDescriptors(Snapshot snapshot) {
+        Set<RepositoryAwareArtifactDescriptor> artifactDescriptors = new HashSet<RepositoryAwareArtifactDescriptor>();
+        for (int id = 0; id < snapshot.artifactDescriptors.length(); id++) {
+            RepositoryAwareArtifactDescriptor artifactDescriptor = snapshot.artifactDescriptors.get(id);
+            if (artifactDescriptor != null) {
+                artifactDescriptors.add(artifactDescriptor);
+            }
+        }
+        return artifactDescriptors;
+    }
+
+    /**
+     * Adds the given artifact to the index. Must be called while holding <code>artifactsLock</code>.
+     */
+    private void index(RepositoryAwareArtifactDescriptor artifactDescriptor) {
+        if (this.nextId == this.snapshot.artifactDescriptors.length()) {
+            rebuild();
+        }
+        index(this.snapshot, artifactDescriptor);
+        this.artifactDescriptorCount++;
+    }
+
+    /**
+     * Adds the given artifact to the given snapshot with the next id. Must be called while holding
+     * <code>artifactsLock</code>.
+     */
+    private void index(Snapshot current, RepositoryAwareArtifactDescriptor artifactDescriptor) {
+        int id = this.nextId++;
+        String type = null;
+        String name = null;
+        for (Attribute attribute : artifactDescriptor.getAttributes()) {
+            if (!isIndexed(attribute.getKey())) {
+                continue;
+            }
+            if (ArtifactDescriptor.TYPE.equals(attribute.getKey())) {
+                type = attribute.getValue();
+            } else if (ArtifactDescriptor.NAME.equals(attribute.getKey())) {
+                name = attribute.getValue();
+            }
+            ConcurrentMap<String, PostingList> valueIndex = current.postingLists.get(attribute.getKey());
+            if (valueIndex == null) {
+                valueIndex = new ConcurrentHashMap<String, PostingList>();
+                current.postingLists.put(intern(attribute.getKey()), valueIndex);
+            }
+            PostingList list = valueIndex.get(attribute.getValue());
+            if (list == null) {
+                list = PostingList.EMPTY;
+            }
+            valueIndex.put(intern(attribute.getValue()), list.append(id, attribute));
+
+            if (Constants.EXPORT_PACKAGE.equals(attribute.getKey())) {
+                Version version = VersionRangeAttribute.versionOf(attribute);
+                if (version != null) {
+                    VersionList versions = current.exportedPackageVersions.get(attribute.getValue());
+                    if (versions == null) {
+                        versions = VersionList.EMPTY;
+                    }
+                    current.exportedPackageVersions.put(intern(attribute.getValue()), versions.insert(version, id));
+                }
+            }
+        }
+        if (type != null && name != null) {
+            indexVersion(current, type, name, artifactDescriptor.getVersion(), id);
+        }
+        // publish the artifact only once it is in all of its posting lists
+        current.artifactDescriptors.set(id, artifactDescriptor);
+        this.ids.put(artifactDescriptor, id);
+    }
+
+    /**
+     * Removes the given artifact from the index. Must be called while holding <code>artifactsLock</code>.
+     */
+    private boolean unindex(RepositoryAwareArtifactDescriptor artifactDescriptor) {
+        Integer id = this.ids.remove(artifactDescriptor);
+        if (id == null) {
+            return false;
+        }
+        Snapshot current = this.snapshot;
+        RepositoryAwareArtifactDescriptor indexed = current.artifactDescriptors.get(id);
+        // hide the artifact before removing it from any of its posting lists
+        current.artifactDescriptors.set(id, null);
+        this.artifactDescriptorCount--;
+        String type = null;
+        String name = null;
+        for (Attribute attribute : indexed.getAttributes()) {
+            if (!isIndexed(attribute.getKey())) {
+                continue;
+            }
+            if (ArtifactDescriptor.TYPE.equals(attribute.getKey())) {
+                type = attribute.getValue();
+            } else if (ArtifactDescriptor.NAME.equals(attribute.getKey())) {
+                name = attribute.getValue();
+            }
+            ConcurrentMap<String, PostingList> valueIndex = current.postingLists.get(attribute.getKey());
+            if (valueIndex != null) {
+                PostingList list = valueIndex.get(attribute.getValue());
+                if (list != null) {
+                    PostingList remaining = list.remove(id);
+                    if (remaining == null) {
+                        valueIndex.remove(attribute.getValue());
+                    } else if (remaining != list) {
+                        valueIndex.put(attribute.getValue(), remaining);
+                    }
+                }
+            }
+            if (Constants.EXPORT_PACKAGE.equals(attribute.getKey())) {
+                VersionList versions = current.exportedPackageVersions.get(attribute.getValue());
+                if (versions != null) {
+                    VersionList remaining = versions.remove(id);
+                    if (remaining == null) {
+                        current.exportedPackageVersions.remove(attribute.getValue());
+                    } else if (remaining != versions) {
+                        current.exportedPackageVersions.put(attribute.getValue(), remaining);
+                    }
+                }
+            }
+        }
+        if (type != null && name != null) {
+            unindexVersion(current, type, name, id);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the given artifact to the version list for its type and name, as given by its <code>type</code> and
+     * <code>name</code> attributes, which are the attributes matched by type and name filters.
+     */
+    private void indexVersion(Snapshot current, String type, String name, Version version, int id) {
+        ConcurrentMap<String, VersionList> nameIndex = current.artifactVersions.get(type);
+        if (nameIndex == null) {
+            nameIndex = new ConcurrentHashMap<String, VersionList>();
+            current.artifactVersions.put(intern(type), nameIndex);
+        }
+        VersionList versions = nameIndex.get(name);
+        if (versions == null) {
+            versions = VersionList.EMPTY;
+        }
+        nameIndex.put(intern(name), versions.insert(version, id));
+    }
+
+    private static void unindexVersion(Snapshot current, String type, String name, int id) {
+        ConcurrentMap<String, VersionList> nameIndex = current.artifactVersions.get(type);
+        if (nameIndex != null) {
+            VersionList versions = nameIndex.get(name);
+            if (versions != null) {
+                VersionList remaining = versions.remove(id);
+                if (remaining == null) {
+                    nameIndex.remove(name);
+                } else if (remaining != versions) {
+                    nameIndex.put(name, remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index into a new snapshot with room for further artifacts, discarding the ids of removed artifacts.
+     * The new snapshot is published only once every artifact has been indexed in it, so queries continue to use the old
+     * snapshot until then.
+     */
+    private void rebuild() {
+        Snapshot old = this.snapshot;
+        List<RepositoryAwareArtifactDescriptor> artifactDescriptors = new ArrayList<RepositoryAwareArtifactDescriptor>(this.ids.size());
+        for (int id = 0; id < this.nextId; id++) {
+            RepositoryAwareArtifactDescriptor artifactDescriptor = old.artifactDescriptors.get(id);
+            if (artifactDescriptor != null) {
+                artifactDescriptors.add(artifactDescriptor);
+            }
+        }
+
+        Snapshot rebuilt = new Snapshot(Math.max(INITIAL_CAPACITY, (artifactDescriptors.size() + 1) * 2));
+        this.ids.clear();
+        this.internedStrings.clear();
+        this.nextId = 0;
+        for (RepositoryAwareArtifactDescriptor artifactDescriptor : artifactDescriptors) {
+            index(rebuilt, artifactDescriptor);
+        }
+        this.snapshot = rebuilt;
+    }
+
+    /**
+     * Returns whether attributes with the given key are held in posting lists. Hash attributes are not, so that indexing
+     * an artifact does not compute its hash.
+     */
+    private static boolean isIndexed(String key) {
+        return !ArtifactBridge.HASH_KEY.equals(key);
+    }
+
+    private String intern(String string) {
+        String interned = this.internedStrings.get(string);
+        if (interned == null) {
+            this.internedStrings.put(string, string);
+            interned = string;
+        }
+        return interned;
+    }
+
+    /**
+     * A list to be intersected together with the filter, if any, which its entries must match. A filter on an unindexed
+     * key has no list and is matched against the attributes of each artifact instead.
+     */
+    private static final class FilterList {
+
+        private final PostingList list;
+
+        private final Attribute filter;
+
+        private final AtomicReferenceArray<RepositoryAwareArtifactDescriptor> artifactDescriptors;
+
+        private FilterList(PostingList list, Attribute filter) {
+            this.list = list;
+            this.filter = filter;
+            this.artifactDescriptors = null;
+        }
+
+        private FilterList(AtomicReferenceArray<RepositoryAwareArtifactDescriptor> artifactDescriptors, Attribute filter) {
+            this.list = null;
+            this.filter = filter;
+            this.artifactDescriptors = artifactDescriptors;
+        }
+
+        private int size() {
+            return this.list == null ? Integer.MAX_VALUE : this.list.size();
+        }
+
+        private boolean matchesAt(int index) {
+            return this.filter == null || matches(this.list.attributeAt(index));
+        }
+
+        private boolean matches(Attribute attribute) {
+            if (this.filter instanceof VersionRangeAttribute) {
+                return ((VersionRangeAttribute) this.filter).includes(attribute);
+            }
+            return propertiesContain(this.filter.getProperties(), attribute.getProperties());
+        }
+
+        private boolean contains(int id) {
+            if (this.list == null) {
+                return artifactMatches(id);
+            }
+            int index = this.list.indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            for (; index < this.list.size() && this.list.idAt(index) == id; index++) {
+                if (matchesAt(index)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean artifactMatches(int id) {
+            RepositoryAwareArtifactDescriptor artifactDescriptor = this.artifactDescriptors.get(id);
+            if (artifactDescriptor == null) {
+                return false;
+            }
+            for (Attribute attribute : artifactDescriptor.getAttributes()) {
+                if (this.filter.getKey().equals(attribute.getKey()) && this.filter.getValue().equals(attribute.getValue()) && matches(attribute)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean propertiesContain(Map<String, Set<String>> filterProperties, Map<String, Set<String>> attributeProperties) {
+            for (Entry<String, Set<String>> filterProperty : filterProperties.entrySet()) {
+                Set<String> values = attributeProperties.get(filterProperty.getKey());
+                if (values == null || !values.containsAll(filterProperty.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final AtomicReferenceArray<RepositoryAwareArtifactDescriptor> artifactDescriptors;
+
+        private final ConcurrentMap<String, ConcurrentMap<String, PostingList>> postingLists = new ConcurrentHashMap<String, ConcurrentMap<String, PostingList>>();
+
+        private final ConcurrentMap<String, ConcurrentMap<String, VersionList>> artifactVersions = new ConcurrentHashMap<String, ConcurrentMap<String, VersionList>>();
+
+        private final ConcurrentMap<String, VersionList> exportedPackageVersions = new ConcurrentHashMap<String, VersionList>();
+
+        private Snapshot(int capacity) {
+            this.artifactDescriptors = new AtomicReferenceArray<RepositoryAwareArtifactDescriptor>(capacity);
+        }
+
+        private PostingList getPostingList(String key, String value) {
+            Map<String, PostingList> valueIndex = this.postingLists.get(key);
+            return valueIndex == null ? null : valueIndex.get(value);
+        }
+
+        private VersionList getVersionList(String type, String name) {
+            Map<String, VersionList> nameIndex = this.artifactVersions.get(type);
+            return nameIndex == null ? null : nameIndex.get(name);
+        }
+    }
+}
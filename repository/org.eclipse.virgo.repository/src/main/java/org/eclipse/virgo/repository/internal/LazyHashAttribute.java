@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.util.FileDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link ArtifactBridge#HASH_KEY} {@link Attribute} whose value, the digest of a file, is only computed when it is
+ * first read. Descriptors whose hash is never read therefore never cause their artifact to be read in full.
+ * <p />
+ * The length and modification time of the file are recorded when the attribute is created, and the digest is only
+ * computed, and kept, while the file still has them, so that the value is always the digest of the content that the
+ * descriptor was generated from. If the file has since changed, been deleted, or cannot be read, the value is empty,
+ * which is not a valid hash and so never matches the hash of a cached copy of the artifact.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class LazyHashAttribute implements Attribute {
+
+    private final File file;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyHashAttribute.class);
+
+    private static final String NO_HASH = "";
+
+    private final String digestAlgorithm;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private final Object monitor = new Object();
+
+    private volatile String hash;
+
+    LazyHashAttribute(File file, String digestAlgorithm) {
+        this.file = file;
+        this.digestAlgorithm = digestAlgorithm;
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getKey() {
+        return ArtifactBridge.HASH_KEY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getValue() {
+        String value = this.hash;
+        if (value == null) {
+            synchronized (this.monitor) {
+                value = this.hash;
+                if (value == null) {
+                    value = computeHash();
+                    if (value == null) {
+                        return NO_HASH;
+                    }
+                    this.hash = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    private String computeHash() {
+        if (!isUnchanged()) {
+            LOGGER.warn("File '{}' has changed since its descriptor was generated and will not be hashed", this.file.getAbsolutePath());
+            return null;
+        }
+        String digest;
+        try {
+            digest = FileDigest.getFileDigest(this.file, this.digestAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(String.format("Unable to get digest algorithm '%s'", this.digestAlgorithm), e);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Unable to read file '%s' for hashing", this.file.getAbsolutePath()), e);
+            return null;
+        }
+        if (!isUnchanged()) {
+            LOGGER.warn("File '{}' changed while it was being hashed", this.file.getAbsolutePath());
+            return null;
+        }
+        return digest;
+    }
+
+    private boolean isUnchanged() {
+        return this.file.isFile() && this.file.length() == this.length && this.file.lastModified() == this.lastModified;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Set<String>> getProperties() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("'%s=%s' with '%d' properties", getKey(), this.hash == null ? "<not computed>" : this.hash, 0);
+    }
+}
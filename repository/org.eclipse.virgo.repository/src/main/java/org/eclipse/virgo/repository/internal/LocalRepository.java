@@ -46,13 +46,36 @@ public abstract class LocalRepository extends BaseRepository {
 
     protected LocalRepository(LocalRepositoryConfiguration configuration, ArtifactDescriptorPersister artifactDescriptorPersister,
         EventLogger eventLogger) throws IndexFormatException {
-        super(configuration, new StandardArtifactDescriptorDepository(artifactDescriptorPersister));
+        super(configuration, new IndexedArtifactDescriptorDepository(artifactDescriptorPersister));
         this.eventLogger = eventLogger;
         this.mapper = configuration.getUriMapper();
         this.artifactBridges = new HashSet<ArtifactBridge>(configuration.getArtefactBridges());
     }
 
     protected RepositoryAwareArtifactDescriptor createArtifactDescriptor(File artifactFile) {
+        ArtifactDescriptor artifactDescriptor = generateArtifactDescriptor(artifactFile);
+        return artifactDescriptor == null ? null : createArtifactDescriptor(artifactDescriptor);
+    }
+
+    /**
+     * Makes the given artifact descriptor, as generated by {@link #generateArtifactDescriptor(File)}, aware of this
+     * repository.
+     * 
+     * @param artifactDescriptor the generated artifact descriptor
+     * @return the repository aware artifact descriptor
+     */
+    protected final RepositoryAwareArtifactDescriptor createArtifactDescriptor(ArtifactDescriptor artifactDescriptor) {
+        return new DelegatingRepositoryAwareArtifactDescriptor(artifactDescriptor, getName(), this.mapper);
+    }
+
+    /**
+     * Generates an artifact descriptor for the given file using the first of this repository's artifact bridges which
+     * recognises it.
+     * 
+     * @param artifactFile the artifact
+     * @return the artifact descriptor, or <code>null</code> if no bridge recognises the file
+     */
+    protected final ArtifactDescriptor generateArtifactDescriptor(File artifactFile) {
         boolean seenFailure = false; // track rejections for this file in case they are rescinded
         for (ArtifactBridge artifactBridge : this.artifactBridges) {
             try {
@@ -63,7 +86,7 @@ public abstract class LocalRepository extends BaseRepository {
                         LOGGER.debug("ArtifactBridge '{}' rescued artifact '{}'.", artifactBridge, artifactFile);
                         eventLogger.log(RepositoryLogEvents.ARTIFACT_RECOVERED, artifactFile.getName(), this.getName());
                     }
-                    return new DelegatingRepositoryAwareArtifactDescriptor(artifactDescriptor, getName(), this.mapper);
+                    return artifactDescriptor;
                 }
             } catch (ArtifactGenerationException age) {
                 LOGGER.error(String.format("ArtifactBridge '%s' failed to generate descriptor for artifact '%s'.", artifactBridge, artifactFile), age);
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import java.util.Arrays;
+
+import org.eclipse.virgo.repository.Attribute;
+
+/**
+ * <p>
+ * An immutable list of the ids of the artifact descriptors which have an attribute with a particular key and value,
+ * together with the attributes themselves, sorted by id. An id appears once for each matching attribute of its
+ * descriptor. A list built from ids alone, by {@link #ofIds(int[])}, has no attributes and is only used to answer a
+ * single query.
+ * </p>
+ * <p>
+ * Since ids are allocated in increasing order, adding an id appends it. {@link #append(int, Attribute)} writes into
+ * spare capacity beyond this list's size and returns a new list sharing the same arrays, so appending does not copy
+ * the list and never changes the entries seen through an existing list.
+ * </p>
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * Thread-safe. A list may be read by any number of threads, but {@link #append(int, Attribute)} must only be called on
+ * the latest list for a given key and value, by a single writer.
+ * 
+ */
+final class PostingList {
+
+    static final PostingList EMPTY = new PostingList(new int[0], new Attribute[0], 0);
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int[] ids;
+
+    private final Attribute[] attributes;
+
+    private final int size;
+
+    private PostingList(int[] ids, Attribute[] attributes, int size) {
+        this.ids = ids;
+        this.attributes = attributes;
+        this.size = size;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int idAt(int index) {
+        return this.ids[index];
+    }
+
+    /**
+     * Returns the attribute of the entry at the given index, or <code>null</code> if this list has no attributes.
+     */
+    Attribute attributeAt(int index) {
+        return this.attributes == null ? null : this.attributes[index];
+    }
+
+    /**
+     * Returns a list of the given ids, which must be sorted, without any attributes.
+     */
+    static PostingList ofIds(int[] ids) {
+        return new PostingList(ids, null, ids.length);
+    }
+
+    /**
+     * Returns a list with the given entry appended. The id must not be less than any id in this list.
+     */
+    PostingList append(int id, Attribute attribute) {
+        int[] newIds = this.ids;
+        Attribute[] newAttributes = this.attributes;
+        if (this.size == this.ids.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, this.size * 2);
+            newIds = Arrays.copyOf(this.ids, capacity);
+            newAttributes = Arrays.copyOf(this.attributes, capacity);
+        }
+        newIds[this.size] = id;
+        newAttributes[this.size] = attribute;
+        return new PostingList(newIds, newAttributes, this.size + 1);
+    }
+
+    /**
+     * Returns a list without any of the entries for the given id, or <code>null</code> if the result would be empty.
+     */
+    PostingList remove(int id) {
+        int from = indexOf(id);
+        if (from < 0) {
+            return this;
+        }
+        int to = from;
+        while (to < this.size && this.ids[to] == id) {
+            to++;
+        }
+        int newSize = this.size - (to - from);
+        if (newSize == 0) {
+            return null;
+        }
+        int[] newIds = new int[newSize];
+        Attribute[] newAttributes = new Attribute[newSize];
+        System.arraycopy(this.ids, 0, newIds, 0, from);
+        System.arraycopy(this.attributes, 0, newAttributes, 0, from);
+        System.arraycopy(this.ids, to, newIds, from, this.size - to);
+        System.arraycopy(this.attributes, to, newAttributes, from, this.size - to);
+        return new PostingList(newIds, newAttributes, newSize);
+    }
+
+    /**
+     * Returns the index of the first entry for the given id, or <code>-1</code> if there is no such entry.
+     */
+    int indexOf(int id) {
+        int index = Arrays.binarySearch(this.ids, 0, this.size, id);
+        if (index < 0) {
+            return -1;
+        }
+        while (index > 0 && this.ids[index - 1] == id) {
+            index--;
+        }
+        return index;
+    }
+}
@@ -68,7 +68,7 @@ final class RepositoryDumpContributor implements DumpContributor {
     private void dumpDepository(String name, ArtifactDescriptorDepository depository, Dump dump) {
         OutputStream stream = null;
         try {
-            stream = dump.createFileOutputStream(CONTRIBUTOR_NAME + "-" + name + ".index");
+            stream = dump.createOutputStream(CONTRIBUTOR_NAME + "-" + name + ".index");
             Set<RepositoryAwareArtifactDescriptor> descriptors = depository.resolveArtifactDescriptors(null);
             codec.write(descriptors, stream);
         } catch (Exception e) {
@@ -24,7 +24,9 @@ import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
 import org.eclipse.virgo.repository.IndexFormatException;
 import org.eclipse.virgo.repository.Query;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -180,6 +182,15 @@ public class StandardArtifactDescriptorDepository implements ArtifactDescriptorD
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters, VersionRange versionRange,
+        VersionRangeMatchingStrategy strategy) {
+        Set<RepositoryAwareArtifactDescriptor> resolved = resolveArtifactDescriptors(filters);
+        return strategy == null ? resolved : strategy.match(resolved, versionRange);
+    }
+
     /**
      * Execute a single filter of a query.
      * 
@@ -192,7 +203,11 @@ public class StandardArtifactDescriptorDepository implements ArtifactDescriptorD
         Set<Attribute> propertyFilteredAttributes = new HashSet<Attribute>();
 
         for (Attribute attribute : attributes) {
-            if (this.propertiesContains(filter.getProperties(), attribute.getProperties())) {
+            if (filter instanceof VersionRangeAttribute) {
+                if (((VersionRangeAttribute) filter).includes(attribute)) {
+                    propertyFilteredAttributes.add(attribute);
+                }
+            } else if (this.propertiesContains(filter.getProperties(), attribute.getProperties())) {
                 propertyFilteredAttributes.add(attribute);
             }
         }
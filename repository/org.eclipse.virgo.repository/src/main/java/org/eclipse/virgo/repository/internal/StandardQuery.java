@@ -89,6 +89,16 @@ final public class StandardQuery implements Query {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Query addVersionRangeFilter(String name, String value, VersionRange versionRange) {
+        synchronized (filterLock) {
+            this.filters.add(new VersionRangeAttribute(name, value, versionRange));
+        }
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -116,11 +126,7 @@ final public class StandardQuery implements Query {
         final VersionRange localVersionRange = this.versionRangeFilter;
         final VersionRangeMatchingStrategy localVersionRangeMatchingStrategy = this.versionRangeMatchingStrategy;
 
-        Set<RepositoryAwareArtifactDescriptor> resolved = this.artifactDepository.resolveArtifactDescriptors(this.filters);
-        if (localVersionRangeMatchingStrategy != null) {
-            resolved = localVersionRangeMatchingStrategy.match(resolved, localVersionRange);
-        }
-        return resolved;
+        return this.artifactDepository.resolveArtifactDescriptors(this.filters, localVersionRange, localVersionRangeMatchingStrategy);
     }
 
     /**
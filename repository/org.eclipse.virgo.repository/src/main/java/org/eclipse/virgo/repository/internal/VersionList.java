@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+import org.osgi.framework.Version;
+
+/**
+ * <p>
+ * An immutable list of artifact descriptor ids sorted by a version associated with each id, such as the version of the
+ * artifact or the version at which it exports a package. Entries with equal versions are kept in the order in which
+ * they were added. The entries whose versions are in a {@link VersionRange} are found by binary search.
+ * </p>
+ * <p>
+ * Inserting or removing an entry copies the list, so an update never changes the entries seen through an existing
+ * list.
+ * </p>
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * Thread-safe.
+ * 
+ */
+final class VersionList {
+
+    static final VersionList EMPTY = new VersionList(new Version[0], new int[0]);
+
+    private final Version[] versions;
+
+    private final int[] ids;
+
+    private VersionList(Version[] versions, int[] ids) {
+        this.versions = versions;
+        this.ids = ids;
+    }
+
+    int size() {
+        return this.ids.length;
+    }
+
+    int idAt(int index) {
+        return this.ids[index];
+    }
+
+    Version versionAt(int index) {
+        return this.versions[index];
+    }
+
+    /**
+     * Returns a list with the given entry inserted after any entries with the same version.
+     */
+    VersionList insert(Version version, int id) {
+        int index = indexAfter(version);
+        int size = this.ids.length;
+        Version[] newVersions = new Version[size + 1];
+        int[] newIds = new int[size + 1];
+        System.arraycopy(this.versions, 0, newVersions, 0, index);
+        System.arraycopy(this.ids, 0, newIds, 0, index);
+        newVersions[index] = version;
+        newIds[index] = id;
+        System.arraycopy(this.versions, index, newVersions, index + 1, size - index);
+        System.arraycopy(this.ids, index, newIds, index + 1, size - index);
+        return new VersionList(newVersions, newIds);
+    }
+
+    /**
+     * Returns a list without any of the entries for the given id, or <code>null</code> if the result would be empty.
+     */
+    VersionList remove(int id) {
+        int remaining = 0;
+        for (int existingId : this.ids) {
+            if (existingId != id) {
+                remaining++;
+            }
+        }
+        if (remaining == this.ids.length) {
+            return this;
+        }
+        if (remaining == 0) {
+            return null;
+        }
+        Version[] newVersions = new Version[remaining];
+        int[] newIds = new int[remaining];
+        int newIndex = 0;
+        for (int index = 0; index < this.ids.length; index++) {
+            if (this.ids[index] != id) {
+                newVersions[newIndex] = this.versions[index];
+                newIds[newIndex++] = this.ids[index];
+            }
+        }
+        return new VersionList(newVersions, newIds);
+    }
+
+    /**
+     * Returns the index of the first entry whose version is in the given range or, if there is no such entry, the index
+     * of the first entry above the range.
+     */
+    int fromIndex(VersionRange versionRange) {
+        Version floor = versionRange.getFloor();
+        return versionRange.isFloorInclusive() ? indexOf(floor) : indexAfter(floor);
+    }
+
+    /**
+     * Returns the index after the last entry whose version is in the given range or, if there is no such entry, the
+     * index of the first entry above the range.
+     */
+    int toIndex(VersionRange versionRange) {
+        Version ceiling = versionRange.getCeiling();
+        if (ceiling == null) {
+            return this.ids.length;
+        }
+        return versionRange.isCeilingInclusive() ? indexAfter(ceiling) : indexOf(ceiling);
+    }
+
+    /**
+     * Returns the index of the first entry with a version not less than the given version.
+     */
+    private int indexOf(Version version) {
+        int low = 0;
+        int high = this.versions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.versions[middle].compareTo(version) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first entry with a version greater than the given version.
+     */
+    private int indexAfter(Version version) {
+        int low = 0;
+        int high = this.versions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.versions[middle].compareTo(version) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+import org.osgi.framework.Version;
+
+/**
+ * <p>
+ * A query filter which matches an <code>Attribute</code> with the given name and value whose <code>version</code>
+ * property is included in a <code>VersionRange</code>. An <code>Attribute</code> with no <code>version</code>
+ * property has version <code>0.0.0</code>, as for an <code>Export-Package</code> header clause with no version. This
+ * class is immutable.
+ * </p>
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * This class is Threadsafe
+ * 
+ */
+final class VersionRangeAttribute implements Attribute {
+
+    static final String VERSION_PROPERTY = "version";
+
+    private final String name;
+
+    private final String value;
+
+    private final VersionRange versionRange;
+
+    VersionRangeAttribute(String name, String value, VersionRange versionRange) {
+        if (name == null || value == null || versionRange == null) {
+            throw new IllegalArgumentException("Arguments can not be null");
+        }
+        this.name = name;
+        this.value = value;
+        this.versionRange = versionRange;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getKey() {
+        return this.name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getValue() {
+        return this.value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Set<String>> getProperties() {
+        return Collections.<String, Set<String>> emptyMap();
+    }
+
+    VersionRange getVersionRange() {
+        return this.versionRange;
+    }
+
+    /**
+     * Returns <code>true</code> if and only if the version of the given attribute is included in this filter's range.
+     * The attribute's name and value are not checked.
+     * 
+     * @param attribute the attribute to check
+     * @return whether the attribute's version is in range
+     */
+    boolean includes(Attribute attribute) {
+        Version version = versionOf(attribute);
+        return version != null && this.versionRange.includes(version);
+    }
+
+    /**
+     * Returns the version of the given attribute, or <code>null</code> if its <code>version</code> property is not a
+     * valid version.
+     * 
+     * @param attribute the attribute
+     * @return the attribute's version or <code>null</code>
+     */
+    static Version versionOf(Attribute attribute) {
+        Set<String> versions = attribute.getProperties().get(VERSION_PROPERTY);
+        if (versions == null || versions.isEmpty()) {
+            return Version.emptyVersion;
+        }
+        try {
+            return new Version(versions.iterator().next().trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("'%s=%s' with version in '%s'", this.name, this.value, this.versionRange);
+    }
+}
@@ -57,6 +57,14 @@ final class CacheingQuery implements Query {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Query addVersionRangeFilter(String name, String value, VersionRange versionRange) {
+        this.delegate.addVersionRangeFilter(name, value, versionRange);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
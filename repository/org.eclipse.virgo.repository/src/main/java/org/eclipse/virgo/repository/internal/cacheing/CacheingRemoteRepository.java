@@ -19,7 +19,10 @@ import org.eclipse.virgo.repository.Query;
 import org.eclipse.virgo.repository.configuration.RemoteRepositoryConfiguration;
 import org.eclipse.virgo.repository.internal.cacheing.cache.RepositoryCache;
 import org.eclipse.virgo.repository.internal.cacheing.cache.RepositoryCacheFactory;
+import org.eclipse.virgo.repository.internal.cacheing.cache.RepositoryCacheStatistics;
+import org.eclipse.virgo.repository.internal.management.StandardRemoteRepositoryInfo;
 import org.eclipse.virgo.repository.internal.remote.RemoteRepository;
+import org.eclipse.virgo.repository.management.RepositoryInfo;
 
 /**
  * {@link CacheingRemoteRepository} extends {@link RemoteRepository} by cacheing retrieved artifacts in a local disk
@@ -67,6 +70,14 @@ public final class CacheingRemoteRepository extends RemoteRepository {
         super.stop();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected RepositoryInfo createMBean() {
+        return new StandardRemoteRepositoryInfo(getName(), getDepository(), new ActiveCacheStatistics());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -101,4 +112,46 @@ public final class CacheingRemoteRepository extends RemoteRepository {
         return new CacheingQuery(uncachedQuery, activeCache);
     }
 
+    /**
+     * The statistics of the cache while the repository is started. The MBean is created before the cache, so the cache
+     * is looked up on each call.
+     */
+    private final class ActiveCacheStatistics implements RepositoryCacheStatistics {
+
+        public long getHitCount() {
+            RepositoryCacheStatistics statistics = getStatistics();
+            return statistics == null ? 0 : statistics.getHitCount();
+        }
+
+        public long getMissCount() {
+            RepositoryCacheStatistics statistics = getStatistics();
+            return statistics == null ? 0 : statistics.getMissCount();
+        }
+
+        public long getEvictionCount() {
+            RepositoryCacheStatistics statistics = getStatistics();
+            return statistics == null ? 0 : statistics.getEvictionCount();
+        }
+
+        public long getDownloadedBytes() {
+            RepositoryCacheStatistics statistics = getStatistics();
+            return statistics == null ? 0 : statistics.getDownloadedBytes();
+        }
+
+        public long getSize() {
+            RepositoryCacheStatistics statistics = getStatistics();
+            return statistics == null ? 0 : statistics.getSize();
+        }
+
+        public long getQuota() {
+            RepositoryCacheStatistics statistics = getStatistics();
+            return statistics == null ? getCacheQuota() : statistics.getQuota();
+        }
+
+        private RepositoryCacheStatistics getStatistics() {
+            RepositoryCache repositoryCache = getRepositoryCache();
+            return repositoryCache == null ? null : repositoryCache.getStatistics();
+        }
+    }
+
 }
@@ -37,4 +37,11 @@ public interface RepositoryCache {
      */
     URI getUri(RepositoryAwareArtifactDescriptor artifactDescriptor);
 
+    /**
+     * Returns the statistics of this cache's use, which are updated as the cache is used.
+     * 
+     * @return the cache statistics
+     */
+    RepositoryCacheStatistics getStatistics();
+
 }
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal.cacheing.cache;
+
+/**
+ * {@link RepositoryCacheStatistics} reports the use of a {@link RepositoryCache}.
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * Implementations of this interface must be thread safe.
+ * 
+ */
+public interface RepositoryCacheStatistics {
+
+    /**
+     * @return the number of requests for an artifact which were satisfied from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of requests for an artifact which required the artifact to be downloaded
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of cached artifacts discarded to keep the cache within its quota
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of bytes downloaded into the cache
+     */
+    long getDownloadedBytes();
+
+    /**
+     * @return the number of bytes of cached artifacts
+     */
+    long getSize();
+
+    /**
+     * @return the number of bytes of cached artifacts above which artifacts are discarded, or a number which is not
+     *         positive if the cache is unbounded
+     */
+    long getQuota();
+}
@@ -17,6 +17,8 @@ import java.net.URI;
 import org.eclipse.virgo.repository.Repository;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.RepositoryCreationException;
+import org.eclipse.virgo.repository.configuration.CacheEvictionPolicy;
+import org.eclipse.virgo.repository.internal.cacheing.cache.artifact.ArtifactCacheManager;
 import org.eclipse.virgo.repository.internal.cacheing.cache.artifact.SingleArtifactCache;
 import org.eclipse.virgo.repository.internal.cacheing.cache.artifact.SingleArtifactCacheFactory;
 import org.eclipse.virgo.repository.internal.cacheing.cache.descriptorhash.ArtifactDescriptorHash;
@@ -43,8 +45,16 @@ final class StandardRepositoryCache implements RepositoryCache {
 
     private final ArtifactDescriptorHashFactory artifactDescriptorHashFactory;
 
+    private final ArtifactCacheManager cacheManager;
+
     StandardRepositoryCache(String repositoryName, File cacheDirectory, SingleArtifactCacheFactory artifactCacheFactory,
         ArtifactDescriptorHashFactory artifactDescriptorHashFactory) {
+        this(repositoryName, cacheDirectory, artifactCacheFactory, artifactDescriptorHashFactory, new ArtifactCacheManager(0,
+            CacheEvictionPolicy.LRU));
+    }
+
+    StandardRepositoryCache(String repositoryName, File cacheDirectory, SingleArtifactCacheFactory artifactCacheFactory,
+        ArtifactDescriptorHashFactory artifactDescriptorHashFactory, ArtifactCacheManager cacheManager) {
         Assert.notNull(repositoryName, "repository name must not be null");
         this.repositoryName = repositoryName;
 
@@ -53,6 +63,9 @@ final class StandardRepositoryCache implements RepositoryCache {
         this.artifactCacheFactory = artifactCacheFactory;
 
         this.artifactDescriptorHashFactory = artifactDescriptorHashFactory;
+
+        this.cacheManager = cacheManager;
+        this.cacheManager.recoverCachedArtifacts(this.repositoryCacheDirectory);
     }
 
     private static File createRepositoryCacheDirectory(String repositoryName, File cacheDirectory) {
@@ -78,6 +91,13 @@ final class StandardRepositoryCache implements RepositoryCache {
         return artifactDescriptorCache.getCachedUri(createArtifactDescriptorHash(artifactDescriptor));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public RepositoryCacheStatistics getStatistics() {
+        return this.cacheManager;
+    }
+
     private void checkRepositoryName(RepositoryAwareArtifactDescriptor artifactDescriptor) {
         Assert.isTrue(this.repositoryName.equals(artifactDescriptor.getRepositoryName()), "Wrong RepositoryCache for the given artifact descriptor");
     }
@@ -13,6 +13,7 @@ package org.eclipse.virgo.repository.internal.cacheing.cache;
 
 import java.io.File;
 
+import org.eclipse.virgo.repository.internal.cacheing.cache.artifact.ArtifactCacheManager;
 import org.eclipse.virgo.repository.internal.cacheing.cache.artifact.StandardSingleArtifactCacheFactory;
 import org.eclipse.virgo.repository.internal.cacheing.cache.descriptorhash.StandardArtifactDescriptorHashFactory;
 import org.eclipse.virgo.repository.internal.remote.RemoteRepository;
@@ -34,8 +35,9 @@ public class StandardRepositoryCacheFactory implements RepositoryCacheFactory {
      */
     public RepositoryCache createRepositoryCache(RemoteRepository remoteRepository) {
         File cacheDirectory = remoteRepository.getCacheDirectory();
-        return new StandardRepositoryCache(remoteRepository.getName(), cacheDirectory, new StandardSingleArtifactCacheFactory(),
-            new StandardArtifactDescriptorHashFactory());
+        ArtifactCacheManager cacheManager = new ArtifactCacheManager(remoteRepository.getCacheQuota(), remoteRepository.getCacheEvictionPolicy());
+        return new StandardRepositoryCache(remoteRepository.getName(), cacheDirectory, new StandardSingleArtifactCacheFactory(cacheManager),
+            new StandardArtifactDescriptorHashFactory(), cacheManager);
     }
 
 }
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal.cacheing.cache.artifact;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.virgo.repository.configuration.CacheEvictionPolicy;
+import org.eclipse.virgo.repository.internal.cacheing.cache.RepositoryCacheStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ArtifactCacheManager} keeps the artifacts cached for a repository within a quota of disk space, discarding
+ * artifacts according to a {@link CacheEvictionPolicy} when the quota is exceeded, and gathers the statistics of the
+ * cache's use.
+ * <p />
+ * Each {@link StandardSingleArtifactCache} reports its hits and downloads to the manager. Artifacts cached by an earlier
+ * run are found by {@link #recoverCachedArtifacts(File)} and count towards the quota until they are either used again
+ * or discarded. The artifact which has just been used is never discarded, so a single artifact larger than the quota is
+ * cached until another artifact is downloaded.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * Thread safe. Hits are recorded without locking. Artifacts are discarded after the manager's lock has been released, so
+ * that the manager never waits for an artifact cache which may be downloading.
+ *
+ */
+public final class ArtifactCacheManager implements RepositoryCacheStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCacheManager.class);
+
+    private static final String HASH_SUFFIX = ".hash";
+
+    private final long quota;
+
+    private final Comparator<CachedArtifact> evictionOrder;
+
+    private final Map<File, CachedArtifact> cachedArtifacts = new ConcurrentHashMap<File, CachedArtifact>();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong downloadedBytes = new AtomicLong();
+
+    private final Object monitor = new Object(); // serialises changes to the set of cached artifacts and their size
+        private long size = 0;
+
+    /**
+     * @param quota the number of bytes of cached artifacts above which artifacts are discarded; if not positive the
+     *        cache is unbounded
+     * @param evictionPolicy the policy for choosing which artifacts to discard
+     */
+    public ArtifactCacheManager(long quota, CacheEvictionPolicy evictionPolicy) {
+        this.quota = quota;
+        this.evictionOrder = evictionPolicy == CacheEvictionPolicy.LFU ? LEAST_FREQUENTLY_USED : LEAST_RECENTLY_USED;
+    }
+
+    /**
+     * Finds the artifacts in the given repository cache directory which were cached by an earlier run, so that they
+     * count towards the quota, and discards artifacts if the quota is exceeded. Recovered artifacts are ordered by the
+     * time they were cached.
+     *
+     * @param repositoryCacheDirectory the repository cache directory
+     */
+    public void recoverCachedArtifacts(File repositoryCacheDirectory) {
+        List<File> artifactFiles = new ArrayList<File>();
+        findCachedArtifacts(repositoryCacheDirectory, artifactFiles);
+        Collections.sort(artifactFiles, new Comparator<File>() {
+
+            public int compare(File a, File b) {
+                long aModified = a.lastModified();
+                long bModified = b.lastModified();
+                return aModified < bModified ? -1 : (aModified == bModified ? 0 : 1);
+            }
+        });
+        synchronized (this.monitor) {
+            for (File artifactFile : artifactFiles) {
+                if (!this.cachedArtifacts.containsKey(artifactFile)) {
+                    CachedArtifact cachedArtifact = new CachedArtifact(artifactFile, null, 0, artifactFile.length(), this.clock.incrementAndGet());
+                    this.cachedArtifacts.put(artifactFile, cachedArtifact);
+                    this.size += cachedArtifact.size;
+                }
+            }
+        }
+        evictIfOverQuota(null);
+    }
+
+    private static void findCachedArtifacts(File directory, List<File> artifactFiles) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    findCachedArtifacts(file, artifactFiles);
+                } else if (file.getName().endsWith(HASH_SUFFIX)) {
+                    File artifactFile = new File(directory, file.getName().substring(0, file.getName().length() - HASH_SUFFIX.length()));
+                    if (artifactFile.isFile()) {
+                        artifactFiles.add(artifactFile);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a request satisfied by an artifact which was already cached.
+     *
+     * @param artifactCache the cache of the artifact
+     * @param artifactFile the cached artifact
+     * @param downloadStamp the stamp of the artifact cache's current download
+     */
+    void recordHit(StandardSingleArtifactCache artifactCache, File artifactFile, long downloadStamp) {
+        this.hitCount.incrementAndGet();
+        CachedArtifact cachedArtifact = this.cachedArtifacts.get(artifactFile);
+        if (cachedArtifact != null && cachedArtifact.artifactCache == artifactCache) {
+            cachedArtifact.used(this.clock.incrementAndGet());
+        } else {
+            // first use of an artifact recovered from an earlier run, or of one discarded while it was being used
+            track(new CachedArtifact(artifactFile, artifactCache, downloadStamp, artifactFile.length(), this.clock.incrementAndGet()));
+        }
+    }
+
+    /**
+     * Records that an artifact chosen to be discarded was kept because it was in use, so that it counts towards the
+     * quota again.
+     *
+     * @param artifactCache the cache of the artifact
+     * @param artifactFile the cached artifact
+     * @param downloadStamp the stamp of the artifact cache's current download
+     */
+    void recordRetained(StandardSingleArtifactCache artifactCache, File artifactFile, long downloadStamp) {
+        synchronized (this.monitor) {
+            if (!this.cachedArtifacts.containsKey(artifactFile)) {
+                CachedArtifact cachedArtifact = new CachedArtifact(artifactFile, artifactCache, downloadStamp, artifactFile.length(),
+                    this.clock.incrementAndGet());
+                this.cachedArtifacts.put(artifactFile, cachedArtifact);
+                this.size += cachedArtifact.size;
+            }
+        }
+    }
+
+    /**
+     * Records a request which required an artifact to be downloaded, and discards other artifacts if the quota is now
+     * exceeded.
+     *
+     * @param artifactCache the cache of the artifact
+     * @param artifactFile the downloaded artifact
+     * @param downloadStamp the stamp of the download
+     */
+    void recordDownload(StandardSingleArtifactCache artifactCache, File artifactFile, long downloadStamp) {
+        this.missCount.incrementAndGet();
+        long length = artifactFile.length();
+        this.downloadedBytes.addAndGet(length);
+        track(new CachedArtifact(artifactFile, artifactCache, downloadStamp, length, this.clock.incrementAndGet()));
+        evictIfOverQuota(artifactFile);
+    }
+
+    /**
+     * Records a request for an artifact which could not be downloaded.
+     *
+     * @param artifactFile the artifact which is no longer cached
+     */
+    void recordDownloadFailure(File artifactFile) {
+        this.missCount.incrementAndGet();
+        synchronized (this.monitor) {
+            CachedArtifact removed = this.cachedArtifacts.remove(artifactFile);
+            if (removed != null) {
+                this.size -= removed.size;
+            }
+        }
+    }
+
+    private void track(CachedArtifact cachedArtifact) {
+        synchronized (this.monitor) {
+            CachedArtifact replaced = this.cachedArtifacts.put(cachedArtifact.artifactFile, cachedArtifact);
+            if (replaced != null) {
+                this.size -= replaced.size;
+                cachedArtifact.useCount += replaced.useCount;
+            }
+            this.size += cachedArtifact.size;
+        }
+    }
+
+    private void evictIfOverQuota(File retainedArtifactFile) {
+        if (this.quota <= 0) {
+            return;
+        }
+        List<CachedArtifact> victims = new ArrayList<CachedArtifact>();
+        synchronized (this.monitor) {
+            if (this.size <= this.quota) {
+                return;
+            }
+            // sort copies, as hits update the use of cached artifacts without holding the lock
+            List<CachedArtifact> candidates = new ArrayList<CachedArtifact>(this.cachedArtifacts.size());
+            for (CachedArtifact cachedArtifact : this.cachedArtifacts.values()) {
+                candidates.add(cachedArtifact.copy());
+            }
+            Collections.sort(candidates, this.evictionOrder);
+            for (CachedArtifact candidate : candidates) {
+                if (this.size <= this.quota) {
+                    break;
+                }
+                if (!candidate.artifactFile.equals(retainedArtifactFile)) {
+                    this.cachedArtifacts.remove(candidate.artifactFile);
+                    this.size -= candidate.size;
+                    victims.add(candidate);
+                }
+            }
+        }
+        for (CachedArtifact victim : victims) {
+            evict(victim);
+        }
+    }
+
+    private void evict(CachedArtifact victim) {
+        boolean evicted;
+        if (victim.artifactCache != null) {
+            evicted = victim.artifactCache.evict(victim.downloadStamp);
+        } else {
+            evicted = victim.artifactFile.delete();
+            new File(victim.artifactFile.getPath() + HASH_SUFFIX).delete();
+        }
+        if (evicted) {
+            this.evictionCount.incrementAndGet();
+            LOGGER.debug("Discarded cached artifact '{}' of {} bytes.", victim.artifactFile, victim.size);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getDownloadedBytes() {
+        return this.downloadedBytes.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getSize() {
+        synchronized (this.monitor) {
+            return this.size;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getQuota() {
+        return this.quota;
+    }
+
+    private static final Comparator<CachedArtifact> LEAST_RECENTLY_USED = new Comparator<CachedArtifact>() {
+
+        public int compare(CachedArtifact a, CachedArtifact b) {
+            return compareLastUse(a, b);
+        }
+    };
+
+    private static final Comparator<CachedArtifact> LEAST_FREQUENTLY_USED = new Comparator<CachedArtifact>() {
+
+        public int compare(CachedArtifact a, CachedArtifact b) {
+            long aUseCount = a.useCount;
+            long bUseCount = b.useCount;
+            return aUseCount < bUseCount ? -1 : (aUseCount == bUseCount ? compareLastUse(a, b) : 1);
+        }
+    };
+
+    private static int compareLastUse(CachedArtifact a, CachedArtifact b) {
+        long aLastUse = a.lastUse;
+        long bLastUse = b.lastUse;
+        return aLastUse < bLastUse ? -1 : (aLastUse == bLastUse ? 0 : 1);
+    }
+
+    /**
+     * The size and use of a cached artifact. The artifact cache is <code>null</code> for an artifact recovered from an
+     * earlier run which has not been used since.
+     */
+    private static final class CachedArtifact {
+
+        private final File artifactFile;
+
+        private final StandardSingleArtifactCache artifactCache;
+
+        private final long downloadStamp;
+
+        private final long size;
+
+        private volatile long lastUse;
+
+        private volatile long useCount;
+
+        private CachedArtifact(File artifactFile, StandardSingleArtifactCache artifactCache, long downloadStamp, long size, long lastUse) {
+            this.artifactFile = artifactFile;
+            this.artifactCache = artifactCache;
+            this.downloadStamp = downloadStamp;
+            this.size = size;
+            this.lastUse = lastUse;
+            this.useCount = 1;
+        }
+
+        private CachedArtifact copy() {
+            CachedArtifact copy = new CachedArtifact(this.artifactFile, this.artifactCache, this.downloadStamp, this.size, this.lastUse);
+            copy.useCount = this.useCount;
+            return copy;
+        }
+
+        // racing updates may lose a use, which only affects the order of eviction
+        private void used(long time) {
+            this.lastUse = time;
+            this.useCount++;
+        }
+    }
+}
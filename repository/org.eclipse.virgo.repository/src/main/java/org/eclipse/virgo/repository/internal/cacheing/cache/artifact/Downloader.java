@@ -11,88 +11,166 @@
 
 package org.eclipse.virgo.repository.internal.cacheing.cache.artifact;
 
-import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.MalformedURLException;
+import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.eclipse.virgo.util.io.FileCopyUtils;
+import org.eclipse.virgo.repository.util.FileDigest;
 import org.eclipse.virgo.util.io.PathReference;
 
 /**
  * {@link Downloader} is a utility used to download artifacts into an artifact cache.
  * <p />
- * 
+ * The artifact is written to a partial file alongside the destination and moved into place once it is complete, so the
+ * destination never holds a partly downloaded artifact. A digest of the artifact is computed as it is written. If the
+ * download fails part way through, it is retried. An HTTP download is resumed with a range request, provided the server
+ * identified the version of the artifact it was sending; otherwise it starts again from the beginning.
+ * <p />
+ *
  * <strong>Concurrent Semantics</strong><br />
- * 
+ *
  * This class is thread safe.
- * 
+ *
  */
 final class Downloader {
-    
+
     private static final Logger LOGGER = LoggerFactory.getLogger(Downloader.class);
 
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private static final int CONNECT_TIMEOUT = 30 * 1000;
+
+    private static final int READ_TIMEOUT = 60 * 1000;
+
+    private static final int MAXIMUM_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 8192;
+
     private final URI repositoryArtifactURI;
 
     private final PathReference artifactCacheFilePathReference;
 
+    private final String digestAlgorithm;
+
     Downloader(URI sourceUri, PathReference destination) {
+        this(sourceUri, destination, null);
+    }
+
+    /**
+     * @param digestAlgorithm the algorithm of the digest to compute while downloading, or <code>null</code> if no digest
+     *        is required
+     */
+    Downloader(URI sourceUri, PathReference destination, String digestAlgorithm) {
         this.repositoryArtifactURI = sourceUri;
         this.artifactCacheFilePathReference = destination;
+        this.digestAlgorithm = digestAlgorithm;
     }
 
     /**
      * Downloads the artifact at the source URI to the destination PathReference. These parameters were supplied on the
      * constructor. If the artifact download is unsuccessful, deletes the destination file if it exists.
+     *
+     * @return the digest of the downloaded artifact, in the form returned by {@link FileDigest}, or <code>null</code> if
+     *         the download was unsuccessful or the digest could not be computed
      */
-    void downloadArtifact() {
+    String downloadArtifact() {
+        File partialFile = new File(this.artifactCacheFilePathReference.toFile().getPath() + PARTIAL_SUFFIX);
+        MessageDigest digest = createMessageDigest();
         boolean downloadSuccessful = false;
         try {
-            InputStream artifactInputStream = getArtifactInputStream();
-            OutputStream artifactCacheOutputStream = getArtifactCacheOutputStream();
-            if (artifactInputStream != null && artifactCacheOutputStream != null) {
+            partialFile.delete();
+            long downloaded = 0;
+            String validator = null;
+            for (int attempt = 1;; attempt++) {
+                URLConnection connection = openConnection(downloaded, validator);
+                if (connection == null) {
+                    if (attempt == 1) {
+                        return null;
+                    }
+                    throw new RuntimeException("Error resuming download of artifact '" + this.repositoryArtifactURI + "'");
+                }
+                boolean resumed = downloaded > 0 && isContinuation(connection, downloaded);
+                if (!resumed) {
+                    downloaded = 0;
+                    if (digest != null) {
+                        digest.reset();
+                    }
+                }
+                validator = getValidator(connection);
                 try {
-                    FileCopyUtils.copy(artifactInputStream, artifactCacheOutputStream);
-                    downloadSuccessful = true;
-                } catch (IOException e) {
-                    LOGGER.error("Error downloading artifact", e);
-                    throw new RuntimeException("Error downloading artifact '" + this.repositoryArtifactURI +"'", e);
+                    downloaded = copy(connection, partialFile, resumed, digest, downloaded);
+                    break;
+                } catch (DownloadException e) {
+                    // a failed write may leave more in the partial file than was digested, so start again
+                    downloaded = partialFile.length() == e.downloaded ? e.downloaded : 0;
+                    if (attempt == MAXIMUM_ATTEMPTS) {
+                        LOGGER.error("Error downloading artifact", e.getCause());
+                        throw new RuntimeException("Error downloading artifact '" + this.repositoryArtifactURI + "'", e.getCause());
+                    }
+                    LOGGER.warn("Download of artifact '{}' failed after {} bytes. Retrying.", this.repositoryArtifactURI, downloaded);
                 }
-            } else if (artifactInputStream != null) {
-            	try {
-					artifactInputStream.close();
-				} catch (IOException e) {
-					LOGGER.error("Error closing artifactInputStream", e);
-				}
-            } else if (artifactCacheOutputStream != null) {
-            	try {
-					artifactCacheOutputStream.close();
-				} catch (IOException e) {
-					LOGGER.error("Error closing artifactCacheOutputStream", e);
-				}
             }
+            moveIntoPlace(partialFile);
+            downloadSuccessful = true;
+            return digest == null ? null : FileDigest.hashToString(digest.digest());
         } finally {
             if (!downloadSuccessful) {
                 LOGGER.warn("Artifact download failed. Cleaning up target file {}.", this.artifactCacheFilePathReference.toAbsoluteReference());
+                partialFile.delete();
                 this.artifactCacheFilePathReference.delete();
             }
         }
     }
 
-    private InputStream getArtifactInputStream() {
+    private MessageDigest createMessageDigest() {
+        if (this.digestAlgorithm == null) {
+            return null;
+        }
         try {
-            URL url = this.repositoryArtifactURI.toURL();
-            URLConnection urlConnection = url.openConnection();
-            return urlConnection.getInputStream();
-        } catch (MalformedURLException e) {
+            return MessageDigest.getInstance(this.digestAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Digest algorithm '{}' is not available.", this.digestAlgorithm);
+            return null;
+        }
+    }
+
+    /**
+     * Opens a connection to the artifact, requesting the remainder of the artifact if part of it has been downloaded and
+     * the version downloaded is known.
+     */
+    private URLConnection openConnection(long downloaded, String validator) {
+        try {
+            URLConnection urlConnection = this.repositoryArtifactURI.toURL().openConnection();
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT);
+            urlConnection.setReadTimeout(READ_TIMEOUT);
+            if (downloaded > 0 && validator != null && urlConnection instanceof HttpURLConnection) {
+                urlConnection.setRequestProperty("Range", "bytes=" + downloaded + "-");
+                urlConnection.setRequestProperty("If-Range", validator);
+            }
+            urlConnection.connect();
+            if (urlConnection instanceof HttpURLConnection) {
+                int responseCode = ((HttpURLConnection) urlConnection).getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                    LOGGER.error("Error accessing repository artifact '{}': HTTP status {}", this.repositoryArtifactURI, responseCode);
+                    ((HttpURLConnection) urlConnection).disconnect();
+                    return null;
+                }
+            }
+            return urlConnection;
+        } catch (IllegalArgumentException e) {
             LOGGER.error("Error accessing repository artifact", e);
         } catch (IOException e) {
             LOGGER.error("Error accessing repository artifact", e);
@@ -100,13 +178,93 @@ final class Downloader {
         return null;
     }
 
-    private OutputStream getArtifactCacheOutputStream() {
+    /**
+     * Returns <code>true</code> if and only if the connection's response continues the artifact from the given position.
+     */
+    private static boolean isContinuation(URLConnection connection, long downloaded) {
+        try {
+            if (((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        String contentRange = connection.getHeaderField("Content-Range");
+        return contentRange != null && contentRange.trim().startsWith("bytes " + downloaded + "-");
+    }
+
+    /**
+     * Returns the entity tag, or failing that the last modification time, which identifies the version of the artifact
+     * being sent by an HTTP server, or <code>null</code> if there is none and the download cannot be resumed safely.
+     */
+    private static String getValidator(URLConnection connection) {
+        if (!(connection instanceof HttpURLConnection)) {
+            return null;
+        }
+        String eTag = connection.getHeaderField("ETag");
+        return eTag != null ? eTag : connection.getHeaderField("Last-Modified");
+    }
+
+    private static long copy(URLConnection connection, File partialFile, boolean append, MessageDigest digest, long downloaded)
+        throws DownloadException {
+        long position = downloaded;
+        long expectedLength = connection.getContentLengthLong();
+        try {
+            InputStream input = connection.getInputStream();
+            try {
+                OutputStream output = new FileOutputStream(partialFile, append);
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                        if (digest != null) {
+                            digest.update(buffer, 0, read);
+                        }
+                        position += read;
+                    }
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+            // an HTTP connection which is dropped part way through may simply end the stream
+            if (expectedLength >= 0 && position - downloaded != expectedLength) {
+                throw new IOException("Expected " + expectedLength + " bytes but received " + (position - downloaded));
+            }
+            return position;
+        } catch (IOException e) {
+            throw new DownloadException(position, e);
+        }
+    }
+
+    private void moveIntoPlace(File partialFile) {
+        File artifactFile = this.artifactCacheFilePathReference.toFile();
         try {
-            this.artifactCacheFilePathReference.delete();
-            return new FileOutputStream(this.artifactCacheFilePathReference.toFile());
-        } catch (FileNotFoundException e) {
-            LOGGER.error("Error accessing repository artifact download destination file", e);
+            try {
+                Files.move(partialFile.toPath(), artifactFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partialFile.toPath(), artifactFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error moving downloaded artifact into place", e);
+            throw new RuntimeException("Error storing downloaded artifact '" + this.repositoryArtifactURI + "'", e);
+        }
+    }
+
+    /**
+     * Signals that a download failed after a number of bytes had been written.
+     */
+    private static final class DownloadException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long downloaded;
+
+        private DownloadException(long downloaded, IOException cause) {
+            super(cause);
+            this.downloaded = downloaded;
         }
-        return null;
     }
 }
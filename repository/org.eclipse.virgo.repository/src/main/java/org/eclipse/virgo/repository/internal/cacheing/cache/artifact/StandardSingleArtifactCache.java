@@ -23,22 +23,27 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
-import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.virgo.repository.configuration.CacheEvictionPolicy;
 import org.eclipse.virgo.repository.internal.cacheing.cache.descriptorhash.ArtifactDescriptorHash;
-import org.eclipse.virgo.repository.util.FileDigest;
 import org.eclipse.virgo.util.io.PathReference;
 import org.osgi.framework.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * {@link StandardSingleArtifactCache} encapsulates the cacheing of a specific artifact and its hash.
+ * {@link StandardSingleArtifactCache} encapsulates the cacheing of a specific artifact and its hash. The hash is read
+ * from its file on first use and is then held in memory. Hits and downloads are reported to an
+ * {@link ArtifactCacheManager}, which may discard the cached artifact.
  * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
- * Thread safe.
+ * Thread safe. A request for the artifact whose hash matches the cached hash does not lock. Other requests are
+ * serialized, so concurrent requests for an out of date artifact share a single download, while requests for different
+ * artifacts proceed in parallel. A request which does not lock pins the cached artifact while it checks the hash and
+ * returns the artifact's URI, and the artifact is not discarded while it is pinned.
  * 
  */
 class StandardSingleArtifactCache implements SingleArtifactCache {
@@ -49,7 +54,7 @@ class StandardSingleArtifactCache implements SingleArtifactCache {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StandardSingleArtifactCache.class);
 
-    private final Object monitor = new Object();
+    private final ArtifactCacheManager cacheManager;
 
     private final PathReference artifactCacheDirectory;
 
@@ -61,7 +66,23 @@ class StandardSingleArtifactCache implements SingleArtifactCache {
 
     private final PathReference artifactHashFilePathReference;
 
+    private final Object monitor = new Object(); // serialises loading the hash, downloading, and eviction
+
+        private volatile boolean hashLoaded = false;
+
+        private volatile String digestAlgorithmAndHash = null; // null when the artifact is not cached
+
+        private volatile long downloadStamp = 0; // distinguishes successive downloads of the artifact
+
+    private final AtomicInteger pins = new AtomicInteger(); // the number of unlocked requests using the cached artifact
+
     StandardSingleArtifactCache(String type, String name, Version version, URI repositoryArtifactURI, String fileName, File repositoryCacheDirectory) {
+        this(type, name, version, repositoryArtifactURI, fileName, repositoryCacheDirectory, new ArtifactCacheManager(0, CacheEvictionPolicy.LRU));
+    }
+
+    StandardSingleArtifactCache(String type, String name, Version version, URI repositoryArtifactURI, String fileName, File repositoryCacheDirectory,
+        ArtifactCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
         this.artifactCacheDirectory = obtainArtifactCacheDirectory(type, name, version, repositoryCacheDirectory);
         this.repositoryArtifactURI = repositoryArtifactURI;
         this.fileName = fileName;
@@ -80,12 +101,30 @@ class StandardSingleArtifactCache implements SingleArtifactCache {
      * {@inheritDoc}
      */
     public URI getCachedUri(ArtifactDescriptorHash artifactDescriptorHash) {
+        String digestAlgorithm = artifactDescriptorHash.getDigestAlgorithm();
+        if (this.hashLoaded) {
+            // pin before checking the hash, so that evict either sees the pin or clears the hash first
+            this.pins.incrementAndGet();
+            try {
+                long stamp = this.downloadStamp;
+                if (isCached(artifactDescriptorHash, digestAlgorithm)) {
+                    this.cacheManager.recordHit(this, this.artifactCacheFilePathReference.toFile(), stamp);
+                    return getURI();
+                }
+            } finally {
+                this.pins.decrementAndGet();
+            }
+        }
         synchronized (this.monitor) {
-            String digestAlgorithm = artifactDescriptorHash.getDigestAlgorithm();
-            String cachedHash = getHash(digestAlgorithm);
-            if (cachedHash == null || !artifactDescriptorHash.matches(cachedHash)) {
-                refresh(artifactDescriptorHash.getDigestAlgorithm());
-                cachedHash = getHash(digestAlgorithm);
+            if (!this.hashLoaded) {
+                this.digestAlgorithmAndHash = readHash();
+                this.hashLoaded = true;
+            }
+            if (isCached(artifactDescriptorHash, digestAlgorithm)) {
+                this.cacheManager.recordHit(this, this.artifactCacheFilePathReference.toFile(), this.downloadStamp);
+            } else {
+                refresh(digestAlgorithm);
+                String cachedHash = getHash(digestAlgorithm);
                 if (cachedHash != null && artifactDescriptorHash.isPresent() && !artifactDescriptorHash.matches(cachedHash)) {
                     LOGGER.info("Newly cached artifact has a hash value different to that stored in the index");
                 }
@@ -94,12 +133,46 @@ class StandardSingleArtifactCache implements SingleArtifactCache {
         }
     }
 
+    private boolean isCached(ArtifactDescriptorHash artifactDescriptorHash, String digestAlgorithm) {
+        String cachedHash = getHash(digestAlgorithm);
+        return cachedHash != null && artifactDescriptorHash.matches(cachedHash) && this.artifactCacheFilePathReference.exists();
+    }
+
+    /**
+     * Discards the cached artifact, unless it has been downloaded again since the given download or is pinned by an
+     * unlocked request. An artifact which is pinned is kept and reported to the {@link ArtifactCacheManager} as still
+     * cached.
+     * 
+     * @param stamp the stamp of the download to discard
+     * @return <code>true</code> if the artifact was discarded, <code>false</code> otherwise
+     */
+    boolean evict(long stamp) {
+        synchronized (this.monitor) {
+            if (stamp != this.downloadStamp) {
+                return false;
+            }
+            String cachedHash = this.digestAlgorithmAndHash;
+            this.digestAlgorithmAndHash = null; // unlocked requests which have not yet checked the hash take the lock
+            if (this.pins.get() > 0) {
+                this.digestAlgorithmAndHash = cachedHash;
+                this.cacheManager.recordRetained(this, this.artifactCacheFilePathReference.toFile(), stamp);
+                return false;
+            }
+            this.hashLoaded = true;
+            this.artifactHashFilePathReference.delete();
+            return this.artifactCacheFilePathReference.delete();
+        }
+    }
+
     private String getHash(String digestAlgorithm) {
+        return extractHashForAlgorithm(digestAlgorithm, this.digestAlgorithmAndHash);
+    }
+
+    private String readHash() {
         try {
             BufferedReader bufferedHashFileReader = new BufferedReader(getHashFileReader());
             try {
-                String digestAlgorithmAndHash = bufferedHashFileReader.readLine();
-                return extractHashForAlgorithm(digestAlgorithm, digestAlgorithmAndHash);
+                return bufferedHashFileReader.readLine();
             } finally {
                 bufferedHashFileReader.close();
             }
@@ -129,23 +202,41 @@ class StandardSingleArtifactCache implements SingleArtifactCache {
          * way. The cancellable approach can be taken if and when downloading in the synchronized block becomes an issue
          * and a way of surfacing cancellation to the user is planned.
          */
-        new Downloader(this.repositoryArtifactURI, this.artifactCacheFilePathReference).downloadArtifact();
-        storeHash(digestAlgorithm);
+        this.digestAlgorithmAndHash = null; // stop unlocked requests using the artifact while it is replaced
+        File artifactFile = this.artifactCacheFilePathReference.toFile();
+        String hash;
+        try {
+            hash = new Downloader(this.repositoryArtifactURI, this.artifactCacheFilePathReference, digestAlgorithm).downloadArtifact();
+        } catch (RuntimeException e) {
+            this.artifactHashFilePathReference.delete();
+            this.cacheManager.recordDownloadFailure(artifactFile);
+            throw e;
+        }
+        storeHash(digestAlgorithm, hash);
+        if (this.artifactCacheFilePathReference.exists()) {
+            this.downloadStamp++;
+            this.cacheManager.recordDownload(this, artifactFile, this.downloadStamp);
+        } else {
+            this.cacheManager.recordDownloadFailure(artifactFile);
+        }
     }
 
-    private void storeHash(String digestAlgorithm) {
+    private void storeHash(String digestAlgorithm, String hash) {
+        if (hash == null) {
+            this.artifactHashFilePathReference.delete();
+            return;
+        }
         try {
-            String hash = FileDigest.getFileDigest(this.artifactCacheFilePathReference.toFile(), digestAlgorithm);
+            String digestAlgorithmAndHash = digestAlgorithm + ALGORITHM_HASH_SEPARATOR + hash;
             Writer hashFileWriter = getHashFileWriter();
             try {
-                hashFileWriter.write(digestAlgorithm + ALGORITHM_HASH_SEPARATOR + hash);
+                hashFileWriter.write(digestAlgorithmAndHash);
             } finally {
                 hashFileWriter.close();
             }
+            this.digestAlgorithmAndHash = digestAlgorithmAndHash;
         } catch (IOException e) {
             this.artifactHashFilePathReference.delete();
-        } catch (NoSuchAlgorithmException e) {
-            this.artifactHashFilePathReference.delete();
         }
     }
 
@@ -17,6 +17,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.configuration.CacheEvictionPolicy;
 import org.eclipse.virgo.repository.internal.cacheing.CacheingArtifactDescriptor;
 import org.osgi.framework.Version;
 
@@ -42,6 +43,19 @@ public class StandardSingleArtifactCacheFactory implements SingleArtifactCacheFa
      */
     private final ConcurrentMap<String, SingleArtifactCache> artifactCaches = new ConcurrentHashMap<String, SingleArtifactCache>();
 
+    private final ArtifactCacheManager cacheManager;
+
+    public StandardSingleArtifactCacheFactory() {
+        this(new ArtifactCacheManager(0, CacheEvictionPolicy.LRU));
+    }
+
+    /**
+     * @param cacheManager the manager to which the artifact caches created by this factory report their use
+     */
+    public StandardSingleArtifactCacheFactory(ArtifactCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -67,7 +81,8 @@ public class StandardSingleArtifactCacheFactory implements SingleArtifactCacheFa
         String cacheName = getCacheName(repositoryName, uri);
         SingleArtifactCache cache = this.artifactCaches.get(cacheName);
         if (cache == null) {
-            this.artifactCaches.putIfAbsent(cacheName, new StandardSingleArtifactCache(type, name, version, uri, fileName, repositoryCacheDirectory));
+            this.artifactCaches.putIfAbsent(cacheName, new StandardSingleArtifactCache(type, name, version, uri, fileName, repositoryCacheDirectory,
+                this.cacheManager));
             cache = this.artifactCaches.get(cacheName);
         }
         return cache;
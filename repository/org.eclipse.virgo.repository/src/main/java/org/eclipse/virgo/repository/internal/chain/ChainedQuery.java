@@ -57,6 +57,16 @@ class ChainedQuery implements Query {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Query addVersionRangeFilter(String name, String value, VersionRange versionRange) {
+        for (Query query : this.queries) {
+            query.addVersionRangeFilter(name, value, versionRange);
+        }
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
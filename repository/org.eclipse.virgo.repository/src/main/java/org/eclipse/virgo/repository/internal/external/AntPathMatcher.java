@@ -93,6 +93,32 @@ final class AntPathMatcher {
 		String[] pattDirs = tokenizeToStringArray(pattern, this.pathSeparator);
 		String[] pathDirs = tokenizeToStringArray(path, this.pathSeparator);
 
+		return doMatch(pattDirs, pattern.endsWith(this.pathSeparator), pathDirs, path.endsWith(this.pathSeparator), fullMatch);
+	}
+
+	/**
+	 * Compiles the given pattern, so that it can be matched against many paths without being tokenized each time.
+	 * @param pattern the pattern to compile
+	 * @return the compiled pattern
+	 */
+	CompiledPattern compile(String pattern) {
+		return new CompiledPattern(pattern);
+	}
+
+	/**
+	 * Tokenizes the given path into its directories and file name, in the form accepted by {@link CompiledPattern}.
+	 * @param path the path to tokenize
+	 * @return the tokens of the path
+	 */
+	String[] tokenize(String path) {
+		return tokenizeToStringArray(path, this.pathSeparator);
+	}
+
+	/**
+	 * Match the given tokenized path against the given tokenized pattern.
+	 */
+	private boolean doMatch(String[] pattDirs, boolean patternEndsWithSeparator, String[] pathDirs, boolean pathEndsWithSeparator,
+			boolean fullMatch) {
 		int pattIdxStart = 0;
 		int pattIdxEnd = pattDirs.length - 1;
 		int pathIdxStart = 0;
@@ -114,14 +140,13 @@ final class AntPathMatcher {
 		if (pathIdxStart > pathIdxEnd) {
 			// Path is exhausted, only match if rest of pattern is * or **'s
 			if (pattIdxStart > pattIdxEnd) {
-				return (pattern.endsWith(this.pathSeparator) ?
-						path.endsWith(this.pathSeparator) : !path.endsWith(this.pathSeparator));
+				return (patternEndsWithSeparator ? pathEndsWithSeparator : !pathEndsWithSeparator);
 			}
 			if (!fullMatch) {
 				return true;
 			}
 			if (pattIdxStart == pattIdxEnd && pattDirs[pattIdxStart].equals("*") &&
-					path.endsWith(this.pathSeparator)) {
+					pathEndsWithSeparator) {
 				return true;
 			}
 			for (int i = pattIdxStart; i <= pattIdxEnd; i++) {
@@ -429,4 +454,42 @@ final class AntPathMatcher {
         return collection.toArray(new String[collection.size()]);
     }
 
+	/**
+	 * A pattern which has been tokenized once, for matching against paths tokenized by {@link AntPathMatcher#tokenize(String)}.
+	 * The paths matched do not end with a separator.
+	 */
+	final class CompiledPattern {
+
+		private final String[] pattDirs;
+
+		private final boolean absolute;
+
+		private final boolean endsWithSeparator;
+
+		private CompiledPattern(String pattern) {
+			this.pattDirs = tokenizeToStringArray(pattern, pathSeparator);
+			this.absolute = pattern.startsWith(pathSeparator);
+			this.endsWithSeparator = pattern.endsWith(pathSeparator);
+		}
+
+		/**
+		 * @param pathDirs the tokens of the path
+		 * @param absolutePath whether the path starts with a separator
+		 * @return <code>true</code> if the path matches the pattern
+		 * @see AntPathMatcher#match(String, String)
+		 */
+		boolean match(String[] pathDirs, boolean absolutePath) {
+			return absolutePath == this.absolute && doMatch(this.pattDirs, this.endsWithSeparator, pathDirs, false, true);
+		}
+
+		/**
+		 * @param pathDirs the tokens of the path
+		 * @param absolutePath whether the path starts with a separator
+		 * @return <code>true</code> if the pattern matches the start of the path, so that paths beneath it may match
+		 * @see AntPathMatcher#matchStart(String, String)
+		 */
+		boolean matchStart(String[] pathDirs, boolean absolutePath) {
+			return absolutePath == this.absolute && doMatch(this.pattDirs, this.endsWithSeparator, pathDirs, false, false);
+		}
+	}
 }
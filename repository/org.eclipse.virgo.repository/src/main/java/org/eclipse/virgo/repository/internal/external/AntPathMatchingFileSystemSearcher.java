@@ -13,8 +13,20 @@ package org.eclipse.virgo.repository.internal.external;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
 
-import org.eclipse.virgo.util.io.FileSystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A {@link FileSystemSearcher} implementation that searches based on an Ant-style search pattern. See
@@ -24,6 +36,8 @@ import org.eclipse.virgo.util.io.FileSystemUtils;
  * Files that match according to {@link AntPathMatcher#matchStart(String, String)} are considered to be non-terminal
  * matches.
  * <p />
+ * The pattern is tokenized once, and the search does not descend into directories which cannot contain a match.
+ * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
  * This class is <strong>thread-safe</strong>.
@@ -31,6 +45,8 @@ import org.eclipse.virgo.util.io.FileSystemUtils;
  */
 public final class AntPathMatchingFileSystemSearcher implements FileSystemSearcher {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AntPathMatchingFileSystemSearcher.class);
+
     private static final String REGEX_MATCHING_BACKSLASH = "\\\\";
 
     private static final String BACKSLASH_SEPARATOR = "\\";
@@ -39,14 +55,20 @@ public final class AntPathMatchingFileSystemSearcher implements FileSystemSearch
 
     private final String antPathPattern;
 
-    private final AntPathMatcher antPathMatcher;       
+    private final AntPathMatcher antPathMatcher;
+
+    private final AntPathMatcher.CompiledPattern compiledPattern;
+
+    private final String[] rootDirs;
+
+    private final boolean absoluteRoot;
 
     File getRootDir() {
         return this.rootDir;
     }
     
     boolean matchPath(String filePath) {
-        return this.antPathMatcher.match(this.antPathPattern, filePath);
+        return this.compiledPattern.match(this.antPathMatcher.tokenize(filePath), filePath.startsWith(File.separator));
     }
     
     /**
@@ -84,7 +106,10 @@ public final class AntPathMatchingFileSystemSearcher implements FileSystemSearch
         }
         this.antPathMatcher = new AntPathMatcher();
         this.antPathMatcher.setPathSeparator(File.separator);
-        this.antPathPattern = this.rootDir.getPath() + antPatternBuilder.toString();       
+        this.antPathPattern = this.rootDir.getPath() + antPatternBuilder.toString();
+        this.compiledPattern = this.antPathMatcher.compile(this.antPathPattern);
+        this.rootDirs = this.antPathMatcher.tokenize(this.rootDir.getPath());
+        this.absoluteRoot = this.rootDir.getPath().startsWith(File.separator);
     }
     
     private static boolean isAbsolute(String searchPattern) {    
@@ -98,23 +123,77 @@ public final class AntPathMatchingFileSystemSearcher implements FileSystemSearch
     /**
      * {@inheritDoc}
      */    
-    public void search(SearchCallback callback) {
-        search(this.rootDir, callback);
-    }
+    public void search(final SearchCallback callback) {
+        if (!this.rootDir.exists()) {
+            return;
+        }
+        final Path rootPath = this.rootDir.toPath();
+        try {
+            Files.walkFileTree(rootPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+                // the tokens of the path of the directory being visited
+                private final List<String> dirs = new ArrayList<String>(Arrays.asList(rootDirs));
 
-    private void search(File file, SearchCallback callback) {
-        String absolutePath = file.getAbsolutePath();
-        if (this.antPathMatcher.match(this.antPathPattern, absolutePath)) {
-            callback.found(file, true);
-        } else if (file.isDirectory() && this.antPathMatcher.matchStart(this.antPathPattern, absolutePath)) {
-            callback.found(file, false);
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    boolean root = dir.equals(rootPath);
+                    if (!root) {
+                        this.dirs.add(tokenOf(dir));
+                    }
+                    String[] pathDirs = this.dirs.toArray(new String[this.dirs.size()]);
+                    if (compiledPattern.match(pathDirs, absoluteRoot)) {
+                        callback.found(dir.toFile(), true);
+                    } else if (compiledPattern.matchStart(pathDirs, absoluteRoot)) {
+                        callback.found(dir.toFile(), false);
+                    } else if (!root) {
+                        // nothing beneath the directory can match
+                        this.dirs.remove(this.dirs.size() - 1);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String[] pathDirs;
+                    if (file.equals(rootPath)) {
+                        pathDirs = rootDirs;
+                    } else {
+                        pathDirs = this.dirs.toArray(new String[this.dirs.size() + 1]);
+                        pathDirs[pathDirs.length - 1] = tokenOf(file);
+                    }
+                    if (compiledPattern.match(pathDirs, absoluteRoot)) {
+                        callback.found(file.toFile(), true);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (e instanceof FileSystemLoopException) {
+                        LOGGER.debug("Not following link '{}' as it leads to one of its own parent directories.", file);
+                    } else {
+                        LOGGER.warn("Unable to search '{}': {}", file, e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    if (!dir.equals(rootPath)) {
+                        this.dirs.remove(this.dirs.size() - 1);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Search of '{}' failed: {}", this.rootDir, e.getMessage());
         }
-        
-        if (file.isDirectory()) {
-            for (File fileInDir : FileSystemUtils.listFiles(file)) {
-                search(fileInDir, callback);
-            }
-        }        
+    }
+
+    // matches the tokenization of AntPathMatcher, which trims tokens
+    private static String tokenOf(Path path) {
+        return path.getFileName().toString().trim();
     }
     
     @Override
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.codec.BinaryRepositoryCodec;
+import org.eclipse.virgo.repository.codec.RepositoryCodec;
+import org.eclipse.virgo.util.io.RecordJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An <code>ArtifactFingerprintCache</code> remembers the artifact descriptor generated for each file found by a scan of
+ * externally-managed storage, keyed by the file's path, length and last modification time, so that a later scan need
+ * not generate descriptors for files which have not changed. Files which were not recognised as artifacts are
+ * remembered too.
+ * <p />
+ * Entries looked up or added since the cache was loaded are persisted by {@link #persist()}, so files which are no
+ * longer found are forgotten. The cache is discarded if the signature it was persisted with, which identifies the
+ * artifact bridges that generated the descriptors, differs from the current signature.
+ * <p />
+ * The file starts with a four byte magic number, a format version and the signature, followed by the number of entries
+ * and, for each entry, the file's path, length, last modification time and the URI of its descriptor, which is empty if
+ * the file is not an artifact. The descriptors follow in the format of {@link BinaryRepositoryCodec}.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class ArtifactFingerprintCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactFingerprintCache.class);
+
+    private static final int MAGIC = 0x56524650;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String NO_DESCRIPTOR = "";
+
+    private final File cacheFile;
+
+    private final String signature;
+
+    private final RepositoryCodec codec = new BinaryRepositoryCodec();
+
+    private final Map<String, Entry> loadedEntries = new HashMap<String, Entry>(); // only changed while loading
+
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @param cacheFile the file in which the cache is persisted
+     * @param signature identifies the way in which the cached descriptors were generated
+     */
+    ArtifactFingerprintCache(File cacheFile, String signature) {
+        this.cacheFile = cacheFile;
+        this.signature = signature;
+        load();
+    }
+
+    private void load() {
+        if (!this.cacheFile.exists()) {
+            return;
+        }
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(this.cacheFile));
+            try {
+                DataInputStream dataInput = new DataInputStream(input);
+                if (dataInput.readInt() != MAGIC || dataInput.readUnsignedByte() != FORMAT_VERSION || !this.signature.equals(dataInput.readUTF())) {
+                    LOGGER.debug("Discarding artifact fingerprint cache '{}' as it is out of date.", this.cacheFile);
+                    return;
+                }
+                int entryCount = dataInput.readInt();
+                Map<String, String> descriptorUris = new HashMap<String, String>();
+                for (int i = 0; i < entryCount; i++) {
+                    String path = dataInput.readUTF();
+                    long length = dataInput.readLong();
+                    long lastModified = dataInput.readLong();
+                    descriptorUris.put(path, dataInput.readUTF());
+                    this.loadedEntries.put(path, new Entry(length, lastModified, null));
+                }
+                Map<String, ArtifactDescriptor> descriptors = new HashMap<String, ArtifactDescriptor>();
+                for (ArtifactDescriptor descriptor : this.codec.read(input)) {
+                    descriptors.put(descriptor.getUri().toString(), descriptor);
+                }
+                for (Map.Entry<String, String> descriptorUri : descriptorUris.entrySet()) {
+                    String path = descriptorUri.getKey();
+                    if (!NO_DESCRIPTOR.equals(descriptorUri.getValue())) {
+                        ArtifactDescriptor descriptor = descriptors.get(descriptorUri.getValue());
+                        Entry entry = this.loadedEntries.get(path);
+                        if (descriptor == null) {
+                            this.loadedEntries.remove(path);
+                        } else {
+                            this.loadedEntries.put(path, new Entry(entry.length, entry.lastModified, descriptor));
+                        }
+                    }
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Discarding unreadable artifact fingerprint cache '{}': {}", this.cacheFile, e.getMessage());
+            this.loadedEntries.clear();
+        }
+    }
+
+    /**
+     * Looks up the descriptor generated for the given file, provided the file has not changed since.
+     *
+     * @param file the file
+     * @param length the file's current length
+     * @param lastModified the file's current last modification time
+     * @return the entry for the file, or <code>null</code> if the file is not known or has changed
+     */
+    Entry get(File file, long length, long lastModified) {
+        String path = file.getPath();
+        Entry entry = this.loadedEntries.get(path);
+        if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+            this.currentEntries.put(path, entry);
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Records the descriptor generated for the given file.
+     *
+     * @param file the file
+     * @param length the file's length before the descriptor was generated
+     * @param lastModified the file's last modification time before the descriptor was generated
+     * @param descriptor the descriptor, or <code>null</code> if the file is not an artifact
+     */
+    void put(File file, long length, long lastModified, ArtifactDescriptor descriptor) {
+        this.currentEntries.put(file.getPath(), new Entry(length, lastModified, descriptor));
+    }
+
+    /**
+     * Persists the entries looked up or added since the cache was loaded.
+     */
+    void persist() {
+        File temporaryFile = new File(this.cacheFile.getPath() + ".tmp");
+        try {
+            Map<String, Entry> entries = new HashMap<String, Entry>(this.currentEntries);
+            Set<ArtifactDescriptor> descriptors = Collections.newSetFromMap(new IdentityHashMap<ArtifactDescriptor, Boolean>());
+            // the cache may be persisted before the index, which creates the directory
+            temporaryFile.getAbsoluteFile().getParentFile().mkdirs();
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+            try {
+                DataOutputStream dataOutput = new DataOutputStream(output);
+                dataOutput.writeInt(MAGIC);
+                dataOutput.writeByte(FORMAT_VERSION);
+                dataOutput.writeUTF(this.signature);
+                dataOutput.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    ArtifactDescriptor descriptor = entry.getValue().descriptor;
+                    String descriptorUri = descriptor == null ? NO_DESCRIPTOR : uriOf(descriptor);
+                    dataOutput.writeUTF(entry.getKey());
+                    dataOutput.writeLong(entry.getValue().length);
+                    dataOutput.writeLong(entry.getValue().lastModified);
+                    dataOutput.writeUTF(descriptorUri);
+                    if (!NO_DESCRIPTOR.equals(descriptorUri)) {
+                        descriptors.add(descriptor);
+                    }
+                }
+                dataOutput.flush();
+                this.codec.write(descriptors, output);
+            } finally {
+                output.close();
+            }
+            RecordJournal.moveAtomically(temporaryFile, this.cacheFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to persist artifact fingerprint cache '{}': {}", this.cacheFile, e.getMessage());
+            temporaryFile.delete();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to persist artifact fingerprint cache '{}': {}", this.cacheFile, e.getMessage());
+            temporaryFile.delete();
+        }
+    }
+
+    private static String uriOf(ArtifactDescriptor descriptor) {
+        URI uri = descriptor.getUri();
+        return uri == null ? NO_DESCRIPTOR : uri.toString();
+    }
+
+    /**
+     * The fingerprint of a file and the descriptor generated for it.
+     */
+    static final class Entry {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final ArtifactDescriptor descriptor;
+
+        private Entry(long length, long lastModified, ArtifactDescriptor descriptor) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.descriptor = descriptor;
+        }
+
+        /**
+         * @return the descriptor, or <code>null</code> if the file is not an artifact
+         */
+        ArtifactDescriptor getDescriptor() {
+            return this.descriptor;
+        }
+    }
+}
@@ -14,8 +14,17 @@ package org.eclipse.virgo.repository.internal.external;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.management.JMException;
 
@@ -24,6 +33,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.eclipse.virgo.medic.eventlog.EventLogger;
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
 import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
 import org.eclipse.virgo.repository.IndexFormatException;
@@ -38,10 +49,19 @@ import org.eclipse.virgo.repository.internal.PersistentRepository;
 import org.eclipse.virgo.repository.internal.RepositoryLogEvents;
 import org.eclipse.virgo.repository.internal.management.StandardExternalStorageRepositoryInfo;
 import org.eclipse.virgo.repository.management.RepositoryInfo;
+import org.eclipse.virgo.repository.util.CachingArtifactBridge;
 import org.eclipse.virgo.util.io.FileSystemUtils;
 import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 /**
+ * A repository of artifacts found in externally-managed storage by searching for files which match an Ant-style path
+ * pattern. The storage is searched every time the repository is created and the persisted index, if any, is brought up
+ * to date with the artifacts found, so that artifacts added, changed or removed while the repository was not running
+ * are noticed. Descriptors for the artifacts found are generated in parallel. The descriptors generated are remembered
+ * by an {@link ArtifactFingerprintCache} persisted alongside the index, so that descriptors are not generated again for
+ * files which have not changed, and an index which is up to date is neither changed nor persisted again.
+ * <p />
+ * 
  * <strong>Concurrent Semantics</strong><br />
  * 
  * Thread-safe
@@ -51,6 +71,10 @@ public final class ExternalStorageRepository extends PersistentRepository implem
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExternalStorageRepository.class);
 
+    private static final String FINGERPRINT_CACHE_SUFFIX = ".fingerprints";
+
+    private static final int FILES_PER_TASK = 8;
+
     private final EventLogger eventLogger;
 
     private final AntPathMatchingFileSystemSearcher antPathMatchingFileSystemSearcher;
@@ -67,26 +91,69 @@ public final class ExternalStorageRepository extends PersistentRepository implem
         this.eventLogger = eventLogger;
         this.antPathMatchingFileSystemSearcher = new AntPathMatchingFileSystemSearcher(configuration.getSearchPattern());
 
-        if (artifactDescriptorPersister.loadArtifacts().isEmpty()) {
-            initialiseDepository(configuration.getName(), eventLogger);
+        ArtifactFingerprintCache fingerprintCache = new ArtifactFingerprintCache(new File(configuration.getIndexLocation().getPath()
+            + FINGERPRINT_CACHE_SUFFIX), getBridgesSignature(configuration.getArtefactBridges()));
+        initialiseDepository(configuration.getName(), eventLogger, fingerprintCache);
+    }
+
+    private static String getBridgesSignature(Set<ArtifactBridge> artifactBridges) {
+        Set<String> bridgeClassNames = new TreeSet<String>();
+        for (ArtifactBridge artifactBridge : artifactBridges) {
+            if (artifactBridge instanceof CachingArtifactBridge) {
+                artifactBridge = ((CachingArtifactBridge) artifactBridge).getDelegate();
+            }
+            bridgeClassNames.add(artifactBridge.getClass().getName());
         }
+        return bridgeClassNames.toString();
     }
 
-    private void initialiseDepository(String repositoryName, EventLogger eventLogger) throws RepositoryCreationException {
+    /**
+     * Brings the depository, as loaded from the persisted index, up to date with the artifacts in the storage, and
+     * persists it if it has changed. Descriptors which were generated afresh, because their file is new or has changed
+     * since it was fingerprinted, replace any indexed descriptors with the same URI.
+     */
+    private void initialiseDepository(String repositoryName, EventLogger eventLogger, ArtifactFingerprintCache fingerprintCache)
+        throws RepositoryCreationException {
 
             ExternalArtifactStore artifactStore = new ExternalArtifactStore(this.antPathMatchingFileSystemSearcher);
-            Set<File> artifacts = artifactStore.getArtifacts();
+            List<File> artifacts = new ArrayList<File>(artifactStore.getArtifacts());
+            Set<URI> generatedUris = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+            Map<File, ArtifactDescriptor> artifactDescriptors = generateArtifactDescriptors(artifacts, fingerprintCache, generatedUris);
+            fingerprintCache.persist();
+
+            Map<URI, File> artifactUris = new HashMap<URI, File>();
+            for (Map.Entry<File, ArtifactDescriptor> artifactDescriptor : artifactDescriptors.entrySet()) {
+                artifactUris.put(artifactDescriptor.getValue().getUri(), artifactDescriptor.getKey());
+            }
+
             ArtifactDescriptorDepository artifactDepository = getDepository();
+            Set<RepositoryAwareArtifactDescriptor> indexedDescriptors = artifactDepository.resolveArtifactDescriptors(null);
+            boolean changed = indexedDescriptors.isEmpty();
+            Set<URI> upToDateUris = new HashSet<URI>();
+            for (RepositoryAwareArtifactDescriptor indexedDescriptor : indexedDescriptors) {
+                URI uri = indexedDescriptor.getUri();
+                if (artifactUris.containsKey(uri) && !generatedUris.contains(uri)) {
+                    upToDateUris.add(uri);
+                } else {
+                    artifactDepository.removeArtifactDescriptor(indexedDescriptor);
+                    changed = true;
+                }
+            }
+
             for (File artifact : artifacts) {
-                try {
-                    RepositoryAwareArtifactDescriptor artifactDescriptor = createArtifactDescriptor(artifact);
-                    if (artifactDescriptor != null) {
-                        artifactDepository.addArtifactDescriptor(artifactDescriptor);
+                ArtifactDescriptor artifactDescriptor = artifactDescriptors.get(artifact);
+                if (artifactDescriptor != null && !upToDateUris.contains(artifactDescriptor.getUri())) {
+                    changed = true;
+                    try {
+                        artifactDepository.addArtifactDescriptor(createArtifactDescriptor(artifactDescriptor));
+                    } catch (DuplicateArtifactException dae) {
+                        LOGGER.warn("Duplicate artifact '{}' discovered in external repository '{}'.", artifact, repositoryName);
                     }
-                } catch (DuplicateArtifactException dae) {
-                    LOGGER.warn("Duplicate artifact '{}' discovered in external repository '{}'.", artifact, repositoryName);
                 }
             }
+            if (!changed) {
+                return;
+            }
             try {
                 artifactDepository.persist();
             } catch (IOException ioe) {
@@ -96,6 +163,81 @@ public final class ExternalStorageRepository extends PersistentRepository implem
             }
     }
 
+    /**
+     * Generates descriptors for the given files on a fork/join pool, reusing the descriptors in the given cache for
+     * files which have not changed. The URIs of descriptors which were not in the cache are added to the given set.
+     * 
+     * @return the descriptors of the files which are artifacts
+     */
+    private Map<File, ArtifactDescriptor> generateArtifactDescriptors(List<File> files, ArtifactFingerprintCache fingerprintCache,
+        Set<URI> generatedUris) {
+        Map<File, ArtifactDescriptor> artifactDescriptors = new ConcurrentHashMap<File, ArtifactDescriptor>();
+        if (files.isEmpty()) {
+            return artifactDescriptors;
+        }
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new GenerateArtifactDescriptors(files, fingerprintCache, artifactDescriptors, generatedUris));
+        } finally {
+            pool.shutdown();
+        }
+        return artifactDescriptors;
+    }
+
+    private final class GenerateArtifactDescriptors extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+
+        private final ArtifactFingerprintCache fingerprintCache;
+
+        private final Map<File, ArtifactDescriptor> artifactDescriptors;
+
+        private final Set<URI> generatedUris;
+
+        private GenerateArtifactDescriptors(List<File> files, ArtifactFingerprintCache fingerprintCache,
+            Map<File, ArtifactDescriptor> artifactDescriptors, Set<URI> generatedUris) {
+            this.files = files;
+            this.fingerprintCache = fingerprintCache;
+            this.artifactDescriptors = artifactDescriptors;
+            this.generatedUris = generatedUris;
+        }
+
+        @Override
+        protected void compute() {
+            int size = this.files.size();
+            if (size > FILES_PER_TASK) {
+                int middle = size / 2;
+                invokeAll(new GenerateArtifactDescriptors(this.files.subList(0, middle), this.fingerprintCache, this.artifactDescriptors,
+                    this.generatedUris), new GenerateArtifactDescriptors(this.files.subList(middle, size), this.fingerprintCache,
+                    this.artifactDescriptors, this.generatedUris));
+            } else {
+                for (File file : this.files) {
+                    ArtifactDescriptor artifactDescriptor = generate(file);
+                    if (artifactDescriptor != null) {
+                        this.artifactDescriptors.put(file, artifactDescriptor);
+                    }
+                }
+            }
+        }
+
+        private ArtifactDescriptor generate(File file) {
+            long length = file.length();
+            long lastModified = file.lastModified();
+            ArtifactFingerprintCache.Entry entry = this.fingerprintCache.get(file, length, lastModified);
+            if (entry != null) {
+                return entry.getDescriptor();
+            }
+            ArtifactDescriptor artifactDescriptor = generateArtifactDescriptor(file);
+            this.fingerprintCache.put(file, length, lastModified, artifactDescriptor);
+            if (artifactDescriptor != null) {
+                this.generatedUris.add(artifactDescriptor.getUri());
+            }
+            return artifactDescriptor;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
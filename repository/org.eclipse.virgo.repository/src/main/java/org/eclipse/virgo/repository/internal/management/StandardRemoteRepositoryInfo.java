@@ -12,6 +12,7 @@
 package org.eclipse.virgo.repository.internal.management;
 
 import org.eclipse.virgo.repository.internal.ArtifactDescriptorDepository;
+import org.eclipse.virgo.repository.internal.cacheing.cache.RepositoryCacheStatistics;
 import org.eclipse.virgo.repository.management.RemoteRepositoryInfo;
 
 /**
@@ -27,11 +28,46 @@ public final class StandardRemoteRepositoryInfo extends AbstractRepositoryInfo i
     
     private static final String TYPE = "remote";
 
+    private final RepositoryCacheStatistics cacheStatistics;
+
     public StandardRemoteRepositoryInfo(String name, ArtifactDescriptorDepository artifactDepository) {
+        this(name, artifactDepository, null);
+    }
+
+    /**
+     * @param cacheStatistics the statistics of the repository's artifact cache, or <code>null</code> if the repository
+     *        does not cache artifacts
+     */
+    public StandardRemoteRepositoryInfo(String name, ArtifactDescriptorDepository artifactDepository, RepositoryCacheStatistics cacheStatistics) {
         super(name, artifactDepository);
+        this.cacheStatistics = cacheStatistics;
     }
 
     public String getType() {
         return TYPE;
     }
+
+    public long getCacheHitCount() {
+        return this.cacheStatistics == null ? 0 : this.cacheStatistics.getHitCount();
+    }
+
+    public long getCacheMissCount() {
+        return this.cacheStatistics == null ? 0 : this.cacheStatistics.getMissCount();
+    }
+
+    public long getCacheEvictionCount() {
+        return this.cacheStatistics == null ? 0 : this.cacheStatistics.getEvictionCount();
+    }
+
+    public long getCacheDownloadedBytes() {
+        return this.cacheStatistics == null ? 0 : this.cacheStatistics.getDownloadedBytes();
+    }
+
+    public long getCacheSize() {
+        return this.cacheStatistics == null ? 0 : this.cacheStatistics.getSize();
+    }
+
+    public long getCacheQuota() {
+        return this.cacheStatistics == null ? 0 : this.cacheStatistics.getQuota();
+    }
 }
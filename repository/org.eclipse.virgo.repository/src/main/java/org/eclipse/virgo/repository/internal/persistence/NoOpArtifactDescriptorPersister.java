@@ -12,10 +12,12 @@
 package org.eclipse.virgo.repository.internal.persistence;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.IncrementalArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.IndexFormatException;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 
@@ -30,7 +32,7 @@ import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
  * Threadsafe
  * 
  */
-public final class NoOpArtifactDescriptorPersister implements ArtifactDescriptorPersister {
+public final class NoOpArtifactDescriptorPersister implements IncrementalArtifactDescriptorPersister {
 
     /**
      * {@inheritDoc}
@@ -45,4 +47,11 @@ public final class NoOpArtifactDescriptorPersister implements ArtifactDescriptor
     public void persistArtifactDescriptors(Set<RepositoryAwareArtifactDescriptor> descriptors) throws IOException {
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean persistArtifactDescriptorChanges(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) throws IOException {
+        return false;
+    }
+
 }
@@ -17,6 +17,8 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.eclipse.virgo.repository.codec.IndexDelta;
+import org.eclipse.virgo.repository.codec.IndexDeltaCodec;
 import org.eclipse.virgo.repository.configuration.RemoteRepositoryConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +56,24 @@ final class ArtifactDescriptorStoreWatcher {
 
         private static final String REQUEST_HEADER_IF_NONE_MATCH = "If-None-Match";
 
+        private static final String REQUEST_HEADER_ACCEPT = "Accept";
+
+        private static final String REQUEST_HEADER_A_IM = "A-IM";
+
+        /**
+         * Ask for the changes since the index we hold, in the RFC 3229 style, rather than the whole index. Repositories
+         * which do not know the changes, or do not support deltas, send the whole index instead.
+         */
+        private static final String ACCEPTED_INSTANCE_MANIPULATIONS = "virgo-delta";
+
+        private static final int SC_IM_USED = 226;
+
+        /**
+         * Prefer the binary index, falling back to the XML index from repositories which do not serve the binary index.
+         * The format of a downloaded index is detected when it is read.
+         */
+        private static final String ACCEPTED_INDEX_CONTENT_TYPES = "application/org.eclipse.virgo.repository.BinaryIndex, application/org.eclipse.virgo.repository.Index;q=0.5";
+
         private final CloseableHttpClient httpClient = HttpClients.createDefault();
 
         private final long msUpdateInterval;
@@ -70,6 +90,8 @@ final class ArtifactDescriptorStoreWatcher {
 
         private int countContiguousHttpClientFailures = 0;
 
+        private boolean fullIndexRequired = false;
+
         private StoreUpdaterThread(MutableArtifactDescriptorDepository mutableDepository, RemoteRepositoryConfiguration configuration) {
             super(configuration.getName());
             this.msUpdateInterval = configuration.getIndexUpdateInterval() * 1000L;
@@ -87,9 +109,13 @@ final class ArtifactDescriptorStoreWatcher {
 
             while (this.update) {
                 HttpGet getIndex = new HttpGet(this.repositoryUri);
+                getIndex.addHeader(REQUEST_HEADER_ACCEPT, ACCEPTED_INDEX_CONTENT_TYPES);
 
                 if (descriptorStore != null) {
                     getIndex.addHeader(REQUEST_HEADER_IF_NONE_MATCH, descriptorStore.getEtag());
+                    if (!this.fullIndexRequired) {
+                        getIndex.addHeader(REQUEST_HEADER_A_IM, ACCEPTED_INSTANCE_MANIPULATIONS);
+                    }
                 }
 
                 int responseCode;
@@ -105,6 +131,16 @@ final class ArtifactDescriptorStoreWatcher {
                             descriptorStore = readNewDescriptorStore(response);
                         }
                         this.mutableDepository.setDescriptorStore(descriptorStore);
+                        this.fullIndexRequired = false;
+                    } else if (responseCode == SC_IM_USED) {
+                        DescriptorStore updatedDescriptorStore = applyIndexDelta(response);
+                        if (updatedDescriptorStore != null) {
+                            descriptorStore = updatedDescriptorStore;
+                            this.mutableDepository.setDescriptorStore(descriptorStore);
+                        } else {
+                            // keep the current index and fetch the whole index next time
+                            this.fullIndexRequired = true;
+                        }
                     } else {
                         handleUnexpectedResponse(responseCode);
                     }
@@ -142,18 +178,31 @@ final class ArtifactDescriptorStoreWatcher {
             return responseHeader == null ? null : responseHeader.getValue();
         }
 
+        private InputStream getContent(CloseableHttpResponse response) throws IOException {
+            InputStream contentStream = response.getEntity().getContent();
+
+            Header contentEncodingResponseHeader = response.getFirstHeader(RESPONSE_HEADER_CONTENT_ENCODING);
+            if (contentEncodingResponseHeader != null && CONTENT_ENCODING_GZIP.equals(contentEncodingResponseHeader.getValue())) {
+                contentStream = new GZIPInputStream(contentStream);
+            }
+            return contentStream;
+        }
+
+        private DescriptorStore applyIndexDelta(CloseableHttpResponse response) {
+            try {
+                IndexDelta delta = new IndexDeltaCodec().read(getContent(response));
+                return this.mutableDepository.applyIndexDelta(delta, getETag(response), this.descriptorStoreFactory);
+            } catch (IOException ioe) {
+                LOGGER.error(String.format("Reading index changes failed for remote repository '%s'.", this.repositoryName), ioe);
+                return null;
+            }
+        }
+
         private DescriptorStore readNewDescriptorStore(CloseableHttpResponse response) {
             try {
                 String etag = getETag(response);
-                
-                InputStream storeStream = response.getEntity().getContent();
-                
-                Header contentEncodingResponseHeader = response.getFirstHeader(RESPONSE_HEADER_CONTENT_ENCODING);
-                if (contentEncodingResponseHeader != null && CONTENT_ENCODING_GZIP.equals(contentEncodingResponseHeader.getValue())) {
-                    storeStream = new GZIPInputStream(storeStream);
-                }
 
-                return descriptorStoreFactory.createDescriptorStore(storeStream, etag);
+                return descriptorStoreFactory.createDescriptorStore(getContent(response), etag);
             } catch (IOException ioe) {
                 LOGGER.error(String.format("Copying index failed for remote repository '%s'.", this.repositoryName), ioe);
                 return null;
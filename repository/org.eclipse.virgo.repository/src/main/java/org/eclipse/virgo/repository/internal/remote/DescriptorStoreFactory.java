@@ -17,13 +17,17 @@ import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Set;
 
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.XmlArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.codec.BinaryRepositoryCodec;
 import org.eclipse.virgo.util.io.FileCopyUtils;
 import org.eclipse.virgo.util.io.FileSystemUtils;
 
 /**
  * {@link DescriptorStoreFactory} is a utility for creating and persisting a {@link DescriptorStore} instance from an
- * input stream and for recovering such an instance.
+ * input stream or a set of artifacts and for recovering such an instance.
  * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
@@ -58,6 +62,25 @@ public class DescriptorStoreFactory {
         }
     }
 
+    public DescriptorStore createDescriptorStore(Set<RepositoryAwareArtifactDescriptor> artifactDescriptors, String etag) throws IOException {
+        synchronized (this.monitor) {
+            File newStoreLocation = createStoreFile(etag);
+            new XmlArtifactDescriptorPersister(new BinaryRepositoryCodec(), this.repositoryName, newStoreLocation).persistArtifactDescriptors(artifactDescriptors);
+            return new DescriptorStore(etag, newStoreLocation);
+        }
+    }
+
+    /**
+     * Returns the descriptor store for the given entity tag without creating its file, for a store whose file is to be
+     * moved into place by the caller.
+     * 
+     * @param etag the entity tag
+     * @return the descriptor store
+     */
+    public DescriptorStore getDescriptorStore(String etag) {
+        return new DescriptorStore(etag, createStoreFile(etag));
+    }
+
     private File createStoreFile(String etag) {
         return new File(this.descriptorStoreDirectory, this.repositoryName + REPOSITORY_NAME_ETAG_SEPARATOR + etag + DESCRIPTOR_STORE_FILE_SUFFIX);
     }
@@ -14,27 +14,38 @@ package org.eclipse.virgo.repository.internal.remote;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.eclipse.virgo.medic.eventlog.EventLogger;
-import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
 import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
 import org.eclipse.virgo.repository.IndexFormatException;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.XmlArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.codec.FormatDetectingRepositoryCodec;
+import org.eclipse.virgo.repository.codec.IndexDelta;
 import org.eclipse.virgo.repository.codec.XMLRepositoryCodec;
 import org.eclipse.virgo.repository.internal.ArtifactDescriptorDepository;
+import org.eclipse.virgo.repository.internal.DelegatingRepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.IdentityUriMapper;
 import org.eclipse.virgo.repository.internal.RepositoryLogEvents;
-import org.eclipse.virgo.repository.internal.StandardArtifactDescriptorDepository;
+import org.eclipse.virgo.repository.internal.IndexedArtifactDescriptorDepository;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 /**
  * An implementation of the {@link ArtifactDescriptorDepository} that allows safe mutation of the delegate instance of
  * {@link ArtifactDescriptorDepository}.
  * <p />
+ * A new descriptor store replaces the delegate with one loaded from the store. An index delta is instead applied to the
+ * current delegate in place and persisted to the journal of the current store, which is then renamed for the delta's
+ * entity tag.
+ * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
@@ -53,6 +64,8 @@ final class MutableArtifactDescriptorDepository implements ArtifactDescriptorDep
     
     private volatile DescriptorStore descriptorStore = null;
     
+    private volatile XmlArtifactDescriptorPersister persister = null;
+    
     MutableArtifactDescriptorDepository(String repositoryName, EventLogger eventLogger) {
     	this.repositoryName = repositoryName;
     	this.eventLogger = eventLogger;
@@ -111,6 +124,76 @@ final class MutableArtifactDescriptorDepository implements ArtifactDescriptorDep
         	return Collections.<RepositoryAwareArtifactDescriptor>emptySet();            
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters, VersionRange versionRange,
+        VersionRangeMatchingStrategy strategy) {
+        ArtifactDescriptorDepository localDelegate = this.delegate;
+
+        if (localDelegate != null) {
+            return localDelegate.resolveArtifactDescriptors(filters, versionRange, strategy);
+        } else {
+            return Collections.<RepositoryAwareArtifactDescriptor> emptySet();
+        }
+    }
+    
+    /**
+     * Applies the supplied delta to the current artifacts in place and persists the changes to the current descriptor
+     * store, which is then renamed for the supplied entity tag and becomes the current store. Queries made while the
+     * delta is being applied may not see an updated artifact.
+     * <p/>
+     * If the changes cannot be applied or persisted, the current store keeps its entity tag, so the caller should replace
+     * it with the full index, as the artifacts may hold some of the changes.
+     * 
+     * @param delta the changes to apply
+     * @param etag the entity tag of the index which results from applying the changes
+     * @param descriptorStoreFactory the factory which names the store for the entity tag
+     * @return the updated store, or <code>null</code> if there are no current artifacts to apply the changes to or the
+     *         changes could not be applied
+     */
+    DescriptorStore applyIndexDelta(IndexDelta delta, String etag, DescriptorStoreFactory descriptorStoreFactory) {
+        ArtifactDescriptorDepository localDelegate = this.delegate;
+        DescriptorStore localDescriptorStore = this.descriptorStore;
+        XmlArtifactDescriptorPersister localPersister = this.persister;
+        
+        if (localDelegate == null || localDescriptorStore == null || localPersister == null) {
+            return null;
+        }
+        
+        Set<RepositoryAwareArtifactDescriptor> updated = new HashSet<RepositoryAwareArtifactDescriptor>();
+        Set<URI> removed = new HashSet<URI>(delta.getRemoved());
+        try {
+            for (URI uri : removed) {
+                localDelegate.removeArtifactDescriptor(uri);
+            }
+            for (ArtifactDescriptor artifactDescriptor : delta.getUpdated()) {
+                RepositoryAwareArtifactDescriptor updatedDescriptor = new DelegatingRepositoryAwareArtifactDescriptor(artifactDescriptor,
+                    this.repositoryName, new IdentityUriMapper());
+                localDelegate.removeArtifactDescriptor(updatedDescriptor.getUri());
+                localDelegate.addArtifactDescriptor(updatedDescriptor);
+                updated.add(updatedDescriptor);
+                removed.remove(updatedDescriptor.getUri());
+            }
+            
+            if (localPersister.persistArtifactDescriptorChanges(updated, removed)) {
+                localPersister.persistArtifactDescriptors(localDelegate.resolveArtifactDescriptors(Collections.<Attribute> emptySet()));
+            }
+            
+            DescriptorStore updatedDescriptorStore = descriptorStoreFactory.getDescriptorStore(etag);
+            this.persister = localPersister.moveTo(updatedDescriptorStore.getLocation());
+            this.descriptorStore = updatedDescriptorStore;
+            this.eventLogger.log(RepositoryLogEvents.REPOSITORY_INDEX_UPDATED, this.repositoryName);
+            return updatedDescriptorStore;
+        } catch (DuplicateArtifactException dae) {
+            LOGGER.error(String.format("Applying index changes failed for repository '%s'.", this.repositoryName), dae);
+            return null;
+        } catch (IOException ioe) {
+            LOGGER.error(String.format("Applying index changes failed for repository '%s'.", this.repositoryName), ioe);
+            return null;
+        }
+    }
     
     void setDescriptorStore(DescriptorStore descriptorStore) {
     	if (descriptorStore == null) {
@@ -129,6 +212,8 @@ final class MutableArtifactDescriptorDepository implements ArtifactDescriptorDep
     	}
     	
     	this.descriptorStore = null;
+    	deleteJournal(this.persister);
+    	this.persister = null;
     	this.delegate = null;
     }
     
@@ -141,7 +226,9 @@ final class MutableArtifactDescriptorDepository implements ArtifactDescriptorDep
     }
     
     private void newDescriptorStoreAvailable(DescriptorStore newDescriptorStore, DescriptorStore oldDescriptorStore) {    	
-		ArtifactDescriptorDepository newDelegate = createNewDepository(newDescriptorStore);
+		XmlArtifactDescriptorPersister oldPersister = this.persister;
+		XmlArtifactDescriptorPersister newPersister = createPersister(newDescriptorStore);
+		ArtifactDescriptorDepository newDelegate = createNewDepository(newPersister);
 		
 		if (newDelegate == null) {
 			deleteDescriptorStore(newDescriptorStore);
@@ -149,27 +236,38 @@ final class MutableArtifactDescriptorDepository implements ArtifactDescriptorDep
 			descriptorStoreUnavailable();
 		} else {			
 			this.delegate = newDelegate;
+			this.persister = newPersister;
 			this.descriptorStore = newDescriptorStore;
 			
 			if (oldDescriptorStore == null) {
     			this.eventLogger.log(RepositoryLogEvents.REPOSITORY_AVAILABLE, this.repositoryName);
         	} else {
         		this.eventLogger.log(RepositoryLogEvents.REPOSITORY_INDEX_UPDATED, this.repositoryName);
+        		deleteJournal(oldPersister);
         		deleteDescriptorStore(oldDescriptorStore);
         	}
 		}	
     }
 
-	private ArtifactDescriptorDepository createNewDepository(DescriptorStore descriptorStore) {
-		ArtifactDescriptorPersister persister = new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), this.repositoryName, descriptorStore.getLocation());
+	private XmlArtifactDescriptorPersister createPersister(DescriptorStore descriptorStore) {
+		return new XmlArtifactDescriptorPersister(new FormatDetectingRepositoryCodec(new XMLRepositoryCodec()), this.repositoryName, descriptorStore.getLocation());
+	}
+
+	private ArtifactDescriptorDepository createNewDepository(XmlArtifactDescriptorPersister persister) {
 		try {
-			 return new StandardArtifactDescriptorDepository(persister);    			    		
+			 return new IndexedArtifactDescriptorDepository(persister);    			    		
 		} catch (IndexFormatException ife) {
 			LOGGER.error("The descriptor store for repository '{}' was corrupt", this.repositoryName);			
 		}
 		return null;
 	}
 		 
+    private void deleteJournal(XmlArtifactDescriptorPersister persister) {
+    	if (persister != null && !persister.deleteJournal()) {
+    		LOGGER.warn("Failed to delete descriptor store journal for repository '{}'", this.repositoryName);
+    	}
+    }
+
     private void deleteDescriptorStore(DescriptorStore descriptorStore) {
     	if (descriptorStore != null && !descriptorStore.getLocation().delete()) {
     		LOGGER.warn("Failed to delete descriptor store for repository '{}' from '{}'", this.repositoryName, descriptorStore.getLocation().getAbsolutePath());
@@ -17,6 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.eclipse.virgo.medic.eventlog.EventLogger;
+import org.eclipse.virgo.repository.configuration.CacheEvictionPolicy;
 import org.eclipse.virgo.repository.configuration.RemoteRepositoryConfiguration;
 import org.eclipse.virgo.repository.internal.BaseRepository;
 import org.eclipse.virgo.repository.internal.RepositoryLogEvents;
@@ -41,6 +42,10 @@ public class RemoteRepository extends BaseRepository {
 	
 	private final File cacheDirectory;
 
+    private final long cacheQuota;
+
+    private final CacheEvictionPolicy cacheEvictionPolicy;
+
     public RemoteRepository(RemoteRepositoryConfiguration configuration, EventLogger eventLogger) {
         this(configuration, new MutableArtifactDescriptorDepository(configuration.getName(), eventLogger), eventLogger);
     }
@@ -48,6 +53,8 @@ public class RemoteRepository extends BaseRepository {
     private RemoteRepository(RemoteRepositoryConfiguration configuration, MutableArtifactDescriptorDepository depository, EventLogger eventLogger) {
         super(configuration, depository);
         this.cacheDirectory = configuration.getCacheDirectory();
+        this.cacheQuota = configuration.getCacheQuota();
+        this.cacheEvictionPolicy = configuration.getCacheEvictionPolicy();
 
         if (!SCHEME_HTTP.equals(configuration.getRepositoryUri().getScheme())) {
             LOGGER.error("Uri '{}' scheme not http for remote repository '{}'.", configuration.getRepositoryUri(), getName());
@@ -86,4 +93,22 @@ public class RemoteRepository extends BaseRepository {
     public File getCacheDirectory() {
         return this.cacheDirectory;
     }
+
+    /**
+     * Returns the number of bytes of cached remote artifacts above which artifacts are discarded.
+     * 
+     * @return the cache quota, or zero if the cache is unbounded
+     */
+    public long getCacheQuota() {
+        return this.cacheQuota;
+    }
+
+    /**
+     * Returns the policy for choosing which cached remote artifacts to discard.
+     * 
+     * @return the cache eviction policy
+     */
+    public CacheEvictionPolicy getCacheEvictionPolicy() {
+        return this.cacheEvictionPolicy;
+    }
 }
@@ -13,10 +13,16 @@ package org.eclipse.virgo.repository.internal.watched;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +32,7 @@ import javax.management.JMException;
 import org.eclipse.virgo.medic.eventlog.EventLogger;
 import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
+import org.eclipse.virgo.repository.IncrementalArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.IndexFormatException;
 import org.eclipse.virgo.repository.Repository;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
@@ -46,6 +53,13 @@ import org.slf4j.LoggerFactory;
 /**
  * A {@link Repository} that watches a local directory and automatically publishes and retracts artifacts placed (or
  * removed from) there.
+ * <p>
+ * The changes found by each check of the directory are persisted together, once the check is complete, on a separate
+ * thread so that persisting does not hold up watching. If the {@link ArtifactDescriptorPersister} is an
+ * {@link IncrementalArtifactDescriptorPersister}, only the changes are persisted until it asks for the whole set of
+ * artifacts to be persisted. Changes that fail to be persisted are kept and persisted with the next set of changes. When
+ * the repository is stopped, any outstanding changes are persisted before {@link #stop()} returns.
+ * </p>
  * 
  * <p>
  * <strong>Concurrent Semantics</strong><br/>
@@ -69,6 +83,18 @@ public final class WatchedStorageRepository extends LocalRepository implements W
     
     private final EventLogger eventLogger;
     
+    private final ArtifactDescriptorPersister artifactDescriptorPersister;
+    
+    private final ExecutorService persistenceExecutor; // persists changes off the watching thread
+    
+    private final Object persistenceMonitor = new Object(); // serialises persisting changes
+    
+    private final Object changesMonitor = new Object(); // guards pendingChanges and persistenceScheduled
+    
+    private Map<URI, RepositoryAwareArtifactDescriptor> pendingChanges = new LinkedHashMap<URI, RepositoryAwareArtifactDescriptor>(); // null when removed
+    
+    private boolean persistenceScheduled = false;
+    
     public WatchedStorageRepository(WatchedStorageRepositoryConfiguration configuration, EventLogger eventLogger) throws RepositoryCreationException,
     IndexFormatException {
         this(configuration, new NoOpArtifactDescriptorPersister(), eventLogger);
@@ -79,9 +105,10 @@ public final class WatchedStorageRepository extends LocalRepository implements W
         super(configuration, artifactDescriptorPersister, eventLogger);
         
         this.eventLogger = eventLogger;
+        this.artifactDescriptorPersister = artifactDescriptorPersister;
         
         this.watchDirectory = configuration.getDirectoryToWatch();
-        this.dirWatcher = new DirectoryWatcher(this.watchDirectory);
+        this.dirWatcher = new DirectoryWatcher(this.watchDirectory, configuration.isWatchServiceEnabled());
         this.watchInterval = configuration.getWatchInterval();
         
         // create thread pool for watching the directory, containing one daemon thread.
@@ -94,6 +121,17 @@ public final class WatchedStorageRepository extends LocalRepository implements W
                 return thread;
             }
         });
+        
+        // create a single daemon thread for persisting changes.
+        this.persistenceExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "watched-repository-persister-" + getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
     
     /**
@@ -106,6 +144,7 @@ public final class WatchedStorageRepository extends LocalRepository implements W
         
         // do initial check
         this.dirWatcher.fsChecker.check();
+        schedulePersistence();
         // start periodic checking
         this.executorService.scheduleAtFixedRate(this.dirWatcher, this.watchInterval, this.watchInterval, TimeUnit.SECONDS);
     }
@@ -117,9 +156,120 @@ public final class WatchedStorageRepository extends LocalRepository implements W
     public void stop() {
         LOGGER.info("Stopping watched directory '{}'.", this.watchDirectory);
         this.executorService.shutdown();
+        this.dirWatcher.fsChecker.close();
+        this.persistenceExecutor.shutdown();
+        // persist any outstanding changes now, as the persistence thread is a daemon and may not outlive the caller
+        try {
+            persistChanges();
+        } catch (IOException e) {
+            LOGGER.error(String.format("Watched directory '%s' failed to persist outstanding changes when stopping.", this.watchDirectory), e);
+        }
         super.stop();
     }
     
+    private void recordAdded(RepositoryAwareArtifactDescriptor artifactDescriptor) {
+        synchronized (this.changesMonitor) {
+            this.pendingChanges.put(artifactDescriptor.getUri(), artifactDescriptor);
+        }
+    }
+    
+    private void recordRemoved(URI uri) {
+        synchronized (this.changesMonitor) {
+            this.pendingChanges.put(uri, null);
+        }
+    }
+    
+    /**
+     * Arranges for the changes recorded so far to be persisted on the persistence thread, unless they will be persisted
+     * by a task which has already been scheduled.
+     */
+    private void schedulePersistence() {
+        synchronized (this.changesMonitor) {
+            if (this.persistenceScheduled || this.pendingChanges.isEmpty()) {
+                return;
+            }
+            this.persistenceScheduled = true;
+        }
+        try {
+            this.persistenceExecutor.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    try {
+                        persistChanges();
+                    } catch (IOException e) {
+                        LOGGER.error(String.format("Watched directory '%s' failed during persist. Stopping repository.",
+                                                   WatchedStorageRepository.this.watchDirectory), e);
+                        stop();
+                        WatchedStorageRepository.this.eventLogger.log(RepositoryLogEvents.REPOSITORY_NOT_AVAILABLE, e, getName());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the repository has been stopped
+            synchronized (this.changesMonitor) {
+                this.persistenceScheduled = false;
+            }
+        }
+    }
+    
+    /**
+     * Persists the changes recorded so far. If they cannot be persisted they are recorded again, unless a later change
+     * to the same artifact has been recorded in the meantime, so that they are persisted with the next set of changes.
+     * 
+     * @throws IOException if the changes cannot be persisted
+     */
+    private void persistChanges() throws IOException {
+        synchronized (this.persistenceMonitor) {
+            Map<URI, RepositoryAwareArtifactDescriptor> changes;
+            synchronized (this.changesMonitor) {
+                changes = this.pendingChanges;
+                this.pendingChanges = new LinkedHashMap<URI, RepositoryAwareArtifactDescriptor>();
+                this.persistenceScheduled = false;
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            
+            try {
+                persistChanges(changes);
+            } catch (IOException e) {
+                restoreChanges(changes);
+                throw e;
+            } catch (RuntimeException e) {
+                restoreChanges(changes);
+                throw e;
+            }
+        }
+    }
+
+    private void persistChanges(Map<URI, RepositoryAwareArtifactDescriptor> changes) throws IOException {
+        boolean persistAll = true;
+        if (this.artifactDescriptorPersister instanceof IncrementalArtifactDescriptorPersister) {
+            Set<RepositoryAwareArtifactDescriptor> updated = new HashSet<RepositoryAwareArtifactDescriptor>();
+            Set<URI> removed = new HashSet<URI>();
+            for (Entry<URI, RepositoryAwareArtifactDescriptor> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    removed.add(change.getKey());
+                } else {
+                    updated.add(change.getValue());
+                }
+            }
+            persistAll = ((IncrementalArtifactDescriptorPersister) this.artifactDescriptorPersister).persistArtifactDescriptorChanges(updated, removed);
+        }
+        if (persistAll) {
+            getDepository().persist();
+        }
+    }
+
+    private void restoreChanges(Map<URI, RepositoryAwareArtifactDescriptor> changes) {
+        synchronized (this.changesMonitor) {
+            // changes recorded since these were taken are newer and take precedence
+            changes.putAll(this.pendingChanges);
+            this.pendingChanges = changes;
+        }
+    }
+    
     /**
      * Private {@link Runnable}, an instance of which watches the directory for us
      */
@@ -129,10 +279,10 @@ public final class WatchedStorageRepository extends LocalRepository implements W
         
         private final FileSystemListener listener;
         
-        private DirectoryWatcher(final File directory) throws RepositoryCreationException {
+        private DirectoryWatcher(final File directory, boolean watchServiceEnabled) throws RepositoryCreationException {
             establishDirectory(directory);
             
-            this.fsChecker = new FileSystemChecker(directory, EXCLUDE_PATTERN);
+            this.fsChecker = new FileSystemChecker(directory, EXCLUDE_PATTERN, null, watchServiceEnabled);
             
             this.listener = new FileSystemListener() {
                 
@@ -148,31 +298,30 @@ public final class WatchedStorageRepository extends LocalRepository implements W
                                 RepositoryAwareArtifactDescriptor artifactDescriptor = createArtifactDescriptor(file);
                                 if (artifactDescriptor != null) {
                                     getDepository().addArtifactDescriptor(artifactDescriptor);
+                                    recordAdded(artifactDescriptor);
                                 }
                                 break;
                             }
                             case DELETED:
-                                getDepository().removeArtifactDescriptor(file.toURI());
+                                if (getDepository().removeArtifactDescriptor(file.toURI()) != null) {
+                                    recordRemoved(file.toURI());
+                                }
                                 break;
                             case MODIFIED: {
-                                getDepository().removeArtifactDescriptor(file.toURI());
+                                if (getDepository().removeArtifactDescriptor(file.toURI()) != null) {
+                                    recordRemoved(file.toURI());
+                                }
                                 RepositoryAwareArtifactDescriptor artifactDescriptor = createArtifactDescriptor(file);
                                 if (artifactDescriptor != null) {
                                     getDepository().addArtifactDescriptor(artifactDescriptor);
+                                    recordAdded(artifactDescriptor);
                                 }
                                 break;
                             }
                         }
-                        
-                        getDepository().persist();
                     } catch (DuplicateArtifactException dae) {
                         LOGGER.warn("Duplicate artifact in file '{}' detected in watched directory '{}'.", file,
                                     WatchedStorageRepository.this.watchDirectory);
-                    } catch (IOException e) {
-                        LOGGER.error(String.format("Watched directory '%s' failed during persist. Stopping repository.",
-                                                   WatchedStorageRepository.this.watchDirectory), e);
-                        stop();
-                        WatchedStorageRepository.this.eventLogger.log(RepositoryLogEvents.REPOSITORY_NOT_AVAILABLE, e, getName());
                     }
                 }
                 
@@ -190,6 +339,7 @@ public final class WatchedStorageRepository extends LocalRepository implements W
         public void run() {
             try {
                 this.fsChecker.check();
+                schedulePersistence();
             } catch (Exception e) {
                 LOGGER.error("File system watcher for repository '{}' failed. Repository stopped.", getName());
                 stop();
@@ -228,6 +378,8 @@ public final class WatchedStorageRepository extends LocalRepository implements W
                 // The second check() is to force indexing of new files based on DirectoryWatcher.onChange()
                 // implementation.
                 this.fsChecker.check();
+                // Persist synchronously so that the changes found are persisted when the check returns.
+                persistChanges();
             } catch (Exception e) {
                 LOGGER.warn("Directory check for repository '{}' failed.", getName());
                 throw e;
@@ -23,6 +23,36 @@ import javax.management.MXBean;
  */
 @MXBean
 @Repository(type="remote")
-public interface RemoteRepositoryInfo extends RepositoryInfo {        
-    
+public interface RemoteRepositoryInfo extends RepositoryInfo {
+
+    /**
+     * @return the number of artifact requests satisfied by the local cache
+     */
+    long getCacheHitCount();
+
+    /**
+     * @return the number of artifact requests which required an artifact to be downloaded
+     */
+    long getCacheMissCount();
+
+    /**
+     * @return the number of cached artifacts discarded to keep the cache within its quota
+     */
+    long getCacheEvictionCount();
+
+    /**
+     * @return the number of bytes downloaded into the cache
+     */
+    long getCacheDownloadedBytes();
+
+    /**
+     * @return the number of bytes of cached artifacts
+     */
+    long getCacheSize();
+
+    /**
+     * @return the number of bytes of cached artifacts above which artifacts are discarded, or zero if the cache is
+     *         unbounded
+     */
+    long getCacheQuota();
 }
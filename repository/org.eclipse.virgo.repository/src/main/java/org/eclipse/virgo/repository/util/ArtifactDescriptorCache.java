@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.ArtifactGenerationException;
+
+/**
+ * An <code>ArtifactDescriptorCache</code> holds the descriptors most recently generated from files by
+ * {@link ArtifactBridge ArtifactBridges}, so that a file which has not changed is not read again when a descriptor is
+ * next generated for it. A descriptor is keyed by the bridge which generated it and by the fingerprint of the file: its
+ * canonical path, length, last modification time and, where the file system provides one, its file key, such as an
+ * inode number.
+ * <p />
+ * Directories are not cached, since their fingerprint does not change when their content does.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ * @see CachingArtifactBridge
+ */
+public final class ArtifactDescriptorCache {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private static final Object NO_DESCRIPTOR = new Object();
+
+    private final int maximumSize;
+
+    private final Object monitor = new Object();
+
+        private final Map<Key, Object> descriptors; // protected by monitor
+
+        private long hitCount; // protected by monitor
+
+        private long missCount; // protected by monitor
+
+    public ArtifactDescriptorCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize the maximum number of descriptors to cache
+     */
+    public ArtifactDescriptorCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.descriptors = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > ArtifactDescriptorCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the descriptor generated by the given bridge from the given file, generating it if the file is not in the
+     * cache or has changed since its descriptor was cached.
+     * 
+     * @param artifactBridge the bridge
+     * @param artifactFile the file
+     * @return the descriptor, or <code>null</code> if the bridge does not understand the file
+     * @throws ArtifactGenerationException if the bridge fails to generate a descriptor
+     */
+    public ArtifactDescriptor getArtifactDescriptor(ArtifactBridge artifactBridge, File artifactFile) throws ArtifactGenerationException {
+        Key key = artifactFile == null ? null : createKey(artifactBridge, artifactFile);
+        if (key == null) {
+            return artifactBridge.generateArtifactDescriptor(artifactFile);
+        }
+
+        synchronized (this.monitor) {
+            Object cached = this.descriptors.get(key);
+            if (cached == NO_DESCRIPTOR) {
+                this.hitCount++;
+                return null;
+            }
+            // the same file may be reached by more than one path, but a descriptor's URI must be the path given
+            if (cached != null && artifactFile.toURI().equals(((ArtifactDescriptor) cached).getUri())) {
+                this.hitCount++;
+                return (ArtifactDescriptor) cached;
+            }
+            this.missCount++;
+        }
+
+        ArtifactDescriptor descriptor = artifactBridge.generateArtifactDescriptor(artifactFile);
+        synchronized (this.monitor) {
+            this.descriptors.put(key, descriptor == null ? NO_DESCRIPTOR : descriptor);
+        }
+        return descriptor;
+    }
+
+    /**
+     * Removes all descriptors from the cache.
+     */
+    public void clear() {
+        synchronized (this.monitor) {
+            this.descriptors.clear();
+        }
+    }
+
+    /**
+     * @return the number of descriptors in the cache
+     */
+    public int getSize() {
+        synchronized (this.monitor) {
+            return this.descriptors.size();
+        }
+    }
+
+    /**
+     * @return the number of descriptors returned from the cache
+     */
+    public long getHitCount() {
+        synchronized (this.monitor) {
+            return this.hitCount;
+        }
+    }
+
+    /**
+     * @return the number of descriptors which had to be generated
+     */
+    public long getMissCount() {
+        synchronized (this.monitor) {
+            return this.missCount;
+        }
+    }
+
+    private static Key createKey(ArtifactBridge artifactBridge, File artifactFile) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(artifactFile.toPath(), BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new Key(artifactBridge, artifactFile.getCanonicalPath(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+                attributes.fileKey());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class Key {
+
+        private final ArtifactBridge artifactBridge;
+
+        private final String canonicalPath;
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final Object fileKey;
+
+        private Key(ArtifactBridge artifactBridge, String canonicalPath, long length, long lastModified, Object fileKey) {
+            this.artifactBridge = artifactBridge;
+            this.canonicalPath = canonicalPath;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = System.identityHashCode(this.artifactBridge);
+            result = prime * result + this.canonicalPath.hashCode();
+            result = prime * result + (int) (this.length ^ (this.length >>> 32));
+            result = prime * result + (int) (this.lastModified ^ (this.lastModified >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.artifactBridge == other.artifactBridge && this.canonicalPath.equals(other.canonicalPath) && this.length == other.length
+                && this.lastModified == other.lastModified && (this.fileKey == null ? other.fileKey == null : this.fileKey.equals(other.fileKey));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.util;
+
+import java.io.File;
+
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.ArtifactGenerationException;
+
+/**
+ * An {@link ArtifactBridge} which generates descriptors using another bridge and caches them in an
+ * {@link ArtifactDescriptorCache}. Bridges which share a cache share the descriptors generated for a file by each of
+ * them, however the bridges are obtained.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+public final class CachingArtifactBridge implements ArtifactBridge {
+
+    private final ArtifactBridge delegate;
+
+    private final ArtifactDescriptorCache artifactDescriptorCache;
+
+    public CachingArtifactBridge(ArtifactBridge delegate, ArtifactDescriptorCache artifactDescriptorCache) {
+        this.delegate = delegate;
+        this.artifactDescriptorCache = artifactDescriptorCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ArtifactDescriptor generateArtifactDescriptor(File artifactFile) throws ArtifactGenerationException {
+        return this.artifactDescriptorCache.getArtifactDescriptor(this.delegate, artifactFile);
+    }
+
+    /**
+     * @return the bridge which generates the descriptors
+     */
+    public ArtifactBridge getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "Caching " + this.delegate;
+    }
+}
@@ -23,6 +23,11 @@ import java.security.NoSuchAlgorithmException;
 /**
  * {@link FileDigest} is a utility for generating message digests of files.
  * <p />
+ * Files are read through a buffer rather than mapped into memory. Digests are computed lazily, possibly long after an
+ * artifact was found, and a mapped file that is truncated while it is being read fails with an error rather than an
+ * {@link IOException}, while on some platforms a mapping prevents the file from being deleted or replaced until the
+ * mapping is garbage collected. Both are likely in watched directories.
+ * <p />
  * 
  * <strong>Concurrent Semantics</strong><br />
  * 
@@ -35,7 +40,7 @@ public class FileDigest {
     
     public static final String MD5_DIGEST_ALGORITHM = "MD5";
 
-    private static final int BUFFER_SIZE = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     public static String getFileShaDigest(File file) throws IOException {
         try {
@@ -54,7 +59,13 @@ public class FileDigest {
         return hashToString(hash);
     }
 
-    private static String hashToString(byte[] rawHash) {
+    /**
+     * Returns the string form of a digest, as returned by {@link #getFileDigest(File, String)}.
+     * 
+     * @param rawHash the digest
+     * @return the digest as a hexadecimal string
+     */
+    public static String hashToString(byte[] rawHash) {
         BigInteger bi = new BigInteger(1, rawHash);
         String hash = bi.toString(16);
         if (hash.length() % 2 != 0) {
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.IndexFormatException;
+import org.eclipse.virgo.repository.codec.StreamingRepositoryCodec.ArtifactDescriptorHandler;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.StandardAttribute;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+public class BinaryRepositoryCodecTests {
+
+    private final BinaryRepositoryCodec codec = new BinaryRepositoryCodec();
+
+    @Test
+    public void codec() throws IndexFormatException {
+        assertEquals(createArtifacts(), this.codec.read(new ByteArrayInputStream(encode(this.codec, createArtifacts()))));
+    }
+
+    @Test
+    public void emptyIndex() throws IndexFormatException {
+        assertEquals(new HashSet<ArtifactDescriptor>(), this.codec.read(new ByteArrayInputStream(encode(this.codec, new HashSet<ArtifactDescriptor>()))));
+    }
+
+    @Test
+    public void streamingRead() throws IndexFormatException {
+        final List<ArtifactDescriptor> handled = new ArrayList<ArtifactDescriptor>();
+        this.codec.read(new ByteArrayInputStream(encode(this.codec, createArtifacts())), new ArtifactDescriptorHandler() {
+
+            public void handle(ArtifactDescriptor artifactDescriptor) {
+                handled.add(artifactDescriptor);
+            }
+        });
+        assertEquals(createArtifacts(), new HashSet<ArtifactDescriptor>(handled));
+    }
+
+    @Test
+    public void repeatedStringsAreShared() throws IndexFormatException {
+        Set<ArtifactDescriptor> artifacts = createPackageArtifacts(2);
+        Iterator<ArtifactDescriptor> decoded = this.codec.read(new ByteArrayInputStream(encode(this.codec, artifacts))).iterator();
+        ArtifactDescriptor first = decoded.next();
+        ArtifactDescriptor second = decoded.next();
+        assertSame(first.getType(), second.getType());
+        assertSame(first.getVersion(), second.getVersion());
+    }
+
+    @Test
+    public void smallerThanXml() {
+        Set<ArtifactDescriptor> artifacts = createPackageArtifacts(100);
+        int binaryLength = encode(this.codec, artifacts).length;
+        int xmlLength = encode(new XMLRepositoryCodec(), artifacts).length;
+        assertTrue("Binary index of " + binaryLength + " bytes is not much smaller than XML index of " + xmlLength + " bytes",
+            binaryLength * 4 < xmlLength);
+    }
+
+    @Test(expected = IndexFormatException.class)
+    public void truncatedIndex() throws IndexFormatException {
+        byte[] bytes = encode(this.codec, createArtifacts());
+        this.codec.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test(expected = IndexFormatException.class)
+    public void notABinaryIndex() throws IndexFormatException {
+        this.codec.read(new ByteArrayInputStream(encode(new XMLRepositoryCodec(), createArtifacts())));
+    }
+
+    @Test
+    public void formatDetection() throws IndexFormatException {
+        FormatDetectingRepositoryCodec detectingCodec = new FormatDetectingRepositoryCodec(this.codec);
+        Set<ArtifactDescriptor> artifacts = createPackageArtifacts(3);
+        assertEquals(artifacts, detectingCodec.read(new ByteArrayInputStream(encode(this.codec, artifacts))));
+        assertEquals(artifacts, detectingCodec.read(new ByteArrayInputStream(encode(new XMLRepositoryCodec(), artifacts))));
+    }
+
+    private static byte[] encode(RepositoryCodec codec, Set<ArtifactDescriptor> artifacts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        codec.write(artifacts, output);
+        return output.toByteArray();
+    }
+
+    private static Set<ArtifactDescriptor> createArtifacts() {
+        Set<Attribute> attributes = new HashSet<Attribute>();
+        attributes.add(new StandardAttribute("attribute1", ""));
+        Map<String, Set<String>> properties = new HashMap<String, Set<String>>();
+        Set<String> values = new HashSet<String>();
+        values.add("value1");
+        values.add("value2");
+        properties.put("property1", values);
+        properties.put("property2", values);
+        attributes.add(new StandardAttribute("attribute2", "value2", properties));
+        Set<ArtifactDescriptor> artifacts = new HashSet<ArtifactDescriptor>();
+        artifacts.add(new StandardArtifactDescriptor(URI.create("http://uri/1"), "bundle", "artifact1", new Version(1, 0, 0), null, attributes));
+        artifacts.add(new StandardArtifactDescriptor(URI.create("http://uri/2"), "bundle", "artifact2", new Version(2, 0, 0), "2", attributes));
+        artifacts.add(new StandardArtifactDescriptor(URI.create("http://uri/%C3%A9"), "bundle", "artifacté", new Version(3, 0, 0, "q"),
+            "é", new HashSet<Attribute>()));
+        return artifacts;
+    }
+
+    private static Set<ArtifactDescriptor> createPackageArtifacts(int count) {
+        Set<ArtifactDescriptor> artifacts = new HashSet<ArtifactDescriptor>();
+        for (int i = 0; i < count; i++) {
+            Set<Attribute> attributes = new HashSet<Attribute>();
+            for (int p = 0; p < 20; p++) {
+                Map<String, Set<String>> properties = new HashMap<String, Set<String>>();
+                properties.put("version", new HashSet<String>(Arrays.asList("[1.0.0, 2.0.0)")));
+                properties.put("resolution", new HashSet<String>(Arrays.asList("optional")));
+                attributes.add(new StandardAttribute("Import-Package", "org.eclipse.virgo.test.package" + p, properties));
+            }
+            artifacts.add(new StandardArtifactDescriptor(URI.create("file:/repository/artifact" + i + ".jar"), "bundle", "artifact" + i,
+                new Version(1, 0, 0), "artifact" + i + ".jar", attributes));
+        }
+        return artifacts;
+    }
+}
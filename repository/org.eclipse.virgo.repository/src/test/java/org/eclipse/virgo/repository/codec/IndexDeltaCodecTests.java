@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.IndexFormatException;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+public class IndexDeltaCodecTests {
+
+    private final IndexDeltaCodec codec = new IndexDeltaCodec();
+
+    @Test
+    public void codec() throws IndexFormatException {
+        IndexDelta delta = createDelta();
+        IndexDelta decoded = this.codec.read(new ByteArrayInputStream(encode(delta)));
+        assertEquals(delta.getUpdated(), decoded.getUpdated());
+        assertEquals(delta.getRemoved(), decoded.getRemoved());
+        assertFalse(decoded.isEmpty());
+    }
+
+    @Test
+    public void emptyDelta() throws IndexFormatException {
+        IndexDelta decoded = this.codec.read(new ByteArrayInputStream(encode(new IndexDelta(new HashSet<ArtifactDescriptor>(), new HashSet<URI>()))));
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test(expected = IndexFormatException.class)
+    public void truncatedDelta() throws IndexFormatException {
+        byte[] bytes = encode(createDelta());
+        this.codec.read(new ByteArrayInputStream(Arrays.copyOf(bytes, 12)));
+    }
+
+    @Test(expected = IndexFormatException.class)
+    public void notADelta() throws IndexFormatException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BinaryRepositoryCodec().write(createDelta().getUpdated(), output);
+        this.codec.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private byte[] encode(IndexDelta delta) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.codec.write(delta, output);
+        return output.toByteArray();
+    }
+
+    private static IndexDelta createDelta() {
+        Set<ArtifactDescriptor> updated = new HashSet<ArtifactDescriptor>();
+        updated.add(new StandardArtifactDescriptor(URI.create("http://uri/1"), "bundle", "artifact1", new Version(1, 0, 0), "artifact1.jar",
+            new HashSet<Attribute>()));
+        updated.add(new StandardArtifactDescriptor(URI.create("http://uri/2"), "bundle", "artifact2", new Version(2, 0, 0), null,
+            new HashSet<Attribute>()));
+        Set<URI> removed = new HashSet<URI>();
+        removed.add(URI.create("http://uri/3"));
+        removed.add(URI.create("http://uri/%C3%A9"));
+        return new IndexDelta(updated, removed);
+    }
+}
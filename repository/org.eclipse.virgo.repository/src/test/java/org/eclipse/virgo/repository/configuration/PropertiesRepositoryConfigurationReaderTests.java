@@ -12,6 +12,7 @@
 package org.eclipse.virgo.repository.configuration;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -180,6 +181,7 @@ public class PropertiesRepositoryConfigurationReaderTests {
         RepositoryConfiguration configuration = configurationMap.get(chainList.get(0));
         assertTrue(configuration instanceof WatchedStorageRepositoryConfiguration);
         assertEquals(5, ((WatchedStorageRepositoryConfiguration)configuration).getWatchInterval());
+        assertFalse(((WatchedStorageRepositoryConfiguration)configuration).isWatchServiceEnabled());
         
         configuration = configurationMap.get(chainList.get(1));
         assertTrue(configuration instanceof RemoteRepositoryConfiguration);
@@ -187,6 +189,45 @@ public class PropertiesRepositoryConfigurationReaderTests {
         
         assertEquals(0, eventLogger.getLoggedEvents().size());
     }
+
+    @Test
+    public void remoteCacheQuotaAndEvictionPolicy() throws RepositoryConfigurationException {
+        Properties properties = new Properties();
+        properties.setProperty("remote-repo.type", "remote");
+        properties.setProperty("remote-repo.uri", "http://localhost:8080/org.eclipse.virgo.repository/foo");
+        properties.setProperty("remote-repo.cacheQuota", "64");
+        properties.setProperty("remote-repo.cacheEvictionPolicy", "LFU");
+        properties.setProperty("default-repo.type", "remote");
+        properties.setProperty("default-repo.uri", "http://localhost:8080/org.eclipse.virgo.repository/bar");
+        properties.setProperty("chain", "remote-repo,default-repo");
+
+        Map<String,RepositoryConfiguration> configurationMap = configurationReader.readConfiguration(properties).getFirst();
+
+        RemoteRepositoryConfiguration configuration = (RemoteRepositoryConfiguration)configurationMap.get("remote-repo");
+        assertEquals(64L * 1024 * 1024, configuration.getCacheQuota());
+        assertEquals(CacheEvictionPolicy.LFU, configuration.getCacheEvictionPolicy());
+
+        configuration = (RemoteRepositoryConfiguration)configurationMap.get("default-repo");
+        assertEquals(0, configuration.getCacheQuota());
+        assertEquals(CacheEvictionPolicy.LRU, configuration.getCacheEvictionPolicy());
+        assertEquals(0, eventLogger.getLoggedEvents().size());
+    }
+
+    @Test
+    public void watchServiceEnabled() throws RepositoryConfigurationException {
+        Properties properties = new Properties();
+        properties.setProperty("watched-repo.type", "watched");
+        properties.setProperty("watched-repo.watchDirectory", "build/repository/watched");
+        properties.setProperty("watched-repo.watchService", "true");
+        properties.setProperty("chain", "watched-repo");
+
+        OrderedPair<Map<String,RepositoryConfiguration>,List<String>> configurations = configurationReader.readConfiguration(properties);
+
+        RepositoryConfiguration configuration = configurations.getFirst().get("watched-repo");
+        assertTrue(configuration instanceof WatchedStorageRepositoryConfiguration);
+        assertTrue(((WatchedStorageRepositoryConfiguration)configuration).isWatchServiceEnabled());
+        assertEquals(0, eventLogger.getLoggedEvents().size());
+    }
     
     @Test
     public void defaultingOfIndexRefreshIntervalAndWatchIntervalWhenMalformed() throws RepositoryConfigurationException {
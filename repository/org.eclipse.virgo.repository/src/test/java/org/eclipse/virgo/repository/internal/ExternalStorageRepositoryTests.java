@@ -24,8 +24,11 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -43,9 +46,12 @@ import org.osgi.framework.Version;
 import org.eclipse.virgo.medic.test.eventlog.MockEventLogger;
 import org.eclipse.virgo.repository.ArtifactBridge;
 import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.ArtifactGenerationException;
 import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.builder.ArtifactDescriptorBuilder;
 import org.eclipse.virgo.repository.configuration.ExternalStorageRepositoryConfiguration;
 import org.eclipse.virgo.repository.internal.external.ExternalStorageRepository;
+import org.eclipse.virgo.util.io.PathReference;
 import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 public class ExternalStorageRepositoryTests {
@@ -220,6 +226,67 @@ public class ExternalStorageRepositoryTests {
         assertEquals("set of locations not expected", expectedLocations, locations);
     }
     
+    @Test
+    public void changesWhileNotRunningArePickedUp() throws Exception {
+        File storage = new File("build", "external-storage");
+        File index = new File("build", "external-storage-index/index");
+        new PathReference(storage).delete(true);
+        new PathReference(index.getParentFile()).delete(true);
+        storage.mkdirs();
+        writeArtifact(new File(storage, "a.jar"), "1.0.0");
+        writeArtifact(new File(storage, "b.jar"), "1.0.0");
+
+        ExternalStorageRepositoryConfiguration configuration = new ExternalStorageRepositoryConfiguration("external-repo", index,
+            new HashSet<ArtifactBridge>(Arrays.asList(new VersionFileArtifactBridge())), storage.getAbsolutePath() + File.separator + "*.jar",
+            null);
+        ExternalStorageRepository repository = new ExternalStorageRepository(configuration, this.mockEventLogger);
+        assertNotNull(repository.get("bundle", "a", new VersionRange("[1.0.0,1.0.0]")));
+        assertNotNull(repository.get("bundle", "b", new VersionRange("[1.0.0,1.0.0]")));
+        long indexLastModified = index.lastModified();
+
+        // an index which is up to date is reused as it is
+        repository = new ExternalStorageRepository(configuration, this.mockEventLogger);
+        assertNotNull(repository.get("bundle", "a", new VersionRange("[1.0.0,1.0.0]")));
+        assertEquals(indexLastModified, index.lastModified());
+
+        assertTrue(new File(storage, "a.jar").delete());
+        File b = new File(storage, "b.jar");
+        writeArtifact(b, "2.0.0");
+        assertTrue(b.setLastModified(b.lastModified() + 2000));
+        writeArtifact(new File(storage, "c.jar"), "1.0.0");
+
+        repository = new ExternalStorageRepository(configuration, this.mockEventLogger);
+        assertNull(repository.get("bundle", "a", new VersionRange("[0.0.0,3.0.0)")));
+        assertNull(repository.get("bundle", "b", new VersionRange("[1.0.0,1.0.0]")));
+        assertNotNull(repository.get("bundle", "b", new VersionRange("[2.0.0,2.0.0]")));
+        assertNotNull(repository.get("bundle", "c", new VersionRange("[1.0.0,1.0.0]")));
+    }
+
+    private static void writeArtifact(File file, String version) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(version.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Generates a bundle descriptor named after the file, with the version which the file contains.
+     */
+    private static final class VersionFileArtifactBridge implements ArtifactBridge {
+
+        public ArtifactDescriptor generateArtifactDescriptor(File artifactFile) throws ArtifactGenerationException {
+            String name = artifactFile.getName().substring(0, artifactFile.getName().indexOf('.'));
+            try {
+                String version = new String(Files.readAllBytes(artifactFile.toPath()), "UTF-8");
+                return new ArtifactDescriptorBuilder().setUri(artifactFile.toURI()).setType("bundle").setName(name).setVersion(version).build();
+            } catch (IOException e) {
+                throw new ArtifactGenerationException("Unable to read " + artifactFile, "bundle", e);
+            }
+        }
+    }
+
     private static class StubAttribute implements Attribute {
 
         private final String key;
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.IndexFormatException;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.persistence.StubArtifactDescriptorPersister;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+/**
+ * <p>
+ * Unit tests for {@link IndexedArtifactDescriptorDepository}, which must pass all of the tests of
+ * {@link StandardArtifactDescriptorDepository}.
+ * </p>
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * Threadsafe test case
+ * 
+ */
+public class IndexedArtifactDescriptorDepositoryTests extends StandardArtifactDescriptorDepositoryTests {
+
+    private static final String TYPE = "bundle";
+
+    private static final String EXPORT_PACKAGE = "Export-Package";
+
+    @Override
+    protected ArtifactDescriptorDepository createDepository(ArtifactDescriptorPersister artifactDescriptorPersister) throws IndexFormatException {
+        return new IndexedArtifactDescriptorDepository(artifactDescriptorPersister);
+    }
+
+    @Test
+    public void removedArtifactsAreDiscardedWhenIndexIsRebuilt() throws Exception {
+        ArtifactDescriptorDepository depository = createDepository(new StubArtifactDescriptorPersister());
+        RepositoryAwareArtifactDescriptor retained = createDescriptor("retained", "1");
+        depository.addArtifactDescriptor(retained);
+
+        // enough churn to exhaust the initial capacity several times over
+        for (int i = 0; i < 200; i++) {
+            RepositoryAwareArtifactDescriptor churned = createDescriptor("transient", Integer.toString(i));
+            depository.addArtifactDescriptor(churned);
+            assertEquals(Collections.singleton(churned), depository.resolveArtifactDescriptors(nameFilter("transient")));
+            assertTrue(depository.removeArtifactDescriptor(churned));
+        }
+
+        assertEquals(1, depository.getArtifactDescriptorCount());
+        assertEquals(Collections.singleton(retained), depository.resolveArtifactDescriptors(nameFilter("retained")));
+        assertEquals(Collections.<RepositoryAwareArtifactDescriptor> emptySet(), depository.resolveArtifactDescriptors(nameFilter("transient")));
+        assertEquals(Collections.singleton(retained), depository.resolveArtifactDescriptors(null));
+    }
+
+    @Test
+    public void queriesDuringUpdatesSeeWholeArtifacts() throws Exception {
+        final ArtifactDescriptorDepository depository = createDepository(new StubArtifactDescriptorPersister());
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        Thread reader = new Thread(new Runnable() {
+
+            public void run() {
+                Set<Attribute> filters = new HashSet<Attribute>();
+                filters.add(new StandardAttribute(ArtifactDescriptor.TYPE, TYPE));
+                filters.add(new StandardAttribute("marker", "true"));
+                while (done.getCount() > 0) {
+                    for (RepositoryAwareArtifactDescriptor result : depository.resolveArtifactDescriptors(filters)) {
+                        if (result.getAttribute("marker").isEmpty()) {
+                            failure.set("Query returned " + result + " which does not match");
+                        }
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < 1000; i++) {
+            RepositoryAwareArtifactDescriptor descriptor = createDescriptor("artifact", Integer.toString(i), new StandardAttribute("marker", "true"));
+            depository.addArtifactDescriptor(descriptor);
+            if (i % 2 == 0) {
+                depository.removeArtifactDescriptor(descriptor);
+            }
+        }
+        done.countDown();
+        reader.join();
+
+        assertEquals(null, failure.get());
+        assertEquals(500, depository.getArtifactDescriptorCount());
+    }
+
+    @Test
+    public void highestAndLowestVersionInRange() throws Exception {
+        ArtifactDescriptorDepository depository = createDepository(new StubArtifactDescriptorPersister());
+        RepositoryAwareArtifactDescriptor one = createDescriptor("a", "1.0.0");
+        RepositoryAwareArtifactDescriptor oneFive = createDescriptor("a", "1.5.0", new StandardAttribute("marker", "true"));
+        RepositoryAwareArtifactDescriptor two = createDescriptor("a", "2.0.0");
+        depository.addArtifactDescriptor(one);
+        depository.addArtifactDescriptor(oneFive);
+        depository.addArtifactDescriptor(two);
+        depository.addArtifactDescriptor(createDescriptor("b", "1.2.0"));
+
+        Set<Attribute> filters = typeAndNameFilters("a");
+        assertEquals(Collections.singleton(two), depository.resolveArtifactDescriptors(filters, null, VersionRangeMatchingStrategy.HIGHEST));
+        assertEquals(Collections.singleton(oneFive),
+            depository.resolveArtifactDescriptors(filters, new VersionRange("[1.0.0,2.0.0)"), VersionRangeMatchingStrategy.HIGHEST));
+        assertEquals(Collections.singleton(oneFive),
+            depository.resolveArtifactDescriptors(filters, new VersionRange("(1.0.0,2.0.0]"), VersionRangeMatchingStrategy.LOWEST));
+        assertEquals(Collections.<RepositoryAwareArtifactDescriptor> emptySet(),
+            depository.resolveArtifactDescriptors(filters, new VersionRange("[3.0.0,4.0.0)"), VersionRangeMatchingStrategy.HIGHEST));
+
+        filters.add(new StandardAttribute("marker", "true"));
+        assertEquals(Collections.singleton(oneFive), depository.resolveArtifactDescriptors(filters, null, VersionRangeMatchingStrategy.HIGHEST));
+
+        depository.removeArtifactDescriptor(oneFive);
+        assertEquals(Collections.singleton(one),
+            depository.resolveArtifactDescriptors(typeAndNameFilters("a"), new VersionRange("[1.0.0,2.0.0)"), VersionRangeMatchingStrategy.HIGHEST));
+    }
+
+    @Test
+    public void exportedPackageVersionRange() throws Exception {
+        ArtifactDescriptorDepository depository = createDepository(new StubArtifactDescriptorPersister());
+        RepositoryAwareArtifactDescriptor unversioned = createDescriptor("unversioned", "1", new StandardAttribute(EXPORT_PACKAGE, "p"));
+        RepositoryAwareArtifactDescriptor oneFive = createDescriptor("oneFive", "1", exportedPackage("p", "1.5.0"));
+        RepositoryAwareArtifactDescriptor both = createDescriptor("both", "1", exportedPackage("p", "0.5.0"), exportedPackage("p", "2.5.0"));
+        depository.addArtifactDescriptor(unversioned);
+        depository.addArtifactDescriptor(oneFive);
+        depository.addArtifactDescriptor(both);
+
+        assertEquals(setOf(oneFive), depository.resolveArtifactDescriptors(packageFilters("p", "[1.0.0,2.0.0)")));
+        assertEquals(setOf(oneFive, both), depository.resolveArtifactDescriptors(packageFilters("p", "1.0.0")));
+        assertEquals(setOf(unversioned, oneFive, both), depository.resolveArtifactDescriptors(packageFilters("p", "0.0.0")));
+        assertEquals(setOf(both), depository.resolveArtifactDescriptors(packageFilters("p", "[2.5.0,2.5.0]")));
+        assertEquals(setOf(), depository.resolveArtifactDescriptors(packageFilters("p", "[3.0.0,4.0.0)")));
+        assertEquals(setOf(), depository.resolveArtifactDescriptors(packageFilters("q", "0.0.0")));
+
+        depository.removeArtifactDescriptor(both);
+        assertEquals(setOf(oneFive), depository.resolveArtifactDescriptors(packageFilters("p", "1.0.0")));
+    }
+
+    @Test
+    public void versionRangeQueriesMatchStandardDepository() throws Exception {
+        ArtifactDescriptorDepository indexed = createDepository(new StubArtifactDescriptorPersister());
+        ArtifactDescriptorDepository standard = new StandardArtifactDescriptorDepository(new StubArtifactDescriptorPersister());
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            RepositoryAwareArtifactDescriptor descriptor = createDescriptor("artifact" + random.nextInt(5), "1." + i,
+                exportedPackage("p" + random.nextInt(5), "1." + random.nextInt(10)), new StandardAttribute("marker", Boolean.toString(random.nextBoolean())));
+            indexed.addArtifactDescriptor(descriptor);
+            standard.addArtifactDescriptor(descriptor);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            int floor = random.nextInt(200);
+            VersionRange range = new VersionRange((random.nextBoolean() ? "[" : "(") + "1." + floor + ",1." + (floor + random.nextInt(50))
+                + (random.nextBoolean() ? "]" : ")"));
+            Set<Attribute> filters = typeAndNameFilters("artifact" + random.nextInt(5));
+            if (random.nextBoolean()) {
+                filters.add(new StandardAttribute("marker", "true"));
+            }
+            if (random.nextBoolean()) {
+                filters.add(new VersionRangeAttribute(EXPORT_PACKAGE, "p" + random.nextInt(5), new VersionRange("[1.2,1.7)")));
+            }
+            for (VersionRangeMatchingStrategy strategy : VersionRangeMatchingStrategy.values()) {
+                assertEquals(standard.resolveArtifactDescriptors(filters, range, strategy), indexed.resolveArtifactDescriptors(filters, range, strategy));
+            }
+        }
+    }
+
+    @Test
+    public void hashIsOnlyReadByHashQueries() throws Exception {
+        ArtifactDescriptorDepository depository = createDepository(new StubArtifactDescriptorPersister());
+        CountingHashAttribute hash = new CountingHashAttribute("abc123");
+        RepositoryAwareArtifactDescriptor hashed = createDescriptor("hashed", "1", hash);
+        RepositoryAwareArtifactDescriptor other = createDescriptor("other", "1");
+        depository.addArtifactDescriptor(hashed);
+        depository.addArtifactDescriptor(other);
+
+        assertEquals(Collections.singleton(hashed), depository.resolveArtifactDescriptors(nameFilter("hashed")));
+        assertEquals(0, hash.reads.get());
+
+        Set<Attribute> hashFilter = new HashSet<Attribute>();
+        hashFilter.add(new StandardAttribute(ArtifactBridge.HASH_KEY, "abc123"));
+        assertEquals(Collections.singleton(hashed), depository.resolveArtifactDescriptors(hashFilter));
+
+        Set<Attribute> otherFilters = nameFilter("other");
+        otherFilters.add(new StandardAttribute(ArtifactBridge.HASH_KEY, "abc123"));
+        assertEquals(Collections.<RepositoryAwareArtifactDescriptor> emptySet(), depository.resolveArtifactDescriptors(otherFilters));
+
+        int reads = hash.reads.get();
+        assertTrue(depository.removeArtifactDescriptor(hashed));
+        assertEquals(reads, hash.reads.get());
+    }
+
+    private static Set<Attribute> typeAndNameFilters(String name) {
+        Set<Attribute> filters = nameFilter(name);
+        filters.add(new StandardAttribute(ArtifactDescriptor.TYPE, TYPE));
+        return filters;
+    }
+
+    private static Set<Attribute> packageFilters(String packageName, String versionRange) {
+        Set<Attribute> filters = new HashSet<Attribute>();
+        filters.add(new VersionRangeAttribute(EXPORT_PACKAGE, packageName, new VersionRange(versionRange)));
+        return filters;
+    }
+
+    private static Attribute exportedPackage(String packageName, String version) {
+        Map<String, Set<String>> properties = new HashMap<String, Set<String>>();
+        properties.put("version", Collections.singleton(version));
+        return new StandardAttribute(EXPORT_PACKAGE, packageName, properties);
+    }
+
+    private static Set<RepositoryAwareArtifactDescriptor> setOf(RepositoryAwareArtifactDescriptor... descriptors) {
+        Set<RepositoryAwareArtifactDescriptor> set = new HashSet<RepositoryAwareArtifactDescriptor>();
+        Collections.addAll(set, descriptors);
+        return set;
+    }
+
+    private static Set<Attribute> nameFilter(String name) {
+        Set<Attribute> filters = new HashSet<Attribute>();
+        filters.add(new StandardAttribute(ArtifactDescriptor.NAME, name));
+        return filters;
+    }
+
+    /**
+     * A hash attribute which counts the reads of its value.
+     */
+    private static final class CountingHashAttribute implements Attribute {
+
+        private final String value;
+
+        private final AtomicInteger reads = new AtomicInteger();
+
+        private CountingHashAttribute(String value) {
+            this.value = value;
+        }
+
+        public String getKey() {
+            return ArtifactBridge.HASH_KEY;
+        }
+
+        public String getValue() {
+            this.reads.incrementAndGet();
+            return this.value;
+        }
+
+        public Map<String, Set<String>> getProperties() {
+            return Collections.emptyMap();
+        }
+    }
+
+    private static RepositoryAwareArtifactDescriptor createDescriptor(String name, String version, Attribute... attributes) {
+        Set<Attribute> attributeSet = new HashSet<Attribute>();
+        Collections.addAll(attributeSet, attributes);
+        return RepositoryTestData.createDescriptor(TYPE, name, new Version(version), attributeSet);
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.eclipse.virgo.repository.util.FileDigest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyHashAttributeTests {
+
+    private final File file = new File("build/lazyHash/artifact.jar");
+
+    @Before
+    @After
+    public void deleteFile() {
+        this.file.delete();
+    }
+
+    @Test
+    public void hashIsOfUnchangedFile() throws IOException {
+        writeFile("content");
+        LazyHashAttribute attribute = new LazyHashAttribute(this.file, FileDigest.SHA_DIGEST_ALGORITHM);
+        String hash = FileDigest.getFileShaDigest(this.file);
+        assertEquals(hash, attribute.getValue());
+
+        writeFile("changed content");
+        assertEquals(hash, attribute.getValue());
+    }
+
+    @Test
+    public void changedFileHasNoHash() throws IOException {
+        writeFile("content");
+        LazyHashAttribute attribute = new LazyHashAttribute(this.file, FileDigest.SHA_DIGEST_ALGORITHM);
+        writeFile("changed content");
+        assertEquals("", attribute.getValue());
+    }
+
+    @Test
+    public void deletedFileHasNoHash() throws IOException {
+        writeFile("content");
+        LazyHashAttribute attribute = new LazyHashAttribute(this.file, FileDigest.SHA_DIGEST_ALGORITHM);
+        assertTrue(this.file.delete());
+        assertEquals("", attribute.getValue());
+    }
+
+    private void writeFile(String content) throws IOException {
+        this.file.getParentFile().mkdirs();
+        FileOutputStream output = new FileOutputStream(this.file);
+        try {
+            output.write(content.getBytes());
+        } finally {
+            output.close();
+        }
+    }
+}
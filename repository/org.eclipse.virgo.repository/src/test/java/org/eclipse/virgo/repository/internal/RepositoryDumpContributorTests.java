@@ -33,11 +33,13 @@ import org.eclipse.virgo.medic.dump.Dump;
 import org.eclipse.virgo.medic.dump.DumpContributionFailedException;
 import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.codec.XMLRepositoryCodec;
 import org.eclipse.virgo.repository.internal.ArtifactDescriptorDepository;
 import org.eclipse.virgo.repository.internal.RepositoryDumpContributor;
 import org.eclipse.virgo.util.io.PathReference;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 /**
  */
@@ -156,6 +158,14 @@ public class RepositoryDumpContributorTests {
             return Collections.<RepositoryAwareArtifactDescriptor> singleton(descriptor);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        public Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters, VersionRange versionRange,
+            VersionRangeMatchingStrategy strategy) {
+            return resolveArtifactDescriptors(filters);
+        }
+
     }
 
     private static final class StubDump implements Dump {
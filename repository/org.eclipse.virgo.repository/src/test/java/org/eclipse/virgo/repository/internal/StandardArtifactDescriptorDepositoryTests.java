@@ -63,8 +63,10 @@ import java.net.URI;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.eclipse.virgo.repository.ArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.Attribute;
 import org.eclipse.virgo.repository.DuplicateArtifactException;
+import org.eclipse.virgo.repository.IndexFormatException;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.internal.ArtifactDescriptorDepository;
 import org.eclipse.virgo.repository.internal.StandardArtifactDescriptorDepository;
@@ -96,14 +98,18 @@ public class StandardArtifactDescriptorDepositoryTests {
     public void setUp() throws Exception {
         this.filters = new HashSet<Attribute>();
         this.stubArtefactPersister = new StubArtifactDescriptorPersister();
-        this.artefactDepository = new StandardArtifactDescriptorDepository(this.stubArtefactPersister);
+        this.artefactDepository = createDepository(this.stubArtefactPersister);
+    }
+
+    protected ArtifactDescriptorDepository createDepository(ArtifactDescriptorPersister artifactDescriptorPersister) throws IndexFormatException {
+        return new StandardArtifactDescriptorDepository(artifactDescriptorPersister);
     }
 
     @Test
     public void testInstantiateArtefactDepositoryExist() throws IOException {
         this.stubArtefactPersister.addArtefact(TEST_ARTEFACT_EIGHT);
         this.stubArtefactPersister.addArtefact(TEST_ARTEFACT_SEVEN);
-        this.artefactDepository = new StandardArtifactDescriptorDepository(this.stubArtefactPersister);
+        this.artefactDepository = createDepository(this.stubArtefactPersister);
         assertEquals(2, this.artefactDepository.getArtifactDescriptorCount());
     }
 
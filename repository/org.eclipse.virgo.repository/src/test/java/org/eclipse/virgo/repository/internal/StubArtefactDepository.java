@@ -19,8 +19,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.Query.VersionRangeMatchingStrategy;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.internal.ArtifactDescriptorDepository;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
 
 
 /**
@@ -79,6 +81,15 @@ public class StubArtefactDepository implements ArtifactDescriptorDepository {
         return artefacts;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Set<RepositoryAwareArtifactDescriptor> resolveArtifactDescriptors(Set<Attribute> filters, VersionRange versionRange,
+        VersionRangeMatchingStrategy strategy) {
+        Set<RepositoryAwareArtifactDescriptor> resolved = resolveArtifactDescriptors(filters);
+        return strategy == null ? resolved : strategy.match(resolved, versionRange);
+    }
+
     /**
      * {@inheritDoc}
      */
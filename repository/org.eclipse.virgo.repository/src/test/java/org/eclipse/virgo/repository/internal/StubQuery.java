@@ -43,6 +43,11 @@ public class StubQuery implements Query {
         this.attribFilters.put(name, value);
         return this;
     }
+
+    public Query addVersionRangeFilter(String name, String value, VersionRange versionRange) {
+        this.attribFilters.put(name, value);
+        return this;
+    }
     
     /** 
      * {@inheritDoc}
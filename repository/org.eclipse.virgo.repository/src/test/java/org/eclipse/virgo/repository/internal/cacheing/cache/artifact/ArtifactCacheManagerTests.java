@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal.cacheing.cache.artifact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.virgo.repository.configuration.CacheEvictionPolicy;
+import org.eclipse.virgo.repository.internal.cacheing.cache.descriptorhash.ArtifactDescriptorHash;
+import org.eclipse.virgo.repository.util.FileDigest;
+import org.eclipse.virgo.util.io.PathReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+/**
+ * Tests for {@link ArtifactCacheManager}
+ *
+ */
+public class ArtifactCacheManagerTests {
+
+    private static final File REPOSITORY_CACHE_DIRECTORY = new File("build/cache-manager/cache");
+
+    private static final File BUNDLE_DIRECTORY = new File("build/cache-manager/bundles");
+
+    private static final PathReference BUNDLE = new PathReference(new File("src/test/resources/cacheing/b.jar"));
+
+    private static final Version ARTIFACT_VERSION = Version.parseVersion("1.0.0");
+
+    private static final ArtifactDescriptorHash ANY_HASH = new ArtifactDescriptorHash() {
+
+        public boolean isPresent() {
+            return true;
+        }
+
+        public boolean matches(String hashToMatch) {
+            return true;
+        }
+
+        public String getDigestAlgorithm() {
+            return FileDigest.SHA_DIGEST_ALGORITHM;
+        }
+    };
+
+    private long bundleSize;
+
+    @Before
+    public void setUp() {
+        new PathReference(REPOSITORY_CACHE_DIRECTORY).delete(true);
+        new PathReference(BUNDLE_DIRECTORY).delete(true);
+        REPOSITORY_CACHE_DIRECTORY.mkdirs();
+        BUNDLE_DIRECTORY.mkdirs();
+        for (String name : new String[] { "a", "b", "c" }) {
+            BUNDLE.copy(new PathReference(new File(BUNDLE_DIRECTORY, name + ".jar")));
+        }
+        this.bundleSize = BUNDLE.toFile().length();
+    }
+
+    @Test
+    public void leastRecentlyUsedArtifactIsEvicted() {
+        ArtifactCacheManager manager = new ArtifactCacheManager(this.bundleSize * 5 / 2, CacheEvictionPolicy.LRU);
+        StandardSingleArtifactCache a = createArtifactCache("a", manager);
+        StandardSingleArtifactCache b = createArtifactCache("b", manager);
+        StandardSingleArtifactCache c = createArtifactCache("c", manager);
+
+        a.getCachedUri(ANY_HASH);
+        b.getCachedUri(ANY_HASH);
+        a.getCachedUri(ANY_HASH);
+        c.getCachedUri(ANY_HASH);
+
+        assertCached("a");
+        assertEvicted("b");
+        assertCached("c");
+        assertEquals(1, manager.getHitCount());
+        assertEquals(3, manager.getMissCount());
+        assertEquals(1, manager.getEvictionCount());
+        assertEquals(3 * this.bundleSize, manager.getDownloadedBytes());
+        assertEquals(2 * this.bundleSize, manager.getSize());
+
+        b.getCachedUri(ANY_HASH);
+        assertCached("b");
+        assertEvicted("a");
+        assertEquals(4, manager.getMissCount());
+    }
+
+    @Test
+    public void leastFrequentlyUsedArtifactIsEvicted() {
+        ArtifactCacheManager manager = new ArtifactCacheManager(this.bundleSize * 5 / 2, CacheEvictionPolicy.LFU);
+        StandardSingleArtifactCache a = createArtifactCache("a", manager);
+        StandardSingleArtifactCache b = createArtifactCache("b", manager);
+        StandardSingleArtifactCache c = createArtifactCache("c", manager);
+
+        a.getCachedUri(ANY_HASH);
+        a.getCachedUri(ANY_HASH);
+        a.getCachedUri(ANY_HASH);
+        b.getCachedUri(ANY_HASH);
+        c.getCachedUri(ANY_HASH);
+
+        assertCached("a");
+        assertEvicted("b");
+        assertCached("c");
+        assertEquals(2, manager.getHitCount());
+        assertEquals(1, manager.getEvictionCount());
+    }
+
+    @Test
+    public void unboundedCacheIsNotEvicted() {
+        ArtifactCacheManager manager = new ArtifactCacheManager(0, CacheEvictionPolicy.LRU);
+        for (String name : new String[] { "a", "b", "c" }) {
+            createArtifactCache(name, manager).getCachedUri(ANY_HASH);
+        }
+        assertEquals(0, manager.getEvictionCount());
+        assertEquals(3 * this.bundleSize, manager.getSize());
+    }
+
+    @Test
+    public void recoveredArtifactsCountTowardsTheQuota() {
+        for (String name : new String[] { "a", "b" }) {
+            createArtifactCache(name, new ArtifactCacheManager(0, CacheEvictionPolicy.LRU)).getCachedUri(ANY_HASH);
+        }
+
+        ArtifactCacheManager manager = new ArtifactCacheManager(this.bundleSize * 5 / 2, CacheEvictionPolicy.LRU);
+        manager.recoverCachedArtifacts(REPOSITORY_CACHE_DIRECTORY);
+        assertEquals(2 * this.bundleSize, manager.getSize());
+
+        StandardSingleArtifactCache b = createArtifactCache("b", manager);
+        b.getCachedUri(ANY_HASH);
+        assertEquals(1, manager.getHitCount());
+        assertEquals(0, manager.getMissCount());
+
+        createArtifactCache("c", manager).getCachedUri(ANY_HASH);
+        assertEvicted("a");
+        assertCached("b");
+        assertCached("c");
+        assertEquals(2 * this.bundleSize, manager.getSize());
+    }
+
+    @Test
+    public void artifactInUseByAnUnlockedRequestIsNotEvicted() throws InterruptedException {
+        ArtifactCacheManager manager = new ArtifactCacheManager(this.bundleSize * 3 / 2, CacheEvictionPolicy.LRU);
+        final StandardSingleArtifactCache a = createArtifactCache("a", manager);
+        StandardSingleArtifactCache b = createArtifactCache("b", manager);
+        a.getCachedUri(ANY_HASH);
+
+        final CountDownLatch matching = new CountDownLatch(1);
+        final CountDownLatch evicting = new CountDownLatch(1);
+        final ArtifactDescriptorHash blockingHash = new ArtifactDescriptorHash() {
+
+            public boolean isPresent() {
+                return true;
+            }
+
+            public boolean matches(String hashToMatch) {
+                matching.countDown();
+                try {
+                    evicting.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+
+            public String getDigestAlgorithm() {
+                return FileDigest.SHA_DIGEST_ALGORITHM;
+            }
+        };
+        final AtomicReference<URI> cachedUri = new AtomicReference<URI>();
+        Thread request = new Thread(new Runnable() {
+
+            public void run() {
+                cachedUri.set(a.getCachedUri(blockingHash));
+            }
+        });
+        request.start();
+        assertTrue(matching.await(10, TimeUnit.SECONDS));
+
+        // a is chosen for eviction while the request is using it
+        b.getCachedUri(ANY_HASH);
+        evicting.countDown();
+        request.join(10000);
+
+        assertEquals(getCachedFile("a").toURI(), cachedUri.get());
+        assertCached("a");
+        assertCached("b");
+        assertEquals(0, manager.getEvictionCount());
+        assertEquals(2 * this.bundleSize, manager.getSize());
+
+        createArtifactCache("c", manager).getCachedUri(ANY_HASH);
+        assertEvicted("a");
+    }
+
+    private StandardSingleArtifactCache createArtifactCache(String name, ArtifactCacheManager manager) {
+        return new StandardSingleArtifactCache("bundle", name, ARTIFACT_VERSION, new File(BUNDLE_DIRECTORY, name + ".jar").toURI(), name + ".jar",
+            REPOSITORY_CACHE_DIRECTORY, manager);
+    }
+
+    private static File getCachedFile(String name) {
+        return new File(REPOSITORY_CACHE_DIRECTORY, "bundle/" + name + "/" + ARTIFACT_VERSION + "/" + name + ".jar");
+    }
+
+    private void assertCached(String name) {
+        assertEquals(this.bundleSize, getCachedFile(name).length());
+    }
+
+    private static void assertEvicted(String name) {
+        File cachedFile = getCachedFile(name);
+        assertFalse(cachedFile.exists());
+        assertFalse(new File(cachedFile.getPath() + ".hash").exists());
+        assertTrue(cachedFile.getParentFile().isDirectory());
+    }
+}
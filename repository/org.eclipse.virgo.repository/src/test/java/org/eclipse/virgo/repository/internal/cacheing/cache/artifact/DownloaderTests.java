@@ -16,17 +16,28 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.eclipse.virgo.repository.util.FileDigest;
 import org.eclipse.virgo.util.io.PathReference;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 /**
  */
 public class DownloaderTests {
@@ -57,6 +68,65 @@ public class DownloaderTests {
         checkDownloadedContent(sourceFile, destinationPathReference);
     }
 
+    @Test
+    public void testDigestComputedWhileDownloading() throws Exception {
+        File sourceFile = new File("src/test/resources/cacheing/b.jar");
+        PathReference destinationPathReference = this.destinationDirectory.newChild("b.jar");
+
+        Downloader downloader = new Downloader(sourceFile.toURI(), destinationPathReference, FileDigest.SHA_DIGEST_ALGORITHM);
+        String digest = downloader.downloadArtifact();
+
+        checkDownloadedContent(sourceFile, destinationPathReference);
+        Assert.assertEquals(FileDigest.getFileShaDigest(sourceFile), digest);
+        Assert.assertFalse(new File(destinationPathReference.toFile().getPath() + ".part").exists());
+    }
+
+    @Test
+    public void testDownloadResumedAfterConnectionFailure() throws Exception {
+        File sourceFile = new File("src/test/resources/cacheing/b.jar");
+        final byte[] content = Files.readAllBytes(sourceFile.toPath());
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/b.jar", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                ranges.add(range);
+                exchange.getResponseHeaders().add("ETag", "b1");
+                OutputStream body = exchange.getResponseBody();
+                if (range == null) {
+                    // send half of the artifact, then drop the connection
+                    exchange.sendResponseHeaders(200, content.length);
+                    body.write(content, 0, content.length / 2);
+                    body.flush();
+                    exchange.close();
+                } else {
+                    int first = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + first + "-" + (content.length - 1) + "/" + content.length);
+                    exchange.sendResponseHeaders(206, content.length - first);
+                    body.write(content, first, content.length - first);
+                    body.close();
+                }
+            }
+        });
+        server.start();
+        try {
+            PathReference destinationPathReference = this.destinationDirectory.newChild("b.jar");
+            URI uri = new URI("http://localhost:" + server.getAddress().getPort() + "/b.jar");
+
+            String digest = new Downloader(uri, destinationPathReference, FileDigest.SHA_DIGEST_ALGORITHM).downloadArtifact();
+
+            checkDownloadedContent(sourceFile, destinationPathReference);
+            Assert.assertEquals(FileDigest.getFileShaDigest(sourceFile), digest);
+            Assert.assertEquals(2, ranges.size());
+            Assert.assertNull(ranges.get(0));
+            Assert.assertTrue(ranges.get(1).startsWith("bytes="));
+        } finally {
+            server.stop(0);
+        }
+    }
+
     private void ensureOldContentPresent(PathReference destinationPathReference) throws IOException {
         destinationPathReference.createFile();
         File destinationFile = destinationPathReference.toFile();
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal.external;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.HashSet;
+
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+/**
+ * Tests for {@link ArtifactFingerprintCache}
+ *
+ */
+public class ArtifactFingerprintCacheTests {
+
+    private static final File CACHE_FILE = new File("build/fingerprint-cache/index.fingerprints");
+
+    private static final String SIGNATURE = "[bridge]";
+
+    private static final File ARTIFACT = new File("repository/a.jar");
+
+    private static final File NON_ARTIFACT = new File("repository/readme.txt");
+
+    private final ArtifactDescriptor descriptor = new StandardArtifactDescriptor(ARTIFACT.toURI(), "bundle", "a", new Version(1, 0, 0),
+        "a.jar", new HashSet<Attribute>());
+
+    @Before
+    public void setUp() {
+        CACHE_FILE.delete();
+        CACHE_FILE.getParentFile().mkdirs();
+    }
+
+    @Test
+    public void persistedEntriesAreReloaded() {
+        ArtifactFingerprintCache cache = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        assertNull(cache.get(ARTIFACT, 10, 100));
+        cache.put(ARTIFACT, 10, 100, this.descriptor);
+        cache.put(NON_ARTIFACT, 5, 50, null);
+        cache.persist();
+
+        ArtifactFingerprintCache reloaded = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        ArtifactFingerprintCache.Entry entry = reloaded.get(ARTIFACT, 10, 100);
+        assertNotNull(entry);
+        assertEquals(this.descriptor, entry.getDescriptor());
+        assertEquals(this.descriptor.getUri(), entry.getDescriptor().getUri());
+        entry = reloaded.get(NON_ARTIFACT, 5, 50);
+        assertNotNull(entry);
+        assertNull(entry.getDescriptor());
+    }
+
+    @Test
+    public void changedFileIsNotFound() {
+        ArtifactFingerprintCache cache = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        cache.put(ARTIFACT, 10, 100, this.descriptor);
+        cache.persist();
+
+        ArtifactFingerprintCache reloaded = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        assertNull(reloaded.get(ARTIFACT, 11, 100));
+        assertNull(reloaded.get(ARTIFACT, 10, 101));
+    }
+
+    @Test
+    public void entriesNotUsedAreForgotten() {
+        ArtifactFingerprintCache cache = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        cache.put(ARTIFACT, 10, 100, this.descriptor);
+        cache.put(NON_ARTIFACT, 5, 50, null);
+        cache.persist();
+
+        cache = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        assertNotNull(cache.get(ARTIFACT, 10, 100));
+        cache.persist();
+
+        ArtifactFingerprintCache reloaded = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        assertNotNull(reloaded.get(ARTIFACT, 10, 100));
+        assertNull(reloaded.get(NON_ARTIFACT, 5, 50));
+    }
+
+    @Test
+    public void cacheWithDifferentSignatureIsDiscarded() {
+        ArtifactFingerprintCache cache = new ArtifactFingerprintCache(CACHE_FILE, SIGNATURE);
+        cache.put(ARTIFACT, 10, 100, this.descriptor);
+        cache.persist();
+
+        assertNull(new ArtifactFingerprintCache(CACHE_FILE, "[other-bridge]").get(ARTIFACT, 10, 100));
+    }
+}
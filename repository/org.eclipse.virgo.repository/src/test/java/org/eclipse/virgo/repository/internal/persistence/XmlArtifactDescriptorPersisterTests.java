@@ -30,10 +30,15 @@ import static org.eclipse.virgo.repository.internal.RepositoryTestData.TEST_ARTE
 import static org.eclipse.virgo.repository.internal.RepositoryTestData.TEST_REPO_ONE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -113,6 +118,102 @@ public class XmlArtifactDescriptorPersisterTests {
         assertEquals(ARTEFACTS, artefacts2);
     }
 
+    @Test
+    public void journalledChangesAreReplayed() throws IOException {
+        File index = new File(repositories, TEST_REPO_ONE);
+        XmlArtifactDescriptorPersister persister = new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), DUMMY_REPOSITORY_NAME, index);
+        persister.persistArtifactDescriptors(without(ARTEFACTS, TEST_ARTEFACT_TWO));
+
+        assertFalse(persister.persistArtifactDescriptorChanges(Collections.singleton(TEST_ARTEFACT_TWO),
+            Collections.singleton(TEST_ARTEFACT_ONE.getUri())));
+        assertTrue(journal(index).exists());
+
+        assertEquals(without(ARTEFACTS, TEST_ARTEFACT_ONE), newPersister(index).loadArtifacts());
+    }
+
+    @Test
+    public void persistingAllArtifactsDiscardsJournal() throws IOException {
+        File index = new File(repositories, TEST_REPO_ONE);
+        XmlArtifactDescriptorPersister persister = new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), DUMMY_REPOSITORY_NAME, index);
+        persister.persistArtifactDescriptors(ARTEFACTS);
+        persister.persistArtifactDescriptorChanges(Collections.<RepositoryAwareArtifactDescriptor> emptySet(),
+            Collections.singleton(TEST_ARTEFACT_ONE.getUri()));
+
+        persister.persistArtifactDescriptors(ARTEFACTS);
+        assertFalse(journal(index).exists());
+        assertEquals(ARTEFACTS, newPersister(index).loadArtifacts());
+    }
+
+    @Test
+    public void journalForAnotherIndexIsIgnored() throws IOException {
+        File index = new File(repositories, TEST_REPO_ONE);
+        XmlArtifactDescriptorPersister persister = new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), DUMMY_REPOSITORY_NAME, index);
+        persister.persistArtifactDescriptors(ARTEFACTS);
+        persister.persistArtifactDescriptorChanges(Collections.<RepositoryAwareArtifactDescriptor> emptySet(),
+            Collections.singleton(TEST_ARTEFACT_ONE.getUri()));
+        byte[] journal = Files.readAllBytes(journal(index).toPath());
+
+        // simulate a crash after the index was rewritten but before the journal was deleted
+        persister.persistArtifactDescriptors(without(ARTEFACTS, TEST_ARTEFACT_TWO));
+        Files.write(journal(index).toPath(), journal);
+
+        assertEquals(without(ARTEFACTS, TEST_ARTEFACT_TWO), newPersister(index).loadArtifacts());
+    }
+
+    @Test
+    public void incompleteJournalRecordIsDiscarded() throws IOException {
+        File index = new File(repositories, TEST_REPO_ONE);
+        XmlArtifactDescriptorPersister persister = new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), DUMMY_REPOSITORY_NAME, index);
+        persister.persistArtifactDescriptors(ARTEFACTS);
+        persister.persistArtifactDescriptorChanges(Collections.<RepositoryAwareArtifactDescriptor> emptySet(),
+            Collections.singleton(TEST_ARTEFACT_ONE.getUri()));
+
+        FileOutputStream output = new FileOutputStream(journal(index), true);
+        try {
+            output.write(new byte[] { 0, 0, 0, 100, 1, 2, 3 });
+        } finally {
+            output.close();
+        }
+
+        XmlArtifactDescriptorPersister recovered = newPersister(index);
+        assertEquals(without(ARTEFACTS, TEST_ARTEFACT_ONE), recovered.loadArtifacts());
+
+        recovered.persistArtifactDescriptorChanges(Collections.<RepositoryAwareArtifactDescriptor> emptySet(),
+            Collections.singleton(TEST_ARTEFACT_TWO.getUri()));
+        assertEquals(without(without(ARTEFACTS, TEST_ARTEFACT_ONE), TEST_ARTEFACT_TWO), newPersister(index).loadArtifacts());
+    }
+
+    @Test
+    public void longJournalRecommendsPersistingAllArtifacts() throws IOException {
+        File index = new File(repositories, TEST_REPO_ONE);
+        XmlArtifactDescriptorPersister persister = new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), DUMMY_REPOSITORY_NAME, index);
+        persister.persistArtifactDescriptors(ARTEFACTS);
+
+        Set<URI> removed = Collections.singleton(TEST_ARTEFACT_ONE.getUri());
+        Set<RepositoryAwareArtifactDescriptor> updated = Collections.<RepositoryAwareArtifactDescriptor> emptySet();
+        for (int i = 1; i < 64; i++) {
+            assertFalse(persister.persistArtifactDescriptorChanges(updated, removed));
+        }
+        assertTrue(persister.persistArtifactDescriptorChanges(updated, removed));
+
+        assertEquals(without(ARTEFACTS, TEST_ARTEFACT_ONE), newPersister(index).loadArtifacts());
+    }
+
+    private static XmlArtifactDescriptorPersister newPersister(File index) {
+        return new XmlArtifactDescriptorPersister(new XMLRepositoryCodec(), DUMMY_REPOSITORY_NAME, index);
+    }
+
+    private static File journal(File index) {
+        return new File(index.getPath() + ".journal");
+    }
+
+    private static Set<RepositoryAwareArtifactDescriptor> without(Set<RepositoryAwareArtifactDescriptor> artifacts,
+        RepositoryAwareArtifactDescriptor artifact) {
+        Set<RepositoryAwareArtifactDescriptor> remaining = new HashSet<RepositoryAwareArtifactDescriptor>(artifacts);
+        remaining.remove(artifact);
+        return remaining;
+    }
+
     @Test
     public void roundTripWithAttributeWithEmptyValue() throws IOException {
         File outputFile = new File(repositories, "round-trip");
@@ -17,14 +17,26 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.XmlArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.codec.FormatDetectingRepositoryCodec;
+import org.eclipse.virgo.repository.codec.XMLRepositoryCodec;
+import org.eclipse.virgo.repository.internal.DelegatingRepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.IdentityUriMapper;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
 import org.eclipse.virgo.repository.internal.remote.DescriptorStore;
 import org.eclipse.virgo.repository.internal.remote.DescriptorStoreFactory;
 import org.eclipse.virgo.util.io.PathReference;
+import org.osgi.framework.Version;
 
 /**
  */
@@ -62,6 +74,17 @@ public class DescriptorStoreFactoryTests {
         assertEquals(ETAG_1, descriptorStore.getEtag());
     }
 
+    @Test
+    public void testCreateDescriptorStoreFromArtifacts() throws IOException {
+        Set<RepositoryAwareArtifactDescriptor> artifacts = new HashSet<RepositoryAwareArtifactDescriptor>();
+        artifacts.add(new DelegatingRepositoryAwareArtifactDescriptor(new StandardArtifactDescriptor(URI.create("http://host/a"), "bundle", "a",
+            new Version(1, 0, 0), "a.jar", new HashSet<Attribute>()), REPOSITORY_NAME, new IdentityUriMapper()));
+        DescriptorStore descriptorStore = this.descriptorStoreFactory.createDescriptorStore(artifacts, ETAG_1);
+        assertEquals(ETAG_1, descriptorStore.getEtag());
+        assertEquals(artifacts, new XmlArtifactDescriptorPersister(new FormatDetectingRepositoryCodec(new XMLRepositoryCodec()), REPOSITORY_NAME,
+            descriptorStore.getLocation()).loadArtifacts());
+    }
+
     @Test
     public void testRecoverDescriptorStore() throws FileNotFoundException, IOException {
         this.descriptorStoreFactory.createDescriptorStore(new ByteArrayInputStream(STORE_CONTENTS_1), ETAG_1);
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.internal.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.virgo.medic.test.eventlog.MockEventLogger;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.XmlArtifactDescriptorPersister;
+import org.eclipse.virgo.repository.codec.FormatDetectingRepositoryCodec;
+import org.eclipse.virgo.repository.codec.IndexDelta;
+import org.eclipse.virgo.repository.codec.XMLRepositoryCodec;
+import org.eclipse.virgo.repository.internal.DelegatingRepositoryAwareArtifactDescriptor;
+import org.eclipse.virgo.repository.internal.IdentityUriMapper;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.eclipse.virgo.util.io.PathReference;
+import org.osgi.framework.Version;
+
+public class MutableArtifactDescriptorDepositoryTests {
+
+    private static final String REPOSITORY_NAME = "reponame";
+
+    private static final File DESCRIPTOR_STORE_DIRECTORY = new File("build/mutableDepository");
+
+    private DescriptorStoreFactory descriptorStoreFactory;
+
+    private MutableArtifactDescriptorDepository depository;
+
+    @Before
+    public void setUp() {
+        new PathReference(DESCRIPTOR_STORE_DIRECTORY).delete(true);
+        DESCRIPTOR_STORE_DIRECTORY.mkdirs();
+        this.descriptorStoreFactory = new DescriptorStoreFactory(REPOSITORY_NAME, DESCRIPTOR_STORE_DIRECTORY);
+        this.depository = new MutableArtifactDescriptorDepository(REPOSITORY_NAME, new MockEventLogger());
+    }
+
+    @Test
+    public void indexDeltaIsAppliedToTheCurrentArtifactsAndPersisted() throws IOException {
+        Set<RepositoryAwareArtifactDescriptor> artifacts = new HashSet<RepositoryAwareArtifactDescriptor>();
+        artifacts.add(repositoryAware(artifact("a", 1)));
+        artifacts.add(repositoryAware(artifact("b", 1)));
+        DescriptorStore descriptorStore = this.descriptorStoreFactory.createDescriptorStore(artifacts, "etag1");
+        this.depository.setDescriptorStore(descriptorStore);
+
+        IndexDelta delta = new IndexDelta(Collections.singleton(artifact("b", 2)), Collections.singleton(URI.create("http://host/a")));
+        DescriptorStore updatedDescriptorStore = this.depository.applyIndexDelta(delta, "etag2", this.descriptorStoreFactory);
+
+        assertNotNull(updatedDescriptorStore);
+        assertEquals("etag2", updatedDescriptorStore.getEtag());
+        assertFalse(descriptorStore.getLocation().exists());
+        this.depository.setDescriptorStore(updatedDescriptorStore);
+
+        Set<RepositoryAwareArtifactDescriptor> expected = Collections.singleton(repositoryAware(artifact("b", 2)));
+        assertEquals(expected, this.depository.resolveArtifactDescriptors(Collections.<Attribute> emptySet()));
+        assertEquals(expected, new XmlArtifactDescriptorPersister(new FormatDetectingRepositoryCodec(new XMLRepositoryCodec()), REPOSITORY_NAME,
+            updatedDescriptorStore.getLocation()).loadArtifacts());
+        assertTrue(this.descriptorStoreFactory.recoverDescriptorStore().equals(updatedDescriptorStore));
+    }
+
+    @Test
+    public void indexDeltaIsNotAppliedWithoutCurrentArtifacts() {
+        IndexDelta delta = new IndexDelta(Collections.singleton(artifact("a", 1)), Collections.<URI> emptySet());
+        assertEquals(null, this.depository.applyIndexDelta(delta, "etag1", this.descriptorStoreFactory));
+    }
+
+    private static ArtifactDescriptor artifact(String name, int major) {
+        return new StandardArtifactDescriptor(URI.create("http://host/" + name), "bundle", name, new Version(major, 0, 0), name + ".jar",
+            new HashSet<Attribute>());
+    }
+
+    private static RepositoryAwareArtifactDescriptor repositoryAware(ArtifactDescriptor artifact) {
+        return new DelegatingRepositoryAwareArtifactDescriptor(artifact, REPOSITORY_NAME, new IdentityUriMapper());
+    }
+}
@@ -20,6 +20,7 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
@@ -38,6 +39,7 @@ import org.eclipse.virgo.medic.test.eventlog.MockEventLogger;
 import org.eclipse.virgo.repository.ArtifactBridge;
 import org.eclipse.virgo.repository.ArtifactDescriptor;
 import org.eclipse.virgo.repository.ArtifactGenerationException;
+import org.eclipse.virgo.repository.IncrementalArtifactDescriptorPersister;
 import org.eclipse.virgo.repository.IndexFormatException;
 import org.eclipse.virgo.repository.RepositoryAwareArtifactDescriptor;
 import org.eclipse.virgo.repository.RepositoryCreationException;
@@ -271,6 +273,57 @@ public class WatchedStorageRepositoryTests {
         this.wsRepository.stop(); // tidy up after one!
     }
 
+    @Test
+    public void changesArePersistedIncrementally() throws Exception {
+        this.wsrConfiguration = new WatchedStorageRepositoryConfiguration(WATCHED_REPO_NAME, new File("build/watchedIndex"), this.artefactBridgeDefinitions, this.watchDir.getAbsolutePath(),
+            WATCH_INTERVAL, null);
+
+        RecordingPersister persister = new RecordingPersister();
+        this.wsRepository = new WatchedStorageRepository(this.wsrConfiguration, persister, new MockEventLogger());
+        this.wsRepository.start();
+
+        File artifactFile = putArtifactFile(testArtefactFile1);
+        this.wsRepository.forceCheck();
+
+        assertEquals(1, persister.updated.size());
+        assertEquals(testArtefactFile1.getName(), persister.updated.iterator().next().getName());
+        assertTrue(persister.removed.isEmpty());
+
+        removeArtifactFile(testArtefactFile1);
+        this.wsRepository.forceCheck();
+
+        assertEquals(1, persister.updated.size());
+        assertEquals(1, persister.removed.size());
+        assertEquals(artifactFile.toURI(), persister.removed.iterator().next());
+        assertEquals(0, persister.fullPersists);
+
+        this.wsRepository.stop();
+    }
+
+    @Test
+    public void changesThatFailToBePersistedArePersistedWhenStopping() throws Exception {
+        this.wsrConfiguration = new WatchedStorageRepositoryConfiguration(WATCHED_REPO_NAME, new File("build/watchedIndex"), this.artefactBridgeDefinitions, this.watchDir.getAbsolutePath(),
+            LONG_WATCH_INTERVAL, null);
+
+        RecordingPersister persister = new RecordingPersister();
+        this.wsRepository = new WatchedStorageRepository(this.wsrConfiguration, persister, new MockEventLogger());
+        this.wsRepository.start();
+
+        putArtifactFile(testArtefactFile1);
+        persister.failures = 1;
+        try {
+            this.wsRepository.forceCheck();
+            fail("The persister's failure should have been reported");
+        } catch (IOException e) {
+        }
+        assertTrue(persister.updated.isEmpty());
+
+        this.wsRepository.stop();
+
+        assertEquals(1, persister.updated.size());
+        assertEquals(testArtefactFile1.getName(), persister.updated.iterator().next().getName());
+    }
+
     @Test
     public void mBeanPublication() throws Exception {
         this.wsrConfiguration = new WatchedStorageRepositoryConfiguration(WATCHED_REPO_NAME, new File("build/watchedIndex"), this.artefactBridgeDefinitions, this.watchDir.getAbsolutePath(),
@@ -371,6 +424,38 @@ public class WatchedStorageRepositoryTests {
         }
     }
 
+    /**
+     * <code>IncrementalArtifactDescriptorPersister</code> which records the changes it is asked to persist.
+     */
+    private static class RecordingPersister implements IncrementalArtifactDescriptorPersister {
+
+        private final Set<RepositoryAwareArtifactDescriptor> updated = new HashSet<RepositoryAwareArtifactDescriptor>();
+
+        private final Set<URI> removed = new HashSet<URI>();
+
+        private volatile int fullPersists = 0;
+
+        private volatile int failures = 0;
+
+        public Set<RepositoryAwareArtifactDescriptor> loadArtifacts() {
+            return new HashSet<RepositoryAwareArtifactDescriptor>();
+        }
+
+        public void persistArtifactDescriptors(Set<RepositoryAwareArtifactDescriptor> artifacts) {
+            this.fullPersists++;
+        }
+
+        public synchronized boolean persistArtifactDescriptorChanges(Set<RepositoryAwareArtifactDescriptor> updated, Set<URI> removed) throws IOException {
+            if (this.failures > 0) {
+                this.failures--;
+                throw new IOException("Simulated failure");
+            }
+            this.updated.addAll(updated);
+            this.removed.addAll(removed);
+            return false;
+        }
+    }
+
     /**
      * <p>
      * Implementation of <code>ArtefactBridge</code> that understands how to create a minimal Artefact from any given
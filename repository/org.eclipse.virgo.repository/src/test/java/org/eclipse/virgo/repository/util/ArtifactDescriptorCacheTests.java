@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.repository.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+
+import org.eclipse.virgo.repository.ArtifactBridge;
+import org.eclipse.virgo.repository.ArtifactDescriptor;
+import org.eclipse.virgo.repository.ArtifactGenerationException;
+import org.eclipse.virgo.repository.Attribute;
+import org.eclipse.virgo.repository.internal.StandardArtifactDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+/**
+ * Tests for {@link ArtifactDescriptorCache} and {@link CachingArtifactBridge}
+ *
+ */
+public class ArtifactDescriptorCacheTests {
+
+    private static final File DIRECTORY = new File("build/descriptor-cache");
+
+    private static final File ARTIFACT = new File(DIRECTORY, "a.jar");
+
+    private static final File NON_ARTIFACT = new File(DIRECTORY, "a.txt");
+
+    private final CountingArtifactBridge countingBridge = new CountingArtifactBridge();
+
+    private final ArtifactDescriptorCache cache = new ArtifactDescriptorCache(2);
+
+    private final ArtifactBridge bridge = new CachingArtifactBridge(this.countingBridge, this.cache);
+
+    @Before
+    public void setUp() throws IOException {
+        DIRECTORY.mkdirs();
+        write(ARTIFACT, "a");
+        write(NON_ARTIFACT, "a");
+    }
+
+    @Test
+    public void unchangedFileIsNotRead() throws ArtifactGenerationException {
+        ArtifactDescriptor descriptor = this.bridge.generateArtifactDescriptor(ARTIFACT);
+        assertSame(descriptor, this.bridge.generateArtifactDescriptor(ARTIFACT));
+        assertEquals(1, this.countingBridge.count);
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(1, this.cache.getMissCount());
+    }
+
+    @Test
+    public void fileNotUnderstoodIsCached() throws ArtifactGenerationException {
+        assertNull(this.bridge.generateArtifactDescriptor(NON_ARTIFACT));
+        assertNull(this.bridge.generateArtifactDescriptor(NON_ARTIFACT));
+        assertEquals(1, this.countingBridge.count);
+    }
+
+    @Test
+    public void changedFileIsReadAgain() throws ArtifactGenerationException, IOException {
+        ArtifactDescriptor descriptor = this.bridge.generateArtifactDescriptor(ARTIFACT);
+        write(ARTIFACT, "ab");
+        assertNotSame(descriptor, this.bridge.generateArtifactDescriptor(ARTIFACT));
+        assertEquals(2, this.countingBridge.count);
+    }
+
+    @Test
+    public void fileReachedByAnotherPathIsReadAgain() throws ArtifactGenerationException {
+        this.bridge.generateArtifactDescriptor(ARTIFACT);
+        File otherPath = new File(DIRECTORY, "../descriptor-cache/a.jar");
+        assertEquals(otherPath.toURI(), this.bridge.generateArtifactDescriptor(otherPath).getUri());
+        assertEquals(2, this.countingBridge.count);
+    }
+
+    @Test
+    public void leastRecentlyUsedDescriptorIsDiscarded() throws ArtifactGenerationException, IOException {
+        File other = new File(DIRECTORY, "b.jar");
+        write(other, "b");
+        this.bridge.generateArtifactDescriptor(ARTIFACT);
+        this.bridge.generateArtifactDescriptor(NON_ARTIFACT);
+        this.bridge.generateArtifactDescriptor(ARTIFACT);
+        this.bridge.generateArtifactDescriptor(other);
+        assertEquals(2, this.cache.getSize());
+
+        this.bridge.generateArtifactDescriptor(ARTIFACT);
+        assertEquals(3, this.countingBridge.count);
+        this.bridge.generateArtifactDescriptor(NON_ARTIFACT);
+        assertEquals(4, this.countingBridge.count);
+    }
+
+    @Test
+    public void directoryIsNotCached() throws ArtifactGenerationException {
+        this.bridge.generateArtifactDescriptor(DIRECTORY);
+        this.bridge.generateArtifactDescriptor(DIRECTORY);
+        assertEquals(2, this.countingBridge.count);
+        assertEquals(0, this.cache.getSize());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+    private static final class CountingArtifactBridge implements ArtifactBridge {
+
+        private int count;
+
+        public ArtifactDescriptor generateArtifactDescriptor(File artifactFile) throws ArtifactGenerationException {
+            this.count++;
+            if (artifactFile.getName().endsWith(".txt")) {
+                return null;
+            }
+            return new StandardArtifactDescriptor(artifactFile.toURI(), "test", artifactFile.getName(), Version.emptyVersion,
+                artifactFile.getName(), new HashSet<Attribute>());
+        }
+    }
+}
@@ -14,7 +14,9 @@ package org.eclipse.virgo.repository.util;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import org.eclipse.virgo.repository.util.FileDigest;
@@ -42,6 +44,25 @@ public class FileDigestTests {
         assertEquals(MD5_HASH, hash);
     }
     
+    @Test
+    public void testGetLargeFileDigest() throws NoSuchAlgorithmException, IOException {
+        File largeFile = new File("build/digest/large.bin");
+        largeFile.getParentFile().mkdirs();
+        MessageDigest digest = MessageDigest.getInstance(FileDigest.SHA_DIGEST_ALGORITHM);
+        FileOutputStream output = new FileOutputStream(largeFile);
+        try {
+            byte[] content = new byte[4096];
+            for (int i = 0; i < 1024; i++) {
+                content[i % content.length] = (byte) i;
+                output.write(content);
+                digest.update(content);
+            }
+        } finally {
+            output.close();
+        }
+        assertEquals(FileDigest.hashToString(digest.digest()), FileDigest.getFileShaDigest(largeFile));
+    }
+
     @Test(expected=NoSuchAlgorithmException.class)
     public void testInvalidAlgorithm() throws NoSuchAlgorithmException, IOException {
         FileDigest.getFileDigest(testFile, "none");
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.io;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the names of the entries of a single directory which a {@link WatchService} reports as created, deleted or
+ * modified.
+ * <p/>
+ * Names are accumulated until they are collected by {@link #drainChangedNames()}. If the watch service loses events,
+ * or the directory itself becomes invalid, the next call to <code>drainChangedNames</code> returns <code>null</code>
+ * to signal that the caller must rescan the directory.
+ * <p/>
+ * <strong>Concurrent Semantics</strong><br/>
+ * Thread-safe.
+ *
+ */
+final class DirectoryWatcher {
+
+    private final WatchService watchService;
+
+    private final Object monitor = new Object();
+
+    private Set<String> changedNames = new HashSet<String>();
+
+    private boolean overflowed = false;
+
+    /**
+     * Creates a new <code>DirectoryWatcher</code> and registers it for changes to the entries of <code>directory</code>.
+     *
+     * @param directory the directory to watch
+     * @throws IOException if the directory cannot be watched
+     */
+    DirectoryWatcher(File directory) throws IOException {
+        Path path = directory.toPath();
+        this.watchService = path.getFileSystem().newWatchService();
+        try {
+            path.register(this.watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            this.watchService.close();
+            throw e;
+        } catch (RuntimeException e) {
+            this.watchService.close();
+            throw new IOException("Directory '" + directory + "' cannot be watched", e);
+        }
+    }
+
+    /**
+     * Returns the names of the directory entries which have changed since the previous call, or <code>null</code> if
+     * changes may have been missed.
+     *
+     * @return the changed entry names or <code>null</code>
+     */
+    Set<String> drainChangedNames() {
+        synchronized (this.monitor) {
+            WatchKey key;
+            while ((key = pollKey()) != null) {
+                processKey(key);
+            }
+            Set<String> names = this.overflowed ? null : this.changedNames;
+            this.changedNames = new HashSet<String>();
+            this.overflowed = false;
+            return names;
+        }
+    }
+
+    /**
+     * Waits for the watch service to report a change to the directory.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return <code>true</code> if a change has been reported and not yet drained, <code>false</code> otherwise
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitChange(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this.monitor) {
+            if (!this.changedNames.isEmpty() || this.overflowed) {
+                return true;
+            }
+        }
+        WatchKey key;
+        try {
+            key = this.watchService.poll(timeout, unit);
+        } catch (ClosedWatchServiceException e) {
+            return false;
+        }
+        if (key == null) {
+            return false;
+        }
+        synchronized (this.monitor) {
+            processKey(key);
+            return true;
+        }
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    void close() {
+        try {
+            this.watchService.close();
+        } catch (IOException ignored) {
+            // nothing to be done
+        }
+    }
+
+    private WatchKey pollKey() {
+        try {
+            return this.watchService.poll();
+        } catch (ClosedWatchServiceException e) {
+            this.overflowed = true;
+            return null;
+        }
+    }
+
+    private void processKey(WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                this.overflowed = true;
+            } else {
+                this.changedNames.add(((Path) event.context()).toString());
+            }
+        }
+        if (!key.reset()) {
+            // the directory is no longer accessible
+            this.overflowed = true;
+        }
+    }
+}
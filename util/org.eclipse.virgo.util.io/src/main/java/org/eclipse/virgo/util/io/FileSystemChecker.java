@@ -13,6 +13,7 @@ package org.eclipse.virgo.util.io;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -20,7 +21,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
@@ -39,6 +42,14 @@ import org.slf4j.Logger;
  * 
  * By default, all files in the directory are monitored. Files can be excluded from monitoring using a regex pattern.
  * <p/>
+ * 
+ * By default, each check lists the whole directory. Alternatively, the directory can be watched using a
+ * {@link java.nio.file.WatchService WatchService}, in which case a check only examines the files which the watch service
+ * has reported as changed and the files which are still being monitored. The directory is still listed in full
+ * periodically, and whenever the watch service may have lost events, to reconcile the known state with the directory.
+ * The same events are published in either case. A watching <code>FileSystemChecker</code> should be {@link #close()
+ * closed} when it is no longer needed.
+ * <p/>
  * <strong>Concurrent Semantics</strong><br/>
  * Thread-safe.
  * 
@@ -59,6 +70,8 @@ public final class FileSystemChecker {
 
     private static final String BULK_MODE_VALUE = "bulk";
 
+    private static final long DEFAULT_RECONCILIATION_INTERVAL_MILLIS = 60000;
+
     private final AtomicBoolean isInitialEventsHandlingInitiatedOnce = new AtomicBoolean(false);
 
     /**
@@ -77,6 +90,20 @@ public final class FileSystemChecker {
 
     private final FilenameFilter includeFilter;
 
+    private final DirectoryWatcher directoryWatcher;
+
+    /**
+     * When the directory is being watched, <code>listing</code> holds the record key of each file in the directory by
+     * name, as at the last check.
+     */
+    private final Map<String, String> listing = new HashMap<String, String>(32);
+
+    private final long reconciliationIntervalMillis;
+
+    private long lastFullCheck;
+
+    private boolean fullCheckRequired = true;
+
     private static boolean WINDOWS = System.getProperty("os.name").startsWith("Windows");
 
     /**
@@ -119,9 +146,29 @@ public final class FileSystemChecker {
      * @param logger where to log diagnostics -- can be null
      */
     public FileSystemChecker(File checkDir, String excludePattern, Logger logger) {
+        this(checkDir, excludePattern, logger, false);
+    }
+
+    /**
+     * Creates a new <code>FileSystemChecker</code>. Identifies changes to on all files, except those that match
+     * <code>excludePattern</code>, optionally using a {@link java.nio.file.WatchService WatchService} to avoid listing
+     * the directory on every check. If the directory cannot be watched, it is listed on every check.
+     * 
+     * @param checkDir the directory to check -- {@link File} must exist and be a directory
+     * @param excludePattern regular expression for files to exclude.
+     * @param logger where to log diagnostics -- can be null
+     * @param watchDirectory <code>true</code> to watch the directory for changes, <code>false</code> to list it on every
+     *        check
+     */
+    public FileSystemChecker(File checkDir, String excludePattern, Logger logger, boolean watchDirectory) {
+        this(checkDir, excludePattern, logger, watchDirectory, DEFAULT_RECONCILIATION_INTERVAL_MILLIS);
+    }
+
+    FileSystemChecker(File checkDir, String excludePattern, Logger logger, boolean watchDirectory, long reconciliationIntervalMillis) {
         Assert.isTrue(checkDir.isDirectory(), "Check directory '%s' must exist and must be a directory.", checkDir.getAbsolutePath());
         this.checkDir = checkDir;
         this.logger = logger;
+        this.reconciliationIntervalMillis = reconciliationIntervalMillis;
 
         final Pattern compiledExcludePattern = excludePattern == null ? null : Pattern.compile(excludePattern);
 
@@ -133,7 +180,70 @@ public final class FileSystemChecker {
             }
         };
 
-        populateInitialState(); // no notifications made yet
+        // register before the initial listing so that no change goes unnoticed
+        this.directoryWatcher = watchDirectory ? createDirectoryWatcher() : null;
+
+        try {
+            populateInitialState(); // no notifications made yet
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private DirectoryWatcher createDirectoryWatcher() {
+        try {
+            return new DirectoryWatcher(this.checkDir);
+        } catch (IOException e) {
+            if (this.logger != null) {
+                this.logger.warn("Cannot watch directory '" + this.checkDir + "' for changes, it will be listed on every check", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stops watching the check directory, if it is being watched. Subsequent checks list the whole directory.
+     */
+    public void close() {
+        if (this.directoryWatcher != null) {
+            this.directoryWatcher.close();
+        }
+    }
+
+    /**
+     * Returns whether the check directory is being watched for changes, in which case {@link #awaitChange(long, TimeUnit)}
+     * blocks until a change is reported.
+     * 
+     * @return <code>true</code> if the check directory is being watched, <code>false</code> if it is listed on every check
+     */
+    public boolean isWatching() {
+        return this.directoryWatcher != null;
+    }
+
+    /**
+     * Waits for a change to be reported in the check directory, if it is being watched. If the directory is not being
+     * watched, returns <code>false</code> immediately.
+     * 
+     * @param timeout the maximum time to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return <code>true</code> if a change has been reported since the last check, <code>false</code> otherwise
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitChange(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.directoryWatcher != null && this.directoryWatcher.awaitChange(timeout, unit);
+    }
+
+    /**
+     * Returns whether any new or modified file is still being monitored until its size stabilises, and so will only be
+     * announced to listeners by a later check.
+     * 
+     * @return <code>true</code> if files are waiting to be announced, <code>false</code> otherwise
+     */
+    public boolean hasUnsettledFiles() {
+        synchronized (this.checkLock) {
+            return !this.monitorRecords.isEmpty();
+        }
     }
 
     /**
@@ -240,18 +350,33 @@ public final class FileSystemChecker {
         synchronized (this.checkLock) {
             try {
                 File[] currentFiles;
-                try {
-                    currentFiles = listCurrentDirFiles();
-                } catch (Exception e) {
-                    if (this.logger != null) {
-                        this.logger.warn("FileSystemChecker caught exception from listFiles()", e);
+                Set<String> currentFileKeys;
+                Set<String> changedNames = this.directoryWatcher == null ? null : this.directoryWatcher.drainChangedNames();
+                if (changedNames != null && !isFullCheckDue()) {
+                    // only files reported by the watcher, and files still being monitored, can have changed
+                    currentFiles = updateListing(changedNames);
+
+                    debugState("before incremental check:", currentFiles);
+
+                    currentFileKeys = new HashSet<String>(this.listing.values());
+                } else {
+                    this.fullCheckRequired = true;
+                    try {
+                        currentFiles = listCurrentDirFiles();
+                    } catch (Exception e) {
+                        if (this.logger != null) {
+                            this.logger.warn("FileSystemChecker caught exception from listFiles()", e);
+                        }
+                        throw e;
                     }
-                    throw e;
-                }
 
-                debugState("before check:", currentFiles);
+                    debugState("before check:", currentFiles);
 
-                Set<String> currentFileKeys = new HashSet<String>(currentFiles.length);
+                    currentFileKeys = new HashSet<String>(currentFiles.length);
+                    if (this.directoryWatcher != null) {
+                        resetListing(currentFiles);
+                    }
+                }
 
                 if (isInitialEventsBulkHandlingEnabled()) {
                     // optimize handling of initial events - do it only once
@@ -325,6 +450,55 @@ public final class FileSystemChecker {
         }
     }
 
+    private boolean isFullCheckDue() {
+        return this.fullCheckRequired || System.currentTimeMillis() - this.lastFullCheck >= this.reconciliationIntervalMillis;
+    }
+
+    /**
+     * Replaces the directory listing with the supplied {@link File Files}.
+     * 
+     * @param files the <code>Files</code> currently in the check directory
+     */
+    private void resetListing(File[] files) {
+        this.listing.clear();
+        for (File file : files) {
+            this.listing.put(file.getName(), key(file));
+        }
+        this.lastFullCheck = System.currentTimeMillis();
+        this.fullCheckRequired = false;
+    }
+
+    /**
+     * Updates the directory listing with the files of the given names and returns those files, together with the files
+     * being monitored, which are still in the check directory.
+     * 
+     * @param changedNames the names of the files reported as changed
+     * @return the <code>Files</code> to check, in name order
+     */
+    private File[] updateListing(Set<String> changedNames) {
+        Set<String> names = new TreeSet<String>();
+        for (String name : changedNames) {
+            if (this.includeFilter.accept(this.checkDir, name)) {
+                names.add(name);
+            }
+        }
+        for (String monitoredKey : this.monitorRecords.keySet()) {
+            names.add(new File(monitoredKey).getName());
+        }
+
+        List<File> files = new ArrayList<File>(names.size());
+        for (String name : names) {
+            File file = new File(this.checkDir, name);
+            if (file.exists()) {
+                this.listing.put(name, key(file));
+                files.add(file);
+            } else {
+                this.listing.remove(name);
+            }
+        }
+        return files.toArray(new File[files.size()]);
+    }
+
     public boolean isUnlocked(File file) {
         // Heuristic check for the file not being locked on Windows. On *ix, assume the file is unlocked since we can't
         // tell.
@@ -401,6 +575,9 @@ public final class FileSystemChecker {
             }
             throw e;
         }
+        if (this.directoryWatcher != null) {
+            resetListing(initialList);
+        }
         for (File file : initialList) {
             String keyFile = key(file);
             this.monitorRecords.put(keyFile, new MonitorRecord(file.length(), FileSystemEvent.INITIAL));
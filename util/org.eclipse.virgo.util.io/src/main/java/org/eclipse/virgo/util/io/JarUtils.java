@@ -11,7 +11,22 @@
 
 package org.eclipse.virgo.util.io;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.jar.JarFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Utility code for working with JAR files.<p/>
@@ -22,6 +37,28 @@ import java.io.IOException;
  */
 public final class JarUtils {
 
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+
+    private static final int MAXIMUM_COMMENT_LENGTH = 0xffff;
+
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+
+    private static final int ZIP64_MARKER = 0xffffffff;
+
+    private static final int ENCRYPTED_FLAG = 0x1;
+
+    private static final byte[] MANIFEST_NAME = JarFile.MANIFEST_NAME.getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_SIZE = 4096;
+
     /**
      * Unpacks the JAR file at {@link PathReference jarFile} to the directory <code>dest</code>.<p/>
      * 
@@ -57,4 +94,194 @@ public final class JarUtils {
     public static void unpackToDestructive(PathReference jarFile, PathReference dest) throws IOException {
         ZipUtils.unzipToDestructive(jarFile, dest);
     }
+
+    /**
+     * Reads the raw bytes of the manifest of the JAR file <code>jarFile</code>, without reading any other entry.<p/>
+     * 
+     * The manifest is located through the JAR file's central directory. Only the end of the file, holding the central
+     * directory and the end of central directory record, is memory-mapped; the manifest entry itself is read into, or
+     * inflated into, a heap buffer, so the returned buffer does not refer to the file. JAR files which cannot be read in
+     * this way, such as those in Zip64 format, are read using {@link ZipFile}.
+     * 
+     * @param jarFile the JAR file
+     * @return a read-only buffer of the manifest's bytes, or <code>null</code> if the JAR file has no manifest
+     * @throws IOException if the JAR file cannot be read
+     */
+    public static ByteBuffer readManifest(File jarFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(jarFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() >= END_OF_CENTRAL_DIRECTORY_LENGTH) {
+                ByteBuffer manifest = findManifest(channel);
+                if (manifest != null) {
+                    return manifest.remaining() == 0 ? null : manifest.asReadOnlyBuffer();
+                }
+            }
+        } finally {
+            file.close();
+        }
+        return readManifestFromZipFile(jarFile);
+    }
+
+    /**
+     * Returns the manifest's bytes, an empty buffer if the central directory has no manifest entry, or <code>null</code>
+     * if the central directory cannot be read.
+     */
+    private static ByteBuffer findManifest(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long tailOffset = Math.max(0, size - END_OF_CENTRAL_DIRECTORY_LENGTH - MAXIMUM_COMMENT_LENGTH);
+        ByteBuffer tail = channel.map(MapMode.READ_ONLY, tailOffset, size - tailOffset).order(ByteOrder.LITTLE_ENDIAN);
+        int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+        if (endOfCentralDirectory < 0) {
+            return null;
+        }
+        int entryCount = tail.getShort(endOfCentralDirectory + 10) & 0xffff;
+        long centralDirectorySize = tail.getInt(endOfCentralDirectory + 12) & 0xffffffffL;
+        long centralDirectoryOffset = tail.getInt(endOfCentralDirectory + 16) & 0xffffffffL;
+        if (centralDirectoryOffset == (ZIP64_MARKER & 0xffffffffL)
+            || centralDirectoryOffset + centralDirectorySize > tailOffset + endOfCentralDirectory) {
+            return null;
+        }
+
+        ByteBuffer directory = channel.map(MapMode.READ_ONLY, centralDirectoryOffset, centralDirectorySize).order(ByteOrder.LITTLE_ENDIAN);
+        int header = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (header + CENTRAL_DIRECTORY_HEADER_LENGTH > directory.limit() || directory.getInt(header) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                return null;
+            }
+            int nameLength = directory.getShort(header + 28) & 0xffff;
+            int extraLength = directory.getShort(header + 30) & 0xffff;
+            int commentLength = directory.getShort(header + 32) & 0xffff;
+            if (isManifestName(directory, header + CENTRAL_DIRECTORY_HEADER_LENGTH, nameLength)) {
+                int flags = directory.getShort(header + 8) & 0xffff;
+                int method = directory.getShort(header + 10) & 0xffff;
+                int compressedSize = directory.getInt(header + 20);
+                int uncompressedSize = directory.getInt(header + 24);
+                long localHeaderOffset = directory.getInt(header + 42) & 0xffffffffL;
+                if ((flags & ENCRYPTED_FLAG) != 0 || compressedSize < 0 || uncompressedSize < 0) {
+                    return null;
+                }
+                return readEntry(channel, localHeaderOffset, centralDirectoryOffset, method, compressedSize, uncompressedSize);
+            }
+            header += CENTRAL_DIRECTORY_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+        return ByteBuffer.allocate(0);
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isManifestName(ByteBuffer directory, int position, int length) {
+        if (length != MANIFEST_NAME.length || position + length > directory.limit()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = directory.get(position + i);
+            if (b != MANIFEST_NAME[i] && Character.toUpperCase((char) b) != MANIFEST_NAME[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the entry whose local header is at the given offset, which must end before the central directory.
+     */
+    private static ByteBuffer readEntry(FileChannel channel, long localHeaderOffset, long centralDirectoryOffset, int method,
+        int compressedSize, int uncompressedSize) throws IOException {
+        if (localHeaderOffset + LOCAL_HEADER_LENGTH > centralDirectoryOffset) {
+            return null;
+        }
+        ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, localHeader, localHeaderOffset) || localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            return null;
+        }
+        long dataOffset = localHeaderOffset + LOCAL_HEADER_LENGTH + (localHeader.getShort(26) & 0xffff) + (localHeader.getShort(28) & 0xffff);
+        if (dataOffset + compressedSize > centralDirectoryOffset) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(compressedSize);
+        if (!readFully(channel, data, dataOffset)) {
+            return null;
+        }
+        if (method == ZipEntry.STORED) {
+            return data;
+        } else if (method == ZipEntry.DEFLATED) {
+            return inflate(data.array(), uncompressedSize);
+        }
+        return null;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private static ByteBuffer inflate(byte[] input, int uncompressedSize) throws IOException {
+        byte[] output = new byte[uncompressedSize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int inflated = 0;
+            while (inflated < output.length && !inflater.finished()) {
+                int count = inflater.inflate(output, inflated, output.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != output.length) {
+                throw new IOException("Manifest entry is truncated");
+            }
+            return ByteBuffer.wrap(output);
+        } catch (DataFormatException e) {
+            throw new IOException("Manifest entry is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer readManifestFromZipFile(File jarFile) throws IOException {
+        ZipFile zipFile = new ZipFile(jarFile);
+        try {
+            ZipEntry manifestEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+            if (manifestEntry == null) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements() && manifestEntry == null) {
+                    ZipEntry entry = entries.nextElement();
+                    if (JarFile.MANIFEST_NAME.equalsIgnoreCase(entry.getName())) {
+                        manifestEntry = entry;
+                    }
+                }
+            }
+            if (manifestEntry == null) {
+                return null;
+            }
+            InputStream input = zipFile.getInputStream(manifestEntry);
+            try {
+                ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+                return ByteBuffer.wrap(output.toByteArray()).asReadOnlyBuffer();
+            } finally {
+                input.close();
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
 }
@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of checksummed records.
+ * <p />
+ * A journal starts with a header consisting of a magic number, a version number and a fixed length of caller-defined
+ * header data, which a caller may use to identify the state to which the journal applies. The header is followed by
+ * records, each of which is a payload length, a CRC-32 checksum of the payload, and the payload.
+ * <p />
+ * A record whose write was interrupted, or which is corrupt, ends the journal: it and anything after it are ignored
+ * when the journal is replayed and are truncated before the next record is appended. The journal tracks the length up
+ * to its last completely written record, so a failed append is also truncated, rather than left in front of the
+ * records appended after it.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ *
+ * This class is <strong>not</strong> thread safe.
+ *
+ */
+public final class RecordJournal implements Closeable {
+
+    private static final int MAGIC = 0x0056524A;
+
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    private static final int COMPACTION_MINIMUM_RECORDS = 64;
+
+    private final File file;
+
+    private final int version;
+
+    private final int headerLength;
+
+    private final int maxPayloadLength;
+
+    /**
+     * The length of the journal up to the end of its last completely written record, or <code>-1</code> if the journal
+     * has not been started.
+     */
+    private long committedLength = -1;
+
+    private int recordCount;
+
+    private FileChannel channel;
+
+    /**
+     * Receives the payloads of a journal's records as it is replayed.
+     */
+    public interface RecordHandler {
+
+        /**
+         * Handles the given payload.
+         *
+         * @param payload the payload of a record
+         * @return <code>false</code> if the payload is not valid, which ends the journal
+         */
+        boolean handle(byte[] payload);
+    }
+
+    /**
+     * Creates a journal for the given file. The file is not read or written until the journal is replayed or started.
+     *
+     * @param file the journal file
+     * @param version the version of the format of the records
+     * @param headerDataLength the length of the caller-defined header data
+     * @param maxPayloadLength the maximum length of a record's payload
+     */
+    public RecordJournal(File file, int version, int headerDataLength, int maxPayloadLength) {
+        this.file = file;
+        this.version = version;
+        this.headerLength = 8 + headerDataLength;
+        this.maxPayloadLength = maxPayloadLength;
+    }
+
+    /**
+     * Replays the records of the journal file, if it has the given header data, passing their payloads to the given
+     * handler in order. Afterwards, records are appended after the last valid record.
+     *
+     * @param headerData the header data that the journal must have
+     * @param handler the handler for the records
+     * @return the number of bytes after the last valid record, which are truncated before the next record is appended,
+     *         or <code>-1</code> if the journal file is missing or has a different header and so must be started
+     *         afresh
+     * @throws IOException if the journal file cannot be read
+     */
+    public long replay(byte[] headerData, RecordHandler handler) throws IOException {
+        closeChannel();
+        this.committedLength = -1;
+        this.recordCount = 0;
+        long fileLength = this.file.length();
+        if (fileLength < this.headerLength) {
+            return -1;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+        try {
+            byte[] actualHeaderData = new byte[this.headerLength - 8];
+            if (input.readInt() != MAGIC || input.readInt() != this.version) {
+                return -1;
+            }
+            input.readFully(actualHeaderData);
+            if (!Arrays.equals(actualHeaderData, headerData)) {
+                return -1;
+            }
+            long validLength = this.headerLength;
+            int validRecords = 0;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int payloadLength = input.readInt();
+                    int checksum = input.readInt();
+                    if (payloadLength < 1 || payloadLength > this.maxPayloadLength) {
+                        break;
+                    }
+                    payload = new byte[payloadLength];
+                    input.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // the last record is incomplete
+                    break;
+                }
+                if (!handler.handle(payload)) {
+                    break;
+                }
+                validRecords++;
+                validLength += RECORD_HEADER_LENGTH + payload.length;
+            }
+            this.committedLength = validLength;
+            this.recordCount = validRecords;
+            return fileLength - validLength;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Starts the journal afresh with the given header data, discarding any existing records.
+     *
+     * @param headerData the header data
+     * @throws IOException if the journal file cannot be written
+     */
+    public void start(byte[] headerData) throws IOException {
+        closeChannel();
+        this.committedLength = -1;
+        this.recordCount = 0;
+        File parent = this.file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        FileChannel journal = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(journal, header(headerData));
+            journal.force(false);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(journal);
+            throw e;
+        }
+        this.channel = journal;
+        this.committedLength = this.headerLength;
+    }
+
+    /**
+     * Truncates anything after the last valid record of the replayed journal now, rather than before the next record is
+     * appended.
+     *
+     * @throws IOException if the journal file cannot be truncated
+     */
+    public void truncate() throws IOException {
+        if (this.committedLength < 0) {
+            throw new IllegalStateException("Journal '" + this.file + "' has not been started");
+        }
+        FileChannel journal = getChannel();
+        if (journal.size() > this.committedLength) {
+            journal.truncate(this.committedLength);
+        }
+        journal.force(false);
+    }
+
+    /**
+     * @return <code>true</code> if the journal has been started or successfully replayed, and so records may be
+     *         appended
+     */
+    public boolean isStarted() {
+        return this.committedLength >= 0;
+    }
+
+    /**
+     * Appends records with the given payloads to the journal, with a single write, and forces them to disk. If the
+     * append fails, the journal is truncated to its previous length, or, if that is not possible, is truncated before
+     * the next append.
+     *
+     * @param payloads the payloads of the records
+     * @throws IOException if the records cannot be written
+     */
+    public void append(List<byte[]> payloads) throws IOException {
+        if (this.committedLength < 0) {
+            throw new IllegalStateException("Journal '" + this.file + "' has not been started");
+        }
+        ByteBuffer records = encode(payloads);
+        try {
+            FileChannel journal = getChannel();
+            journal.position(this.committedLength);
+            int length = records.remaining();
+            writeFully(journal, records);
+            journal.force(false);
+            this.committedLength += length;
+            this.recordCount += payloads.size();
+        } catch (IOException e) {
+            discardUncommitted();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of records in the journal
+     */
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Returns whether the journal has grown enough to be worth compacting: it holds a minimum number of records and
+     * more than the given number of records.
+     *
+     * @param recordThreshold the number of records above which the journal should be compacted
+     * @return <code>true</code> if the journal should be compacted
+     */
+    public boolean isCompactionDue(int recordThreshold) {
+        return this.recordCount >= COMPACTION_MINIMUM_RECORDS && this.recordCount > recordThreshold;
+    }
+
+    /**
+     * Replaces the journal with one holding only records with the given payloads. The new journal is written to the
+     * given temporary file and forced to disk, and then moved into place, so that a crash leaves either the old journal
+     * or the new one.
+     *
+     * @param temporaryFile the file to which to write the new journal
+     * @param headerData the header data of the new journal
+     * @param payloads the payloads of the records
+     * @throws IOException if the new journal cannot be written or moved into place
+     */
+    public void rewrite(File temporaryFile, byte[] headerData, List<byte[]> payloads) throws IOException {
+        FileChannel journal = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(journal, header(headerData));
+            writeFully(journal, encode(payloads));
+            journal.force(true);
+        } finally {
+            IOUtils.closeQuietly(journal);
+        }
+        closeChannel();
+        moveAtomically(temporaryFile, this.file);
+        this.committedLength = this.file.length();
+        this.recordCount = payloads.size();
+    }
+
+    /**
+     * Closes the journal file and deletes it. The journal must be started before further records are appended.
+     *
+     * @return <code>true</code> if the journal file no longer exists
+     */
+    public boolean delete() {
+        closeChannel();
+        this.committedLength = -1;
+        this.recordCount = 0;
+        return !this.file.exists() || this.file.delete();
+    }
+
+    /**
+     * Moves the journal file, if there is one, to the given file and returns a journal of that file in the same state as
+     * this journal, so that records may be appended to it without it being replayed. This journal must not be used
+     * afterwards.
+     *
+     * @param target the file to move the journal file to
+     * @return the journal of the given file
+     * @throws IOException if the journal file cannot be moved
+     */
+    public RecordJournal moveTo(File target) throws IOException {
+        closeChannel();
+        if (this.file.exists()) {
+            moveAtomically(this.file, target);
+        }
+        RecordJournal moved = new RecordJournal(target, this.version, this.headerLength - 8, this.maxPayloadLength);
+        moved.committedLength = this.committedLength;
+        moved.recordCount = this.recordCount;
+        return moved;
+    }
+
+    /**
+     * Closes the journal file. It is reopened if further records are appended.
+     */
+    public void close() {
+        closeChannel();
+    }
+
+    /**
+     * Moves the given source file to the given target, replacing the target, atomically if the file system supports
+     * it.
+     *
+     * @param source the file to move
+     * @param target the file to replace
+     * @throws IOException if the file cannot be moved
+     */
+    public static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (this.channel == null) {
+            FileChannel journal = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE);
+            try {
+                if (journal.size() > this.committedLength) {
+                    // discard a record left incomplete by a crash or a failed append
+                    journal.truncate(this.committedLength);
+                }
+            } catch (IOException e) {
+                IOUtils.closeQuietly(journal);
+                throw e;
+            }
+            this.channel = journal;
+        }
+        return this.channel;
+    }
+
+    private void discardUncommitted() {
+        if (this.channel != null) {
+            try {
+                this.channel.truncate(this.committedLength);
+            } catch (IOException e) {
+                // the journal is truncated when it is reopened
+            }
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        IOUtils.closeQuietly(this.channel);
+        this.channel = null;
+    }
+
+    private ByteBuffer header(byte[] headerData) {
+        if (headerData.length != this.headerLength - 8) {
+            throw new IllegalArgumentException("Journal header data must be " + (this.headerLength - 8) + " bytes long");
+        }
+        ByteBuffer header = ByteBuffer.allocate(this.headerLength);
+        header.putInt(MAGIC).putInt(this.version).put(headerData);
+        header.flip();
+        return header;
+    }
+
+    private ByteBuffer encode(List<byte[]> payloads) {
+        int length = 0;
+        for (byte[] payload : payloads) {
+            if (payload.length < 1 || payload.length > this.maxPayloadLength) {
+                throw new IllegalArgumentException("Journal record payload of " + payload.length + " bytes is not between 1 and "
+                    + this.maxPayloadLength + " bytes long");
+            }
+            length += RECORD_HEADER_LENGTH + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        CRC32 crc = new CRC32();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
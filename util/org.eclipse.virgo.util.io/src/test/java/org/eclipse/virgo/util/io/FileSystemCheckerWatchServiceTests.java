@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 VMware Inc. and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a {@link FileSystemChecker} which watches its directory publishes the same events as one which lists its
+ * directory on every check.
+ */
+public class FileSystemCheckerWatchServiceTests {
+
+    private static final long LONG_RECONCILIATION_INTERVAL = 3600000;
+
+    private final File pollDir = new File("build", "work-poll");
+
+    private final File watchDir = new File("build", "work-watch");
+
+    private FileSystemChecker pollChecker;
+
+    private FileSystemChecker watchChecker;
+
+    private final RecordingListener pollListener = new RecordingListener();
+
+    private final RecordingListener watchListener = new RecordingListener();
+
+    @Before
+    public void createDirs() {
+        for (File dir : new File[] { this.pollDir, this.watchDir }) {
+            if (dir.exists()) {
+                FileSystemUtils.deleteRecursively(dir);
+            }
+            dir.mkdirs();
+        }
+    }
+
+    @After
+    public void deleteDirs() {
+        if (this.watchChecker != null) {
+            this.watchChecker.close();
+        }
+        FileSystemUtils.deleteRecursively(this.pollDir);
+        FileSystemUtils.deleteRecursively(this.watchDir);
+    }
+
+    @Test
+    public void createModifyDelete() throws Exception {
+        createCheckers(LONG_RECONCILIATION_INTERVAL);
+
+        write("a.jar", 10, 1000);
+        checkBoth(true);
+        write("a.jar", 20, 1000); // still growing
+        checkBoth(true);
+        checkBoth(false); // stable
+        checkBoth(false);
+        write("a.jar", 20, 5000); // touched
+        checkBoth(true);
+        checkBoth(false);
+        write("b.jar", 5, 1000);
+        delete("a.jar");
+        checkBoth(true);
+        checkBoth(false);
+        delete("b.jar");
+        checkBoth(true);
+
+        assertEquals(Arrays.asList("[]", "[]", "[CREATED a.jar]", "[]", "[]", "[MODIFIED a.jar]", "[DELETED a.jar]", "[CREATED b.jar]",
+            "[DELETED b.jar]"), this.watchListener.getChecks());
+    }
+
+    @Test
+    public void initialFiles() throws Exception {
+        write("a.jar", 10, 1000);
+        write("b.jar", 10, 1000);
+        createCheckers(LONG_RECONCILIATION_INTERVAL);
+
+        checkBoth(false);
+        checkBoth(false);
+
+        assertEquals(Arrays.asList("[INITIAL a.jar, INITIAL b.jar]", "[]"), this.watchListener.getChecks());
+    }
+
+    @Test
+    public void excludedFiles() throws Exception {
+        createCheckers(LONG_RECONCILIATION_INTERVAL);
+
+        write("a.jar", 10, 1000);
+        write(".a.jar.swp", 10, 1000);
+        checkBoth(true);
+        checkBoth(false);
+
+        assertEquals(Arrays.asList("[]", "[CREATED a.jar]"), this.watchListener.getChecks());
+    }
+
+    @Test
+    public void reconciliationDetectsSubdirectoryChanges() throws Exception {
+        for (File dir : new File[] { this.pollDir, this.watchDir }) {
+            File app = new File(dir, "app");
+            app.mkdir();
+            app.setLastModified(1000);
+        }
+        createCheckers(0);
+        checkBoth(false);
+
+        // changes within a subdirectory are not reported by the watch service
+        write("app/content.txt", 10, 1000);
+        checkBoth(false);
+        checkBoth(false);
+
+        assertEquals(Arrays.asList("[INITIAL app]", "[]", "[MODIFIED app]"), this.watchListener.getChecks());
+    }
+
+    @Test
+    public void closedCheckerListsDirectory() throws Exception {
+        createCheckers(LONG_RECONCILIATION_INTERVAL);
+        this.watchChecker.close();
+
+        write("a.jar", 10, 1000);
+        checkBoth(false);
+        checkBoth(false);
+
+        assertEquals(Arrays.asList("[]", "[CREATED a.jar]"), this.watchListener.getChecks());
+    }
+
+    private void createCheckers(long reconciliationIntervalMillis) {
+        this.pollChecker = new FileSystemChecker(this.pollDir, ".*\\.swp", null);
+        this.pollChecker.addListener(this.pollListener);
+        this.watchChecker = new FileSystemChecker(this.watchDir, ".*\\.swp", null, true, reconciliationIntervalMillis);
+        this.watchChecker.addListener(this.watchListener);
+    }
+
+    private void checkBoth(boolean changed) throws InterruptedException {
+        if (changed) {
+            this.watchChecker.awaitChange(5, TimeUnit.SECONDS);
+        }
+        this.pollChecker.check();
+        this.pollListener.endCheck();
+        this.watchChecker.check();
+        this.watchListener.endCheck();
+        assertEquals(this.pollListener.getChecks(), this.watchListener.getChecks());
+    }
+
+    private void write(String name, int size, long lastModified) throws IOException {
+        for (File dir : new File[] { this.pollDir, this.watchDir }) {
+            File file = new File(dir, name);
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[size]);
+            } finally {
+                out.close();
+            }
+            file.setLastModified(lastModified);
+        }
+    }
+
+    private void delete(String name) {
+        new File(this.pollDir, name).delete();
+        new File(this.watchDir, name).delete();
+    }
+
+    private static final class RecordingListener implements FileSystemListener {
+
+        private final List<String> checks = new ArrayList<String>();
+
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void onChange(String file, FileSystemEvent event) {
+            this.events.add(event + " " + new File(file).getName());
+        }
+
+        @Override
+        public void onInitialEvent(List<String> paths) {
+            for (String path : paths) {
+                this.events.add(FileSystemEvent.INITIAL + " " + new File(path).getName());
+            }
+        }
+
+        void endCheck() {
+            Collections.sort(this.events);
+            this.checks.add(this.events.toString());
+            this.events.clear();
+        }
+
+        List<String> getChecks() {
+            return this.checks;
+        }
+    }
+}
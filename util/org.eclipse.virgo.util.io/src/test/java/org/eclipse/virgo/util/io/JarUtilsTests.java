@@ -13,12 +13,24 @@ package org.eclipse.virgo.util.io;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -47,4 +59,54 @@ public class JarUtilsTests {
             }
         }
     }
+
+    @Test
+    public void testReadManifest() throws Exception {
+        for (String jar : new String[] { "src/test/resources/jars/dummy.jar", "src/test/resources/jars/test.jar",
+            "src/test/resources/simple-manifest-only.jar" }) {
+            assertEquals(jar, ByteBuffer.wrap(readManifestFromZipFile(new File(jar))), JarUtils.readManifest(new File(jar)));
+        }
+    }
+
+    @Test
+    public void testReadStoredManifest() throws Exception {
+        File jar = new File("build/stored-manifest.jar");
+        byte[] manifest = "Manifest-Version: 1.0\nBundle-SymbolicName: stored\n".getBytes(UTF_8);
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+            ZipEntry entry = new ZipEntry("META-INF/manifest.mf");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(manifest.length);
+            CRC32 crc = new CRC32();
+            crc.update(manifest);
+            entry.setCrc(crc.getValue());
+            output.putNextEntry(entry);
+            output.write(manifest);
+            output.closeEntry();
+            output.setComment("a comment after the central directory");
+        }
+        ByteBuffer readManifest = JarUtils.readManifest(jar);
+        assertEquals(ByteBuffer.wrap(manifest), readManifest);
+        assertTrue(readManifest.isReadOnly());
+        // copied out of the file rather than a view of a mapping of it
+        assertFalse(readManifest.isDirect());
+    }
+
+    @Test
+    public void testReadMissingManifest() throws Exception {
+        assertNull(JarUtils.readManifest(new File("src/test/resources/jars/no-manifest.jar")));
+    }
+
+    private static byte[] readManifestFromZipFile(File jar) throws Exception {
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream input = zipFile.getInputStream(zipFile.getEntry(JarFile.MANIFEST_NAME))) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+            return output.toByteArray();
+        }
+    }
 }
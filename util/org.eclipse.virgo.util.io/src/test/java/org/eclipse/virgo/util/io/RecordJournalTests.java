@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.virgo.util.io.RecordJournal.RecordHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordJournalTests {
+
+    private static final byte[] HEADER_DATA = { 1, 2, 3, 4 };
+
+    private final File journalDir = new File("build/recordJournal");
+
+    private final File journalFile = new File(this.journalDir, "journal");
+
+    @Before
+    @After
+    public void clearJournalDir() {
+        FileSystemUtils.deleteRecursively(this.journalDir);
+    }
+
+    @Test
+    public void recordsAreReplayed() throws IOException {
+        RecordJournal journal = createJournal();
+        journal.start(HEADER_DATA);
+        journal.append(payloads("one", "two"));
+        journal.append(payloads("three"));
+        journal.close();
+
+        assertEquals(Arrays.asList("one", "two", "three"), replay(createJournal(), HEADER_DATA, 0));
+    }
+
+    @Test
+    public void journalWithDifferentHeaderDataIsNotReplayed() throws IOException {
+        RecordJournal journal = createJournal();
+        journal.start(HEADER_DATA);
+        journal.append(payloads("one"));
+        journal.close();
+
+        journal = createJournal();
+        assertEquals(-1, journal.replay(new byte[] { 4, 3, 2, 1 }, new CollectingHandler()));
+        assertFalse(journal.isStarted());
+    }
+
+    @Test
+    public void partialWriteIsTruncatedBeforeFurtherRecords() throws IOException {
+        RecordJournal journal = createJournal();
+        journal.start(HEADER_DATA);
+        journal.append(payloads("one"));
+        long committedLength = this.journalFile.length();
+        journal.close();
+
+        // a record whose write failed part way through
+        FileOutputStream out = new FileOutputStream(this.journalFile, true);
+        try {
+            out.write(new byte[] { 0, 0, 0, 20, 1, 2 });
+        } finally {
+            out.close();
+        }
+
+        journal.append(payloads("two"));
+        journal.append(payloads("three"));
+        journal.close();
+
+        assertTrue(this.journalFile.length() > committedLength);
+        assertEquals(Arrays.asList("one", "two", "three"), replay(createJournal(), HEADER_DATA, 0));
+    }
+
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        RecordJournal journal = createJournal();
+        journal.start(HEADER_DATA);
+        journal.append(payloads("one"));
+        long completeLength = this.journalFile.length();
+        journal.append(payloads("two"));
+        journal.close();
+
+        RandomAccessFile file = new RandomAccessFile(this.journalFile, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        journal = createJournal();
+        // the record header and all but the last byte of "two"
+        assertEquals(Arrays.asList("one"), replay(journal, HEADER_DATA, 8 + 2));
+        journal.truncate();
+        assertEquals(completeLength, this.journalFile.length());
+
+        journal.append(payloads("three"));
+        journal.close();
+        assertEquals(Arrays.asList("one", "three"), replay(createJournal(), HEADER_DATA, 0));
+    }
+
+    @Test
+    public void rewriteReplacesRecords() throws IOException {
+        RecordJournal journal = createJournal();
+        journal.start(HEADER_DATA);
+        for (int i = 0; i < 100; i++) {
+            journal.append(payloads("record"));
+        }
+        assertTrue(journal.isCompactionDue(50));
+        assertFalse(journal.isCompactionDue(100));
+
+        File temporaryFile = new File(this.journalDir, "journal.tmp");
+        journal.rewrite(temporaryFile, HEADER_DATA, payloads("record"));
+        assertFalse(temporaryFile.exists());
+        assertEquals(1, journal.getRecordCount());
+        assertFalse(journal.isCompactionDue(0));
+
+        journal.append(payloads("another"));
+        journal.close();
+        assertEquals(Arrays.asList("record", "another"), replay(createJournal(), HEADER_DATA, 0));
+    }
+
+    private RecordJournal createJournal() {
+        return new RecordJournal(this.journalFile, 1, HEADER_DATA.length, 1024);
+    }
+
+    private static List<String> replay(RecordJournal journal, byte[] headerData, long expectedDiscardedLength) throws IOException {
+        CollectingHandler handler = new CollectingHandler();
+        assertEquals(expectedDiscardedLength, journal.replay(headerData, handler));
+        assertTrue(journal.isStarted());
+        return handler.records;
+    }
+
+    private static List<byte[]> payloads(String... records) {
+        List<byte[]> payloads = new ArrayList<byte[]>();
+        for (String record : records) {
+            payloads.add(record.getBytes());
+        }
+        return payloads;
+    }
+
+    private static final class CollectingHandler implements RecordHandler {
+
+        private final List<String> records = new ArrayList<String>();
+
+        public boolean handle(byte[] payload) {
+            this.records.add(new String(payload));
+            return true;
+        }
+    }
+}
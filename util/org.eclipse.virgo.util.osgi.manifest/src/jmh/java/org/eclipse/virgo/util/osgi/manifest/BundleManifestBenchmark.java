@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.virgo.util.osgi.manifest.internal.ReadOnlyBundleManifest;
+import org.eclipse.virgo.util.osgi.manifest.parse.DummyParserLogger;
+import org.eclipse.virgo.util.parser.manifest.FastManifestParser;
+import org.eclipse.virgo.util.parser.manifest.ManifestContents;
+import org.eclipse.virgo.util.parser.manifest.RecoveringManifestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the creation of {@link BundleManifest BundleManifests} from the real-world corpus and their use by an
+ * artifact bridge. Every manifest type is created from the same input by the same manifest parser, so the manifest
+ * types differ only in how they hold and parse headers:
+ * <ul>
+ * <li><code>eager</code> parses all of its structured headers when it is created, as manifests did before headers were
+ * parsed lazily, and is the baseline for the other types;</li>
+ * <li><code>standard</code> parses each structured header when it is first accessed;</li>
+ * <li><code>readOnly</code> also interns its header names and cannot be changed.</li>
+ * </ul>
+ * The manifest parser is a separate parameter, measured on its own by {@link ManifestParserBenchmark}.
+ * <p />
+ * Run with <code>gradlew :util:org.eclipse.virgo.util.osgi.manifest:jmh -PjmhArgs="BundleManifestBenchmark -prof gc"</code>
+ * to measure the memory allocated for each manifest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleManifestBenchmark {
+
+    @Param({ "eager", "standard", "readOnly" })
+    private String manifestType;
+
+    @Param({ "recovering", "bytes" })
+    private String parser;
+
+    private List<byte[]> manifests;
+
+    private List<BundleManifest> bundleManifests;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.manifests = ManifestCorpus.realWorldManifests();
+        this.manifests.add(ManifestCorpus.largeManifest());
+        this.bundleManifests = new ArrayList<BundleManifest>();
+        for (byte[] manifest : this.manifests) {
+            this.bundleManifests.add(createBundleManifest(manifest));
+        }
+    }
+
+    @Benchmark
+    public void create(Blackhole blackhole) throws IOException {
+        for (byte[] manifest : this.manifests) {
+            blackhole.consume(createBundleManifest(manifest));
+        }
+    }
+
+    /**
+     * Creates each manifest and reads the headers from which a bundle's artifact descriptor is built.
+     */
+    @Benchmark
+    public void createAndDescribe(Blackhole blackhole) throws IOException {
+        for (byte[] manifest : this.manifests) {
+            BundleManifest bundleManifest = createBundleManifest(manifest);
+            blackhole.consume(bundleManifest.getBundleSymbolicName().getSymbolicName());
+            blackhole.consume(bundleManifest.getBundleVersion());
+            for (ExportedPackage exportedPackage : bundleManifest.getExportPackage().getExportedPackages()) {
+                blackhole.consume(exportedPackage.getPackageName());
+                blackhole.consume(exportedPackage.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Reads every header of each manifest's dictionary. Every manifest type returns a copy of its headers, with its
+     * structured headers normalised.
+     */
+    @Benchmark
+    public void toDictionary(Blackhole blackhole) {
+        for (BundleManifest bundleManifest : this.bundleManifests) {
+            Dictionary<String, String> dictionary = bundleManifest.toDictionary();
+            Enumeration<String> values = dictionary.elements();
+            while (values.hasMoreElements()) {
+                blackhole.consume(values.nextElement());
+            }
+        }
+    }
+
+    private BundleManifest createBundleManifest(byte[] manifest) throws IOException {
+        ManifestContents contents = parse(manifest);
+        if ("readOnly".equals(this.manifestType)) {
+            return new ReadOnlyBundleManifest(new DummyParserLogger(), contents.getMainAttributes());
+        }
+        BundleManifest bundleManifest = BundleManifestFactory.createBundleManifest(contents, new DummyParserLogger());
+        if ("eager".equals(this.manifestType)) {
+            bundleManifest.getBundleActivationPolicy();
+            bundleManifest.getBundleSymbolicName();
+            bundleManifest.getDynamicImportPackage();
+            bundleManifest.getExportPackage();
+            bundleManifest.getFragmentHost();
+            bundleManifest.getImportBundle();
+            bundleManifest.getImportLibrary();
+            bundleManifest.getImportPackage();
+            bundleManifest.getRequireBundle();
+        }
+        return bundleManifest;
+    }
+
+    private ManifestContents parse(byte[] manifest) throws IOException {
+        if ("recovering".equals(this.parser)) {
+            RecoveringManifestParser recoveringParser = new RecoveringManifestParser();
+            recoveringParser.setTerminateAfterMainSection(true);
+            return recoveringParser.parse(new InputStreamReader(new ByteArrayInputStream(manifest), UTF_8));
+        }
+        FastManifestParser fastParser = new FastManifestParser();
+        fastParser.setTerminateAfterMainSection(true);
+        return fastParser.parse(ByteBuffer.wrap(manifest));
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.virgo.util.osgi.manifest.parse.DummyParserLogger;
+import org.eclipse.virgo.util.osgi.manifest.parse.HeaderDeclaration;
+import org.eclipse.virgo.util.osgi.manifest.parse.HeaderParser;
+import org.eclipse.virgo.util.osgi.manifest.parse.HeaderParserFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing of the headers of the large synthetic manifest: an Export-Package header of 200 packages with
+ * <code>uses</code> directives, an Import-Package header of 200 packages, and Import-Library and Import-Bundle headers.
+ * <p />
+ * Run with <code>gradlew :util:org.eclipse.virgo.util.osgi.manifest:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderParserBenchmark {
+
+    private static final String EXPORT_PACKAGE = ManifestCorpus.exportPackage();
+
+    private static final String IMPORT_PACKAGE = ManifestCorpus.importPackage();
+
+    private static final String IMPORT_LIBRARY = ManifestCorpus.importLibrary();
+
+    private static final String IMPORT_BUNDLE = ManifestCorpus.importBundle();
+
+    @Benchmark
+    public List<HeaderDeclaration> parseExportPackageWithUses() {
+        return newHeaderParser().parsePackageHeader(EXPORT_PACKAGE, "Export-Package");
+    }
+
+    @Benchmark
+    public List<HeaderDeclaration> parseImportPackage() {
+        return newHeaderParser().parsePackageHeader(IMPORT_PACKAGE, "Import-Package");
+    }
+
+    @Benchmark
+    public List<HeaderDeclaration> parseImportLibrary() {
+        return newHeaderParser().parseImportLibraryHeader(IMPORT_LIBRARY);
+    }
+
+    @Benchmark
+    public List<HeaderDeclaration> parseImportBundle() {
+        return newHeaderParser().parseImportBundleHeader(IMPORT_BUNDLE);
+    }
+
+    private static HeaderParser newHeaderParser() {
+        return HeaderParserFactory.newHeaderParser(new DummyParserLogger());
+    }
+}
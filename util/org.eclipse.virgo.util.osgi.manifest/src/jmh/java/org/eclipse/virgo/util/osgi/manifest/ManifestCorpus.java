@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The manifests parsed by the benchmarks: a corpus of real-world manifests, and a large synthetic manifest with the
+ * headers which are most expensive to parse.
+ * <p />
+ *
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe.
+ *
+ */
+final class ManifestCorpus {
+
+    private static final String CORPUS = "/manifests.zip";
+
+    private static final int PACKAGE_COUNT = 200;
+
+    private static final int USES_COUNT = 12;
+
+    private static final int LIBRARY_COUNT = 10;
+
+    private static final int BUNDLE_COUNT = 30;
+
+    private ManifestCorpus() {
+    }
+
+    /**
+     * Returns the manifests of the real-world corpus, as they are stored in their JAR files.
+     */
+    static List<byte[]> realWorldManifests() throws IOException {
+        List<byte[]> manifests = new ArrayList<byte[]>();
+        InputStream input = ManifestCorpus.class.getResourceAsStream(CORPUS);
+        if (input == null) {
+            throw new IOException("Manifest corpus '" + CORPUS + "' not found");
+        }
+        ZipInputStream zip = new ZipInputStream(input);
+        try {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    manifests.add(read(zip));
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        return manifests;
+    }
+
+    /**
+     * Returns a manifest whose Export-Package header has {@value #PACKAGE_COUNT} packages, each with a
+     * <code>uses</code> directive, and which imports packages, libraries and bundles.
+     */
+    static byte[] largeManifest() {
+        StringBuilder manifest = new StringBuilder();
+        appendHeader(manifest, "Manifest-Version", "1.0");
+        appendHeader(manifest, "Bundle-ManifestVersion", "2");
+        appendHeader(manifest, "Bundle-SymbolicName", "org.example.large;singleton:=true");
+        appendHeader(manifest, "Bundle-Version", "2.5.1.RELEASE");
+        appendHeader(manifest, "Export-Package", exportPackage());
+        appendHeader(manifest, "Import-Package", importPackage());
+        appendHeader(manifest, "Import-Library", importLibrary());
+        appendHeader(manifest, "Import-Bundle", importBundle());
+        return manifest.toString().getBytes(UTF_8);
+    }
+
+    static String exportPackage() {
+        StringBuilder header = new StringBuilder();
+        for (int p = 0; p < PACKAGE_COUNT; p++) {
+            if (p > 0) {
+                header.append(',');
+            }
+            header.append(exportedPackageName(p)).append(";version=\"2.5.1.RELEASE\";uses:=\"");
+            for (int u = 1; u <= USES_COUNT; u++) {
+                if (u > 1) {
+                    header.append(',');
+                }
+                header.append(u % 3 == 0 ? importedPackageName((p + u) % PACKAGE_COUNT) : exportedPackageName((p + u) % PACKAGE_COUNT));
+            }
+            header.append('"');
+        }
+        return header.toString();
+    }
+
+    static String importPackage() {
+        StringBuilder header = new StringBuilder();
+        for (int p = 0; p < PACKAGE_COUNT; p++) {
+            if (p > 0) {
+                header.append(',');
+            }
+            header.append(importedPackageName(p)).append(";version=\"[1.").append(p % 10).append(".0,2.0.0)\"");
+            if (p % 4 == 0) {
+                header.append(";resolution:=optional");
+            }
+        }
+        return header.toString();
+    }
+
+    static String importLibrary() {
+        StringBuilder header = new StringBuilder();
+        for (int l = 0; l < LIBRARY_COUNT; l++) {
+            if (l > 0) {
+                header.append(',');
+            }
+            header.append("org.example.library").append(l).append(";version=\"[").append(l).append(".0.0,").append(l + 1).append(".0.0)\"");
+        }
+        return header.toString();
+    }
+
+    static String importBundle() {
+        StringBuilder header = new StringBuilder();
+        for (int b = 0; b < BUNDLE_COUNT; b++) {
+            if (b > 0) {
+                header.append(',');
+            }
+            header.append("org.example.bundle").append(b).append(";version=\"[2.5.0,3.0.0)\"");
+            if (b % 5 == 0) {
+                header.append(";import-scope:=application");
+            }
+        }
+        return header.toString();
+    }
+
+    private static String exportedPackageName(int p) {
+        return "org.example.large.module" + (p / 20) + ".package" + p;
+    }
+
+    private static String importedPackageName(int p) {
+        return "org.example.dependency" + (p % 25) + ".package" + p;
+    }
+
+    /**
+     * Appends a header, folding it at 72 bytes as a JAR tool would.
+     */
+    private static void appendHeader(StringBuilder manifest, String name, String value) {
+        String line = name + ": " + value;
+        manifest.append(line, 0, Math.min(72, line.length())).append("\r\n");
+        for (int i = 72; i < line.length(); i += 71) {
+            manifest.append(' ').append(line, i, Math.min(i + 71, line.length())).append("\r\n");
+        }
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
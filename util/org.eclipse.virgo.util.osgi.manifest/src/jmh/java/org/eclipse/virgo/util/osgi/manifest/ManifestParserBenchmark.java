@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.virgo.util.parser.manifest.FastManifestParser;
+import org.eclipse.virgo.util.parser.manifest.ManifestContents;
+import org.eclipse.virgo.util.parser.manifest.RecoveringManifestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing of whole manifests into their sections and headers, comparing
+ * {@link RecoveringManifestParser}, reading characters as bundle manifests are read from a <code>Reader</code>, with
+ * {@link FastManifestParser}, reading the UTF-8 bytes returned by <code>JarUtils.readManifest</code>.
+ * <p />
+ * Run with <code>gradlew :util:org.eclipse.virgo.util.osgi.manifest:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManifestParserBenchmark {
+
+    @Param({ "recovering", "bytes" })
+    private String parser;
+
+    private List<byte[]> realWorldManifests;
+
+    private byte[] largeManifest;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.realWorldManifests = ManifestCorpus.realWorldManifests();
+        this.largeManifest = ManifestCorpus.largeManifest();
+    }
+
+    @Benchmark
+    public void parseRealWorldManifests(Blackhole blackhole) throws IOException {
+        for (byte[] manifest : this.realWorldManifests) {
+            blackhole.consume(parse(manifest));
+        }
+    }
+
+    @Benchmark
+    public ManifestContents parseLargeManifest() throws IOException {
+        return parse(this.largeManifest);
+    }
+
+    private ManifestContents parse(byte[] manifest) throws IOException {
+        if ("recovering".equals(this.parser)) {
+            return new RecoveringManifestParser().parse(new InputStreamReader(new ByteArrayInputStream(manifest), UTF_8));
+        }
+        return new FastManifestParser().parse(ByteBuffer.wrap(manifest));
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Version;
+
+/**
+ * Measures the parsing, intersection and matching of {@link VersionRange VersionRanges} of the forms found in
+ * Import-Package, Import-Library and Import-Bundle headers.
+ * <p />
+ * Run with <code>gradlew :util:org.eclipse.virgo.util.osgi.manifest:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionRangeBenchmark {
+
+    private static final String[] RANGES = { "[1.0.0,2.0.0)", "[2.5.0.RELEASE,3.0.0)", "1.2", "(1.0,1.5]", "[3.0.0.M1,3.0.0.M1]",
+        "[1.4.0,1.4.0]", "0", "[2.0,2.5.6.SEC01]" };
+
+    private VersionRange[] versionRanges;
+
+    private Version[] versions;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.versionRanges = new VersionRange[RANGES.length];
+        this.versions = new Version[RANGES.length];
+        for (int i = 0; i < RANGES.length; i++) {
+            this.versionRanges[i] = new VersionRange(RANGES[i]);
+            this.versions[i] = this.versionRanges[i].getFloor();
+        }
+    }
+
+    @Benchmark
+    public VersionRange parse() {
+        return new VersionRange(RANGES[nextIndex()]);
+    }
+
+    @Benchmark
+    public VersionRange intersection() {
+        int i = nextIndex();
+        return VersionRange.intersection(this.versionRanges[i], this.versionRanges[(i + 1) % this.versionRanges.length]);
+    }
+
+    @Benchmark
+    public boolean includes() {
+        int i = nextIndex();
+        return this.versionRanges[i].includes(this.versions[(i + 3) % this.versions.length]);
+    }
+
+    private int nextIndex() {
+        int i = this.next;
+        this.next = (i + 1) % RANGES.length;
+        return i;
+    }
+}
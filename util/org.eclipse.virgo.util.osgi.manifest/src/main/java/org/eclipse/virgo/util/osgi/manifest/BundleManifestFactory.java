@@ -13,8 +13,10 @@ package org.eclipse.virgo.util.osgi.manifest;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Dictionary;
 
+import org.eclipse.virgo.util.osgi.manifest.internal.ReadOnlyBundleManifest;
 import org.eclipse.virgo.util.osgi.manifest.internal.StandardBundleManifest;
 import org.eclipse.virgo.util.osgi.manifest.parse.DummyParserLogger;
 import org.eclipse.virgo.util.osgi.manifest.parse.ParserLogger;
@@ -101,4 +103,59 @@ public class BundleManifestFactory {
     public static BundleManifest createBundleManifest(Reader reader) throws IOException {
         return createBundleManifest(reader, new DummyParserLogger());
     }
+
+    /**
+     * Creates a new read-only {@link BundleManifest}, reading its contents from the supplied {@link Reader}. A read-only
+     * manifest shares its header names, and the names, attributes and version ranges of its parsed headers, with other
+     * manifests, and is intended for use where many manifests are read but none are changed. Its headers are returned
+     * in the same form as those of a standard manifest, and any attempt to change it, or the structured headers it
+     * returns, fails with {@link UnsupportedOperationException}.
+     * 
+     * @param reader The <code>Reader</code> of headers
+     * @param parserLogger The <code>ParserLogger</code> to be used to report parsing problems.
+     * @return The read-only <code>BundleManifest</code> populated by reading the <code>Reader</code>.
+     * @throws IOException if an error occurs reading the supplied <code>Reader</code>.
+     */
+    public static BundleManifest createReadOnlyBundleManifest(Reader reader, ParserLogger parserLogger) throws IOException {
+        return new ReadOnlyBundleManifest(parserLogger, reader);
+    }
+
+    /**
+     * Creates a new read-only {@link BundleManifest}, reading its contents from the supplied {@link Reader}.
+     * 
+     * @param reader The <code>Reader</code> of headers
+     * @return The read-only <code>BundleManifest</code> populated by reading the <code>Reader</code>.
+     * @throws IOException if an error occurs reading the supplied <code>Reader</code>.
+     * @see #createReadOnlyBundleManifest(Reader, ParserLogger)
+     */
+    public static BundleManifest createReadOnlyBundleManifest(Reader reader) throws IOException {
+        return createReadOnlyBundleManifest(reader, new DummyParserLogger());
+    }
+
+    /**
+     * Creates a new read-only {@link BundleManifest}, parsing its contents from the supplied UTF-8 bytes, such as those
+     * returned by <code>JarUtils.readManifest</code>. A well-formed manifest is parsed without first being decoded into
+     * characters.
+     * 
+     * @param bytes The <code>ByteBuffer</code> of headers. Its position is not changed.
+     * @param parserLogger The <code>ParserLogger</code> to be used to report parsing problems.
+     * @return The read-only <code>BundleManifest</code> populated from the bytes.
+     * @throws IOException if the bytes are not a valid manifest.
+     * @see #createReadOnlyBundleManifest(Reader, ParserLogger)
+     */
+    public static BundleManifest createReadOnlyBundleManifest(ByteBuffer bytes, ParserLogger parserLogger) throws IOException {
+        return new ReadOnlyBundleManifest(parserLogger, bytes);
+    }
+
+    /**
+     * Creates a new read-only {@link BundleManifest}, parsing its contents from the supplied UTF-8 bytes.
+     * 
+     * @param bytes The <code>ByteBuffer</code> of headers. Its position is not changed.
+     * @return The read-only <code>BundleManifest</code> populated from the bytes.
+     * @throws IOException if the bytes are not a valid manifest.
+     * @see #createReadOnlyBundleManifest(ByteBuffer, ParserLogger)
+     */
+    public static BundleManifest createReadOnlyBundleManifest(ByteBuffer bytes) throws IOException {
+        return createReadOnlyBundleManifest(bytes, new DummyParserLogger());
+    }
 }
@@ -45,7 +45,7 @@ abstract class BaseImported extends BaseCompoundHeaderEntry implements Imported
      */
     public VersionRange getVersion() {
         String value = getAttributes().get(Constants.VERSION_ATTRIBUTE);
-        return new VersionRange(value);
+        return HeaderInterner.versionRange(value);
     }
 
     /**
@@ -11,6 +11,7 @@
 
 package org.eclipse.virgo.util.osgi.manifest.internal;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,6 +29,8 @@ abstract class BaseParameterised implements Parameterised {
     private Map<String, String> attributes = new HashMap<String, String>();
     
     private Map<String, String> directives = new HashMap<String, String>();
+
+    private boolean readOnly;
     
     private static final String EMPTY_STRING = "";
 
@@ -39,16 +42,37 @@ abstract class BaseParameterised implements Parameterised {
      * {@inheritDoc}
      */
     public void resetFromParseString(String string) {
+        checkModifiable();
         HeaderDeclaration header = parse(this.parser, string);
         
-        this.name = header.getNames().get(0);
+        this.name = HeaderInterner.intern(header.getNames().get(0));
         
-        this.attributes = header.getAttributes();
-        this.directives = header.getDirectives();
+        this.attributes = HeaderInterner.intern(header.getAttributes());
+        this.directives = HeaderInterner.intern(header.getDirectives());
     }
 
     abstract HeaderDeclaration parse(HeaderParser parser, String parseString);
 
+    final void setName(String name) {
+        checkModifiable();
+        this.name = name;
+    }
+
+    /**
+     * Prevents any further change to this header, including to its attributes and directives.
+     */
+    void makeReadOnly() {
+        this.attributes = Collections.unmodifiableMap(this.attributes);
+        this.directives = Collections.unmodifiableMap(this.directives);
+        this.readOnly = true;
+    }
+
+    final void checkModifiable() {
+        if (this.readOnly) {
+            throw new UnsupportedOperationException("Header is read-only");
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -12,8 +12,10 @@
 package org.eclipse.virgo.util.osgi.manifest.internal;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.virgo.util.osgi.manifest.Parameterised;
 import org.eclipse.virgo.util.osgi.manifest.Parseable;
@@ -33,6 +35,8 @@ abstract class CompoundParseable<T extends Parameterised> implements Parseable {
     
     private static final String EMPTY_STRING = "";
 
+    private boolean readOnly;
+
     CompoundParseable(HeaderParser parser) {
         this.parser = parser;
         this.components = new ArrayList<T>();
@@ -46,6 +50,7 @@ abstract class CompoundParseable<T extends Parameterised> implements Parseable {
      * {@inheritDoc}
      */
     public void resetFromParseString(String parseString) {
+        checkModifiable();
 
         this.components.clear();
 
@@ -53,10 +58,12 @@ abstract class CompoundParseable<T extends Parameterised> implements Parseable {
             List<HeaderDeclaration> headers = parse(parseString);
 
             for (HeaderDeclaration header : headers) {
+                Map<String, String> attributes = HeaderInterner.intern(header.getAttributes());
+                Map<String, String> directives = HeaderInterner.intern(header.getDirectives());
                 for (String name : header.getNames()) {
-                    T component = newEntry(name);
-                    component.getAttributes().putAll(header.getAttributes());
-                    component.getDirectives().putAll(header.getDirectives());
+                    T component = newEntry(HeaderInterner.intern(name));
+                    component.getAttributes().putAll(attributes);
+                    component.getDirectives().putAll(directives);
                     this.components.add(component);
                 }
             }
@@ -96,8 +103,26 @@ abstract class CompoundParseable<T extends Parameterised> implements Parseable {
     }
 
     protected T add(String name) {
+        checkModifiable();
         T newComponent = newEntry(name);
         this.components.add(newComponent);
         return newComponent;
     }
+
+    /**
+     * Prevents any further change to this header, including to its components.
+     */
+    void makeReadOnly() {
+        for (T component : this.components) {
+            ((BaseParameterised) component).makeReadOnly();
+        }
+        this.components = Collections.unmodifiableList(this.components);
+        this.readOnly = true;
+    }
+
+    private void checkModifiable() {
+        if (this.readOnly) {
+            throw new UnsupportedOperationException("Header is read-only");
+        }
+    }
 }
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+
+/**
+ * Interns the names, attribute and directive keys and values, and version ranges of parsed headers, so that manifests
+ * which share them, such as the many manifests which import the same packages at the same versions, share a single
+ * instance of each. Instances are only held weakly, so they are discarded once no manifest refers to them.
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * Thread-safe
+ */
+final class HeaderInterner {
+
+    private static final Object monitor = new Object();
+
+        private static final Map<String, WeakReference<String>> strings = new WeakHashMap<String, WeakReference<String>>(); // protected by monitor
+
+        private static final Map<String, WeakReference<VersionRange>> versionRanges = new WeakHashMap<String, WeakReference<VersionRange>>(); // protected by monitor
+
+    static String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        synchronized (monitor) {
+            WeakReference<String> reference = strings.get(string);
+            String interned = reference == null ? null : reference.get();
+            if (interned == null) {
+                interned = string;
+                strings.put(interned, new WeakReference<String>(interned));
+            }
+            return interned;
+        }
+    }
+
+    static Map<String, String> intern(Map<String, String> map) {
+        Map<String, String> interned = new HashMap<String, String>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            interned.put(intern(entry.getKey()), intern(entry.getValue()));
+        }
+        return interned;
+    }
+
+    static Map<String, String> internKeys(Map<String, String> map) {
+        Map<String, String> interned = new HashMap<String, String>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            interned.put(intern(entry.getKey()), entry.getValue());
+        }
+        return interned;
+    }
+
+    /**
+     * Returns the {@link VersionRange} with the given parse string, creating it only if no manifest currently refers to
+     * an instance with the same parse string.
+     */
+    static VersionRange versionRange(String versionRange) {
+        if (versionRange == null) {
+            return VersionRange.NATURAL_NUMBER_RANGE;
+        }
+        synchronized (monitor) {
+            WeakReference<VersionRange> reference = versionRanges.get(versionRange);
+            VersionRange interned = reference == null ? null : reference.get();
+            if (interned != null) {
+                return interned;
+            }
+        }
+        VersionRange created = new VersionRange(versionRange);
+        synchronized (monitor) {
+            versionRanges.put(intern(versionRange), new WeakReference<VersionRange>(created));
+        }
+        return created;
+    }
+
+    private HeaderInterner() {
+    }
+}
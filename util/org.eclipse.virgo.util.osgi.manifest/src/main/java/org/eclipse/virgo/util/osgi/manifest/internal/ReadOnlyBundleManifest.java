@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.osgi.manifest.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.virgo.util.common.CaseInsensitiveMap;
+import org.eclipse.virgo.util.common.MapToDictionaryAdapter;
+import org.eclipse.virgo.util.osgi.manifest.BundleManifest;
+import org.eclipse.virgo.util.osgi.manifest.Parseable;
+import org.eclipse.virgo.util.osgi.manifest.parse.ParserLogger;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+
+/**
+ * A read-only {@link BundleManifest} for use where many manifests are read but none are changed, such as when a
+ * repository is scanned. Its header names are interned and shared with other manifests, as are the names, attributes
+ * and version ranges of its structured headers, which are parsed when they are first accessed.
+ * <p />
+ * As with {@link StandardBundleManifest}, {@link #getHeader(String)} and {@link #toDictionary()} return structured
+ * headers in their parsed, normalised form; <code>toDictionary</code> returns an unmodifiable copy. Methods which
+ * modify the manifest, or any of the structured headers it returns, throw {@link UnsupportedOperationException}.
+ * <p />
+ * 
+ * <strong>Concurrent Semantics</strong><br />
+ * 
+ * Thread-safe.
+ */
+public final class ReadOnlyBundleManifest extends StandardBundleManifest {
+
+    public ReadOnlyBundleManifest(ParserLogger logger, Map<String, String> contents) {
+        super(logger, HeaderInterner.internKeys(contents));
+    }
+
+    public ReadOnlyBundleManifest(ParserLogger logger, Reader reader) throws IOException {
+        this(logger, parseContents(reader).getMainAttributes());
+    }
+
+    public ReadOnlyBundleManifest(ParserLogger logger, ByteBuffer bytes) throws IOException {
+        this(logger, parseContents(bytes).getMainAttributes());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getBundleClasspath() {
+        String value = this.contents.get(Constants.BUNDLE_CLASSPATH);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        List<String> bundleClasspath = new ArrayList<String>();
+        for (String component : value.split(",")) {
+            bundleClasspath.add(component.trim());
+        }
+        return Collections.unmodifiableList(bundleClasspath);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Dictionary<String, String> toDictionary() {
+        CaseInsensitiveMap<String> dictionary = new CaseInsensitiveMap<String>(this.contents);
+        for (String name : this.contents.keySet()) {
+            Parseable header = getParsedHeader(name);
+            if (header != null) {
+                String value = header.toParseString();
+                if (value != null) {
+                    dictionary.put(name, value);
+                } else {
+                    dictionary.remove(name);
+                }
+            }
+        }
+        return new MapToDictionaryAdapter<String, String>(Collections.unmodifiableMap(dictionary));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void headerParsed(Parseable header) {
+        if (header instanceof BaseParameterised) {
+            ((BaseParameterised) header).makeReadOnly();
+        } else {
+            ((CompoundParseable<?>) header).makeReadOnly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBundleDescription(String bundleDescription) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBundleManifestVersion(int bundleManifestVersion) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBundleName(String bundleName) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBundleUpdateLocation(URL bundleUpdateLocation) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModuleScope(String moduleScope) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModuleType(String moduleType) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBundleVersion(Version bundleVersion) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setHeader(String name, String value) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Bundle manifest is read-only");
+    }
+}
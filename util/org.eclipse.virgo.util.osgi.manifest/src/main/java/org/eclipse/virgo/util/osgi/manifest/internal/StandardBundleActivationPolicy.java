@@ -46,9 +46,9 @@ class StandardBundleActivationPolicy extends BaseParameterised implements Bundle
      */
     public void setActivationPolicy(Policy policy) {
         if (Policy.LAZY.equals(policy)) {
-            this.name = Constants.ACTIVATION_LAZY;
+            setName(Constants.ACTIVATION_LAZY);
         } else {
-            this.name = null;
+            setName(null);
         }
     }
 
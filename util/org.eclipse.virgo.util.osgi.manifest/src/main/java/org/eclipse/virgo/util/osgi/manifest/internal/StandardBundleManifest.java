@@ -18,12 +18,16 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -43,6 +47,7 @@ import org.eclipse.virgo.util.osgi.manifest.RequireBundle;
 import org.eclipse.virgo.util.osgi.manifest.parse.HeaderParser;
 import org.eclipse.virgo.util.osgi.manifest.parse.ParserLogger;
 import org.eclipse.virgo.util.osgi.manifest.parse.standard.StandardHeaderParser;
+import org.eclipse.virgo.util.parser.manifest.FastManifestParser;
 import org.eclipse.virgo.util.parser.manifest.ManifestContents;
 import org.eclipse.virgo.util.parser.manifest.ManifestParser;
 import org.eclipse.virgo.util.parser.manifest.ManifestProblem;
@@ -53,9 +58,15 @@ import org.osgi.framework.Version;
 
 
 /**
+ * A {@link BundleManifest} whose structured headers, such as <code>Import-Package</code> and
+ * <code>Export-Package</code>, are each parsed when they are first accessed rather than when the manifest is created.
+ * Problems with a header's syntax are therefore reported when the header is first accessed.
+ * <p />
+ * 
  * <strong>Concurrent Semantics</strong><br />
  * 
- * Not thread-safe.
+ * Not thread-safe, except that a manifest which is not modified may be read by multiple threads, including while its
+ * structured headers are parsed.
  */
 public class StandardBundleManifest implements BundleManifest {
 
@@ -63,9 +74,17 @@ public class StandardBundleManifest implements BundleManifest {
     
     static final String MANIFEST_VERSION_VALUE = "1.0";
 
-    private final CaseInsensitiveMap<String> contents = new CaseInsensitiveMap<String>();
+    final CaseInsensitiveMap<String> contents = new CaseInsensitiveMap<String>();
+
+    private final HeaderParser parser;
+
+    private static final String[] STRUCTURED_HEADER_NAMES = { Constants.BUNDLE_ACTIVATIONPOLICY, Constants.BUNDLE_SYMBOLICNAME,
+        Constants.DYNAMICIMPORT_PACKAGE, Constants.EXPORT_PACKAGE, Constants.FRAGMENT_HOST, IMPORT_BUNDLE, IMPORT_LIBRARY,
+        Constants.IMPORT_PACKAGE, Constants.REQUIRE_BUNDLE };
 
-    private final CaseInsensitiveMap<Parseable> headers;
+    private final ConcurrentMap<String, Parseable> headers = new ConcurrentHashMap<String, Parseable>(); // headers parsed so far, by structured header name
+
+    private final Object parseMonitor = new Object();
 
     public StandardBundleManifest(ParserLogger logger) {
         this(logger, (Map<String, String>) new Hashtable<String, String>());
@@ -76,7 +95,7 @@ public class StandardBundleManifest implements BundleManifest {
         if (!this.contents.containsKey(MANIFEST_VERSION)) {
             this.contents.put(MANIFEST_VERSION, MANIFEST_VERSION_VALUE);
         }
-        this.headers = initializeHeaders(this.contents, new StandardHeaderParser(logger));
+        this.parser = new StandardHeaderParser(logger);
     }
 
     public StandardBundleManifest(ParserLogger logger, Dictionary<String, String> contents) {
@@ -101,10 +120,19 @@ public class StandardBundleManifest implements BundleManifest {
         this(logger, manifestContents.getMainAttributes());
     }
    
-    private static ManifestContents parseContents(Reader reader) throws IOException {
+    static ManifestContents parseContents(Reader reader) throws IOException {
         ManifestParser parser = new RecoveringManifestParser();
         parser.setTerminateAfterMainSection(true);
-        ManifestContents contents = parser.parse(reader);
+        return checkContents(parser, parser.parse(reader));
+    }
+
+    static ManifestContents parseContents(ByteBuffer bytes) throws IOException {
+        FastManifestParser parser = new FastManifestParser();
+        parser.setTerminateAfterMainSection(true);
+        return checkContents(parser, parser.parse(bytes));
+    }
+
+    private static ManifestContents checkContents(ManifestParser parser, ManifestContents contents) throws IOException {
         if (parser.foundProblems()) {
             List<ManifestProblem> problems = parser.getProblems();
             for (ManifestProblem problem : problems) {
@@ -116,36 +144,81 @@ public class StandardBundleManifest implements BundleManifest {
         return contents;
     }
 
-    private static CaseInsensitiveMap<Parseable> initializeHeaders(Map<String, String> contents, HeaderParser parser) {
-        CaseInsensitiveMap<Parseable> headers = createHeadersMap(parser);
-        for (Map.Entry<String, Parseable> entry : headers.entrySet()) {
-            String value = contents.get(entry.getKey());
-            if (value != null) {
-                entry.getValue().resetFromParseString(value);
+    private static Parseable createHeader(String name, HeaderParser parser) {
+        if (Constants.BUNDLE_ACTIVATIONPOLICY.equalsIgnoreCase(name)) {
+            return new StandardBundleActivationPolicy(parser);
+        } else if (Constants.BUNDLE_SYMBOLICNAME.equalsIgnoreCase(name)) {
+            return new StandardBundleSymbolicName(parser);
+        } else if (Constants.DYNAMICIMPORT_PACKAGE.equalsIgnoreCase(name)) {
+            return new StandardDynamicImportPackage(parser);
+        } else if (Constants.EXPORT_PACKAGE.equalsIgnoreCase(name)) {
+            return new StandardExportPackage(parser);
+        } else if (Constants.FRAGMENT_HOST.equalsIgnoreCase(name)) {
+            return new StandardFragmentHost(parser);
+        } else if (IMPORT_BUNDLE.equalsIgnoreCase(name)) {
+            return new StandardImportBundle(parser);
+        } else if (IMPORT_LIBRARY.equalsIgnoreCase(name)) {
+            return new StandardImportLibrary(parser);
+        } else if (Constants.IMPORT_PACKAGE.equalsIgnoreCase(name)) {
+            return new StandardImportPackage(parser);
+        } else if (Constants.REQUIRE_BUNDLE.equalsIgnoreCase(name)) {
+            return new StandardRequireBundle(parser);
+        }
+        return null;
+    }
+
+    private static String getStructuredHeaderName(String name) {
+        for (String structuredHeaderName : STRUCTURED_HEADER_NAMES) {
+            if (structuredHeaderName.equalsIgnoreCase(name)) {
+                return structuredHeaderName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the structured header with the given name, parsing it from the manifest's contents if it has not been
+     * accessed before. A header is parsed at most once, under a lock as the parser is not thread-safe, and published
+     * through a concurrent map, so that headers which have been parsed are read without locking.
+     * 
+     * @return the header, or <code>null</code> if the named header is not a structured header
+     */
+    final Parseable getParsedHeader(String name) {
+        String structuredHeaderName = getStructuredHeaderName(name);
+        if (structuredHeaderName == null) {
+            return null;
+        }
+        Parseable header = this.headers.get(structuredHeaderName);
+        if (header == null) {
+            synchronized (this.parseMonitor) {
+                header = this.headers.get(structuredHeaderName);
+                if (header == null) {
+                    header = createHeader(structuredHeaderName, this.parser);
+                    String value = this.contents.get(structuredHeaderName);
+                    if (value != null) {
+                        header.resetFromParseString(value);
+                    }
+                    headerParsed(header);
+                    this.headers.put(structuredHeaderName, header);
+                }
             }
         }
-        return headers;
+        return header;
     }
 
-    private static CaseInsensitiveMap<Parseable> createHeadersMap(HeaderParser parser) {
-        CaseInsensitiveMap<Parseable> headers = new CaseInsensitiveMap<Parseable>();
-        headers.put(Constants.BUNDLE_ACTIVATIONPOLICY, new StandardBundleActivationPolicy(parser));
-        headers.put(Constants.BUNDLE_SYMBOLICNAME, new StandardBundleSymbolicName(parser));
-        headers.put(Constants.DYNAMICIMPORT_PACKAGE, new StandardDynamicImportPackage(parser));
-        headers.put(Constants.EXPORT_PACKAGE, new StandardExportPackage(parser));
-        headers.put(Constants.FRAGMENT_HOST, new StandardFragmentHost(parser));
-        headers.put(IMPORT_BUNDLE, new StandardImportBundle(parser));
-        headers.put(IMPORT_LIBRARY, new StandardImportLibrary(parser));
-        headers.put(Constants.IMPORT_PACKAGE, new StandardImportPackage(parser));
-        headers.put(Constants.REQUIRE_BUNDLE, new StandardRequireBundle(parser));
-        return headers;
+    /**
+     * Called when a structured header has been parsed, before it is returned to any caller.
+     * 
+     * @param header the parsed header
+     */
+    void headerParsed(Parseable header) {
     }
 
     /**
      * {@inheritDoc}
      */
     public BundleActivationPolicy getBundleActivationPolicy() {
-        return (BundleActivationPolicy) this.headers.get(Constants.BUNDLE_ACTIVATIONPOLICY);
+        return (BundleActivationPolicy) getParsedHeader(Constants.BUNDLE_ACTIVATIONPOLICY);
     }
 
     /**
@@ -185,7 +258,7 @@ public class StandardBundleManifest implements BundleManifest {
      * {@inheritDoc}
      */
     public BundleSymbolicName getBundleSymbolicName() {
-        return (BundleSymbolicName) this.headers.get(Constants.BUNDLE_SYMBOLICNAME);
+        return (BundleSymbolicName) getParsedHeader(Constants.BUNDLE_SYMBOLICNAME);
     }
 
     /**
@@ -208,42 +281,42 @@ public class StandardBundleManifest implements BundleManifest {
      * {@inheritDoc}
      */
     public DynamicImportPackage getDynamicImportPackage() {
-        return (DynamicImportPackage) this.headers.get(Constants.DYNAMICIMPORT_PACKAGE);
+        return (DynamicImportPackage) getParsedHeader(Constants.DYNAMICIMPORT_PACKAGE);
     }
 
     /**
      * {@inheritDoc}
      */
     public ExportPackage getExportPackage() {
-        return (ExportPackage) this.headers.get(Constants.EXPORT_PACKAGE);
+        return (ExportPackage) getParsedHeader(Constants.EXPORT_PACKAGE);
     }
 
     /**
      * {@inheritDoc}
      */
     public FragmentHost getFragmentHost() {
-        return (FragmentHost) this.headers.get(Constants.FRAGMENT_HOST);
+        return (FragmentHost) getParsedHeader(Constants.FRAGMENT_HOST);
     }
 
     /**
      * {@inheritDoc}
      */
     public ImportBundle getImportBundle() {
-        return (ImportBundle) this.headers.get(BundleManifest.IMPORT_BUNDLE);
+        return (ImportBundle) getParsedHeader(BundleManifest.IMPORT_BUNDLE);
     }
 
     /**
      * {@inheritDoc}
      */
     public ImportLibrary getImportLibrary() {
-        return (ImportLibrary) this.headers.get(BundleManifest.IMPORT_LIBRARY);
+        return (ImportLibrary) getParsedHeader(BundleManifest.IMPORT_LIBRARY);
     }
 
     /**
      * {@inheritDoc}
      */
     public ImportPackage getImportPackage() {
-        return (ImportPackage) this.headers.get(Constants.IMPORT_PACKAGE);
+        return (ImportPackage) getParsedHeader(Constants.IMPORT_PACKAGE);
     }
 
     /**
@@ -264,7 +337,7 @@ public class StandardBundleManifest implements BundleManifest {
      * {@inheritDoc}
      */
     public RequireBundle getRequireBundle() {
-        return (RequireBundle) this.headers.get(Constants.REQUIRE_BUNDLE);
+        return (RequireBundle) getParsedHeader(Constants.REQUIRE_BUNDLE);
     }
 
     /**
@@ -333,6 +406,7 @@ public class StandardBundleManifest implements BundleManifest {
      * {@inheritDoc}
      */
     public Dictionary<String, String> toDictionary() {
+        parseHeaders();
         synchroniseContentsWithHeaders();
 
         return new MapToDictionaryAdapter(new CaseInsensitiveMap<String>(this.contents));
@@ -365,28 +439,30 @@ public class StandardBundleManifest implements BundleManifest {
      * {@inheritDoc}
      */
     public String getHeader(String name) {
-        synchroniseContentsWithHeaders();
+        Parseable header = getParsedHeader(name);
+        if (header != null) {
+            return header.toParseString();
+        }
         return this.contents.get(name);
     }
 
-    private void synchroniseContentsWithHeaders() {
-        for (Map.Entry<String, String> content : this.contents.entrySet()) {
-            Parseable header = this.headers.get(content.getKey());
-            if (header != null) {
-                String headerValue = header.toParseString();
-                if (headerValue != null) {
-                    this.contents.put(content.getKey(), headerValue);
-                } else {
-                    this.contents.remove(content.getKey());
-                }
-            }
+    /**
+     * Parses those structured headers present in the contents which have not yet been accessed, so that the contents are
+     * presented in the same, normalised form whether or not the headers have been accessed.
+     */
+    private void parseHeaders() {
+        for (String name : new ArrayList<String>(this.contents.keySet())) {
+            getParsedHeader(name);
         }
+    }
+
+    private void synchroniseContentsWithHeaders() {
         for (Map.Entry<String, Parseable> header : this.headers.entrySet()) {
-            if (this.contents.get(header.getKey()) == null) {
-                String headerValue = header.getValue().toParseString();
-                if (headerValue != null) {
-                    this.contents.put(header.getKey(), headerValue);
-                }
+            String headerValue = header.getValue().toParseString();
+            if (headerValue != null) {
+                this.contents.put(header.getKey(), headerValue);
+            } else {
+                this.contents.remove(header.getKey());
             }
         }
     }
@@ -401,7 +477,9 @@ public class StandardBundleManifest implements BundleManifest {
             this.contents.put(name, value);
         }
 
-        Parseable header = this.headers.get(name);
+        // a structured header not yet parsed is parsed from the contents when accessed
+        String structuredHeaderName = getStructuredHeaderName(name);
+        Parseable header = structuredHeaderName == null ? null : this.headers.get(structuredHeaderName);
         if (header != null) {
             header.resetFromParseString(value);
         }
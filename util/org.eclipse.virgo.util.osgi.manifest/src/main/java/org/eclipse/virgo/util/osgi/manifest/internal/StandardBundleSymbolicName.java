@@ -88,6 +88,6 @@ class StandardBundleSymbolicName  extends BaseParameterised implements BundleSym
      * {@inheritDoc}
      */
     public void setSymbolicName(String symbolicName) {
-        this.name = symbolicName;
+        setName(symbolicName);
     }
 }
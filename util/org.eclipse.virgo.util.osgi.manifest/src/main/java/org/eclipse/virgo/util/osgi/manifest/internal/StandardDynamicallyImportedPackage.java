@@ -48,7 +48,7 @@ class StandardDynamicallyImportedPackage extends BaseCompoundHeaderEntry impleme
      * {@inheritDoc}
      */
     public void setPackageName(String packageName) {
-        this.name = packageName;
+        setName(packageName);
     }
     
     /** 
@@ -62,7 +62,7 @@ class StandardDynamicallyImportedPackage extends BaseCompoundHeaderEntry impleme
      * {@inheritDoc}
      */
     public VersionRange getBundleVersion() {
-        return new VersionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));
+        return HeaderInterner.versionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));
     }
 
     /** 
@@ -70,7 +70,7 @@ class StandardDynamicallyImportedPackage extends BaseCompoundHeaderEntry impleme
      */
     public VersionRange getVersion() {
         String value = getAttributes().get(Constants.VERSION_ATTRIBUTE);
-        return new VersionRange(value);        
+        return HeaderInterner.versionRange(value);
     }
 
     /** 
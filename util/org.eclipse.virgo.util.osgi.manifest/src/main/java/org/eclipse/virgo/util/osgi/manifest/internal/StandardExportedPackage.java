@@ -101,6 +101,6 @@ public class StandardExportedPackage extends BaseCompoundHeaderEntry implements
         if (packageName == null) {
             throw new IllegalArgumentException("packageName must not be null");
         }
-        this.name = packageName;        
+        setName(packageName);        
     }
 }
@@ -61,7 +61,7 @@ class StandardFragmentHost extends BaseParameterised implements FragmentHost {
      * {@inheritDoc}
      */
     public void setBundleSymbolicName(String hostName) {
-        this.name = hostName;        
+        setName(hostName);        
     }
 
     /** 
@@ -87,7 +87,7 @@ class StandardFragmentHost extends BaseParameterised implements FragmentHost {
      * {@inheritDoc}
      */
     public VersionRange getBundleVersion() {
-        return new VersionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));        
+        return HeaderInterner.versionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));        
     }
 
     /** 
@@ -94,7 +94,7 @@ class StandardImportedBundle extends BaseImported implements ImportedBundle {
         if (bundleSymbolicName == null) {
             throw new IllegalArgumentException("bundleSymbolicName must not be null");
         }
-        this.name = bundleSymbolicName;
+        setName(bundleSymbolicName);
     }
 
     /**
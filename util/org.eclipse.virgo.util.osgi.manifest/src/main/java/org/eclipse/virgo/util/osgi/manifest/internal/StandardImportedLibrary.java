@@ -56,7 +56,7 @@ public class StandardImportedLibrary extends BaseImported implements ImportedLib
         if (librarySymbolicName == null) {
             throw new IllegalArgumentException("librarySymbolicName must not be null");
         }
-        this.name = librarySymbolicName;
+        setName(librarySymbolicName);
     }
 
     /** 
@@ -48,7 +48,7 @@ public class StandardImportedPackage extends BaseImported implements ImportedPac
      * {@inheritDoc}
      */
     public VersionRange getBundleVersion() {
-        return new VersionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));
+        return HeaderInterner.versionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));
     }
 
     /** 
@@ -79,6 +79,6 @@ public class StandardImportedPackage extends BaseImported implements ImportedPac
         if (packageName == null) {
             throw new IllegalArgumentException("packageName must not be null");
         }
-        this.name = packageName;
+        setName(packageName);
     }
 }
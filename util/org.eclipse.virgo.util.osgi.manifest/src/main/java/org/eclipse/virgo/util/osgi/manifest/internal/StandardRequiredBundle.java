@@ -64,7 +64,7 @@ public class StandardRequiredBundle extends BaseCompoundHeaderEntry implements R
         if (bundleSymbolicName == null) {
             throw new IllegalArgumentException("bundleSymbolicName must not be null");
         }
-        this.name = bundleSymbolicName;
+        setName(bundleSymbolicName);
     }
 
     /**
@@ -113,7 +113,7 @@ public class StandardRequiredBundle extends BaseCompoundHeaderEntry implements R
      * {@inheritDoc}
      */
     public VersionRange getBundleVersion() {
-        return new VersionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));        
+        return HeaderInterner.versionRange(getAttributes().get(Constants.BUNDLE_VERSION_ATTRIBUTE));        
     }
 
     /** 
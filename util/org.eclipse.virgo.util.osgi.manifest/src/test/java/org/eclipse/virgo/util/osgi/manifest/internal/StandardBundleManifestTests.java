@@ -15,6 +15,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -42,7 +43,10 @@ import org.eclipse.virgo.util.osgi.manifest.ExportPackage;
 import org.eclipse.virgo.util.osgi.manifest.ImportBundle;
 import org.eclipse.virgo.util.osgi.manifest.ImportLibrary;
 import org.eclipse.virgo.util.osgi.manifest.ImportPackage;
+import org.eclipse.virgo.util.osgi.manifest.ImportedPackage;
 import org.eclipse.virgo.util.osgi.manifest.RequireBundle;
+import org.eclipse.virgo.util.osgi.manifest.VersionRange;
+import org.eclipse.virgo.util.osgi.manifest.parse.BundleManifestParseException;
 import org.eclipse.virgo.util.osgi.manifest.parse.DummyParserLogger;
 import org.junit.Test;
 import org.osgi.framework.Constants;
@@ -403,6 +407,110 @@ public class StandardBundleManifestTests {
         assertEquals("bar", dictionary.get(Constants.FRAGMENT_HOST));
     }
 
+    @Test
+    public void headersAreParsedWhenFirstAccessed() {
+        Map<String, String> contents = new HashMap<String, String>();
+        contents.put(Constants.BUNDLE_SYMBOLICNAME, "foo");
+        contents.put(Constants.IMPORT_PACKAGE, "a .b");
+
+        BundleManifest bundleManifest = new StandardBundleManifest(new DummyParserLogger(), contents);
+        assertEquals("foo", bundleManifest.getBundleSymbolicName().getSymbolicName());
+
+        try {
+            bundleManifest.getImportPackage();
+            fail("Ill-formed Import-Package header was not rejected");
+        } catch (BundleManifestParseException e) {
+        }
+    }
+
+    @Test
+    public void versionRangesAreShared() {
+        Map<String, String> contents = new HashMap<String, String>();
+        contents.put(Constants.IMPORT_PACKAGE, "a;version=\"[1,2)\"");
+
+        BundleManifest one = new StandardBundleManifest(new DummyParserLogger(), contents);
+        BundleManifest two = new StandardBundleManifest(new DummyParserLogger(), contents);
+        ImportedPackage importedOne = one.getImportPackage().getImportedPackages().get(0);
+        ImportedPackage importedTwo = two.getImportPackage().getImportedPackages().get(0);
+
+        assertSame(importedOne.getPackageName(), importedTwo.getPackageName());
+        assertSame(importedOne.getVersion(), importedTwo.getVersion());
+    }
+
+    @Test
+    public void readOnlyManifest() throws IOException {
+        try (Reader fileReader = new InputStreamReader(new FileInputStream(new File(resources, "all-headers.mf")), UTF_8)) {
+            BundleManifest bundleManifest = BundleManifestFactory.createReadOnlyBundleManifest(fileReader);
+            assertEquals(BundleActivationPolicy.Policy.LAZY, bundleManifest.getBundleActivationPolicy().getActivationPolicy());
+            assertNotNull(bundleManifest.getHeader(Constants.IMPORT_PACKAGE));
+            assertEquals(bundleManifest.getHeader(Constants.BUNDLE_SYMBOLICNAME), bundleManifest.toDictionary().get(Constants.BUNDLE_SYMBOLICNAME));
+
+            try {
+                bundleManifest.setHeader(Constants.BUNDLE_NAME, "name");
+                fail("Read-only manifest was changed");
+            } catch (UnsupportedOperationException e) {
+            }
+            try {
+                bundleManifest.toDictionary().put(Constants.BUNDLE_NAME, "name");
+                fail("Read-only manifest was changed");
+            } catch (UnsupportedOperationException e) {
+            }
+        }
+    }
+
+    @Test
+    public void readOnlyManifestHeadersAreNormalised() throws IOException {
+        Map<String, String> contents = new HashMap<String, String>();
+        contents.put(Constants.BUNDLE_SYMBOLICNAME, "foo ; singleton:=true");
+        contents.put(Constants.IMPORT_PACKAGE, "a;b ;version=1.0, c");
+        contents.put(Constants.BUNDLE_NAME, "Foo  Bundle");
+
+        BundleManifest standard = new StandardBundleManifest(new DummyParserLogger(), contents);
+        BundleManifest readOnly = new ReadOnlyBundleManifest(new DummyParserLogger(), contents);
+
+        assertEquals(standard.getHeader(Constants.IMPORT_PACKAGE), readOnly.getHeader(Constants.IMPORT_PACKAGE));
+        Dictionary<String, String> standardDictionary = standard.toDictionary();
+        Dictionary<String, String> readOnlyDictionary = readOnly.toDictionary();
+        assertEquals(standardDictionary.size(), readOnlyDictionary.size());
+        Enumeration<String> keys = standardDictionary.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            assertEquals(standardDictionary.get(key), readOnlyDictionary.get(key));
+        }
+    }
+
+    @Test
+    public void readOnlyManifestHeadersCannotBeChanged() {
+        Map<String, String> contents = new HashMap<String, String>();
+        contents.put(Constants.BUNDLE_SYMBOLICNAME, "foo");
+        contents.put(Constants.IMPORT_PACKAGE, "a;version=1.0");
+
+        BundleManifest bundleManifest = new ReadOnlyBundleManifest(new DummyParserLogger(), contents);
+        ImportPackage importPackage = bundleManifest.getImportPackage();
+        try {
+            importPackage.addImportedPackage("b");
+            fail("Read-only header was changed");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            importPackage.getImportedPackages().remove(0);
+            fail("Read-only header was changed");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            importPackage.getImportedPackages().get(0).setVersion(VersionRange.NATURAL_NUMBER_RANGE);
+            fail("Read-only header was changed");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            bundleManifest.getBundleSymbolicName().setSymbolicName("bar");
+            fail("Read-only header was changed");
+        } catch (UnsupportedOperationException e) {
+        }
+        assertEquals("a;version=\"1.0\"", bundleManifest.getHeader(Constants.IMPORT_PACKAGE));
+        assertEquals("foo", bundleManifest.getBundleSymbolicName().getSymbolicName());
+    }
+
     @Test
     public void extremelyLargeManifest() throws FileNotFoundException, IOException {
         try (Reader fileReader = new InputStreamReader(new FileInputStream(new File(resources, "verylarge.mf")), UTF_8)) {
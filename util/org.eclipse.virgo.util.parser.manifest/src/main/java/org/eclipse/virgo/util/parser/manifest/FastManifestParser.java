@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.parser.manifest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.virgo.util.parser.manifest.internal.ByteManifestLexer;
+import org.eclipse.virgo.util.parser.manifest.internal.StandardVisitor;
+
+/**
+ * A {@link ManifestParser} which, in addition to parsing characters, parses the UTF-8 bytes of a manifest directly. A
+ * well-formed manifest is parsed from its bytes without decoding it as a whole or building a token stream. If a problem
+ * is found, the manifest is decoded and parsed again by a {@link RecoveringManifestParser}, whose problems are then
+ * reported.
+ * <p>
+ * Characters are always parsed by a <code>RecoveringManifestParser</code>.
+ * <p>
+ * When parsing is set to terminate after the main section, the bytes of any other sections are not examined, so
+ * problems in those sections are not reported.
+ * <p>
+ * <strong>Concurrent Semantics</strong><br/>
+ * 
+ * This class is <strong>not</strong> thread safe.
+ * 
+ */
+public class FastManifestParser implements ManifestParser {
+
+	private boolean terminateAfterMainSection = false;
+
+	private ManifestParser recoveringParser;
+
+	/**
+	 * Parse the remaining bytes of the given buffer, which are encoded in UTF-8, as a manifest. The buffer's position is
+	 * not changed.
+	 * 
+	 * @param manifestData the manifest's bytes
+	 * @return manifest contents
+	 */
+	public ManifestContents parse(ByteBuffer manifestData) {
+		this.recoveringParser = null;
+		StandardVisitor visitor = new StandardVisitor();
+		visitor.setTerminateAfterMainSection(this.terminateAfterMainSection);
+		if (ByteManifestLexer.lex(manifestData, visitor)) {
+			return visitor.getManifestContents();
+		}
+		ByteBuffer bytes = manifestData.duplicate();
+		return createRecoveringParser().parse(StandardCharsets.UTF_8.decode(bytes).toString());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ManifestContents parse(String manifestData) {
+		return createRecoveringParser().parse(manifestData);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ManifestContents parse(Reader manifestReader) throws IOException {
+		return createRecoveringParser().parse(manifestReader);
+	}
+
+	private ManifestParser createRecoveringParser() {
+		this.recoveringParser = new RecoveringManifestParser();
+		this.recoveringParser.setTerminateAfterMainSection(this.terminateAfterMainSection);
+		return this.recoveringParser;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean foundProblems() {
+		return this.recoveringParser != null && this.recoveringParser.foundProblems();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<ManifestProblem> getProblems() {
+		if (this.recoveringParser == null) {
+			return Collections.emptyList();
+		}
+		return this.recoveringParser.getProblems();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setTerminateAfterMainSection(boolean shouldTerminate) {
+		this.terminateAfterMainSection = shouldTerminate;
+	}
+}
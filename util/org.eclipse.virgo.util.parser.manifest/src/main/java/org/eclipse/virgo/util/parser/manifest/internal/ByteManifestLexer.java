@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.parser.manifest.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Drives a {@link ManifestVisitor} directly from the UTF-8 bytes of a manifest, without first decoding the manifest into
+ * characters and without building a token stream.
+ * <p>
+ * Only well-formed manifests are handled. Rather than recovering from a problem, the lexer gives up as soon as it finds
+ * one so that the manifest can be parsed again by a {@link org.eclipse.virgo.util.parser.manifest.RecoveringManifestParser
+ * RecoveringManifestParser}, which reports the problem.
+ * <p>
+ * <strong>Concurrent Semantics</strong><br/>
+ * 
+ * This class is thread safe.
+ * 
+ */
+public final class ByteManifestLexer {
+
+	private static final String NAME_HEADER = "Name";
+
+	private static final int MAX_NAME_LENGTH = 65535;
+
+	private static final byte CR = '\r';
+
+	private static final byte LF = '\n';
+
+	private static final byte SPACE = ' ';
+
+	private static final byte COLON = ':';
+
+	private final ByteBuffer data;
+
+	private final int limit;
+
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(
+		CodingErrorAction.REPORT);
+
+	private int position;
+
+	private byte[] continuationBuffer;
+
+	private ByteManifestLexer(ByteBuffer data) {
+		this.data = data;
+		this.position = data.position();
+		this.limit = data.limit();
+	}
+
+	/**
+	 * Visits the sections and headers of the manifest in the remaining bytes of the given buffer. The buffer's position
+	 * is not changed.
+	 * 
+	 * @param data the manifest's bytes
+	 * @param visitor the visitor to drive
+	 * @return <code>true</code> if the manifest was visited, <code>false</code> if a problem was found
+	 */
+	public static boolean lex(ByteBuffer data, ManifestVisitor visitor) {
+		return new ByteManifestLexer(data).lex(visitor);
+	}
+
+	private boolean lex(ManifestVisitor visitor) {
+		skipNewlines();
+		visitor.visitSection(true, null);
+		boolean sectionStart = false;
+		while (this.position < this.limit) {
+			if (isNewline(this.data.get(this.position))) {
+				// a blank line ends the section
+				skipNewlines();
+				if (this.position == this.limit) {
+					break;
+				}
+				sectionStart = true;
+			}
+			String name = lexName();
+			if (name == null) {
+				return false;
+			}
+			String value = lexValue();
+			if (value == null) {
+				return false;
+			}
+			if (sectionStart) {
+				if (!NAME_HEADER.equals(name)) {
+					return false;
+				}
+				if (!visitor.visitSection(false, value)) {
+					return true;
+				}
+				sectionStart = false;
+			}
+			visitor.visitHeader(name, value);
+		}
+		return true;
+	}
+
+	private String lexName() {
+		int start = this.position;
+		if (!isAlphanumeric(this.data.get(this.position))) {
+			return null;
+		}
+		while (this.position < this.limit && isNameChar(this.data.get(this.position))) {
+			this.position++;
+		}
+		int end = this.position;
+		if (end - start > MAX_NAME_LENGTH || this.position + 1 >= this.limit || this.data.get(this.position) != COLON
+			|| this.data.get(this.position + 1) != SPACE) {
+			return null;
+		}
+		this.position += 2;
+		return decode(start, end);
+	}
+
+	private String lexValue() {
+		int start = this.position;
+		int end = endOfLine();
+		if (!skipNewline() || this.position == this.limit || this.data.get(this.position) != SPACE) {
+			return decode(start, end);
+		}
+
+		// the value is continued on the following lines, so join its parts before decoding, as a continuation may split
+		// a multi-byte character
+		int length = 0;
+		do {
+			length = append(start, end, length);
+			start = this.position + 1;
+			end = endOfLine();
+		} while (skipNewline() && this.position < this.limit && this.data.get(this.position) == SPACE);
+		length = append(start, end, length);
+		return decode(ByteBuffer.wrap(this.continuationBuffer, 0, length));
+	}
+
+	private int append(int start, int end, int length) {
+		int partLength = end - start;
+		if (this.continuationBuffer == null || this.continuationBuffer.length < length + partLength) {
+			byte[] buffer = new byte[Math.max(2 * (length + partLength), 256)];
+			if (this.continuationBuffer != null) {
+				System.arraycopy(this.continuationBuffer, 0, buffer, 0, length);
+			}
+			this.continuationBuffer = buffer;
+		}
+		ByteBuffer part = this.data.duplicate();
+		part.limit(end);
+		part.position(start);
+		part.get(this.continuationBuffer, length, partLength);
+		return length + partLength;
+	}
+
+	private int endOfLine() {
+		while (this.position < this.limit && !isNewline(this.data.get(this.position))) {
+			this.position++;
+		}
+		return this.position;
+	}
+
+	/**
+	 * Skips a single newline, which is CR LF, LF or CR.
+	 * 
+	 * @return <code>true</code> if a newline was skipped, <code>false</code> if the end of the data has been reached
+	 */
+	private boolean skipNewline() {
+		if (this.position == this.limit) {
+			return false;
+		}
+		if (this.data.get(this.position++) == CR && this.position < this.limit && this.data.get(this.position) == LF) {
+			this.position++;
+		}
+		return true;
+	}
+
+	private void skipNewlines() {
+		while (this.position < this.limit && isNewline(this.data.get(this.position))) {
+			this.position++;
+		}
+	}
+
+	private String decode(int start, int end) {
+		ByteBuffer bytes = this.data.duplicate();
+		bytes.limit(end);
+		bytes.position(start);
+		return decode(bytes);
+	}
+
+	private String decode(ByteBuffer bytes) {
+		try {
+			return this.decoder.decode(bytes).toString();
+		} catch (CharacterCodingException e) {
+			return null;
+		}
+	}
+
+	private static boolean isNewline(byte b) {
+		return b == CR || b == LF;
+	}
+
+	private static boolean isAlphanumeric(byte b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+	}
+
+	private static boolean isNameChar(byte b) {
+		return isAlphanumeric(b) || b == '-' || b == '_';
+	}
+}
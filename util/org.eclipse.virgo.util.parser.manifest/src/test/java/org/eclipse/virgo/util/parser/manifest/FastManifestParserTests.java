@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2010 VMware Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   VMware Inc. - initial contribution
+ *******************************************************************************/
+
+package org.eclipse.virgo.util.parser.manifest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+public class FastManifestParserTests {
+
+    @Test
+    public void manifestsAreParsedAsByTheRecoveringParser() throws IOException {
+        int parsed = 0;
+        try (ZipFile manifests = new ZipFile("build/resources/test/manifests.zip")) {
+            Enumeration<? extends ZipEntry> entries = manifests.entries();
+            while (entries.hasMoreElements()) {
+                byte[] manifest = read(manifests, entries.nextElement());
+                assertParsedAsByTheRecoveringParser(manifest, false);
+                assertParsedAsByTheRecoveringParser(manifest, true);
+                parsed++;
+            }
+        }
+        assertTrue(parsed > 300);
+    }
+
+    @Test
+    public void continuedValue() {
+        ManifestContents contents = parse("Manifest-Version: 1.0\r\nExport-Package: a,\r\n b,c\r\n  ;d\r\nBundle-Name: caf\r\n é\r\n");
+        assertEquals("a,b,c ;d", contents.getMainAttributes().get("Export-Package"));
+        assertEquals("café", contents.getMainAttributes().get("Bundle-Name"));
+        assertEquals("1.0", contents.getVersion());
+    }
+
+    @Test
+    public void multiByteCharacterSplitByContinuation() {
+        byte[] e = "é".getBytes(UTF_8);
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        manifest.write('a');
+        manifest.write(':');
+        manifest.write(' ');
+        manifest.write(e[0]);
+        manifest.write('\n');
+        manifest.write(' ');
+        manifest.write(e[1]);
+        manifest.write('\n');
+
+        FastManifestParser parser = new FastManifestParser();
+        ManifestContents contents = parser.parse(ByteBuffer.wrap(manifest.toByteArray()));
+        assertFalse(parser.foundProblems());
+        assertEquals("é", contents.getMainAttributes().get("a"));
+    }
+
+    @Test
+    public void sections() {
+        ManifestContents contents = parse("\n\na: b\n\n\nName: one\nc: d\n\nName: two\n");
+        assertEquals("b", contents.getMainAttributes().get("a"));
+        assertEquals(2, contents.getSectionNames().size());
+        assertEquals("d", contents.getAttributesForSection("one").get("c"));
+        assertEquals("two", contents.getAttributesForSection("two").get("Name"));
+    }
+
+    @Test
+    public void terminateAfterMainSection() {
+        FastManifestParser parser = new FastManifestParser();
+        parser.setTerminateAfterMainSection(true);
+        ManifestContents contents = parser.parse(ByteBuffer.wrap("a: b\n\nName: one\nc: d\n".getBytes(UTF_8)));
+        assertFalse(parser.foundProblems());
+        assertEquals("b", contents.getMainAttributes().get("a"));
+        assertTrue(contents.getSectionNames().isEmpty());
+        assertNull(contents.getAttributesForSection("one"));
+    }
+
+    @Test
+    public void brokenManifestIsParsedByTheRecoveringParser() throws IOException {
+        ByteBuffer manifest = ByteBuffer.wrap(Files.readAllBytes(Paths.get("build/resources/test/broken001.mf")));
+        FastManifestParser parser = new FastManifestParser();
+        ManifestContents contents = parser.parse(manifest);
+        assertTrue(parser.foundProblems());
+        assertEquals("toys", contents.getMainAttributes().get("Bundle-Name"));
+        assertEquals(0, manifest.position());
+
+        RecoveringManifestParser recoveringParser = new RecoveringManifestParser();
+        recoveringParser.parse(new String(manifest.array(), UTF_8));
+        assertEquals(recoveringParser.getProblems().toString(), parser.getProblems().toString());
+    }
+
+    @Test
+    public void problemsAreClearedByTheNextParse() {
+        FastManifestParser parser = new FastManifestParser();
+        parser.parse(ByteBuffer.wrap("a b\n".getBytes(UTF_8)));
+        assertTrue(parser.foundProblems());
+        parser.parse(ByteBuffer.wrap("a: b\n".getBytes(UTF_8)));
+        assertFalse(parser.foundProblems());
+        assertTrue(parser.getProblems().isEmpty());
+    }
+
+    private static ManifestContents parse(String manifest) {
+        FastManifestParser parser = new FastManifestParser();
+        ManifestContents contents = parser.parse(ByteBuffer.wrap(manifest.getBytes(UTF_8)));
+        assertFalse(parser.foundProblems());
+        return contents;
+    }
+
+    private static void assertParsedAsByTheRecoveringParser(byte[] manifest, boolean terminateAfterMainSection) {
+        RecoveringManifestParser recoveringParser = new RecoveringManifestParser();
+        recoveringParser.setTerminateAfterMainSection(terminateAfterMainSection);
+        ManifestContents expected = recoveringParser.parse(new String(manifest, UTF_8));
+
+        FastManifestParser parser = new FastManifestParser();
+        parser.setTerminateAfterMainSection(terminateAfterMainSection);
+        ManifestContents actual = parser.parse(ByteBuffer.wrap(manifest));
+
+        if (!terminateAfterMainSection) {
+            assertEquals(recoveringParser.foundProblems(), parser.foundProblems());
+        }
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getMainAttributes(), actual.getMainAttributes());
+        assertEquals(expected.getSectionNames(), actual.getSectionNames());
+        for (String sectionName : expected.getSectionNames()) {
+            assertEquals(expected.getAttributesForSection(sectionName), actual.getAttributesForSection(sectionName));
+        }
+    }
+
+    private static byte[] read(ZipFile zipFile, ZipEntry entry) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = zipFile.getInputStream(entry)) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+}